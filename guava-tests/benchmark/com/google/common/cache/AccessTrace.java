@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.io.LineProcessor;
+import com.google.common.primitives.Longs;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A sequence of cache requests, each for a key at a time in nanoseconds, replayed by the {@link
+ * CacheSimulator}. Traces are either read from a file or generated.
+ */
+final class AccessTrace {
+  /** The first key of a scan, far from the keys of the other generators. */
+  static final long FIRST_SCAN_KEY = 1L << 48;
+
+  final long[] keys;
+  final long[] times;
+
+  private AccessTrace(long[] keys, long[] times) {
+    this.keys = keys;
+    this.times = times;
+  }
+
+  int size() {
+    return keys.length;
+  }
+
+  /**
+   * Returns a trace of {@code length} requests for keys in {@code [0, items)} drawn from a Zipfian
+   * distribution with the given exponent, so that the {@code i}th most popular key is requested in
+   * proportion to {@code 1 / i^exponent}.
+   */
+  static AccessTrace zipfian(int items, double exponent, int length, Random random) {
+    checkArgument(items > 0, "items must be positive: %s", items);
+    double[] cumulative = new double[items];
+    double sum = 0;
+    for (int i = 0; i < items; i++) {
+      sum += 1.0 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+    long[] keys = new long[length];
+    for (int i = 0; i < length; i++) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      keys[i] = (index >= 0) ? index : Math.min(-index - 1, items - 1);
+    }
+    return untimed(keys);
+  }
+
+  /**
+   * Returns a trace of {@code length} requests for the distinct keys from {@code firstKey} on, as
+   * made by a one-off scan of a large data set. Scans from {@link #FIRST_SCAN_KEY} on do not
+   * request the keys of the other generated traces.
+   */
+  static AccessTrace scan(long firstKey, int length) {
+    long[] keys = new long[length];
+    for (int i = 0; i < length; i++) {
+      keys[i] = firstKey + i;
+    }
+    return untimed(keys);
+  }
+
+  /**
+   * Returns a trace of {@code length} requests that cycle through the keys in {@code [0, items)}.
+   */
+  static AccessTrace loop(int items, int length) {
+    checkArgument(items > 0, "items must be positive: %s", items);
+    long[] keys = new long[length];
+    for (int i = 0; i < length; i++) {
+      keys[i] = i % items;
+    }
+    return untimed(keys);
+  }
+
+  /**
+   * Reads a trace with one request per line, either {@code <key>} or {@code <time in nanos>
+   * <key>}. Keys that are not numbers are hashed. Blank lines and lines starting with {@code #} are
+   * skipped. Requests without a time are one nanosecond apart.
+   */
+  static AccessTrace read(File file) throws IOException {
+    return Files.asCharSource(file, UTF_8)
+        .readLines(
+            new LineProcessor<AccessTrace>() {
+              final Splitter splitter = Splitter.on(' ').trimResults().omitEmptyStrings();
+              long[] keys = new long[1024];
+              long[] times = new long[1024];
+              int size;
+
+              @Override
+              public boolean processLine(String line) throws IOException {
+                List<String> tokens = splitter.splitToList(line);
+                if (tokens.isEmpty() || tokens.get(0).startsWith("#")) {
+                  return true;
+                }
+                if (size == keys.length) {
+                  keys = Arrays.copyOf(keys, size * 2);
+                  times = Arrays.copyOf(times, size * 2);
+                }
+                if (tokens.size() == 1) {
+                  keys[size] = parseKey(tokens.get(0));
+                  times[size] = size;
+                } else {
+                  Long time = Longs.tryParse(tokens.get(0));
+                  if (time == null) {
+                    throw new IOException("Malformed time on line " + (size + 1) + ": " + line);
+                  }
+                  keys[size] = parseKey(tokens.get(1));
+                  times[size] = time;
+                }
+                size++;
+                return true;
+              }
+
+              @Override
+              public AccessTrace getResult() {
+                return new AccessTrace(Arrays.copyOf(keys, size), Arrays.copyOf(times, size));
+              }
+            });
+  }
+
+  private static long parseKey(String token) {
+    Long key = Longs.tryParse(token);
+    return (key != null) ? key : Hashing.murmur3_128().hashString(token, UTF_8).asLong();
+  }
+
+  private static AccessTrace untimed(long[] keys) {
+    long[] times = new long[keys.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = i;
+    }
+    return new AccessTrace(keys, times);
+  }
+
+  /** Returns this trace with its requests evenly spaced {@code nanos} apart, from time zero. */
+  AccessTrace spacedBy(long nanos) {
+    long[] spaced = new long[size()];
+    for (int i = 0; i < spaced.length; i++) {
+      spaced[i] = i * nanos;
+    }
+    return new AccessTrace(keys, spaced);
+  }
+
+  /** Returns the requests of this trace followed by those of {@code next}, in that order. */
+  AccessTrace then(AccessTrace next) {
+    long[] keys = Longs.concat(this.keys, next.keys);
+    long[] times = Longs.concat(this.times, next.times);
+    long offset = (size() == 0) ? 0 : this.times[size() - 1] + 1 - next.timeOrigin();
+    for (int i = size(); i < times.length; i++) {
+      times[i] += offset;
+    }
+    return new AccessTrace(keys, times);
+  }
+
+  private long timeOrigin() {
+    return (size() == 0) ? 0 : times[0];
+  }
+
+  /**
+   * Returns, for each request, the index of the next request for the same key, or a distinct
+   * index of at least {@link #size} if the key is not requested again.
+   */
+  int[] nextRequests() {
+    int[] next = new int[size()];
+    Map<Long, Integer> later = new HashMap<>();
+    for (int i = size() - 1; i >= 0; i--) {
+      Integer index = later.put(keys[i], i);
+      next[i] = (index != null) ? index : size() + i;
+    }
+    return next;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.SimulatedPolicy.Result;
+import com.google.common.cache.SimulatedPolicy.Settings;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a trace of cache requests against caches built with different settings and against
+ * reference {@linkplain SimulatedPolicy policies}, and reports the hit rate, eviction count and
+ * throughput of each, so that a cache's maximum size, concurrency level and expiration can be tuned
+ * offline. For example:
+ *
+ * <pre>
+ * CacheSimulator zipf:100000:0.9+scan:50000+zipf:100000:0.9 --maximumSize=1000,10000
+ *     --concurrencyLevel=1,4 --policies=CACHE_LRU,CACHE_TINY_LFU,OPTIMAL
+ * </pre>
+ *
+ * <p>The trace is either the path of a file, in the format read by {@link AccessTrace#read}, or
+ * phases of generated requests joined by {@code +}:
+ *
+ * <ul>
+ *   <li>{@code zipf:<items>:<exponent>} requests keys with a Zipfian distribution
+ *   <li>{@code scan:<length>} requests new keys that are never requested again
+ *   <li>{@code loop:<items>} cycles through the same keys
+ * </ul>
+ *
+ * <p>The options, all of which are optional, are:
+ *
+ * <ul>
+ *   <li>{@code --requests=<n>} the number of requests of each generated {@code zipf} or {@code
+ *       loop} phase (default 1000000)
+ *   <li>{@code --requestsPerSecond=<n>} the rate of generated requests (default 1000)
+ *   <li>{@code --maximumSize=<n>,...} the maximum sizes to simulate (default 1000)
+ *   <li>{@code --concurrencyLevel=<n>,...} the concurrency levels to simulate (default 4)
+ *   <li>{@code --expireAfterAccess=<millis>} and {@code --expireAfterWrite=<millis>} expiration
+ *       (default none)
+ *   <li>{@code --threads=<n>} the threads that replay the trace against a cache (default 1)
+ *   <li>{@code --policies=<policy>,...} the {@link SimulatedPolicy policies} to simulate (default
+ *       all)
+ *   <li>{@code --seed=<n>} the seed of generated traces (default 0)
+ * </ul>
+ *
+ * <p>Only caches built by {@link CacheBuilder} are affected by the concurrency level, expiration
+ * and threads; the throughput of the reference policies is not comparable with theirs.
+ */
+public final class CacheSimulator {
+  private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private CacheSimulator() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("usage: CacheSimulator <trace> [--option=value ...]");
+      System.exit(1);
+    }
+    Map<String, String> options = new HashMap<>();
+    for (int i = 1; i < args.length; i++) {
+      checkArgument(args[i].startsWith("--") && args[i].contains("="), "bad option: %s", args[i]);
+      int equals = args[i].indexOf('=');
+      options.put(args[i].substring(2, equals), args[i].substring(equals + 1));
+    }
+
+    int requests = Integer.parseInt(option(options, "requests", "1000000"));
+    long nanosPerRequest =
+        TimeUnit.SECONDS.toNanos(1) / Long.parseLong(option(options, "requestsPerSecond", "1000"));
+    long seed = Long.parseLong(option(options, "seed", "0"));
+    AccessTrace trace = trace(args[0], requests, nanosPerRequest, new Random(seed));
+
+    long expireAfterAccessNanos =
+        TimeUnit.MILLISECONDS.toNanos(Long.parseLong(option(options, "expireAfterAccess", "0")));
+    long expireAfterWriteNanos =
+        TimeUnit.MILLISECONDS.toNanos(Long.parseLong(option(options, "expireAfterWrite", "0")));
+    int threads = Integer.parseInt(option(options, "threads", "1"));
+    checkArgument(threads > 0, "threads must be positive: %s", threads);
+    ImmutableList.Builder<SimulatedPolicy> policies = ImmutableList.builder();
+    for (String policy : LIST_SPLITTER.split(option(options, "policies", ""))) {
+      policies.add(SimulatedPolicy.valueOf(policy));
+    }
+    List<SimulatedPolicy> selected = policies.build();
+    if (selected.isEmpty()) {
+      selected = ImmutableList.copyOf(SimulatedPolicy.values());
+    }
+
+    PrintStream out = System.out;
+    out.printf(Locale.ROOT, "%d requests%n", trace.size());
+    out.printf(
+        Locale.ROOT,
+        "%-16s %12s %11s %8s %12s %12s %14s%n",
+        "policy",
+        "maximumSize",
+        "concurrency",
+        "hitRate",
+        "misses",
+        "evictions",
+        "requests/s");
+    for (String maximumSize : LIST_SPLITTER.split(option(options, "maximumSize", "1000"))) {
+      for (String level : LIST_SPLITTER.split(option(options, "concurrencyLevel", "4"))) {
+        Settings settings =
+            new Settings(
+                Integer.parseInt(maximumSize),
+                Integer.parseInt(level),
+                expireAfterAccessNanos,
+                expireAfterWriteNanos,
+                threads);
+        checkArgument(settings.maximumSize > 0, "maximumSize must be positive: %s", maximumSize);
+        for (SimulatedPolicy policy : selected) {
+          Result result = policy.replay(trace, settings);
+          out.printf(
+              Locale.ROOT,
+              "%-16s %12d %11d %8.4f %12d %12d %14.0f%n",
+              policy,
+              settings.maximumSize,
+              settings.concurrencyLevel,
+              result.hitRate(),
+              result.missCount,
+              result.evictionCount,
+              result.throughput());
+        }
+      }
+    }
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return (value == null) ? defaultValue : value;
+  }
+
+  /** Returns the trace described by the first command-line argument. */
+  static AccessTrace trace(String description, int requests, long nanosPerRequest, Random random)
+      throws IOException {
+    File file = new File(description);
+    if (file.exists()) {
+      return AccessTrace.read(file);
+    }
+    AccessTrace trace = null;
+    long nextScanKey = AccessTrace.FIRST_SCAN_KEY;
+    for (String phase : Splitter.on('+').trimResults().split(description)) {
+      List<String> parts = Splitter.on(':').splitToList(phase);
+      AccessTrace generated;
+      switch (parts.get(0)) {
+        case "zipf":
+          checkArgument(parts.size() == 3, "expected zipf:<items>:<exponent>: %s", phase);
+          int items = Integer.parseInt(parts.get(1));
+          double exponent = Double.parseDouble(parts.get(2));
+          generated = AccessTrace.zipfian(items, exponent, requests, random);
+          break;
+        case "scan":
+          checkArgument(parts.size() == 2, "expected scan:<length>: %s", phase);
+          int length = Integer.parseInt(parts.get(1));
+          generated = AccessTrace.scan(nextScanKey, length);
+          nextScanKey += length;
+          break;
+        case "loop":
+          checkArgument(parts.size() == 2, "expected loop:<items>: %s", phase);
+          generated = AccessTrace.loop(Integer.parseInt(parts.get(1)), requests);
+          break;
+        default:
+          throw new IllegalArgumentException("no such file or generator: " + phase);
+      }
+      trace = (trace == null) ? generated : trace.then(generated);
+    }
+    return trace.spacedBy(nanosPerRequest);
+  }
+}
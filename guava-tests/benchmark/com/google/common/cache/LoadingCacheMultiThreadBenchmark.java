@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-threaded benchmark for {@link LoadingCache}, to find how far the throughput of its reads
+ * and writes scales with the number of threads.
+ *
+ * <p>Each thread replays its own precomputed sequence of keys, drawn from a uniform or Zipfian
+ * distribution over twice as many keys as the cache holds, and writes instead of reading the given
+ * percentage of them. The total time is divided among all threads' operations, so a flat result as
+ * {@code threads} grows means that throughput scales.
+ */
+public class LoadingCacheMultiThreadBenchmark {
+  /** The number of keys requested by a {@link LoadingCache#getAll} operation. */
+  static final int BULK_SIZE = 16;
+
+  @Param({"1", "2", "4", "8", "16", "32"})
+  int threads;
+
+  @Param Distribution distribution;
+
+  @Param({"0", "5", "25", "50"})
+  int writePercentage;
+
+  @Param Features features;
+
+  @Param("10000")
+  int maximumSize;
+
+  @Param("4")
+  int concurrencyLevel;
+
+  enum Distribution {
+    UNIFORM {
+      @Override
+      int[] keys(int items, int length, Random random) {
+        int[] keys = new int[length];
+        for (int i = 0; i < length; i++) {
+          keys[i] = random.nextInt(items);
+        }
+        return keys;
+      }
+    },
+    ZIPFIAN {
+      @Override
+      int[] keys(int items, int length, Random random) {
+        long[] trace = AccessTrace.zipfian(items, 1.0, length, random).keys;
+        int[] keys = new int[length];
+        for (int i = 0; i < length; i++) {
+          keys[i] = (int) trace[i];
+        }
+        return keys;
+      }
+    };
+
+    /** Returns {@code length} indexes in {@code [0, items)}. */
+    abstract int[] keys(int items, int length, Random random);
+  }
+
+  enum Features {
+    NONE {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder;
+      }
+    },
+    EXPIRE_AFTER_ACCESS {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder.expireAfterAccess(10, MINUTES);
+      }
+    },
+    EXPIRE_AFTER_WRITE {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder.expireAfterWrite(10, MINUTES);
+      }
+    },
+    WEAK_KEYS {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder.weakKeys();
+      }
+    },
+    RECORD_STATS {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder.recordStats();
+      }
+    },
+    ALL {
+      @Override
+      CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder) {
+        return builder.expireAfterAccess(10, MINUTES).weakKeys().recordStats();
+      }
+    };
+
+    abstract CacheBuilder<Object, Object> configure(CacheBuilder<Object, Object> builder);
+  }
+
+  /** The number of keys replayed by each thread before it starts over. */
+  private static final int TRACE_LENGTH = 1 << 16;
+
+  private LoadingCache<Integer, Integer> cache;
+
+  /**
+   * The boxed keys, shared by all threads, so that weak keys, which are compared by identity, are
+   * found, and are not collected. The last {@code BULK_SIZE - 1} keys are never drawn, and only
+   * complete the bulk operations on the last keys that are.
+   */
+  private Integer[] keys;
+
+  private int[][] traces;
+  private ExecutorService threadPool;
+
+  @BeforeExperiment
+  void setUp() {
+    cache =
+        features
+            .configure(CacheBuilder.newBuilder())
+            .concurrencyLevel(concurrencyLevel)
+            .maximumSize(maximumSize)
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    return key;
+                  }
+                });
+    int items = 2 * maximumSize;
+    keys = new Integer[items + BULK_SIZE - 1];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+    }
+    Random random = new Random(0);
+    traces = new int[threads][];
+    for (int t = 0; t < threads; t++) {
+      traces[t] = distribution.keys(items, TRACE_LENGTH, random);
+    }
+    // warm the cache up with the first thread's keys
+    for (int index : traces[0]) {
+      cache.getUnchecked(keys[index]);
+    }
+    threadPool =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).build());
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    threadPool.shutdown();
+  }
+
+  /** Reads, through {@link LoadingCache#getUnchecked}, or writes a key in each operation. */
+  @Benchmark
+  long getAndPut(final int reps) throws Exception {
+    return doMultithreadedLoop(
+        new Operation() {
+          @Override
+          long run(int key, boolean write) {
+            if (write) {
+              cache.put(keys[key], keys[key]);
+              return key;
+            }
+            return cache.getUnchecked(keys[key]);
+          }
+        },
+        reps);
+  }
+
+  /**
+   * Reads, through {@link LoadingCache#getAll}, or writes, through {@link LoadingCache#putAll},
+   * {@value #BULK_SIZE} keys at a time.
+   */
+  @Benchmark
+  long getAllAndPutAll(final int reps) throws Exception {
+    return doMultithreadedLoop(
+        new Operation() {
+          @Override
+          long run(int key, boolean write) {
+            List<Integer> bulk = Arrays.asList(keys).subList(key, key + BULK_SIZE);
+            if (write) {
+              cache.putAll(Maps.toMap(bulk, Functions.<Integer>identity()));
+              return key;
+            }
+            try {
+              return cache.getAll(bulk).size();
+            } catch (Exception e) {
+              throw new AssertionError(e);
+            }
+          }
+        },
+        reps);
+  }
+
+  /** An operation of the benchmark on a key, or on the keys from that one on. */
+  abstract static class Operation {
+    abstract long run(int key, boolean write);
+  }
+
+  private long doMultithreadedLoop(final Operation operation, final int reps) throws Exception {
+    List<Future<Long>> futures = Lists.newArrayListWithCapacity(threads);
+    for (int t = 0; t < threads; t++) {
+      final int[] trace = traces[t];
+      futures.add(
+          threadPool.submit(
+              new Callable<Long>() {
+                @Override
+                public Long call() {
+                  // writes are chosen by the position in the trace, so that each rep is the same
+                  int writeThreshold = writePercentage * 128 / 100;
+                  long dummy = 0;
+                  for (int i = 0; i < reps; i++) {
+                    int position = i & (TRACE_LENGTH - 1);
+                    boolean write = ((position * 0x9E3779B9) >>> 25) < writeThreshold;
+                    dummy += operation.run(trace[position], write);
+                  }
+                  return dummy;
+                }
+              }));
+    }
+    long total = 0;
+    for (Future<Long> future : futures) {
+      total += future.get();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.caliper.Param;
+import com.google.caliper.api.Footprint;
+
+/**
+ * Compares the memory taken by a cache of {@code long} keys built by {@link CacheBuilder#build()}
+ * with that taken by one built by {@link CacheBuilder#buildLongKeyed()}. The values are shared, so
+ * the footprint is that of the keys and of the cache's structure.
+ */
+public class LongKeyedCacheFootprintBenchmark {
+  @Param({"0", "1000", "100000", "1000000"})
+  int size;
+
+  @Param Options options;
+
+  enum Options {
+    NONE {
+      @Override
+      CacheBuilder<Object, Object> builder() {
+        return CacheBuilder.newBuilder();
+      }
+    },
+    MAXIMUM_SIZE {
+      @Override
+      CacheBuilder<Object, Object> builder() {
+        return CacheBuilder.newBuilder().maximumSize(Integer.MAX_VALUE);
+      }
+    },
+    EXPIRE_AFTER_ACCESS {
+      @Override
+      CacheBuilder<Object, Object> builder() {
+        return CacheBuilder.newBuilder()
+            .maximumSize(Integer.MAX_VALUE)
+            .expireAfterAccess(1, MINUTES);
+      }
+    };
+
+    abstract CacheBuilder<Object, Object> builder();
+  }
+
+  private static final String VALUE = "value";
+
+  @Footprint(exclude = String.class)
+  Object boxedKeys() {
+    Cache<Long, String> cache = options.builder().build();
+    for (long i = 0; i < size; i++) {
+      cache.put(i, VALUE);
+    }
+    return cache;
+  }
+
+  @Footprint(exclude = String.class)
+  Object primitiveKeys() {
+    LongKeyedCache<String> cache = options.builder().buildLongKeyed();
+    for (long i = 0; i < size; i++) {
+      cache.put(i, VALUE);
+    }
+    return cache;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-threaded benchmark for the reads of a size-bounded {@link LocalCache}, whose segments
+ * record each read in their {@link ReadBuffer} and drain it under the segment lock. Each thread
+ * reads random keys of a full cache through {@code LocalCache.get}, so every read goes through
+ * {@code Segment.recordRead} and {@code Segment.postReadCleanup}. The total time is divided among
+ * all threads' reads, so a flat result as {@code threads} grows means that throughput scales.
+ */
+public class ReadBufferBenchmark {
+  @Param({"1", "2", "4", "8", "16", "32", "64"})
+  int threads;
+
+  @Param({"1", "4", "16"})
+  int concurrencyLevel;
+
+  @Param("1024")
+  int size;
+
+  /** The number of keys that each thread reads before it starts again. */
+  private static final int KEYS_PER_THREAD = 1 << 12;
+
+  private LocalCache<Integer, Integer> cache;
+  private Integer[][] keys;
+  private ExecutorService threadPool;
+
+  @BeforeExperiment
+  void setUp() {
+    cache =
+        LocalCache.create(
+            CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel).maximumSize(2 * size),
+            null);
+    for (int i = 0; i < size; i++) {
+      cache.put(i, i);
+    }
+    // boxed up front, so that the reads do not allocate
+    Random random = new Random(size);
+    keys = new Integer[threads][KEYS_PER_THREAD];
+    for (Integer[] threadKeys : keys) {
+      for (int i = 0; i < KEYS_PER_THREAD; i++) {
+        threadKeys[i] = random.nextInt(size);
+      }
+    }
+    threadPool =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).build());
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    threadPool.shutdown();
+  }
+
+  @Benchmark
+  long get(final int reps) throws Exception {
+    List<Future<Long>> futures = Lists.newArrayListWithCapacity(threads);
+    for (final Integer[] threadKeys : keys) {
+      futures.add(
+          threadPool.submit(
+              new Callable<Long>() {
+                @Override
+                public Long call() {
+                  long dummy = 0;
+                  for (int i = 0; i < reps; i++) {
+                    dummy += cache.get(threadKeys[i & (KEYS_PER_THREAD - 1)]);
+                  }
+                  return dummy;
+                }
+              }));
+    }
+    long total = 0;
+    for (Future<Long> future : futures) {
+      total += future.get();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A cache replacement policy whose hit rate on an {@link AccessTrace} is measured by the {@link
+ * CacheSimulator}. The policies built by {@link CacheBuilder} honor all of the {@link Settings};
+ * the others are unsegmented reference policies that only honor the maximum size, and are always
+ * replayed by one thread.
+ */
+enum SimulatedPolicy {
+  /** A cache built with {@link EvictionPolicy#LEAST_RECENTLY_USED}. */
+  CACHE_LRU {
+    @Override
+    Result replay(AccessTrace trace, Settings settings) {
+      return replayCache(EvictionPolicy.LEAST_RECENTLY_USED, trace, settings);
+    }
+  },
+
+  /** A cache built with {@link EvictionPolicy#TINY_LFU}. */
+  CACHE_TINY_LFU {
+    @Override
+    Result replay(AccessTrace trace, Settings settings) {
+      return replayCache(EvictionPolicy.TINY_LFU, trace, settings);
+    }
+  },
+
+  /** Exact least-recently-used eviction over the whole cache. */
+  LRU {
+    @Override
+    Result replay(AccessTrace trace, Settings settings) {
+      return replayLinkedHashMap(true, trace, settings);
+    }
+  },
+
+  /** First-in, first-out eviction. */
+  FIFO {
+    @Override
+    Result replay(AccessTrace trace, Settings settings) {
+      return replayLinkedHashMap(false, trace, settings);
+    }
+  },
+
+  /**
+   * Belady's clairvoyant policy, which evicts the entry that will be requested furthest in the
+   * future. No policy can have a higher hit rate, so this bounds what tuning can achieve.
+   */
+  OPTIMAL {
+    @Override
+    Result replay(AccessTrace trace, Settings settings) {
+      int[] next = trace.nextRequests();
+      long startNanos = System.nanoTime();
+      // the index of the next request for each resident key, which identifies the key
+      TreeSet<Integer> resident = new TreeSet<>();
+      long hits = 0;
+      long evictions = 0;
+      for (int i = 0; i < trace.size(); i++) {
+        if (resident.remove(i)) {
+          hits++;
+        } else if (resident.size() == settings.maximumSize) {
+          resident.pollLast();
+          evictions++;
+        }
+        resident.add(next[i]);
+      }
+      return new Result(hits, trace.size() - hits, evictions, System.nanoTime() - startNanos);
+    }
+  };
+
+  /** Replays {@code trace} against a new instance of this policy. */
+  abstract Result replay(AccessTrace trace, Settings settings);
+
+  /** The configuration of a simulated cache. */
+  static final class Settings {
+    final int maximumSize;
+    final int concurrencyLevel;
+    final long expireAfterAccessNanos;
+    final long expireAfterWriteNanos;
+    final int threads;
+
+    Settings(
+        int maximumSize,
+        int concurrencyLevel,
+        long expireAfterAccessNanos,
+        long expireAfterWriteNanos,
+        int threads) {
+      this.maximumSize = maximumSize;
+      this.concurrencyLevel = concurrencyLevel;
+      this.expireAfterAccessNanos = expireAfterAccessNanos;
+      this.expireAfterWriteNanos = expireAfterWriteNanos;
+      this.threads = threads;
+    }
+  }
+
+  /** The outcome of replaying a trace. */
+  static final class Result {
+    final long hitCount;
+    final long missCount;
+    final long evictionCount;
+    final long elapsedNanos;
+
+    Result(long hitCount, long missCount, long evictionCount, long elapsedNanos) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    double hitRate() {
+      long requestCount = hitCount + missCount;
+      return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /** Returns the number of requests replayed per second. */
+    double throughput() {
+      return (hitCount + missCount) * 1e9 / Math.max(1, elapsedNanos);
+    }
+  }
+
+  /**
+   * Replays {@code trace} against a cache built with the given eviction policy. Each of the
+   * threads replays every {@code threads}th request, and the cache's ticker reads the time of the
+   * request most recently started. Evictions include expirations.
+   */
+  private static Result replayCache(
+      EvictionPolicy evictionPolicy, final AccessTrace trace, final Settings settings) {
+    final TraceTicker ticker = new TraceTicker();
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder()
+            .maximumSize(settings.maximumSize)
+            .concurrencyLevel(settings.concurrencyLevel)
+            .evictionPolicy(evictionPolicy)
+            .ticker(ticker)
+            .recordStats();
+    if (settings.expireAfterAccessNanos > 0) {
+      builder.expireAfterAccess(settings.expireAfterAccessNanos, NANOSECONDS);
+    }
+    if (settings.expireAfterWriteNanos > 0) {
+      builder.expireAfterWrite(settings.expireAfterWriteNanos, NANOSECONDS);
+    }
+    final Cache<Long, Boolean> cache = builder.build();
+    final Long[] keys = new Long[trace.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = trace.keys[i];
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(settings.threads);
+    for (int t = 0; t < settings.threads; t++) {
+      final int first = t;
+      new Thread() {
+        @Override
+        public void run() {
+          Uninterruptibles.awaitUninterruptibly(start);
+          for (int i = first; i < keys.length; i += settings.threads) {
+            ticker.nanos = trace.times[i];
+            if (cache.getIfPresent(keys[i]) == null) {
+              cache.put(keys[i], Boolean.TRUE);
+            }
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    Uninterruptibles.awaitUninterruptibly(done);
+    long elapsedNanos = System.nanoTime() - startNanos;
+
+    CacheStats stats = cache.stats();
+    return new Result(stats.hitCount(), stats.missCount(), stats.evictionCount(), elapsedNanos);
+  }
+
+  private static Result replayLinkedHashMap(
+      boolean accessOrder, AccessTrace trace, final Settings settings) {
+    long startNanos = System.nanoTime();
+    final long[] evictions = new long[1];
+    Map<Long, Boolean> map =
+        new LinkedHashMap<Long, Boolean>(16, 0.75f, accessOrder) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            if (size() > settings.maximumSize) {
+              evictions[0]++;
+              return true;
+            }
+            return false;
+          }
+        };
+    long hits = 0;
+    for (int i = 0; i < trace.size(); i++) {
+      Long key = trace.keys[i];
+      if (map.get(key) != null) {
+        hits++;
+      } else {
+        map.put(key, Boolean.TRUE);
+      }
+    }
+    return new Result(hits, trace.size() - hits, evictions[0], System.nanoTime() - startNanos);
+  }
+
+  /** A ticker that reads the time of the request being replayed. */
+  private static final class TraceTicker extends Ticker {
+    volatile long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+}
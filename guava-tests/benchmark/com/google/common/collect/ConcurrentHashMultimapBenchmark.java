@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Benchmarks for {@link ConcurrentHashMultimap} and {@link ConcurrentListMultimap}. */
+public class ConcurrentHashMultimapBenchmark {
+  @Param({"1", "2", "4", "8"})
+  int threads;
+
+  @Param({"3", "30", "300"})
+  int size;
+
+  @Param MultimapSupplier implSupplier;
+
+  private Multimap<Integer, Integer> multimap;
+  private ImmutableList<Integer> keys;
+  private ExecutorService threadPool;
+
+  @BeforeExperiment
+  void setUp() throws Exception {
+    multimap = implSupplier.get();
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      builder.add(i);
+      multimap.put(i, i);
+    }
+    keys = builder.build();
+    threadPool =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).build());
+  }
+
+  @Benchmark
+  long putRemove(final int reps) throws ExecutionException, InterruptedException {
+    return doMultithreadedLoop(
+        new Callable<Long>() {
+          @Override
+          public Long call() {
+            return runPutRemoveSingleThread(reps);
+          }
+        });
+  }
+
+  @Benchmark
+  long containsEntry(final int reps) throws ExecutionException, InterruptedException {
+    return doMultithreadedLoop(
+        new Callable<Long>() {
+          @Override
+          public Long call() {
+            return runContainsEntrySingleThread(reps);
+          }
+        });
+  }
+
+  private long doMultithreadedLoop(Callable<Long> task)
+      throws InterruptedException, ExecutionException {
+
+    List<Future<Long>> futures = Lists.newArrayListWithCapacity(threads);
+    for (int i = 0; i < threads; i++) {
+      futures.add(threadPool.submit(task));
+    }
+    long total = 0;
+    for (Future<Long> future : futures) {
+      total += future.get();
+    }
+    return total;
+  }
+
+  private long runPutRemoveSingleThread(int reps) {
+    Random random = new Random();
+    int nKeys = keys.size();
+    long blah = 0;
+    for (int i = 0; i < reps; i++) {
+      Integer key = keys.get(random.nextInt(nKeys));
+      // Values are drawn from a small range, so that keys often become empty and are unmapped.
+      Integer value = random.nextInt(4);
+      if (random.nextBoolean()) {
+        blah += multimap.put(key, value) ? 1 : 0;
+      } else {
+        blah += multimap.remove(key, value) ? 1 : 0;
+      }
+    }
+    return blah;
+  }
+
+  private long runContainsEntrySingleThread(int reps) {
+    Random random = new Random();
+    int nKeys = keys.size();
+    long blah = 0;
+    for (int i = 0; i < reps; i++) {
+      Integer key = keys.get(random.nextInt(nKeys));
+      // One operation in nine toggles the pair, so that lookups contend with some modifications.
+      if (i % 9 == 0) {
+        if (!multimap.remove(key, key)) {
+          multimap.put(key, key);
+        }
+      } else {
+        blah += multimap.containsEntry(key, key) ? 1 : 0;
+      }
+    }
+    return blah;
+  }
+
+  private enum MultimapSupplier {
+    CONCURRENT_HASH_MULTIMAP() {
+      @Override
+      Multimap<Integer, Integer> get() {
+        return ConcurrentHashMultimap.create();
+      }
+    },
+    CONCURRENT_LIST_MULTIMAP() {
+      @Override
+      Multimap<Integer, Integer> get() {
+        return ConcurrentListMultimap.create();
+      }
+    },
+    SYNCHRONIZED_HASH_MULTIMAP() {
+      @Override
+      Multimap<Integer, Integer> get() {
+        return Multimaps.synchronizedSetMultimap(HashMultimap.<Integer, Integer>create());
+      }
+    },
+    SYNCHRONIZED_ARRAY_LIST_MULTIMAP() {
+      @Override
+      Multimap<Integer, Integer> get() {
+        return Multimaps.synchronizedListMultimap(ArrayListMultimap.<Integer, Integer>create());
+      }
+    },
+    ;
+
+    abstract Multimap<Integer, Integer> get();
+  }
+}
@@ -80,6 +80,17 @@ public class ConcurrentHashMultisetBenchmark {
         });
   }
 
+  @Benchmark
+  long increment(final int reps) throws ExecutionException, InterruptedException {
+    return doMultithreadedLoop(
+        new Callable<Long>() {
+          @Override
+          public Long call() {
+            return runIncrementSingleThread(reps);
+          }
+        });
+  }
+
   @Benchmark
   long addRemove(final int reps) throws ExecutionException, InterruptedException {
     return doMultithreadedLoop(
@@ -118,6 +129,18 @@ public class ConcurrentHashMultisetBenchmark {
     return blah;
   }
 
+  private long runIncrementSingleThread(int reps) {
+    Random random = new Random();
+    int nKeys = keys.size();
+    long blah = 0;
+    for (int i = 0; i < reps; i++) {
+      Integer key = keys.get(random.nextInt(nKeys));
+      multiset.add(key);
+      blah += key;
+    }
+    return blah;
+  }
+
   private long runAddRemoveSingleThread(int reps) {
     Random random = new Random();
     int nKeys = keys.size();
@@ -144,6 +167,12 @@ public class ConcurrentHashMultisetBenchmark {
         return ConcurrentHashMultiset.create();
       }
     },
+    STRIPED_CONCURRENT_HASH_MULTISET() {
+      @Override
+      Multiset<Integer> get() {
+        return ConcurrentHashMultiset.createStriped();
+      }
+    },
     BOXED_ATOMIC_REPLACE() {
       @Override
       Multiset<Integer> get() {
@@ -17,6 +17,13 @@
 package com.google.common.collect;
 
 import com.google.caliper.Benchmark;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Benchmarking interners.
@@ -42,6 +49,76 @@ public class InternersBenchmark {
     return reps;
   }
 
+  @Benchmark
+  int lockFreeWeakInterner(int reps) {
+    Interner<String> interner = Interners.newBuilder().weak().lockFree().build();
+    for (int i = 0; i < reps; i++) {
+      interner.intern(Double.toHexString(Math.random()));
+    }
+    return reps;
+  }
+
+  @Benchmark
+  int lockFreeStrongInterner(int reps) {
+    Interner<String> interner = Interners.newBuilder().strong().lockFree().build();
+    for (int i = 0; i < reps; i++) {
+      interner.intern(Double.toHexString(Math.random()));
+    }
+    return reps;
+  }
+
+  @Benchmark
+  int concurrentWeakInterner(int reps) throws Exception {
+    return internConcurrently(Interners.<String>newWeakInterner(), reps);
+  }
+
+  @Benchmark
+  int concurrentLockFreeWeakInterner(int reps) throws Exception {
+    return internConcurrently(Interners.newBuilder().weak().lockFree().<String>build(), reps);
+  }
+
+  /** The number of threads of the concurrent benchmarks. */
+  private static final int THREADS = 8;
+
+  /** The number of distinct strings interned by the concurrent benchmarks. */
+  private static final int DISTINCT = 1 << 14;
+
+  /**
+   * Interns {@code reps} copies of strings in each of {@link #THREADS} threads. The strings are
+   * drawn from a small set, so that most of them are already interned, as when deduplicating
+   * repeated values.
+   */
+  private static int internConcurrently(final Interner<String> interner, final int reps)
+      throws Exception {
+    ExecutorService threadPool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(
+            threadPool.submit(
+                new Callable<Integer>() {
+                  @Override
+                  public Integer call() {
+                    Random random = new Random();
+                    int dummy = 0;
+                    for (int i = 0; i < reps; i++) {
+                      int key = random.nextInt(DISTINCT);
+                      dummy += interner.intern(Integer.toString(key)).length();
+                    }
+                    return dummy;
+                  }
+                }));
+      }
+      int total = 0;
+      for (Future<Integer> future : futures) {
+        total += future.get();
+      }
+      return total;
+    } finally {
+      threadPool.shutdown();
+    }
+  }
+
   @Benchmark
   int stringIntern(int reps) {
     for (int i = 0; i < reps; i++) {
@@ -37,7 +37,7 @@ import java.util.concurrent.ConcurrentSkipListMap;
  * @author Nicholaus Shupe
  */
 public class MapBenchmark {
-  @Param({"Hash", "LinkedHM", "MapMaker1", "Immutable"})
+  @Param({"Hash", "LinkedHM", "MapMaker1", "Immutable", "ImmutableOptimizedForLookup"})
   private Impl impl;
 
   public enum Impl {
@@ -143,6 +143,17 @@ public class MapBenchmark {
         return builder.build();
       }
     },
+    ImmutableOptimizedForLookup {
+      @Override
+      Map<Element, Element> create(Collection<Element> keys) {
+        ImmutableMap.Builder<Element, Element> builder =
+            ImmutableMap.<Element, Element>builder().optimizeForLookup();
+        for (Element element : keys) {
+          builder.put(element, element);
+        }
+        return builder.build();
+      }
+    },
     ImmutableSorted {
       @Override
       Map<Element, Element> create(Collection<Element> keys) {
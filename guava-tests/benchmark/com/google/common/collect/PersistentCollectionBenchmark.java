@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import java.util.Random;
+
+/**
+ * Benchmarks the updates of {@link PersistentMap} and {@link PersistentList}, each of which returns
+ * a new version of the collection and leaves the original unchanged.
+ */
+public class PersistentCollectionBenchmark {
+  @Param({"1000", "1000000"})
+  int size;
+
+  /** The number of precomputed keys and indexes, replayed cyclically. */
+  private static final int OPERATIONS = 1 << 12;
+
+  private PersistentMap<Integer, Integer> map;
+  private PersistentList<Integer> list;
+
+  /** Keys already in the map, as boxed integers, so that boxing is not measured. */
+  private Integer[] keys;
+
+  /** Keys that are not in the map, and values that are not in the map or the list. */
+  private Integer[] absentKeys;
+
+  private int[] indexes;
+
+  @BeforeExperiment
+  void setUp() {
+    ImmutableMap.Builder<Integer, Integer> mapBuilder = ImmutableMap.builder();
+    ImmutableList.Builder<Integer> listBuilder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      mapBuilder.put(i, i);
+      listBuilder.add(i);
+    }
+    map = PersistentMap.copyOf(mapBuilder.build());
+    list = PersistentList.copyOf(listBuilder.build());
+
+    Random random = new Random(0);
+    keys = new Integer[OPERATIONS];
+    absentKeys = new Integer[OPERATIONS];
+    indexes = new int[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      keys[i] = random.nextInt(size);
+      absentKeys[i] = size + random.nextInt(size);
+      indexes[i] = random.nextInt(size);
+    }
+  }
+
+  /** Replaces the value of a key of the map. */
+  @Benchmark
+  int mapWith(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      int j = i & (OPERATIONS - 1);
+      dummy += map.with(keys[j], absentKeys[j]).size();
+    }
+    return dummy;
+  }
+
+  /** Adds a key to the map. */
+  @Benchmark
+  int mapWithNewKey(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      Integer key = absentKeys[i & (OPERATIONS - 1)];
+      dummy += map.with(key, key).size();
+    }
+    return dummy;
+  }
+
+  /** Removes a key from the map. */
+  @Benchmark
+  int mapWithout(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += map.without(keys[i & (OPERATIONS - 1)]).size();
+    }
+    return dummy;
+  }
+
+  /** Replaces an element of the list. */
+  @Benchmark
+  int listWith(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      int j = i & (OPERATIONS - 1);
+      dummy += list.with(indexes[j], absentKeys[j]).size();
+    }
+    return dummy;
+  }
+
+  /** Inserts an element into the list. */
+  @Benchmark
+  int listWithAdded(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      int j = i & (OPERATIONS - 1);
+      dummy += list.withAdded(indexes[j], absentKeys[j]).size();
+    }
+    return dummy;
+  }
+
+  /** Removes an element from the list. */
+  @Benchmark
+  int listWithout(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += list.without(indexes[i & (OPERATIONS - 1)]).size();
+    }
+    return dummy;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.CollectionBenchmarkSampleData.Element;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * A microbenchmark that tests the performance of contains(), floor() and ceiling() on various
+ * NavigableSet implementations, including an {@link ImmutableSortedSet} built with {@link
+ * ImmutableSortedSet.Builder#optimizeForLookup}.
+ */
+public class SortedSetLookupBenchmark {
+  @Param({"5", "180", "6900", "260000", "1600000"})
+  private int size;
+
+  @Param({"0.2", "0.8"})
+  private double hitRate;
+
+  @Param("true")
+  private boolean isUserTypeFast;
+
+  // "" means no fixed seed
+  @Param("")
+  private SpecialRandom random;
+
+  @Param private Impl impl;
+
+  // the following must be set during setUp
+  private Element[] queries;
+  private NavigableSet<Element> setToTest;
+
+  @BeforeExperiment
+  void setUp() {
+    CollectionBenchmarkSampleData sampleData =
+        new CollectionBenchmarkSampleData(isUserTypeFast, random, hitRate, size);
+
+    this.setToTest = impl.create(sampleData.getValuesInSet());
+    this.queries = sampleData.getQueries();
+  }
+
+  @Benchmark
+  boolean contains(int reps) {
+    NavigableSet<Element> set = setToTest;
+    Element[] queries = this.queries;
+
+    int mask = queries.length - 1;
+
+    boolean dummy = false;
+    for (int i = 0; i < reps; i++) {
+      dummy ^= set.contains(queries[i & mask]);
+    }
+    return dummy;
+  }
+
+  @Benchmark
+  int floor(int reps) {
+    NavigableSet<Element> set = setToTest;
+    Element[] queries = this.queries;
+
+    int mask = queries.length - 1;
+
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      Element floor = set.floor(queries[i & mask]);
+      dummy += (floor == null) ? 0 : floor.hash;
+    }
+    return dummy;
+  }
+
+  @Benchmark
+  int ceiling(int reps) {
+    NavigableSet<Element> set = setToTest;
+    Element[] queries = this.queries;
+
+    int mask = queries.length - 1;
+
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      Element ceiling = set.ceiling(queries[i & mask]);
+      dummy += (ceiling == null) ? 0 : ceiling.hash;
+    }
+    return dummy;
+  }
+
+  public enum Impl {
+    TreeSetImpl {
+      @Override
+      NavigableSet<Element> create(Collection<Element> contents) {
+        return new TreeSet<>(contents);
+      }
+    },
+    ImmutableSortedSetImpl {
+      @Override
+      NavigableSet<Element> create(Collection<Element> contents) {
+        return ImmutableSortedSet.copyOf(contents);
+      }
+    },
+    ImmutableSortedSetOptimizedForLookupImpl {
+      @Override
+      NavigableSet<Element> create(Collection<Element> contents) {
+        return ImmutableSortedSet.<Element>naturalOrder()
+            .optimizeForLookup()
+            .addAll(contents)
+            .build();
+      }
+    };
+
+    abstract NavigableSet<Element> create(Collection<Element> contents);
+  }
+}
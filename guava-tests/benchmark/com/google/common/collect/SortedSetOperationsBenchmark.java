@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A benchmark of {@link Sets#intersection}, {@link Sets#difference} and {@link Sets#intersectAll}
+ * on {@link ImmutableSortedSet}s, which merge the sorted sets, and on {@link ImmutableSet}s, which
+ * look up each element of one set in the other, as {@link MultipleSetContainsBenchmark} measures.
+ */
+public class SortedSetOperationsBenchmark {
+  @Param({"100", "10000", "1000000"})
+  int size;
+
+  /** The size of the second set relative to the first. */
+  @Param({"0.01", "1"})
+  double sizeRatio;
+
+  @Param boolean sorted;
+
+  private Set<Integer> set1;
+  private Set<Integer> set2;
+  private ImmutableList<ImmutableSortedSet<Integer>> sortedSets;
+  private ImmutableList<ImmutableSet<Integer>> hashSets;
+
+  @BeforeExperiment
+  void setUp() {
+    Random random = new Random(0);
+    ImmutableSortedSet<Integer> sorted1 = randomSet(random, size);
+    ImmutableSortedSet<Integer> sorted2 = randomSet(random, (int) (size * sizeRatio));
+    ImmutableSortedSet<Integer> sorted3 = randomSet(random, size);
+    sortedSets = ImmutableList.of(sorted1, sorted2, sorted3);
+    ImmutableList.Builder<ImmutableSet<Integer>> hashSetsBuilder = ImmutableList.builder();
+    for (ImmutableSortedSet<Integer> set : sortedSets) {
+      hashSetsBuilder.add(ImmutableSet.copyOf(set));
+    }
+    hashSets = hashSetsBuilder.build();
+    if (sorted) {
+      set1 = sorted1;
+      set2 = sorted2;
+    } else {
+      set1 = hashSets.get(0);
+      set2 = hashSets.get(1);
+    }
+  }
+
+  private static ImmutableSortedSet<Integer> randomSet(Random random, int size) {
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+    for (int i = 0; i < size; i++) {
+      builder.add(random.nextInt(4 * size));
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  int intersectionSize(int reps) {
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      result += Sets.intersection(set1, set2).size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  int intersectionCopy(int reps) {
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      result += Sets.intersection(set2, set1).immutableCopy().size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  int differenceSize(int reps) {
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      result += Sets.difference(set2, set1).size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  int unionSize(int reps) {
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      result += Sets.union(set1, set2).size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  int intersectAll(int reps) {
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      if (sorted) {
+        result += Sets.intersectAll(sortedSets).size();
+      } else {
+        // Start from the smallest set, as the documentation of Sets.intersection advises.
+        Set<Integer> intersection = Sets.intersection(hashSets.get(1), hashSets.get(0));
+        intersection = Sets.intersection(intersection, hashSets.get(2));
+        result += intersection.size();
+      }
+    }
+    return result;
+  }
+}
@@ -20,10 +20,15 @@ import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Benchmark;
 import com.google.caliper.Param;
 import com.google.caliper.api.SkipThisScenarioException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -38,13 +43,64 @@ public class StreamsBenchmark {
 
   enum CollectionType {
     ARRAY_LIST(ArrayList::new),
-    LINKED_LIST(LinkedList::new);
+    LINKED_LIST(LinkedList::new),
+    SETS_UNION {
+      @Override
+      Collection<Object> create(Collection<Object> elements) {
+        List<Object> list = new ArrayList<>(elements);
+        int half = list.size() / 2;
+        return Sets.union(
+            new HashSet<>(list.subList(0, half)), new HashSet<>(list.subList(half, list.size())));
+      }
+    },
+    FLUENT_ITERABLE_CONCAT {
+      @Override
+      Collection<Object> create(Collection<Object> elements) {
+        List<Object> list = new ArrayList<>(elements);
+        int half = list.size() / 2;
+        FluentIterable<Object> concat =
+            FluentIterable.concat(list.subList(0, half), list.subList(half, list.size()));
+        return new AbstractCollection<Object>() {
+          @Override
+          public Iterator<Object> iterator() {
+            return concat.iterator();
+          }
+
+          @Override
+          public Spliterator<Object> spliterator() {
+            return concat.spliterator();
+          }
+
+          @Override
+          public int size() {
+            return list.size();
+          }
+        };
+      }
+    },
+    /** The values of a multimap with one key, which only split if that key's values do. */
+    MULTIMAP_SINGLE_KEY_VALUES {
+      @Override
+      Collection<Object> create(Collection<Object> elements) {
+        ListMultimap<Object, Object> multimap = ArrayListMultimap.create();
+        multimap.putAll("key", elements);
+        return multimap.values();
+      }
+    };
 
     final Supplier<Collection<Object>> supplier;
 
+    private CollectionType() {
+      this.supplier = ArrayList::new;
+    }
+
     private CollectionType(Supplier<Collection<Object>> supplier) {
       this.supplier = supplier;
     }
+
+    Collection<Object> create(Collection<Object> elements) {
+      return elements;
+    }
   }
 
   @Param private CollectionType source;
@@ -83,6 +139,12 @@ public class StreamsBenchmark {
       Object operate(Stream<?> stream) {
         return stream.parallel().reduce((a, b) -> b);
       }
+    },
+    SUM_HASHES_PARALLEL {
+      @Override
+      Object operate(Stream<?> stream) {
+        return stream.parallel().mapToInt(System::identityHashCode).sum();
+      }
     };
 
     abstract Object operate(Stream<?> stream);
@@ -98,6 +160,7 @@ public class StreamsBenchmark {
     for (int i = 0; i < size; i++) {
       collection.add(new Object());
     }
+    collection = source.create(collection);
   }
 
   @Benchmark
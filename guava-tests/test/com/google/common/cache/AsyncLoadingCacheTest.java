@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/** Tests for the {@link AsyncLoadingCache} built by {@link CacheBuilder#buildAsync}. */
+public class AsyncLoadingCacheTest extends TestCase {
+
+  public void testGet_sharesPendingLoad() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    ListenableFuture<String> first = cache.get(1);
+    ListenableFuture<String> second = cache.get(1);
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+    assertEquals(1, loader.count.get());
+
+    loader.futures.get(1).set("one");
+    assertEquals("one", first.get());
+    assertEquals("one", cache.get(1).get());
+    assertEquals(1, loader.count.get());
+    assertEquals(1, cache.size());
+  }
+
+  public void testGet_cancelDoesNotCancelSharedLoad() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    ListenableFuture<String> first = cache.get(1);
+    ListenableFuture<String> second = cache.get(1);
+    assertTrue(first.cancel(true));
+    assertTrue(first.isCancelled());
+    assertFalse(second.isDone());
+    assertFalse(loader.futures.get(1).isCancelled());
+    assertFalse(cache.getIfPresent(1).isDone());
+
+    loader.futures.get(1).set("one");
+    assertEquals("one", second.get());
+    assertEquals("one", cache.get(1).get());
+    assertEquals(1, loader.count.get());
+  }
+
+  public void testGet_failureIsRemoved() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    ListenableFuture<String> first = cache.get(1);
+    loader.futures.get(1).setException(new IllegalStateException());
+    try {
+      first.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    }
+    assertNull(cache.getIfPresent(1));
+    assertEquals(0, cache.size());
+
+    ListenableFuture<String> second = cache.get(1);
+    assertNotSame(first, second);
+    assertEquals(2, loader.count.get());
+  }
+
+  public void testGet_loaderThrows() throws Exception {
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .buildAsync(
+                new AsyncCacheLoader<Integer, String>() {
+                  @Override
+                  public ListenableFuture<String> asyncLoad(Integer key) {
+                    throw new IllegalArgumentException();
+                  }
+                });
+
+    ListenableFuture<String> future = cache.get(1);
+    assertTrue(future.isDone());
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected).hasCauseThat().isInstanceOf(IllegalArgumentException.class);
+    }
+    assertEquals(0, cache.size());
+  }
+
+  public void testGet_nullValue() throws Exception {
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .buildAsync(
+                new AsyncCacheLoader<Integer, String>() {
+                  @Override
+                  public ListenableFuture<String> asyncLoad(Integer key) {
+                    return immediateFuture(null);
+                  }
+                });
+
+    try {
+      cache.get(1).get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected).hasCauseThat().isInstanceOf(InvalidCacheLoadException.class);
+    }
+    assertEquals(0, cache.size());
+  }
+
+  public void testGetAll() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+    cache.put(1, immediateFuture("one"));
+
+    ListenableFuture<ImmutableMap<Integer, String>> result =
+        cache.getAll(ImmutableList.of(3, 1, 2));
+    assertFalse(result.isDone());
+    assertEquals(2, loader.count.get());
+
+    loader.futures.get(2).set("two");
+    assertFalse(result.isDone());
+    loader.futures.get(3).set("three");
+    ImmutableMap<Integer, String> values = result.get();
+    assertEquals(ImmutableMap.of(3, "three", 1, "one", 2, "two"), values);
+    assertThat(values.keySet()).containsExactly(3, 1, 2).inOrder();
+  }
+
+  public void testGetAll_failure() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    ListenableFuture<ImmutableMap<Integer, String>> result = cache.getAll(ImmutableList.of(1, 2));
+    loader.futures.get(1).set("one");
+    loader.futures.get(2).setException(new IllegalStateException());
+    try {
+      result.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    }
+    assertEquals("one", cache.getIfPresent(1).get());
+    assertNull(cache.getIfPresent(2));
+  }
+
+  public void testPut_failedFutureIsRemoved() {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    cache.put(1, immediateFailedFuture(new IllegalStateException()));
+    assertNull(cache.getIfPresent(1));
+
+    SettableFuture<String> pending = SettableFuture.create();
+    cache.put(2, pending);
+    assertFalse(cache.getIfPresent(2).isDone());
+    pending.setException(new IllegalStateException());
+    assertNull(cache.getIfPresent(2));
+    assertEquals(0, cache.size());
+  }
+
+  public void testStats() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().recordStats().buildAsync(loader);
+
+    cache.get(1);
+    cache.get(1);
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.hitCount());
+    assertEquals(0, stats.loadCount());
+
+    loader.futures.get(1).set("one");
+    cache.get(2);
+    loader.futures.get(2).setException(new IllegalStateException());
+    stats = cache.stats();
+    assertEquals(2, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals(1, stats.loadExceptionCount());
+  }
+
+  public void testMaximumSize() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    QueuingRemovalListener<Integer, String> removalListener = queuingRemovalListener();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumSize(2)
+            .removalListener(removalListener)
+            .buildAsync(loader);
+
+    for (int i = 0; i < 3; i++) {
+      cache.get(i);
+      loader.futures.get(i).set("value" + i);
+    }
+    assertEquals(2, cache.size());
+    assertNull(cache.getIfPresent(0));
+
+    RemovalNotification<Integer, String> notification = removalListener.poll();
+    assertEquals(Integer.valueOf(0), notification.getKey());
+    assertEquals("value0", notification.getValue());
+    assertEquals(RemovalCause.SIZE, notification.getCause());
+  }
+
+  public void testWeigher_appliedOnCompletion() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(10)
+            .weigher(
+                new Weigher<Integer, String>() {
+                  @Override
+                  public int weigh(Integer key, String value) {
+                    return value.length();
+                  }
+                })
+            .buildAsync(loader);
+
+    // pending loads weigh nothing, so none of them are evicted
+    for (int i = 0; i < 3; i++) {
+      cache.get(i);
+    }
+    assertEquals(3, cache.size());
+
+    loader.futures.get(0).set("aaaa");
+    loader.futures.get(1).set("bbbb");
+    assertEquals(3, cache.size());
+    loader.futures.get(2).set("cccc");
+    assertEquals(2, cache.size());
+    assertNull(cache.getIfPresent(0));
+  }
+
+  public void testInvalidate() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    QueuingRemovalListener<Integer, String> removalListener = queuingRemovalListener();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().removalListener(removalListener).buildAsync(loader);
+
+    cache.put(1, immediateFuture("one"));
+    cache.get(2);
+    cache.invalidate(1);
+    assertNull(cache.getIfPresent(1));
+    assertEquals(RemovalCause.EXPLICIT, removalListener.poll().getCause());
+
+    // a pending load is notified once it completes
+    cache.invalidateAll();
+    assertTrue(removalListener.isEmpty());
+    loader.futures.get(2).set("two");
+    RemovalNotification<Integer, String> notification = removalListener.poll();
+    assertEquals(Integer.valueOf(2), notification.getKey());
+    assertEquals("two", notification.getValue());
+    assertEquals(0, cache.size());
+  }
+
+  public void testAsMap() throws Exception {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    AsyncLoadingCache<Integer, String> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    cache.get(1);
+    assertThat(cache.asMap().keySet()).containsExactly(1);
+    loader.futures.get(1).set("one");
+    assertEquals("one", cache.asMap().get(1).get());
+    cache.asMap().remove(1);
+    assertEquals(0, cache.size());
+  }
+
+  public void testBuildAsync_unsupported() {
+    SettableFutureLoader loader = new SettableFutureLoader();
+    try {
+      CacheBuilder.newBuilder().weakValues().buildAsync(loader);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().refreshAfterWrite(1, SECONDS).buildAsync(loader);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().onHeapTier(10).buildAsync(loader);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  /** Returns a pending future for each key, recording it so the test can complete it. */
+  static final class SettableFutureLoader implements AsyncCacheLoader<Integer, String> {
+    final Map<Integer, SettableFuture<String>> futures = new ConcurrentHashMap<>();
+    final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public ListenableFuture<String> asyncLoad(Integer key) {
+      count.incrementAndGet();
+      SettableFuture<String> future = SettableFuture.create();
+      futures.put(key, future);
+      return future;
+    }
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCache.LocalLoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.GcFinalization;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#refreshInBackground}. */
+public class CacheBackgroundRefreshTest extends TestCase {
+  /** A rate at which the refreshes of a run are never limited, however quickly they are made. */
+  private static final double UNLIMITED = 1e9;
+
+  private ScheduledExecutorService executor;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    executor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void testRefreshesDueEntries() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, UNLIMITED)
+            .build(loader);
+    // so that only the test runs the refresher, with the fake ticker
+    executor.shutdownNow();
+
+    cache.getUnchecked(1);
+    ticker.advance(100, MILLISECONDS);
+    cache.getUnchecked(2);
+    ticker.advance(600, MILLISECONDS);
+
+    // not due within the next run, a quarter of the refresh interval later
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(), loader.reloads);
+
+    ticker.advance(100, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(1), loader.reloads);
+    assertEquals("1 reloaded", cache.getUnchecked(1));
+
+    ticker.advance(100, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(1, 2), loader.reloads);
+  }
+
+  public void testRefreshesDueEntries_rewrittenEntryNotDue() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, UNLIMITED)
+            .build(loader);
+    executor.shutdownNow();
+
+    cache.getUnchecked(1);
+    cache.getUnchecked(2);
+    ticker.advance(500, MILLISECONDS);
+    cache.put(1, "1 put");
+    ticker.advance(300, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(2), loader.reloads);
+    assertEquals("1 put", cache.getUnchecked(1));
+  }
+
+  public void testRefreshesDueEntries_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .expireAfter(
+                new Expiry<Integer, String>() {
+                  @Override
+                  public long expireAfterCreate(Integer key, String value, long currentTime) {
+                    return HOURS.toNanos(1);
+                  }
+
+                  @Override
+                  public long expireAfterUpdate(
+                      Integer key, String value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                  }
+
+                  @Override
+                  public long expireAfterRead(
+                      Integer key, String value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                  }
+                })
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, UNLIMITED)
+            .build(loader);
+    executor.shutdownNow();
+
+    cache.getUnchecked(1);
+    ticker.advance(500, MILLISECONDS);
+    cache.getUnchecked(2);
+    ticker.advance(300, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(1), loader.reloads);
+  }
+
+  public void testRefreshesDueEntries_submittedToExecutor() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, UNLIMITED)
+            .build(loader);
+    executor.shutdownNow();
+
+    cache.getUnchecked(1);
+    ticker.advance(900, MILLISECONDS);
+    final List<Runnable> tasks = new ArrayList<>();
+    LocalCache<Integer, String> localCache =
+        ((LocalLoadingCache<Integer, String>) cache).localCache;
+    localCache.backgroundRefresher.refreshDueEntries(
+        localCache,
+        new Executor() {
+          @Override
+          public void execute(Runnable task) {
+            tasks.add(task);
+          }
+        });
+    assertEquals(1, tasks.size());
+    assertEquals(ImmutableList.of(), loader.reloads);
+    tasks.get(0).run();
+    assertEquals(ImmutableList.of(1), loader.reloads);
+  }
+
+  public void testMostFrequentFirst() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, UNLIMITED)
+            .build(loader);
+    executor.shutdownNow();
+
+    for (int i = 0; i < 3; i++) {
+      cache.getUnchecked(i);
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.getUnchecked(2);
+    }
+    for (int i = 0; i < 3; i++) {
+      cache.getUnchecked(0);
+    }
+    ticker.advance(900, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(2, 0, 1), loader.reloads);
+  }
+
+  public void testRateLimited() {
+    FakeTicker ticker = new FakeTicker();
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(1, SECONDS)
+            .refreshInBackground(executor, 0.001)
+            .build(loader);
+    executor.shutdownNow();
+
+    cache.getUnchecked(1);
+    cache.getUnchecked(2);
+    cache.getUnchecked(2);
+    ticker.advance(900, MILLISECONDS);
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(2), loader.reloads);
+
+    // the remaining entry waits for the rate limit
+    refreshDueEntries(cache);
+    assertEquals(ImmutableList.of(2), loader.reloads);
+  }
+
+  public void testScheduled() throws InterruptedException {
+    ReloadingLoader loader = new ReloadingLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .refreshAfterWrite(4, MILLISECONDS)
+            .refreshInBackground(executor, 1000)
+            .build(loader);
+    cache.getUnchecked(1);
+    assertTrue(loader.reloaded.await(10, SECONDS));
+  }
+
+  public void testCancelledOnceCollected() {
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .refreshAfterWrite(1, HOURS)
+            .refreshInBackground(executor, 1000)
+            .build(new ReloadingLoader());
+    BackgroundRefresher<?, ?> refresher =
+        ((LocalLoadingCache<?, ?>) cache).localCache.backgroundRefresher;
+    WeakReference<?> cacheReference = new WeakReference<>(cache);
+    cache = null;
+    GcFinalization.awaitClear(cacheReference);
+
+    assertFalse(refresher.future.isCancelled());
+    refresher.run();
+    assertTrue(refresher.future.isCancelled());
+  }
+
+  public void testBuild_incompatibleOptions() {
+    try {
+      CacheBuilder.newBuilder().refreshInBackground(executor, 1).build(new ReloadingLoader());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().refreshInBackground(executor, 1).build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().refreshInBackground(executor, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().refreshInBackground(executor, 1).refreshInBackground(executor, 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static void refreshDueEntries(LoadingCache<Integer, String> cache) {
+    LocalCache<Integer, String> localCache =
+        ((LocalLoadingCache<Integer, String>) cache).localCache;
+    localCache.backgroundRefresher.refreshDueEntries(localCache, directExecutor());
+  }
+
+  /** Records the keys that are reloaded. */
+  private static final class ReloadingLoader extends CacheLoader<Integer, String> {
+    final List<Integer> reloads = new CopyOnWriteArrayList<>();
+    final CountDownLatch reloaded = new CountDownLatch(1);
+
+    @Override
+    public String load(Integer key) {
+      return key.toString();
+    }
+
+    @Override
+    public ListenableFuture<String> reload(Integer key, String oldValue) {
+      reloads.add(key);
+      reloaded.countDown();
+      return Futures.immediateFuture(key + " reloaded");
+    }
+  }
+}
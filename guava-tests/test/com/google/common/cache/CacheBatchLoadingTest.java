@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.OffHeapCacheTest.STRINGS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.OffHeapLocalCache.OffHeapManualCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#batchLoads}. */
+public class CacheBatchLoadingTest extends TestCase {
+
+  public void testSingleMiss() throws ExecutionException {
+    BatchLoader loader = new BatchLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().recordStats().batchLoads(10, 0, MILLISECONDS).build(loader);
+    assertEquals("1", cache.get(1));
+    assertEquals("1", cache.get(1));
+    assertEquals(ImmutableList.of(ImmutableSet.of(1)), loader.batches);
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals(1, stats.batchCount());
+    assertEquals(1, stats.batchedKeyCount());
+  }
+
+  public void testWindowElapses() throws ExecutionException {
+    BatchLoader loader = new BatchLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().batchLoads(100, 10, MILLISECONDS).build(loader);
+    assertEquals("1", cache.get(1));
+    assertEquals("2", cache.getUnchecked(2));
+    assertEquals(ImmutableList.of(ImmutableSet.of(1), ImmutableSet.of(2)), loader.batches);
+  }
+
+  public void testFullBatch() throws Exception {
+    BatchLoader loader = new BatchLoader();
+    final LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().recordStats().batchLoads(3, 1, HOURS).build(loader);
+    final AtomicReferenceArray<String> results = new AtomicReferenceArray<>(3);
+    Thread[] threads = new Thread[3];
+    for (int i = 0; i < threads.length; i++) {
+      final int key = i;
+      threads[i] =
+          new Thread() {
+            @Override
+            public void run() {
+              results.set(key, cache.getUnchecked(key));
+            }
+          };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // the batch was loaded as soon as it was full, rather than after the window
+    assertEquals(ImmutableList.of(ImmutableSet.of(0, 1, 2)), loader.batches);
+    for (int i = 0; i < threads.length; i++) {
+      assertEquals(Integer.toString(i), results.get(i));
+    }
+    CacheStats stats = cache.stats();
+    assertEquals(3, stats.missCount());
+    assertEquals(3, stats.loadSuccessCount());
+    assertEquals(1, stats.batchCount());
+    assertEquals(3, stats.batchedKeyCount());
+    assertEquals(3.0, stats.averageBatchSize());
+  }
+
+  public void testGetAll_notBatched() throws ExecutionException {
+    BatchLoader loader = new BatchLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().recordStats().batchLoads(2, 1, HOURS).build(loader);
+    assertEquals(3, cache.getAll(ImmutableList.of(1, 2, 3)).size());
+    assertEquals(ImmutableList.of(ImmutableSet.of(1, 2, 3)), loader.batches);
+    assertEquals(0, cache.stats().batchCount());
+  }
+
+  public void testMissingValue() {
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .batchLoads(1, 0, MILLISECONDS)
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    throw new AssertionError();
+                  }
+
+                  @Override
+                  public Map<Integer, String> loadAll(Iterable<? extends Integer> keys) {
+                    return Maps.newHashMap();
+                  }
+                });
+    try {
+      cache.getUnchecked(1);
+      fail();
+    } catch (InvalidCacheLoadException expected) {
+    }
+  }
+
+  public void testExtraEntriesAreCached() {
+    CacheLoader<Integer, String> loader =
+        new CacheLoader<Integer, String>() {
+          @Override
+          public String load(Integer key) {
+            throw new AssertionError();
+          }
+
+          @Override
+          public Map<Integer, String> loadAll(Iterable<? extends Integer> keys) {
+            return ImmutableMap.of(1, "1", 2, "2");
+          }
+        };
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().batchLoads(5, 0, MILLISECONDS).build(loader);
+    assertEquals("1", cache.getUnchecked(1));
+    assertEquals("2", cache.getIfPresent(2));
+
+    // an off-heap copy of an extra value is freed once it is removed
+    cache =
+        CacheBuilder.newBuilder()
+            .batchLoads(5, 0, MILLISECONDS)
+            .offHeapValues(STRINGS)
+            .build(loader);
+    assertEquals("1", cache.getUnchecked(1));
+    assertEquals("2", cache.getIfPresent(2));
+    cache.invalidateAll();
+    assertEquals(0, ((OffHeapManualCache<?, ?>) cache).offHeapCache.store.allocatedBytes());
+  }
+
+  public void testLoadAllThrows() {
+    final IOException exception = new IOException();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .batchLoads(1, 0, MILLISECONDS)
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    throw new AssertionError();
+                  }
+
+                  @Override
+                  public Map<Integer, String> loadAll(Iterable<? extends Integer> keys)
+                      throws IOException {
+                    throw exception;
+                  }
+                });
+    try {
+      cache.get(1);
+      fail();
+    } catch (ExecutionException expected) {
+      assertSame(exception, expected.getCause());
+    }
+    assertEquals(1, cache.stats().loadExceptionCount());
+    assertEquals(1, cache.stats().batchCount());
+  }
+
+  public void testLoadAllUnsupported() {
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .batchLoads(5, 0, MILLISECONDS)
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    return key.toString();
+                  }
+                });
+    assertEquals("1", cache.getUnchecked(1));
+  }
+
+  public void testRefresh_notBatched() {
+    BatchLoader loader = new BatchLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().batchLoads(5, 0, MILLISECONDS).build(loader);
+    cache.getUnchecked(1);
+    cache.refresh(1);
+    assertEquals(ImmutableList.of(ImmutableSet.of(1)), loader.batches);
+    assertEquals(1, loader.reloads);
+  }
+
+  public void testOffHeapValues() {
+    BatchLoader loader = new BatchLoader();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .batchLoads(5, 0, MILLISECONDS)
+            .offHeapValues(STRINGS)
+            .build(loader);
+    assertEquals("1", cache.getUnchecked(1));
+    assertEquals(ImmutableList.of(ImmutableSet.of(1)), loader.batches);
+  }
+
+  public void testBuild_incompatibleOptions() {
+    try {
+      CacheBuilder.newBuilder().batchLoads(5, 0, MILLISECONDS).build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder()
+          .batchLoads(5, 0, MILLISECONDS)
+          .buildAsync(
+              new AsyncCacheLoader<Object, Object>() {
+                @Override
+                public ListenableFuture<Object> asyncLoad(Object key) {
+                  return Futures.immediateFuture(key);
+                }
+              });
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().batchLoads(0, 0, MILLISECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().batchLoads(1, -1, MILLISECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().batchLoads(1, 0, MILLISECONDS).batchLoads(1, 0, MILLISECONDS);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testToString() {
+    String string = CacheBuilder.newBuilder().batchLoads(5, 1, MILLISECONDS).toString();
+    assertTrue(string, string.contains("maximumBatchSize=5, batchWindow=1000000ns"));
+  }
+
+  /** Records the keys of each call to {@link #loadAll}. */
+  private static final class BatchLoader extends CacheLoader<Integer, String> {
+    final List<ImmutableSet<Integer>> batches = new CopyOnWriteArrayList<>();
+    int reloads;
+
+    @Override
+    public String load(Integer key) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public ListenableFuture<String> reload(Integer key, String oldValue) {
+      reloads++;
+      return Futures.immediateFuture(key.toString());
+    }
+
+    @Override
+    public Map<Integer, String> loadAll(Iterable<? extends Integer> keys) {
+      ImmutableSet<Integer> batch = ImmutableSet.copyOf(keys);
+      batches.add(batch);
+      Map<Integer, String> result = Maps.newHashMap();
+      for (Integer key : batch) {
+        result.put(key, key.toString());
+      }
+      return result;
+    }
+  }
+}
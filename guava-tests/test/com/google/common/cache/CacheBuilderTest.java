@@ -239,6 +239,63 @@ public class CacheBuilderTest extends TestCase {
     }
   }
 
+  @GwtIncompatible // expireAfter
+  public void testExpireAfter_setTwice() {
+    CacheBuilder<Long, Long> builder =
+        CacheBuilder.newBuilder().expireAfter(new CacheExpiryTest.ValueIsLifetime());
+    try {
+      builder.expireAfter(new CacheExpiryTest.ValueIsLifetime());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @GwtIncompatible // expireAfter
+  public void testExpireAfter_withFixedExpiration() {
+    try {
+      CacheBuilder.newBuilder()
+          .expireAfterWrite(1, SECONDS)
+          .expireAfter(new CacheExpiryTest.ValueIsLifetime());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder()
+          .expireAfter(new CacheExpiryTest.ValueIsLifetime())
+          .expireAfterAccess(1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @GwtIncompatible // evictionPolicy
+  public void testEvictionPolicy_setTwice() {
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder().evictionPolicy(EvictionPolicy.TINY_LFU);
+    try {
+      // even to the same value is not allowed
+      builder.evictionPolicy(EvictionPolicy.TINY_LFU);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @GwtIncompatible // evictionPolicy
+  public void testEvictionPolicy_withoutMaximum() {
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder().evictionPolicy(EvictionPolicy.TINY_LFU);
+    try {
+      builder.build(identityLoader());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
   @GwtIncompatible // weakKeys
   public void testKeyStrengthSetTwice() {
     CacheBuilder<Object, Object> builder1 = CacheBuilder.newBuilder().weakKeys();
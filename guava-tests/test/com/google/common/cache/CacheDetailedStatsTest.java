@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats.Window;
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.FakeTicker;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#recordDetailedStats}. */
+public class CacheDetailedStatsTest extends TestCase {
+
+  public void testLoadLatencies() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .recordDetailedStats(1, SECONDS, 3)
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    sleepUninterruptibly(key, MILLISECONDS);
+                    return key;
+                  }
+                });
+    for (int i = 0; i < 9; i++) {
+      cache.getUnchecked(i % 2);
+    }
+    cache.getUnchecked(50);
+
+    CacheStats stats = cache.stats();
+    assertEquals(3, stats.loadSuccessCount());
+    LoadLatencyHistogram latencies = stats.loadLatencies();
+    assertEquals(3, latencies.count());
+    assertTrue(latencies.valueAtPercentile(50.0) >= MILLISECONDS.toNanos(1));
+    assertTrue(latencies.valueAtPercentile(50.0) < MILLISECONDS.toNanos(50));
+    assertTrue(latencies.valueAtPercentile(99.0) >= MILLISECONDS.toNanos(50));
+  }
+
+  public void testWindows() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .recordDetailedStats(1, SECONDS, 2)
+            .build(CacheLoader.from(Functions.<Integer>identity()));
+    cache.getUnchecked(1);
+    cache.getUnchecked(1);
+    ticker.advance(1, SECONDS);
+    // hits do not read the ticker, so the window begins with the cache's maintenance
+    cache.cleanUp();
+    cache.getUnchecked(1);
+    cache.getUnchecked(2);
+    cache.getUnchecked(2);
+    assertEquals(
+        ImmutableList.of(
+            new Window(0, SECONDS.toNanos(1), 1, 1),
+            new Window(SECONDS.toNanos(1), SECONDS.toNanos(1), 2, 1)),
+        cache.stats().windows());
+
+    // the oldest window is no longer reported
+    ticker.advance(1, SECONDS);
+    cache.getUnchecked(3);
+    CacheStats stats = cache.stats();
+    assertEquals(
+        ImmutableList.of(
+            new Window(SECONDS.toNanos(1), SECONDS.toNanos(1), 2, 1),
+            new Window(SECONDS.toNanos(2), SECONDS.toNanos(1), 0, 1)),
+        stats.windows());
+    assertEquals(3, stats.hitCount());
+    assertEquals(3, stats.missCount());
+  }
+
+  public void testHitsDoNotReadTicker() {
+    final AtomicLong reads = new AtomicLong();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            reads.incrementAndGet();
+            return 0;
+          }
+        };
+    DetailedStatsCounter counter = new DetailedStatsCounter(ticker, SECONDS.toNanos(1), 1);
+    long readsBefore = reads.get();
+    for (int i = 0; i < 10; i++) {
+      counter.recordHits(1);
+    }
+    assertEquals(readsBefore, reads.get());
+    assertEquals(
+        ImmutableList.of(new Window(0, SECONDS.toNanos(1), 10, 0)), counter.snapshot().windows());
+  }
+
+  public void testManualCache() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().ticker(ticker).recordDetailedStats(1, SECONDS, 1).build();
+    cache.getIfPresent(1);
+    cache.put(1, 1);
+    cache.getIfPresent(1);
+    assertEquals(
+        ImmutableList.of(new Window(0, SECONDS.toNanos(1), 1, 1)), cache.stats().windows());
+    assertEquals(0, cache.stats().loadLatencies().count());
+  }
+
+  public void testInvalidArguments() {
+    try {
+      CacheBuilder.newBuilder().recordDetailedStats(0, SECONDS, 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().recordDetailedStats(1, SECONDS, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testCombinedWithRecordStats() {
+    CacheBuilder.newBuilder().recordStats().recordStats();
+    try {
+      CacheBuilder.newBuilder().recordStats().recordDetailedStats(1, SECONDS, 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().recordDetailedStats(1, SECONDS, 1).recordStats();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder()
+          .recordDetailedStats(1, SECONDS, 1)
+          .recordDetailedStats(1, SECONDS, 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static com.google.common.cache.TestingWeighers.constantWeigher;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.testing.SerializableTester;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests relating to {@link CacheBuilder#evictionPolicy}: which entries are retained under the
+ * {@link EvictionPolicy#TINY_LFU} policy, and how its hit rate compares to the default policy on
+ * skewed and scan-heavy traces.
+ */
+public class CacheEvictionPolicyTest extends TestCase {
+  static final int MAX_SIZE = 100;
+
+  public void testTinyLfu_respectsMaximumSize() {
+    LoadingCache<Integer, Integer> cache = newCache(EvictionPolicy.TINY_LFU, MAX_SIZE);
+    for (int i = 0; i < 10 * MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+      assertThat(cache.size()).isAtMost((long) MAX_SIZE);
+      CacheTesting.checkValidState(cache);
+    }
+  }
+
+  public void testTinyLfu_respectsMaximumWeight() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(2 * MAX_SIZE)
+            .weigher(constantWeigher(2))
+            .evictionPolicy(EvictionPolicy.TINY_LFU)
+            .build(identityLoader());
+    for (int i = 0; i < 10 * MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+      assertThat(cache.size()).isAtMost((long) MAX_SIZE);
+      CacheTesting.checkValidState(cache);
+    }
+  }
+
+  public void testTinyLfu_rejectsUnpopularCandidate() {
+    LoadingCache<Integer, Integer> cache = newCache(EvictionPolicy.TINY_LFU, MAX_SIZE);
+    for (int i = 0; i < MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+      cache.getUnchecked(i);
+    }
+    cache.getUnchecked(MAX_SIZE);
+    assertEquals(MAX_SIZE, cache.size());
+    assertNull(cache.getIfPresent(MAX_SIZE));
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertEquals(Integer.valueOf(i), cache.getIfPresent(i));
+    }
+  }
+
+  public void testTinyLfu_admitsPopularCandidate() {
+    LoadingCache<Integer, Integer> cache = newCache(EvictionPolicy.TINY_LFU, MAX_SIZE);
+    for (int i = 0; i < MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+    }
+    // each miss on a rejected candidate still counts towards its frequency
+    for (int i = 0; i < 4; i++) {
+      cache.getUnchecked(MAX_SIZE);
+    }
+    assertEquals(Integer.valueOf(MAX_SIZE), cache.getIfPresent(MAX_SIZE));
+    assertEquals(MAX_SIZE, cache.size());
+  }
+
+  public void testTinyLfu_zipfianTrace() {
+    int[] trace = zipfianTrace(/* items= */ 10_000, /* exponent= */ 0.9, /* length= */ 200_000);
+    double lru = hitRate(EvictionPolicy.LEAST_RECENTLY_USED, 500, trace);
+    double tinyLfu = hitRate(EvictionPolicy.TINY_LFU, 500, trace);
+    assertThat(tinyLfu).isGreaterThan(lru);
+  }
+
+  public void testTinyLfu_scanHeavyTrace() {
+    int hotSetSize = MAX_SIZE / 2;
+    int scanLength = 2 * MAX_SIZE;
+    int[] trace = scanHeavyTrace(hotSetSize, scanLength, /* rounds= */ 200);
+    double lru = hitRate(EvictionPolicy.LEAST_RECENTLY_USED, MAX_SIZE, trace);
+    double tinyLfu = hitRate(EvictionPolicy.TINY_LFU, MAX_SIZE, trace);
+    // every scan flushes the hot set out of an LRU cache, but only the hot set can ever hit
+    assertEquals(0.0, lru);
+    double hotFraction = (double) hotSetSize / (hotSetSize + scanLength);
+    assertThat(tinyLfu).isGreaterThan(0.9 * hotFraction);
+
+    LoadingCache<Integer, Integer> cache = newCache(EvictionPolicy.TINY_LFU, MAX_SIZE);
+    for (int key : trace) {
+      cache.getUnchecked(key);
+    }
+    for (int i = 0; i < hotSetSize; i++) {
+      assertEquals(Integer.valueOf(i), cache.getIfPresent(i));
+    }
+  }
+
+  public void testSerialization() {
+    Cache<Integer, Integer> one =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .evictionPolicy(EvictionPolicy.TINY_LFU)
+            .build();
+    LocalManualCache<Integer, Integer> two =
+        (LocalManualCache<Integer, Integer>) SerializableTester.reserialize(one);
+    assertEquals(EvictionPolicy.TINY_LFU, two.localCache.evictionPolicy);
+  }
+
+  private static LoadingCache<Integer, Integer> newCache(EvictionPolicy policy, int maximumSize) {
+    return CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(maximumSize)
+        .evictionPolicy(policy)
+        .recordStats()
+        .build(identityLoader());
+  }
+
+  private static double hitRate(EvictionPolicy policy, int maximumSize, int[] trace) {
+    LoadingCache<Integer, Integer> cache = newCache(policy, maximumSize);
+    for (int key : trace) {
+      cache.getUnchecked(key);
+    }
+    return cache.stats().hitRate();
+  }
+
+  /** Returns keys drawn from a Zipfian distribution over {@code [0, items)}, hottest first. */
+  private static int[] zipfianTrace(int items, double exponent, int length) {
+    double[] cumulative = new double[items];
+    double sum = 0;
+    for (int i = 0; i < items; i++) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+    Random random = new Random(42);
+    int[] trace = new int[length];
+    for (int i = 0; i < length; i++) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      trace[i] = (index >= 0) ? index : -index - 1;
+    }
+    return trace;
+  }
+
+  /**
+   * Returns a trace that alternates between a pass over a small hot set and a scan over keys that
+   * are never requested again.
+   */
+  private static int[] scanHeavyTrace(int hotSetSize, int scanLength, int rounds) {
+    int[] trace = new int[rounds * (hotSetSize + scanLength)];
+    int next = 0;
+    int scanKey = hotSetSize;
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < hotSetSize; i++) {
+        trace[next++] = i;
+      }
+      for (int i = 0; i < scanLength; i++) {
+        trace[next++] = scanKey++;
+      }
+    }
+    return trace;
+  }
+}
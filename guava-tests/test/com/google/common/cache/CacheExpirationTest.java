@@ -72,6 +72,19 @@ public class CacheExpirationTest extends TestCase {
     checkExpiration(cache, loader, ticker, removalListener);
   }
 
+  public void testExpiration_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    WatchedCreatorLoader loader = new WatchedCreatorLoader();
+    LoadingCache<String, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(fixedExpiry(EXPIRING_TIME, MILLISECONDS))
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build(loader);
+    checkExpiration(cache, loader, ticker, removalListener);
+  }
+
   private void checkExpiration(
       LoadingCache<String, Integer> cache,
       WatchedCreatorLoader loader,
@@ -124,6 +137,40 @@ public class CacheExpirationTest extends TestCase {
     runExpirationTest(cache, loader, ticker, removalListener);
   }
 
+  public void testExpiringGet_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    WatchedCreatorLoader loader = new WatchedCreatorLoader();
+    LoadingCache<String, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(fixedExpiry(EXPIRING_TIME, MILLISECONDS))
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build(loader);
+    runExpirationTest(cache, loader, ticker, removalListener);
+  }
+
+  /** Returns an expiry that gives every entry the same lifetime after it is created or updated. */
+  private static <K, V> Expiry<K, V> fixedExpiry(long duration, TimeUnit unit) {
+    final long nanos = unit.toNanos(duration);
+    return new Expiry<K, V>() {
+      @Override
+      public long expireAfterCreate(K key, V value, long currentTime) {
+        return nanos;
+      }
+
+      @Override
+      public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+        return nanos;
+      }
+
+      @Override
+      public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+        return currentDuration;
+      }
+    };
+  }
+
   private void runExpirationTest(
       LoadingCache<String, Integer> cache,
       WatchedCreatorLoader loader,
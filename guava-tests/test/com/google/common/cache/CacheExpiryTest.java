@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static com.google.common.cache.TestingRemovalListeners.countingRemovalListener;
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.SerializableTester;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Tests relating to {@link CacheBuilder#expireAfter}: make sure each entry expires after its own
+ * lifetime, and that lifetimes are recomputed on creation, update and read.
+ */
+public class CacheExpiryTest extends TestCase {
+
+  public void testExpireAfterCreate_perEntry() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<Long, Long> removalListener = countingRemovalListener();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueIsLifetime())
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build();
+    cache.put(1L, SECONDS.toNanos(1));
+    cache.put(2L, SECONDS.toNanos(10));
+    cache.put(3L, MINUTES.toNanos(10));
+
+    ticker.advance(2, SECONDS);
+    assertNull(cache.getIfPresent(1L));
+    assertEquals(Long.valueOf(SECONDS.toNanos(10)), cache.getIfPresent(2L));
+    cache.cleanUp();
+    assertEquals(2, cache.size());
+    assertEquals(1, removalListener.getCount());
+
+    ticker.advance(10, SECONDS);
+    assertNull(cache.getIfPresent(2L));
+    assertEquals(Long.valueOf(MINUTES.toNanos(10)), cache.getIfPresent(3L));
+
+    ticker.advance(10, MINUTES);
+    assertNull(cache.getIfPresent(3L));
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+    assertEquals(3, removalListener.getCount());
+    CacheTesting.checkEmpty(cache);
+  }
+
+  public void testExpireAfterCreate_mixedLifetimes() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .expireAfter(new ValueIsLifetime())
+            .ticker(ticker)
+            .build();
+    long[] lifetimes = {
+      MILLISECONDS.toNanos(10),
+      SECONDS.toNanos(30),
+      MINUTES.toNanos(30),
+      HOURS.toNanos(10),
+      DAYS.toNanos(5),
+      DAYS.toNanos(100),
+    };
+    int perLifetime = 100;
+    for (long i = 0; i < perLifetime * lifetimes.length; i++) {
+      cache.put(i, lifetimes[(int) (i % lifetimes.length)]);
+    }
+
+    long remaining = cache.size();
+    for (long lifetime : lifetimes) {
+      ticker.advance(lifetime - ticker.read() + SECONDS.toNanos(2));
+      cache.cleanUp();
+      remaining -= perLifetime;
+      assertEquals(remaining, cache.size());
+      CacheTesting.checkValidState((LocalCache<?, ?>) cache.asMap());
+    }
+  }
+
+  public void testExpireAfterCreate_immediate() {
+    FakeTicker ticker = new FakeTicker();
+    QueuingRemovalListener<Long, Long> removalListener = queuingRemovalListener();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueIsLifetime())
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build();
+    cache.put(1L, 0L);
+    cache.put(2L, -5L);
+    assertNull(cache.getIfPresent(1L));
+    assertNull(cache.getIfPresent(2L));
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+    assertEquals(RemovalCause.EXPIRED, removalListener.poll().getCause());
+    assertEquals(RemovalCause.EXPIRED, removalListener.poll().getCause());
+  }
+
+  public void testExpireAfterCreate_maximumLifetime() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueIsLifetime())
+            .ticker(ticker)
+            .build();
+    cache.put(1L, Long.MAX_VALUE);
+    ticker.advance(DAYS.toNanos(365 * 100));
+    assertEquals(Long.valueOf(Long.MAX_VALUE), cache.getIfPresent(1L));
+  }
+
+  public void testExpireAfterUpdate() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueIsLifetime())
+            .ticker(ticker)
+            .build();
+    cache.put(1L, SECONDS.toNanos(5));
+    ticker.advance(4, SECONDS);
+    cache.put(1L, MINUTES.toNanos(1));
+    ticker.advance(30, SECONDS);
+    assertEquals(Long.valueOf(MINUTES.toNanos(1)), cache.getIfPresent(1L));
+    ticker.advance(31, SECONDS);
+    assertNull(cache.getIfPresent(1L));
+  }
+
+  public void testExpireAfterUpdate_currentDuration() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(
+                new ValueIsLifetime() {
+                  @Override
+                  public long expireAfterUpdate(
+                      Long key, Long value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                  }
+                })
+            .ticker(ticker)
+            .build();
+    cache.put(1L, SECONDS.toNanos(5));
+    ticker.advance(4, SECONDS);
+    cache.put(1L, MINUTES.toNanos(1));
+    ticker.advance(2, SECONDS);
+    assertNull(cache.getIfPresent(1L));
+  }
+
+  public void testExpireAfterRead() {
+    FakeTicker ticker = new FakeTicker();
+    final AtomicInteger reads = new AtomicInteger();
+    LoadingCache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(
+                new ValueIsLifetime() {
+                  @Override
+                  public long expireAfterRead(
+                      Long key, Long value, long currentTime, long currentDuration) {
+                    reads.incrementAndGet();
+                    return SECONDS.toNanos(10);
+                  }
+                })
+            .ticker(ticker)
+            .build(CacheLoader.from(key -> SECONDS.toNanos(10)));
+    cache.getUnchecked(1L);
+    assertEquals(0, reads.get());
+    for (int i = 0; i < 10; i++) {
+      ticker.advance(9, SECONDS);
+      assertEquals(Long.valueOf(SECONDS.toNanos(10)), cache.getIfPresent(1L));
+    }
+    assertEquals(10, reads.get());
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+
+    ticker.advance(11, SECONDS);
+    assertNull(cache.getIfPresent(1L));
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+  }
+
+  public void testExpireAfterRead_shortens() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(
+                new ValueIsLifetime() {
+                  @Override
+                  public long expireAfterRead(
+                      Long key, Long value, long currentTime, long currentDuration) {
+                    return SECONDS.toNanos(1);
+                  }
+                })
+            .ticker(ticker)
+            .build();
+    cache.put(1L, DAYS.toNanos(1));
+    assertEquals(Long.valueOf(DAYS.toNanos(1)), cache.getIfPresent(1L));
+    ticker.advance(2, SECONDS);
+    assertNull(cache.getIfPresent(1L));
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+  }
+
+  public void testExpiry_withMaximumSize() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumSize(10)
+            .expireAfter(new ValueIsLifetime())
+            .ticker(ticker)
+            .build(identityLoader());
+    for (long i = 1; i <= 20; i++) {
+      cache.getUnchecked(SECONDS.toNanos(i));
+    }
+    assertEquals(10, cache.size());
+    ticker.advance(16, SECONDS);
+    cache.cleanUp();
+    assertEquals(4, cache.size());
+    assertEquals(Long.valueOf(SECONDS.toNanos(17)), cache.getIfPresent(SECONDS.toNanos(17)));
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testExpiry_invalidateAll() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Long, Long> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueIsLifetime())
+            .ticker(ticker)
+            .build();
+    cache.put(1L, SECONDS.toNanos(1));
+    cache.put(2L, DAYS.toNanos(1));
+    cache.invalidateAll();
+    CacheTesting.checkEmpty(cache);
+    ticker.advance(2, DAYS);
+    cache.cleanUp();
+    CacheTesting.checkEmpty(cache);
+  }
+
+  public void testSerialization() {
+    Cache<Long, Long> one = CacheBuilder.newBuilder().expireAfter(new ValueIsLifetime()).build();
+    LocalManualCache<Long, Long> two =
+        (LocalManualCache<Long, Long>) SerializableTester.reserialize(one);
+    assertTrue(two.localCache.expiresVariably());
+    assertTrue(two.localCache.expiry instanceof ValueIsLifetime);
+  }
+
+  /** Uses each value as the lifetime of its entry, in nanoseconds. */
+  static class ValueIsLifetime implements Expiry<Long, Long>, Serializable {
+    @Override
+    public long expireAfterCreate(Long key, Long value, long currentTime) {
+      return value;
+    }
+
+    @Override
+    public long expireAfterUpdate(Long key, Long value, long currentTime, long currentDuration) {
+      return value;
+    }
+
+    @Override
+    public long expireAfterRead(Long key, Long value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
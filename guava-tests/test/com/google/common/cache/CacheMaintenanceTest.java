@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.LocalCache.Segment;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.GcFinalization;
+import com.google.common.util.concurrent.testing.TestingExecutors;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#maintenanceExecutor}. */
+public class CacheMaintenanceTest extends TestCase {
+
+  public void testReadsRequestCleanUp() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .ticker(ticker)
+            .expireAfterWrite(1, SECONDS)
+            .maintenanceExecutor(TestingExecutors.noOpScheduledExecutor())
+            .build();
+    LocalCache<Integer, Integer> localCache = toLocalCache(cache);
+    Segment<Integer, Integer> segment = localCache.segments[0];
+    cache.put(1, 1);
+    ticker.advance(2, SECONDS);
+
+    for (int i = 0; i <= LocalCache.DRAIN_THRESHOLD; i++) {
+      assertNull(cache.getIfPresent(2));
+    }
+    // the expired entry is left to the maintenance task, which the executor never runs
+    assertTrue(segment.cleanUpRequested.get());
+    assertEquals(1, cache.size());
+
+    localCache.maintenance.run();
+    assertFalse(segment.cleanUpRequested.get());
+    assertEquals(0, cache.size());
+  }
+
+  public void testWritesDeliverBoundedNotifications() {
+    final AtomicInteger notifications = new AtomicInteger();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .removalListener(
+                new RemovalListener<Integer, Integer>() {
+                  @Override
+                  public void onRemoval(RemovalNotification<Integer, Integer> notification) {
+                    notifications.incrementAndGet();
+                  }
+                })
+            .maintenanceExecutor(TestingExecutors.noOpScheduledExecutor())
+            .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    cache.invalidateAll();
+    assertEquals(LocalCache.DRAIN_MAX, notifications.get());
+
+    toLocalCache(cache).maintenance.run();
+    assertEquals(100, notifications.get());
+  }
+
+  public void testRejectedCleanUpRunsInline() {
+    FakeTicker ticker = new FakeTicker();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .ticker(ticker)
+            .expireAfterAccess(1, SECONDS)
+            .maintenanceExecutor(executor)
+            .build();
+    executor.shutdownNow();
+    cache.put(1, 1);
+    ticker.advance(2, SECONDS);
+
+    for (int i = 0; i <= LocalCache.DRAIN_THRESHOLD; i++) {
+      assertNull(cache.getIfPresent(2));
+    }
+    assertEquals(0, cache.size());
+    assertFalse(toLocalCache(cache).segments[0].cleanUpRequested.get());
+  }
+
+  public void testRequestedCleanUpRetriedWhileLockHeld() throws InterruptedException {
+    FakeTicker ticker = new FakeTicker();
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    try {
+      Cache<Integer, Integer> cache =
+          CacheBuilder.newBuilder()
+              .concurrencyLevel(1)
+              .ticker(ticker)
+              .expireAfterWrite(1, HOURS)
+              .maintenanceExecutor(executor)
+              .build();
+      final Segment<Integer, Integer> segment = toLocalCache(cache).segments[0];
+      cache.put(1, 1);
+      ticker.advance(2, HOURS);
+
+      final CountDownLatch locked = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(1);
+      Thread holder =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  segment.lock();
+                  try {
+                    locked.countDown();
+                    done.await();
+                  } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                  } finally {
+                    segment.unlock();
+                  }
+                }
+              });
+      holder.start();
+      locked.await();
+      try {
+        for (int i = 0; i <= LocalCache.DRAIN_THRESHOLD; i++) {
+          assertNull(cache.getIfPresent(2));
+        }
+        for (int i = 0; i < 1000 && executor.getCompletedTaskCount() < 2; i++) {
+          sleepUninterruptibly(1, MILLISECONDS);
+        }
+        // the task found the lock busy, so the clean up is still pending
+        assertTrue(executor.getCompletedTaskCount() >= 2);
+        assertTrue(segment.cleanUpRequested.get());
+        assertEquals(1, cache.size());
+      } finally {
+        done.countDown();
+        holder.join();
+      }
+
+      for (int i = 0; i < 1000 && segment.cleanUpRequested.get(); i++) {
+        sleepUninterruptibly(1, MILLISECONDS);
+      }
+      assertFalse(segment.cleanUpRequested.get());
+      assertEquals(0, cache.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testIdleCacheShrinks() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      Cache<Integer, Integer> cache =
+          CacheBuilder.newBuilder()
+              .expireAfterWrite(20, MILLISECONDS)
+              .maintenanceExecutor(executor)
+              .build();
+      for (int i = 0; i < 100; i++) {
+        cache.put(i, i);
+      }
+      for (int i = 0; i < 1000 && cache.size() > 0; i++) {
+        sleepUninterruptibly(10, MILLISECONDS);
+      }
+      assertEquals(0, cache.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testPeriod() {
+    assertEquals(
+        CacheMaintenance.MAXIMUM_PERIOD_NANOS,
+        CacheMaintenance.periodNanos(toLocalCache(CacheBuilder.newBuilder().build())));
+    assertEquals(
+        CacheMaintenance.MAXIMUM_PERIOD_NANOS,
+        CacheMaintenance.periodNanos(
+            toLocalCache(CacheBuilder.newBuilder().expireAfterWrite(1, HOURS).build())));
+    assertEquals(
+        MILLISECONDS.toNanos(250),
+        CacheMaintenance.periodNanos(
+            toLocalCache(
+                CacheBuilder.newBuilder()
+                    .expireAfterWrite(1, MINUTES)
+                    .expireAfterAccess(1, SECONDS)
+                    .build())));
+    assertEquals(
+        CacheMaintenance.MINIMUM_PERIOD_NANOS,
+        CacheMaintenance.periodNanos(
+            toLocalCache(CacheBuilder.newBuilder().expireAfterWrite(10, NANOSECONDS).build())));
+  }
+
+  public void testCancelledOnceCollected() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .maintenanceExecutor(TestingExecutors.noOpScheduledExecutor())
+            .build();
+    CacheMaintenance<?, ?> maintenance = toLocalCache(cache).maintenance;
+    WeakReference<?> cacheReference = new WeakReference<>(cache);
+    cache = null;
+    GcFinalization.awaitClear(cacheReference);
+
+    assertFalse(maintenance.future.isCancelled());
+    maintenance.run();
+    assertTrue(maintenance.future.isCancelled());
+  }
+
+  public void testMaintenanceExecutor_alreadySet() {
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder().maintenanceExecutor(TestingExecutors.noOpScheduledExecutor());
+    try {
+      builder.maintenanceExecutor(TestingExecutors.noOpScheduledExecutor());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testBuildLongKeyed_incompatible() {
+    try {
+      CacheBuilder.newBuilder()
+          .maintenanceExecutor(TestingExecutors.noOpScheduledExecutor())
+          .buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static <K, V> LocalCache<K, V> toLocalCache(Cache<K, V> cache) {
+    return ((LocalManualCache<K, V>) cache).localCache;
+  }
+}
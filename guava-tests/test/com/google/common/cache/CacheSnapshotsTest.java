@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.OffHeapCacheTest.STRINGS;
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+import com.google.common.cache.OffHeapLocalCache.OffHeapManualCache;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.primitives.Ints;
+import com.google.common.testing.FakeTicker;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link CacheSnapshots}. */
+public class CacheSnapshotsTest extends TestCase {
+
+  public void testRoundTrip() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    Map<Integer, String> expected = Maps.newHashMap();
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, "value" + i);
+      expected.put(i, "value" + i);
+    }
+    InMemorySink sink = new InMemorySink();
+    assertEquals(1000, CacheSnapshots.write(cache, INTEGERS, STRINGS, 5000, sink));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().recordStats().build();
+    assertEquals(1000, CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource()));
+    assertEquals(expected, ImmutableMap.copyOf(restored.asMap()));
+    assertEquals(0, restored.stats().requestCount());
+    assertEquals(0, restored.stats().loadCount());
+  }
+
+  public void testWrite_maximumEntries() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().maximumSize(100).build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, "value" + i);
+    }
+    InMemorySink sink = new InMemorySink();
+    assertEquals(3, CacheSnapshots.write(cache, INTEGERS, STRINGS, 3, sink));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource());
+    assertEquals(3, restored.size());
+  }
+
+  public void testWrite_hottestFirst() throws IOException {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder().ticker(ticker).expireAfterAccess(1, HOURS).build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, "value" + i);
+      ticker.advance(1);
+    }
+    cache.getIfPresent(2);
+    ticker.advance(1);
+    cache.getIfPresent(5);
+
+    InMemorySink sink = new InMemorySink();
+    CacheSnapshots.write(cache, INTEGERS, STRINGS, 3, sink);
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource());
+    assertThat(restored.asMap().keySet()).containsExactly(5, 2, 9);
+  }
+
+  public void testLoad_hottestAreMostRecent() throws IOException {
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10).build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, "value" + i);
+    }
+    InMemorySink sink = new InMemorySink();
+    CacheSnapshots.write(cache, INTEGERS, STRINGS, 10, sink);
+
+    // a smaller cache keeps the entries that were the most recently used when written
+    Cache<Integer, String> restored =
+        CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(4).build();
+    assertEquals(10, CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource()));
+    assertThat(restored.asMap().keySet()).containsExactly(6, 7, 8, 9);
+  }
+
+  public void testWriteByWeight() throws IOException {
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(1000)
+            .weigher(
+                new Weigher<Integer, String>() {
+                  @Override
+                  public int weigh(Integer key, String value) {
+                    return value.length();
+                  }
+                })
+            .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, "value" + i); // weighs 6
+    }
+    InMemorySink sink = new InMemorySink();
+    assertEquals(3, CacheSnapshots.writeByWeight(cache, INTEGERS, STRINGS, 20, sink));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource());
+    assertThat(restored.asMap().keySet()).containsExactly(7, 8, 9);
+  }
+
+  public void testLoad_keepsExistingValues() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    InMemorySink sink = new InMemorySink();
+    CacheSnapshots.write(cache, INTEGERS, STRINGS, 10, sink);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    restored.put(1, "uno");
+    assertEquals(1, CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource()));
+    assertEquals(ImmutableMap.of(1, "uno", 2, "two"), ImmutableMap.copyOf(restored.asMap()));
+  }
+
+  public void testLoad_replacesCollectedValues() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    InMemorySink sink = new InMemorySink();
+    CacheSnapshots.write(cache, INTEGERS, STRINGS, 10, sink);
+
+    QueuingRemovalListener<Integer, String> listener = queuingRemovalListener();
+    LocalCache.LocalManualCache<Integer, String> restored =
+        (LocalCache.LocalManualCache<Integer, String>)
+            CacheBuilder.newBuilder()
+                .weakValues()
+                .removalListener(listener)
+                .<Integer, String>build();
+    String uno = new String("uno");
+    restored.put(1, uno);
+    // the value is collected, but its reference not yet enqueued
+    LocalCache<Integer, String> localCache = restored.localCache;
+    int hash = localCache.hash(1);
+    ((Reference<?>) localCache.segmentFor(hash).getEntry(1, hash).getValueReference()).clear();
+
+    assertEquals(2, CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource()));
+    assertEquals(ImmutableMap.of(1, "one", 2, "two"), ImmutableMap.copyOf(restored.asMap()));
+    RemovalNotification<Integer, String> notification = listener.remove();
+    assertEquals(Integer.valueOf(1), notification.getKey());
+    assertEquals(RemovalCause.COLLECTED, notification.getCause());
+    assertTrue(listener.isEmpty());
+  }
+
+  public void testLoad_presizesTable() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i, "value" + i);
+    }
+    InMemorySink sink = new InMemorySink();
+    CacheSnapshots.write(cache, INTEGERS, STRINGS, 10000, sink);
+
+    LocalCache.LocalManualCache<Integer, String> restored =
+        (LocalCache.LocalManualCache<Integer, String>)
+            CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .initialCapacity(1)
+                .<Integer, String>build();
+    CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource());
+    LocalCache.Segment<Integer, String> segment = restored.localCache.segments[0];
+    assertEquals(10000, segment.count);
+    assertEquals(16384, segment.table.length());
+    for (int i = 0; i < 10000; i++) {
+      assertEquals("value" + i, restored.getIfPresent(i));
+    }
+  }
+
+  public void testOffHeapCache() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    InMemorySink sink = new InMemorySink();
+    assertEquals(2, CacheSnapshots.write(cache, INTEGERS, STRINGS, 10, sink));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    restored.put(1, "uno");
+    assertEquals(1, CacheSnapshots.load(restored, INTEGERS, STRINGS, sink.asByteSource()));
+    assertEquals(ImmutableMap.of(1, "uno", 2, "two"), ImmutableMap.copyOf(restored.asMap()));
+    // the value of the entry that was not inserted was freed
+    assertEquals(2 * 64, ((OffHeapManualCache<?, ?>) restored).offHeapCache.store.allocatedBytes());
+  }
+
+  public void testForwardingCache() throws IOException {
+    final Cache<Integer, String> delegate = CacheBuilder.newBuilder().build();
+    Cache<Integer, String> cache =
+        new ForwardingCache<Integer, String>() {
+          @Override
+          protected Cache<Integer, String> delegate() {
+            return delegate;
+          }
+        };
+    cache.put(1, "one");
+    cache.put(2, "two");
+    InMemorySink sink = new InMemorySink();
+    assertEquals(1, CacheSnapshots.write(cache, INTEGERS, STRINGS, 1, sink));
+
+    delegate.invalidateAll();
+    assertEquals(1, CacheSnapshots.load(cache, INTEGERS, STRINGS, sink.asByteSource()));
+    assertEquals(1, cache.size());
+  }
+
+  public void testLoad_notASnapshot() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    try {
+      CacheSnapshots.load(cache, INTEGERS, STRINGS, ByteSource.wrap(new byte[] {1, 2, 3, 4}));
+      fail();
+    } catch (IOException expected) {
+    }
+    assertEquals(0, cache.size());
+  }
+
+  public void testWrite_negativeLimits() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    try {
+      CacheSnapshots.write(cache, INTEGERS, STRINGS, -1, new InMemorySink());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CacheSnapshots.writeByWeight(cache, INTEGERS, STRINGS, -1, new InMemorySink());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static final CacheSerializer<Integer> INTEGERS =
+      new CacheSerializer<Integer>() {
+        @Override
+        public byte[] serialize(Integer object) {
+          return Ints.toByteArray(object);
+        }
+
+        @Override
+        public Integer deserialize(byte[] bytes) {
+          return Ints.fromByteArray(bytes);
+        }
+      };
+
+  private static final class InMemorySink extends ByteSink {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Override
+    public OutputStream openStream() {
+      out.reset();
+      return out;
+    }
+
+    ByteSource asByteSource() {
+      return ByteSource.wrap(out.toByteArray());
+    }
+  }
+}
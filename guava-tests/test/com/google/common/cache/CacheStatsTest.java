@@ -16,6 +16,8 @@
 
 package com.google.common.cache;
 
+import com.google.common.cache.CacheStats.Window;
+import com.google.common.collect.ImmutableList;
 import junit.framework.TestCase;
 
 /**
@@ -39,6 +41,67 @@ public class CacheStatsTest extends TestCase {
     assertEquals(0, stats.totalLoadTime());
     assertEquals(0.0, stats.averageLoadPenalty());
     assertEquals(0, stats.evictionCount());
+    assertEquals(0, stats.batchCount());
+    assertEquals(0, stats.batchedKeyCount());
+    assertEquals(0.0, stats.averageBatchSize());
+    assertEquals(0, stats.totalBatchLoadTime());
+    assertEquals(0.0, stats.averageBatchLoadPenalty());
+  }
+
+  public void testBatches() {
+    CacheStats one = new CacheStats(11, 13, 17, 19, 23, 27, 2, 10, 6);
+    assertEquals(2, one.batchCount());
+    assertEquals(10, one.batchedKeyCount());
+    assertEquals(5.0, one.averageBatchSize());
+    assertEquals(6, one.totalBatchLoadTime());
+    assertEquals(3.0, one.averageBatchLoadPenalty());
+    assertFalse(one.equals(new CacheStats(11, 13, 17, 19, 23, 27)));
+
+    CacheStats two = new CacheStats(53, 47, 43, 41, 37, 31, 5, 30, 20);
+    assertEquals(new CacheStats(42, 34, 26, 22, 14, 4, 3, 20, 14), two.minus(one));
+    assertEquals(new CacheStats(64, 60, 60, 60, 60, 58, 7, 40, 26), two.plus(one));
+  }
+
+  public void testToString_batchesOnlyIfAny() {
+    assertEquals(
+        "CacheStats{hitCount=11, missCount=13, loadSuccessCount=17, loadExceptionCount=19,"
+            + " totalLoadTime=23, evictionCount=27}",
+        new CacheStats(11, 13, 17, 19, 23, 27).toString());
+    assertEquals(
+        "CacheStats{hitCount=11, missCount=13, loadSuccessCount=17, loadExceptionCount=19,"
+            + " totalLoadTime=23, evictionCount=27, batchCount=2, batchedKeyCount=10,"
+            + " totalBatchLoadTime=6}",
+        new CacheStats(11, 13, 17, 19, 23, 27, 2, 10, 6).toString());
+  }
+
+  public void testDetails() {
+    CacheStats counts = new CacheStats(11, 13, 17, 19, 23, 27);
+    assertEquals(LoadLatencyHistogram.empty(), counts.loadLatencies());
+    assertEquals(ImmutableList.of(), counts.windows());
+
+    CacheStats one =
+        counts.withDetails(
+            LoadLatencyHistogram.of(new long[] {0, 2}),
+            ImmutableList.of(new Window(0, 10, 1, 2), new Window(10, 10, 3, 4)));
+    CacheStats two =
+        counts.withDetails(
+            LoadLatencyHistogram.of(new long[] {1, 3}),
+            ImmutableList.of(new Window(10, 10, 5, 7), new Window(20, 10, 6, 8)));
+    assertFalse(one.equals(counts));
+    assertFalse(one.equals(two));
+
+    CacheStats sum = one.plus(two);
+    assertEquals(LoadLatencyHistogram.of(new long[] {1, 5}), sum.loadLatencies());
+    assertEquals(
+        ImmutableList.of(
+            new Window(0, 10, 1, 2), new Window(10, 10, 8, 11), new Window(20, 10, 6, 8)),
+        sum.windows());
+
+    CacheStats difference = two.minus(one);
+    assertEquals(LoadLatencyHistogram.of(new long[] {1, 1}), difference.loadLatencies());
+    assertEquals(
+        ImmutableList.of(new Window(10, 10, 2, 3), new Window(20, 10, 6, 8)),
+        difference.windows());
   }
 
   public void testSingle() {
@@ -239,6 +239,16 @@ class CacheTesting {
           prev = current;
         }
         assertEquals(segment.count, entries.size());
+      } else if (cchm.expiresVariably()) {
+        Set<ReferenceEntry<?, ?>> entries = Sets.newIdentityHashSet();
+        for (ReferenceEntry<?, ?> current : segment.writeQueue) {
+          assertTrue(entries.add(current));
+          Object key = current.getKey();
+          if (key != null) {
+            assertSame(current, segment.getEntry(key, current.getHash()));
+          }
+        }
+        assertEquals(segment.count, entries.size());
       } else {
         assertTrue(segment.writeQueue.isEmpty());
       }
@@ -252,9 +262,11 @@ class CacheTesting {
           if (prev != null) {
             assertSame(prev, current.getPreviousInAccessQueue());
             assertSame(prev.getNextInAccessQueue(), current);
-            // read accesses may be slightly misordered
+            // read accesses may be slightly misordered, and access times are expiration times when
+            // entries expire variably
             assertTrue(
-                prev.getAccessTime() <= current.getAccessTime()
+                cchm.expiresVariably()
+                    || prev.getAccessTime() <= current.getAccessTime()
                     || prev.getAccessTime() - current.getAccessTime() < 1000);
           }
           Object key = current.getKey();
@@ -303,6 +315,10 @@ class CacheTesting {
       }
     } else {
       for (Segment<?, ?> segment : map.segments) {
+        if (map.expiresVariably()) {
+          // reads are still recorded, to reschedule entries in the timer wheel
+          drainRecencyQueue(segment);
+        }
         assertEquals(0, segment.recencyQueue.size());
       }
     }
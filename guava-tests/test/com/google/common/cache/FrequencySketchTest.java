@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link FrequencySketch}. */
+public class FrequencySketchTest extends TestCase {
+
+  public void testConstructor_negative() {
+    try {
+      new FrequencySketch(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testFrequency_unseen() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    assertEquals(0, sketch.frequency(42));
+  }
+
+  public void testIncrement() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    sketch.increment(42);
+    assertEquals(1, sketch.frequency(42));
+    sketch.increment(42);
+    sketch.increment(42);
+    assertEquals(3, sketch.frequency(42));
+  }
+
+  public void testIncrement_saturates() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(42);
+    }
+    assertEquals(15, sketch.frequency(42));
+    assertEquals(15, sketch.size());
+  }
+
+  public void testIncrement_distinguishesHeavyHitters() {
+    FrequencySketch sketch = new FrequencySketch(512);
+    Random random = new Random(42);
+    for (int i = 0; i < 512; i++) {
+      sketch.increment(random.nextInt());
+    }
+    for (int i = 0; i < 10; i++) {
+      sketch.increment(7);
+    }
+    assertEquals(10, sketch.frequency(7));
+  }
+
+  public void testReset() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment(42);
+    }
+    sketch.increment(43);
+    sketch.reset();
+    assertEquals(5, sketch.frequency(42));
+    assertEquals(0, sketch.frequency(43));
+    assertThat(sketch.size()).isAtMost(6);
+  }
+
+  public void testReset_onSampleSize() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    int sampleSize = sketch.sampleSize();
+    int hash = 0;
+    boolean reset = false;
+    for (int i = 1; i < 2 * sampleSize; i++) {
+      sketch.increment(hash++);
+      if (sketch.size() != i) {
+        reset = true;
+        break;
+      }
+    }
+    assertTrue(reset);
+    assertThat(sketch.size()).isAtMost(sampleSize / 2);
+  }
+
+  public void testEnsureCapacity_grows() {
+    FrequencySketch sketch = new FrequencySketch(8);
+    int sampleSize = sketch.sampleSize();
+    sketch.increment(42);
+    sketch.ensureCapacity(1024);
+    assertThat(sketch.sampleSize()).isGreaterThan(sampleSize);
+    assertEquals(0, sketch.frequency(42));
+  }
+
+  public void testEnsureCapacity_neverShrinks() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    int sampleSize = sketch.sampleSize();
+    sketch.increment(42);
+    sketch.ensureCapacity(8);
+    assertEquals(sampleSize, sketch.sampleSize());
+    assertEquals(1, sketch.frequency(42));
+  }
+}
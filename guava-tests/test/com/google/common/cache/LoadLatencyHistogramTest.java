@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.LoadLatencyHistogram.bucketIndex;
+import static com.google.common.cache.LoadLatencyHistogram.bucketUpperBound;
+
+import com.google.common.testing.EqualsTester;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit test for {@link LoadLatencyHistogram}. */
+public class LoadLatencyHistogramTest extends TestCase {
+
+  public void testBucketIndex_exactBelowSubBuckets() {
+    for (int i = 0; i < LoadLatencyHistogram.SUB_BUCKETS; i++) {
+      assertEquals(i, bucketIndex(i));
+      assertEquals(i, bucketUpperBound(i));
+    }
+  }
+
+  public void testBucketIndex_contiguous() {
+    for (int index = 0; index < LoadLatencyHistogram.BUCKETS - 1; index++) {
+      long upperBound = bucketUpperBound(index);
+      assertEquals(index, bucketIndex(upperBound));
+      assertEquals(index + 1, bucketIndex(upperBound + 1));
+    }
+    assertEquals(Long.MAX_VALUE, bucketUpperBound(LoadLatencyHistogram.BUCKETS - 1));
+  }
+
+  public void testBucketIndex_relativeError() {
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      long latency = random.nextLong() >>> (1 + random.nextInt(63));
+      long upperBound = bucketUpperBound(bucketIndex(latency));
+      assertTrue(upperBound >= latency);
+      assertTrue(upperBound - latency <= latency / LoadLatencyHistogram.SUB_BUCKETS);
+    }
+  }
+
+  public void testEmpty() {
+    LoadLatencyHistogram empty = LoadLatencyHistogram.empty();
+    assertEquals(0, empty.count());
+    assertEquals(0, empty.valueAtPercentile(99.0));
+    assertSame(empty, LoadLatencyHistogram.of(new long[10]));
+  }
+
+  public void testValueAtPercentile() {
+    long[] counts = new long[LoadLatencyHistogram.BUCKETS];
+    for (int i = 1; i <= 100; i++) {
+      counts[bucketIndex(i * 1000000L)]++;
+    }
+    LoadLatencyHistogram histogram = LoadLatencyHistogram.of(counts);
+    assertEquals(100, histogram.count());
+    assertEquals(bucketUpperBound(bucketIndex(1000000L)), histogram.valueAtPercentile(0.0));
+    assertEquals(bucketUpperBound(bucketIndex(50000000L)), histogram.valueAtPercentile(50.0));
+    assertEquals(bucketUpperBound(bucketIndex(99000000L)), histogram.valueAtPercentile(99.0));
+    assertEquals(bucketUpperBound(bucketIndex(100000000L)), histogram.valueAtPercentile(100.0));
+    try {
+      histogram.valueAtPercentile(100.5);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testPlusMinus() {
+    LoadLatencyHistogram one = LoadLatencyHistogram.of(new long[] {1, 2});
+    LoadLatencyHistogram two = LoadLatencyHistogram.of(new long[] {3, 0, 4});
+    LoadLatencyHistogram sum = one.plus(two);
+    assertEquals(LoadLatencyHistogram.of(new long[] {4, 2, 4}), sum);
+    assertEquals(10, sum.count());
+    assertEquals(two, sum.minus(one));
+    assertEquals(LoadLatencyHistogram.of(new long[] {0, 2}), one.minus(two));
+    assertEquals(LoadLatencyHistogram.empty(), one.minus(sum));
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(LoadLatencyHistogram.empty(), LoadLatencyHistogram.of(new long[] {0}))
+        .addEqualityGroup(
+            LoadLatencyHistogram.of(new long[] {1, 2}),
+            LoadLatencyHistogram.of(new long[] {1, 2, 0}))
+        .addEqualityGroup(LoadLatencyHistogram.of(new long[] {2, 1}))
+        .testEquals();
+  }
+}
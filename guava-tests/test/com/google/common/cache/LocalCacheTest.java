@@ -2121,6 +2121,54 @@ public class LocalCacheTest extends TestCase {
     }
   }
 
+  public void testDrainRecencyQueueOnRead_lockHeldElsewhere() throws InterruptedException {
+    for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
+      LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
+      final Segment<Object, Object> segment = map.segments[0];
+
+      if (segment.recencyQueue != DISCARDING_QUEUE) {
+        Object keyOne = new Object();
+        map.put(keyOne, new Object());
+
+        // While another thread holds the segment lock, reads cannot drain the recency queue, so
+        // they fill it up and the reads past that are dropped.
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread holder =
+            new Thread(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    segment.lock();
+                    try {
+                      locked.countDown();
+                      done.await();
+                    } catch (InterruptedException e) {
+                      throw new AssertionError(e);
+                    } finally {
+                      segment.unlock();
+                    }
+                  }
+                });
+        holder.start();
+        locked.await();
+        try {
+          for (int i = 0; i < ReadBuffer.RING_SIZE * 2; i++) {
+            assertNotNull(map.get(keyOne));
+            assertTrue(segment.recencyQueue.size() <= ReadBuffer.RING_SIZE);
+          }
+          assertEquals(ReadBuffer.RING_SIZE, segment.recencyQueue.size());
+        } finally {
+          done.countDown();
+          holder.join();
+        }
+
+        map.put(new Object(), new Object());
+        assertTrue(segment.recencyQueue.isEmpty());
+      }
+    }
+  }
+
   public void testRecordRead() {
     for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
       LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
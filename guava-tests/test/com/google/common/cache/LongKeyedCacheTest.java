@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.testing.FakeTicker;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheBuilder#buildLongKeyed}. */
+public class LongKeyedCacheTest extends TestCase {
+
+  public void testPutGet() {
+    LongKeyedCache<String> cache = CacheBuilder.newBuilder().recordStats().buildLongKeyed();
+    assertNull(cache.getIfPresent(1));
+    cache.put(1, "a");
+    cache.put(Long.MIN_VALUE, "b");
+    cache.put(1, "c");
+    assertEquals("c", cache.getIfPresent(1));
+    assertEquals("b", cache.getIfPresent(Long.MIN_VALUE));
+    assertEquals(2, cache.size());
+
+    cache.invalidate(1);
+    assertNull(cache.getIfPresent(1));
+    assertEquals(1, cache.size());
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+
+    CacheStats stats = cache.stats();
+    assertEquals(2, stats.hitCount());
+    assertEquals(2, stats.missCount());
+  }
+
+  public void testManyEntries() {
+    LongKeyedCache<Long> cache = CacheBuilder.newBuilder().buildLongKeyed();
+    for (long i = 0; i < 10000; i++) {
+      cache.put(i * 31, i);
+    }
+    for (long i = 0; i < 10000; i += 2) {
+      cache.invalidate(i * 31);
+    }
+    assertEquals(5000, cache.size());
+    for (long i = 0; i < 10000; i++) {
+      assertEquals((i % 2 == 0) ? null : (Long) i, cache.getIfPresent(i * 31));
+    }
+  }
+
+  public void testLoad() throws ExecutionException {
+    final AtomicInteger loads = new AtomicInteger();
+    LongLoadingCache<String> cache =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .buildLongKeyed(
+                new CacheLoader<Long, String>() {
+                  @Override
+                  public String load(Long key) {
+                    loads.incrementAndGet();
+                    return key.toString();
+                  }
+                });
+    assertEquals("1", cache.get(1));
+    assertEquals("1", cache.getUnchecked(1));
+    assertEquals(1, loads.get());
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+  }
+
+  public void testGetWithCallable() throws ExecutionException {
+    LongKeyedCache<String> cache = CacheBuilder.newBuilder().buildLongKeyed();
+    assertEquals(
+        "a",
+        cache.get(
+            1,
+            new Callable<String>() {
+              @Override
+              public String call() {
+                return "a";
+              }
+            }));
+    assertEquals("a", cache.getIfPresent(1));
+  }
+
+  public void testLoadFailures() {
+    LongLoadingCache<String> cache =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .buildLongKeyed(
+                new CacheLoader<Long, String>() {
+                  @Override
+                  public String load(Long key) throws Exception {
+                    switch (key.intValue()) {
+                      case 0:
+                        return null;
+                      case 1:
+                        throw new IOException();
+                      case 2:
+                        throw new IllegalStateException();
+                      default:
+                        throw new AssertionError();
+                    }
+                  }
+                });
+    try {
+      cache.get(0);
+      fail();
+    } catch (InvalidCacheLoadException expected) {
+    } catch (ExecutionException e) {
+      fail();
+    }
+    try {
+      cache.get(1);
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof IOException);
+    }
+    try {
+      cache.getUnchecked(2);
+      fail();
+    } catch (UncheckedExecutionException expected) {
+      assertTrue(expected.getCause() instanceof IllegalStateException);
+    }
+    try {
+      cache.getUnchecked(3);
+      fail();
+    } catch (ExecutionError expected) {
+    }
+    assertEquals(0, cache.size());
+    assertEquals(4, cache.stats().loadExceptionCount());
+  }
+
+  public void testConcurrentLoadsCoalesced() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final LongLoadingCache<String> cache =
+        CacheBuilder.newBuilder()
+            .buildLongKeyed(
+                new CacheLoader<Long, String>() {
+                  @Override
+                  public String load(Long key) throws InterruptedException {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    return key.toString();
+                  }
+                });
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread() {
+            @Override
+            public void run() {
+              assertEquals("7", cache.getUnchecked(7));
+            }
+          };
+      threads[i].start();
+    }
+    started.await();
+    Thread.sleep(10);
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, loads.get());
+  }
+
+  public void testWriteDuringLoad_keepsWrite() {
+    final AtomicReference<LongLoadingCache<String>> cacheReference = new AtomicReference<>();
+    LongLoadingCache<String> cache =
+        CacheBuilder.newBuilder()
+            .buildLongKeyed(
+                new CacheLoader<Long, String>() {
+                  @Override
+                  public String load(Long key) {
+                    if (key == 1) {
+                      cacheReference.get().put(key, "put");
+                    } else {
+                      cacheReference.get().invalidate(key);
+                    }
+                    return "loaded";
+                  }
+                });
+    cacheReference.set(cache);
+
+    // The callers of a load see its value, but the cache keeps a write or removal during it.
+    assertEquals("loaded", cache.getUnchecked(1));
+    assertEquals("put", cache.getIfPresent(1));
+    cache.put(2, "old");
+    cache.invalidate(2);
+    assertEquals("loaded", cache.getUnchecked(2));
+    assertNull(cache.getIfPresent(2));
+  }
+
+  public void testEvictsLeastRecentlyUsed() {
+    // single-threaded, so that no read is lost from the read buffer
+    int maximumSize = 100;
+    LongKeyedCache<Long> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumSize(maximumSize)
+            .recordStats()
+            .buildLongKeyed();
+    final int[] evictions = new int[1];
+    Map<Long, Long> model =
+        new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            if (size() > 100) {
+              evictions[0]++;
+              return true;
+            }
+            return false;
+          }
+        };
+    Random random = new Random(0);
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(300);
+      switch (random.nextInt(4)) {
+        case 0:
+          cache.put(key, key);
+          model.put(key, key);
+          break;
+        case 1:
+          cache.invalidate(key);
+          model.remove(key);
+          break;
+        default:
+          assertEquals(model.get(key), cache.getIfPresent(key));
+      }
+    }
+    assertEquals(model.size(), cache.size());
+    assertEquals(evictions[0], cache.stats().evictionCount());
+  }
+
+  public void testExpireAfterAccess() {
+    FakeTicker ticker = new FakeTicker();
+    LongKeyedCache<String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .expireAfterAccess(1, SECONDS)
+            .recordStats()
+            .buildLongKeyed();
+    cache.put(1, "a");
+    cache.put(2, "b");
+    for (int i = 0; i < 5; i++) {
+      ticker.advance(500, MILLISECONDS);
+      assertEquals("a", cache.getIfPresent(1));
+    }
+    assertNull(cache.getIfPresent(2));
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.stats().evictionCount());
+
+    ticker.advance(1, SECONDS);
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testExpireAfterWrite() {
+    FakeTicker ticker = new FakeTicker();
+    LongKeyedCache<String> cache =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .expireAfterWrite(1, SECONDS)
+            .buildLongKeyed();
+    cache.put(1, "a");
+    ticker.advance(600, MILLISECONDS);
+    cache.put(2, "b");
+    assertEquals("a", cache.getIfPresent(1));
+    ticker.advance(600, MILLISECONDS);
+    assertNull(cache.getIfPresent(1));
+    assertEquals("b", cache.getIfPresent(2));
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+  }
+
+  public void testConcurrentAccess() throws InterruptedException {
+    final LongLoadingCache<Long> cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .buildLongKeyed(
+                new CacheLoader<Long, Long>() {
+                  @Override
+                  public Long load(Long key) {
+                    return -key;
+                  }
+                });
+    final AtomicInteger wrongValues = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final Random random = new Random(t);
+      threads[t] =
+          new Thread() {
+            @Override
+            public void run() {
+              for (int i = 0; i < 20000; i++) {
+                long key = random.nextInt(3000);
+                if (cache.getUnchecked(key) != -key) {
+                  wrongValues.incrementAndGet();
+                }
+                if (i % 7 == 0) {
+                  cache.invalidate(random.nextInt(3000));
+                }
+              }
+            }
+          };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, wrongValues.get());
+    cache.cleanUp();
+    assertTrue(cache.size() <= 1000);
+  }
+
+  public void testBuild_unsupportedOptions() {
+    try {
+      CacheBuilder.newBuilder().weakValues().buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder()
+          .maximumSize(1)
+          .evictionPolicy(EvictionPolicy.TINY_LFU)
+          .buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().refreshAfterWrite(1, SECONDS).buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().onHeapTier(10).buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
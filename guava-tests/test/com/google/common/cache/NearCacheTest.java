@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.NearCache.NearLoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.GcFinalization;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link NearCache}. */
+public class NearCacheTest extends TestCase {
+  private final FakeTicker ticker = new FakeTicker();
+  private final AtomicInteger loads = new AtomicInteger();
+  private LoadingCache<Integer, String> backing;
+  private NearLoadingCache<Integer, String> cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    backing =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    loads.incrementAndGet();
+                    return "value" + key;
+                  }
+                });
+    cache = new NearLoadingCache<>(backing, 16, SECONDS.toNanos(1), ticker);
+  }
+
+  public void testHitsDoNotReachBackingCache() {
+    for (int i = 0; i < 10; i++) {
+      assertEquals("value1", cache.getUnchecked(1));
+    }
+    assertEquals(1, loads.get());
+    assertEquals(1, backing.stats().requestCount());
+    assertEquals(new CacheStats(9, 1, 0, 0, 0, 0), cache.nearStats());
+    assertEquals(backing.stats(), cache.stats());
+  }
+
+  public void testGetIfPresent() {
+    assertNull(cache.getIfPresent(1));
+    backing.put(1, "one");
+    assertEquals("one", cache.getIfPresent(1));
+    assertEquals("one", cache.getIfPresent(1));
+    assertEquals(new CacheStats(1, 2, 0, 0, 0, 0), cache.nearStats());
+  }
+
+  public void testGetWithCallable() throws ExecutionException {
+    Callable<String> loader =
+        new Callable<String>() {
+          @Override
+          public String call() {
+            loads.incrementAndGet();
+            return "called";
+          }
+        };
+    assertEquals("called", cache.get(1, loader));
+    assertEquals("called", cache.get(1, loader));
+    assertEquals(1, loads.get());
+  }
+
+  public void testPutInvalidates() {
+    assertEquals("value1", cache.getUnchecked(1));
+    cache.put(1, "one");
+    assertEquals("one", cache.getUnchecked(1));
+    cache.putAll(ImmutableMap.of(1, "uno"));
+    assertEquals("uno", cache.getUnchecked(1));
+  }
+
+  public void testInvalidate() {
+    assertEquals("value1", cache.getUnchecked(1));
+    assertEquals("value2", cache.getUnchecked(2));
+    cache.invalidate(1);
+    assertNull(cache.getIfPresent(1));
+    assertEquals("value2", cache.getIfPresent(2));
+
+    cache.invalidateAll();
+    assertNull(cache.getIfPresent(2));
+    assertEquals("value1", cache.getUnchecked(1));
+    cache.invalidateAll(ImmutableMap.of(1, "").keySet());
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testRefreshInvalidates() {
+    assertEquals("value1", cache.getUnchecked(1));
+    cache.refresh(1);
+    assertEquals(2, loads.get());
+    assertEquals("value1", cache.getUnchecked(1));
+    assertEquals(2, backing.stats().requestCount());
+  }
+
+  public void testInvalidatesOtherThreads() throws InterruptedException {
+    final AtomicReference<String> read = new AtomicReference<>();
+    Thread reader =
+        new Thread() {
+          @Override
+          public void run() {
+            cache.getUnchecked(1);
+            cache.put(1, "one");
+          }
+        };
+    assertEquals("value1", cache.getUnchecked(1));
+    reader.start();
+    reader.join();
+    assertEquals("one", cache.getUnchecked(1));
+
+    reader =
+        new Thread() {
+          @Override
+          public void run() {
+            read.set(cache.getUnchecked(1));
+          }
+        };
+    cache.put(1, "uno");
+    reader.start();
+    reader.join();
+    assertEquals("uno", read.get());
+  }
+
+  public void testMaximumAge() {
+    assertEquals("value1", cache.getUnchecked(1));
+    // bypasses the near cache, which keeps the value until it is too old
+    backing.put(1, "one");
+    ticker.advance(999, MILLISECONDS);
+    assertEquals("value1", cache.getUnchecked(1));
+    ticker.advance(1, MILLISECONDS);
+    assertEquals("one", cache.getUnchecked(1));
+  }
+
+  public void testCollisions() {
+    cache = new NearLoadingCache<>(backing, 1, SECONDS.toNanos(1), ticker);
+    for (int i = 0; i < 4; i++) {
+      assertEquals("value1", cache.getUnchecked(1));
+      assertEquals("value2", cache.getUnchecked(2));
+    }
+    assertEquals(2, loads.get());
+    assertEquals(new CacheStats(0, 8, 0, 0, 0, 0), cache.nearStats());
+  }
+
+  public void testCreate() {
+    Cache<Integer, String> manual = CacheBuilder.newBuilder().build();
+    manual.put(1, "one");
+    NearCache<Integer, String> near = NearCache.create(manual, 100, 1, SECONDS);
+    assertEquals("one", near.getIfPresent(1));
+    assertEquals("one", near.getIfPresent(1));
+    assertEquals(1, near.nearStats().hitCount());
+  }
+
+  public void testDroppedCacheIsCollectable() {
+    GcFinalization.awaitClear(readThroughNewNearCache());
+  }
+
+  /** Reads through a new near cache on this thread, and returns a weak reference to it. */
+  private WeakReference<NearCache<Integer, String>> readThroughNewNearCache() {
+    NearCache<Integer, String> near = new NearCache<>(backing, 16, SECONDS.toNanos(1), ticker);
+    backing.put(1, "one");
+    assertEquals("one", near.getIfPresent(1));
+    assertEquals("one", near.getIfPresent(1));
+    assertEquals(1, near.nearStats().hitCount());
+    return new WeakReference<>(near);
+  }
+
+  public void testCreate_illegalArguments() {
+    try {
+      NearCache.create(backing, 0, 1, SECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      NearCache.create(backing, 100, 0, SECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.google.common.cache.OffHeapLocalCache.OffHeapLoadingCache;
+import com.google.common.cache.OffHeapLocalCache.OffHeapManualCache;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.SerializableTester;
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#offHeapValues}. */
+public class OffHeapCacheTest extends TestCase {
+
+  public void testPutGet() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    String value = "one";
+    cache.put(1, value);
+    String read = cache.getIfPresent(1);
+    assertEquals(value, read);
+    assertNotSame(value, read);
+    assertNull(cache.getIfPresent(2));
+    assertEquals(1, cache.size());
+    assertEquals(64, allocatedBytes(cache));
+
+    cache.put(1, Strings.repeat("x", 100));
+    assertEquals(Strings.repeat("x", 100), cache.getIfPresent(1));
+    assertEquals(128, allocatedBytes(cache));
+
+    cache.invalidate(1);
+    assertNull(cache.getIfPresent(1));
+    assertEquals(0, allocatedBytes(cache));
+  }
+
+  public void testLoadingCache() throws Exception {
+    final AtomicInteger loads = new AtomicInteger();
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .offHeapValues(STRINGS)
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    loads.incrementAndGet();
+                    return "value" + key;
+                  }
+                });
+
+    assertEquals("value1", cache.get(1));
+    assertEquals("value1", cache.get(1));
+    assertEquals("value2", cache.getUnchecked(2));
+    assertEquals(ImmutableMap.of(1, "value1", 3, "value3"), cache.getAll(ImmutableList.of(1, 3)));
+    assertEquals(3, loads.get());
+
+    CacheStats stats = cache.stats();
+    assertEquals(2, stats.hitCount());
+    assertEquals(3, stats.missCount());
+    assertEquals(3, stats.loadSuccessCount());
+
+    cache.refresh(1);
+    assertEquals(4, loads.get());
+    assertEquals("value1", cache.get(1));
+    assertEquals(3 * 64, allocatedBytes(cache));
+  }
+
+  public void testLoadingCache_nullValue() {
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(STRINGS)
+            .build(TestingCacheLoaders.<Integer, String>constantLoader(null));
+    try {
+      cache.getUnchecked(1);
+      fail();
+    } catch (CacheLoader.InvalidCacheLoadException expected) {
+    }
+    assertEquals(0, allocatedBytes(cache));
+  }
+
+  public void testMaximumWeight() {
+    QueuingRemovalListener<Integer, String> removalListener = queuingRemovalListener();
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(300)
+            .weigher(
+                new Weigher<Integer, String>() {
+                  @Override
+                  public int weigh(Integer key, String value) {
+                    return value.length();
+                  }
+                })
+            .removalListener(removalListener)
+            .offHeapValues(STRINGS)
+            .build();
+
+    cache.put(1, Strings.repeat("a", 100));
+    cache.put(2, Strings.repeat("b", 100));
+    cache.put(3, Strings.repeat("c", 100));
+    assertEquals(3, cache.size());
+    assertTrue(removalListener.isEmpty());
+
+    cache.put(4, Strings.repeat("d", 100));
+    assertEquals(3, cache.size());
+    assertNull(cache.getIfPresent(1));
+    assertEquals(3 * 128, allocatedBytes(cache));
+
+    RemovalNotification<Integer, String> notification = removalListener.poll();
+    assertEquals(Integer.valueOf(1), notification.getKey());
+    assertEquals(Strings.repeat("a", 100), notification.getValue());
+    assertEquals(RemovalCause.SIZE, notification.getCause());
+  }
+
+  public void testRemovalListener_replaced() {
+    QueuingRemovalListener<Integer, String> removalListener = queuingRemovalListener();
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .removalListener(removalListener)
+            .offHeapValues(STRINGS)
+            .build();
+    cache.put(1, "one");
+    cache.put(1, "uno");
+    RemovalNotification<Integer, String> notification = removalListener.poll();
+    assertEquals("one", notification.getValue());
+    assertEquals(RemovalCause.REPLACED, notification.getCause());
+
+    cache.invalidateAll();
+    notification = removalListener.poll();
+    assertEquals("uno", notification.getValue());
+    assertEquals(RemovalCause.EXPLICIT, notification.getCause());
+    assertEquals(0, allocatedBytes(cache));
+  }
+
+  public void testOnHeapTier() {
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder().offHeapValues(STRINGS).onHeapTier(1).build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+
+    // promoted on the second read
+    String first = cache.getIfPresent(1);
+    String second = cache.getIfPresent(1);
+    assertSame(second, cache.getIfPresent(1));
+    assertNotSame(first, second);
+
+    // demoted when another value is promoted
+    cache.getIfPresent(2);
+    String two = cache.getIfPresent(2);
+    assertSame(two, cache.getIfPresent(2));
+    assertNotSame(second, cache.getIfPresent(1));
+
+    // replacing a value does not return the promoted one
+    cache.put(2, "dos");
+    assertEquals("dos", cache.getIfPresent(2));
+  }
+
+  public void testAsMap() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    ConcurrentMap<Integer, String> map = cache.asMap();
+    assertNull(map.put(1, "one"));
+    assertEquals("one", map.put(1, "uno"));
+    assertEquals("uno", map.putIfAbsent(1, "eins"));
+    assertNull(map.putIfAbsent(2, "two"));
+    assertEquals(2, map.size());
+    assertEquals(ImmutableMap.of(1, "uno", 2, "two"), ImmutableMap.copyOf(map));
+    assertThat(map.keySet()).containsExactly(1, 2);
+
+    assertFalse(map.replace(1, "one", "ein"));
+    assertTrue(map.replace(1, "uno", "ein"));
+    assertEquals("ein", map.replace(1, "one"));
+    assertNull(map.replace(3, "three"));
+    assertFalse(map.remove(1, "ein"));
+    assertTrue(map.remove(1, "one"));
+    assertEquals("two", map.remove(2));
+    assertNull(map.remove(2));
+    assertTrue(map.isEmpty());
+    assertEquals(0, allocatedBytes(cache));
+  }
+
+  public void testAsMap_iteratorRemove() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    Iterator<Map.Entry<Integer, String>> iterator = cache.asMap().entrySet().iterator();
+    Map.Entry<Integer, String> entry = iterator.next();
+    iterator.remove();
+    assertNull(cache.getIfPresent(entry.getKey()));
+    assertEquals(1, cache.size());
+    try {
+      iterator.remove();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testMapped() throws Exception {
+    File file = File.createTempFile("OffHeapCacheTest", ".slabs");
+    file.deleteOnExit();
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS, file).build();
+    cache.put(1, "one");
+    assertEquals("one", cache.getIfPresent(1));
+    assertThat(file.length()).isGreaterThan(0L);
+  }
+
+  public void testDeserializeReturnsNull() {
+    CacheSerializer<String> nulls =
+        new CacheSerializer<String>() {
+          @Override
+          public byte[] serialize(String object) {
+            return STRINGS.serialize(object);
+          }
+
+          @Override
+          public String deserialize(byte[] bytes) {
+            return null;
+          }
+        };
+    QueuingRemovalListener<Integer, String> listener = queuingRemovalListener();
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder().offHeapValues(nulls).removalListener(listener).build();
+    cache.put(1, "one");
+    try {
+      cache.getIfPresent(1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      cache.asMap().put(1, "uno");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+
+    // neither the rejected value nor the removed one is leaked
+    assertEquals(64, allocatedBytes(cache));
+    cache.invalidate(1);
+    assertEquals(0, allocatedBytes(cache));
+    assertTrue(listener.isEmpty());
+  }
+
+  public void testStats_retriedReadCountedOnce() throws Exception {
+    final AtomicReference<Runnable> onTickerRead = new AtomicReference<>();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            Runnable action = onTickerRead.getAndSet(null);
+            if (action != null) {
+              action.run();
+            }
+            return 0;
+          }
+        };
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder().ticker(ticker).recordStats().offHeapValues(STRINGS).build();
+    final OffHeapLocalCache<Integer, String> offHeapCache =
+        ((OffHeapManualCache<Integer, String>) cache).offHeapCache;
+    cache.put(1, "one");
+
+    // the value is freed after it is looked up, and replaced before the read is retried
+    onTickerRead.set(
+        () -> {
+          offHeapCache.store.free(offHeapCache.localCache.get(1).handle);
+          onTickerRead.set(() -> offHeapCache.localCache.put(1, offHeapCache.store(1, "uno")));
+        });
+    assertEquals("uno", cache.getIfPresent(1));
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(0, stats.missCount());
+
+    // the value is freed after it is looked up, and removed before the read is retried
+    onTickerRead.set(
+        () -> {
+          offHeapCache.store.free(offHeapCache.localCache.get(1).handle);
+          onTickerRead.set(() -> offHeapCache.localCache.remove(1));
+        });
+    assertEquals("eins", cache.get(1, () -> "eins"));
+    stats = cache.stats();
+    assertEquals(2, stats.hitCount());
+    assertEquals(0, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals("eins", cache.getIfPresent(1));
+    assertEquals(64, allocatedBytes(cache));
+  }
+
+  public void testSerialization() {
+    Cache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(1, SECONDS)
+            .offHeapValues(STRINGS)
+            .onHeapTier(5)
+            .build();
+    cache.put(1, "one");
+    Cache<Integer, String> copy = SerializableTester.reserialize(cache);
+    assertTrue(copy instanceof OffHeapManualCache);
+    assertNull(copy.getIfPresent(1));
+    OffHeapLocalCache<Integer, String> offHeapCopy =
+        ((OffHeapManualCache<Integer, String>) copy).offHeapCache;
+    assertEquals(10, offHeapCopy.localCache.maxWeight);
+    assertEquals(SECONDS.toNanos(1), offHeapCopy.localCache.expireAfterWriteNanos);
+    assertNotNull(offHeapCopy.onHeapTier);
+    copy.put(2, "two");
+    assertEquals("two", copy.getIfPresent(2));
+
+    LoadingCache<Integer, String> loadingCache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(STRINGS)
+            .build(CacheLoader.from(Functions.toStringFunction()));
+    LoadingCache<Integer, String> loadingCopy = SerializableTester.reserialize(loadingCache);
+    assertTrue(loadingCopy instanceof OffHeapLoadingCache);
+    assertEquals("2", loadingCopy.getUnchecked(2));
+  }
+
+  public void testBuild_incompatibleOptions() {
+    try {
+      CacheBuilder.newBuilder().weakValues().offHeapValues(STRINGS).build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().onHeapTier(10).build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().offHeapValues(STRINGS).offHeapValues(STRINGS);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static long allocatedBytes(Cache<?, ?> cache) {
+    return ((OffHeapManualCache<?, ?>) cache).offHeapCache.store.allocatedBytes();
+  }
+
+  static final CacheSerializer<String> STRINGS = Utf8Serializer.INSTANCE;
+
+  private enum Utf8Serializer implements CacheSerializer<String> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(String object) {
+      return object.getBytes(UTF_8);
+    }
+
+    @Override
+    public String deserialize(byte[] bytes) {
+      return new String(bytes, UTF_8);
+    }
+  }
+}
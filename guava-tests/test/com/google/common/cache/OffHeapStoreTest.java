@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.OffHeapStore.SLAB_SIZE;
+
+import com.google.common.cache.OffHeapStore.Handle;
+import com.google.common.cache.OffHeapStore.Slab;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link OffHeapStore}. */
+public class OffHeapStoreTest extends TestCase {
+
+  public void testStoreLoad() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    for (int length : new int[] {0, 1, 63, 64, 65, 1000, SLAB_SIZE - 1, SLAB_SIZE, SLAB_SIZE + 1}) {
+      byte[] bytes = randomBytes(length);
+      Handle handle = store.store(bytes);
+      assertTrue(Arrays.equals(bytes, store.load(handle)));
+    }
+  }
+
+  public void testStoreLoad_manyValues() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    byte[][] values = new byte[5000][];
+    Handle[] handles = new Handle[values.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = randomBytes(i);
+      handles[i] = store.store(values[i]);
+    }
+    for (int i = 0; i < values.length; i++) {
+      assertTrue(Arrays.equals(values[i], store.load(handles[i])));
+    }
+  }
+
+  public void testFree() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    Handle handle = store.store(randomBytes(100));
+    assertEquals(128, store.allocatedBytes());
+
+    store.free(handle);
+    assertNull(store.load(handle));
+    assertEquals(0, store.allocatedBytes());
+
+    // freeing twice has no effect
+    store.free(handle);
+    assertEquals(0, store.allocatedBytes());
+  }
+
+  public void testFree_chunkIsReused() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    Handle first = store.store(randomBytes(100));
+    store.free(first);
+
+    byte[] bytes = randomBytes(120);
+    Handle second = store.store(bytes);
+    assertSame(first.slab, second.slab);
+    assertEquals(first.chunk, second.chunk);
+
+    // the stale handle does not see the new value
+    assertNull(store.load(first));
+    assertTrue(Arrays.equals(bytes, store.load(second)));
+    store.free(first);
+    assertTrue(Arrays.equals(bytes, store.load(second)));
+  }
+
+  public void testFree_largeValue() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    Handle handle = store.store(randomBytes(SLAB_SIZE + 1));
+    assertEquals(SLAB_SIZE + 1, store.allocatedBytes());
+    store.free(handle);
+    assertNull(store.load(handle));
+    assertEquals(0, store.allocatedBytes());
+  }
+
+  public void testFree_emptySlabIsReused() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    Handle first = store.store(randomBytes(SLAB_SIZE));
+    Handle second = store.store(randomBytes(SLAB_SIZE));
+    assertNotSame(first.slab, second.slab);
+
+    // the size class keeps one empty slab, and returns the other to the store
+    store.free(first);
+    assertTrue(store.emptySlabs.isEmpty());
+    store.free(second);
+    assertEquals(1, store.emptySlabs.size());
+
+    byte[] bytes = randomBytes(100);
+    Handle third = store.store(bytes);
+    assertSame(second.slab.buffer, third.slab.buffer);
+    assertTrue(store.emptySlabs.isEmpty());
+    assertNull(store.load(second));
+    assertTrue(Arrays.equals(bytes, store.load(third)));
+  }
+
+  public void testFree_partlyUsedSlabIsKept() {
+    OffHeapStore store = new OffHeapStore(OffHeapStore.DIRECT);
+    Handle[] handles = new Handle[SLAB_SIZE / 64 + 1];
+    for (int i = 0; i < handles.length; i++) {
+      handles[i] = store.store(randomBytes(64));
+    }
+    Slab firstSlab = handles[0].slab;
+    Slab secondSlab = handles[handles.length - 1].slab;
+    assertNotSame(firstSlab, secondSlab);
+
+    for (int i = 1; i < handles.length - 1; i++) {
+      store.free(handles[i]);
+    }
+    assertTrue(store.emptySlabs.isEmpty());
+    store.free(handles[0]);
+    assertEquals(1, store.emptySlabs.size());
+    assertSame(firstSlab.buffer, store.emptySlabs.peek());
+    assertTrue(Arrays.equals(randomBytes(64), store.load(handles[handles.length - 1])));
+  }
+
+  public void testMapped() throws Exception {
+    File file = File.createTempFile("OffHeapStoreTest", ".slabs");
+    file.deleteOnExit();
+    OffHeapStore store = new OffHeapStore(OffHeapStore.mapped(file));
+    byte[] small = randomBytes(10);
+    byte[] large = randomBytes(SLAB_SIZE);
+    Handle smallHandle = store.store(small);
+    Handle largeHandle = store.store(large);
+    assertTrue(Arrays.equals(small, store.load(smallHandle)));
+    assertTrue(Arrays.equals(large, store.load(largeHandle)));
+    assertEquals(2L * SLAB_SIZE, file.length());
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.ReadBuffer.RING_SIZE;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.LocalCacheTest.DummyEntry;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link ReadBuffer}. */
+public class ReadBufferTest extends TestCase {
+
+  public void testEmpty() {
+    ReadBuffer<Object, Object> buffer = new ReadBuffer<>();
+    assertTrue(buffer.isEmpty());
+    assertEquals(0, buffer.size());
+    assertNull(buffer.peek());
+    assertNull(buffer.poll());
+  }
+
+  public void testOfferPoll_preservesOrderOfOneThread() {
+    ReadBuffer<Object, Object> buffer = new ReadBuffer<>();
+    List<ReferenceEntry<Object, Object>> entries = createEntries(10);
+    for (ReferenceEntry<Object, Object> entry : entries) {
+      assertTrue(buffer.offer(entry));
+    }
+    assertEquals(10, buffer.size());
+    assertSame(entries.get(0), buffer.peek());
+    assertEquals(entries, ImmutableList.copyOf(buffer));
+
+    List<ReferenceEntry<Object, Object>> polled = new ArrayList<>();
+    ReferenceEntry<Object, Object> e;
+    while ((e = buffer.poll()) != null) {
+      polled.add(e);
+    }
+    assertEquals(entries, polled);
+    assertTrue(buffer.isEmpty());
+  }
+
+  public void testOffer_dropsWhenFull() {
+    ReadBuffer<Object, Object> buffer = new ReadBuffer<>(1);
+    List<ReferenceEntry<Object, Object>> entries = createEntries(RING_SIZE + 1);
+    for (int i = 0; i < RING_SIZE; i++) {
+      assertTrue(buffer.offer(entries.get(i)));
+    }
+    assertFalse(buffer.offer(entries.get(RING_SIZE)));
+    assertEquals(RING_SIZE, buffer.size());
+
+    // draining makes room again, and the ring wraps around
+    assertSame(entries.get(0), buffer.poll());
+    assertTrue(buffer.offer(entries.get(RING_SIZE)));
+    assertEquals(entries.subList(1, RING_SIZE + 1), ImmutableList.copyOf(buffer));
+  }
+
+  public void testOffer_concurrent() throws Exception {
+    final ReadBuffer<Object, Object> buffer = new ReadBuffer<>(4);
+    final List<ReferenceEntry<Object, Object>> entries = createEntries(RING_SIZE);
+    final AtomicInteger recorded = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    int nThreads = 8;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < nThreads; i++) {
+      Thread thread =
+          new Thread() {
+            @Override
+            public void run() {
+              try {
+                start.await();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+              for (ReferenceEntry<Object, Object> entry : entries) {
+                if (buffer.offer(entry)) {
+                  recorded.incrementAndGet();
+                }
+              }
+            }
+          };
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every recorded read is drained, and no more than the rings can hold were recorded
+    int drained = 0;
+    ReferenceEntry<Object, Object> e;
+    while ((e = buffer.poll()) != null) {
+      assertThat(entries).contains(e);
+      drained++;
+    }
+    assertEquals(recorded.get(), drained);
+    assertThat(drained).isAtMost(4 * RING_SIZE);
+    assertTrue(buffer.isEmpty());
+  }
+
+  private static List<ReferenceEntry<Object, Object>> createEntries(int count) {
+    List<ReferenceEntry<Object, Object>> entries = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      entries.add(DummyEntry.<Object, Object>create(i, i, null));
+    }
+    return entries;
+  }
+}
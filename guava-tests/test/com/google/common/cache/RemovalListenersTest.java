@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link RemovalListeners}. */
+public class RemovalListenersTest extends TestCase {
+
+  public void testBatching() {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener batches = new RecordingListener();
+    RemovalListener<Integer, Integer> listener =
+        RemovalListeners.batching(batches, executor, 4, 100);
+    for (int i = 0; i < 10; i++) {
+      listener.onRemoval(notification(i));
+    }
+    assertEquals(1, executor.tasks.size());
+    assertEquals(ImmutableList.of(), batches.keys);
+
+    executor.runAll();
+    assertEquals(
+        ImmutableList.of(
+            ImmutableList.of(0, 1, 2, 3), ImmutableList.of(4, 5, 6, 7), ImmutableList.of(8, 9)),
+        batches.keys);
+
+    listener.onRemoval(notification(10));
+    assertEquals(1, executor.tasks.size());
+    executor.runAll();
+    assertEquals(ImmutableList.of(10), batches.keys.get(3));
+  }
+
+  public void testBatching_backPressure() {
+    ManualExecutor executor = new ManualExecutor();
+    RecordingListener batches = new RecordingListener();
+    RemovalListener<Integer, Integer> listener = RemovalListeners.batching(batches, executor, 2, 3);
+    for (int i = 0; i < 5; i++) {
+      listener.onRemoval(notification(i));
+    }
+    // the fourth notification found the queue full, so its thread delivered a batch
+    assertEquals(ImmutableList.of(ImmutableList.of(0, 1)), batches.keys);
+
+    executor.runAll();
+    assertEquals(
+        ImmutableList.of(ImmutableList.of(0, 1), ImmutableList.of(2, 3), ImmutableList.of(4)),
+        batches.keys);
+  }
+
+  public void testBatching_backPressureWaitsForDelivery() throws InterruptedException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CountDownLatch entered = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final AtomicInteger active = new AtomicInteger();
+      final AtomicInteger maximumActive = new AtomicInteger();
+      final RecordingListener batches = new RecordingListener();
+      final RemovalListener<Integer, Integer> listener =
+          RemovalListeners.batching(
+              new BatchRemovalListener<Integer, Integer>() {
+                @Override
+                public void onRemoval(List<RemovalNotification<Integer, Integer>> notifications) {
+                  int concurrent = active.incrementAndGet();
+                  maximumActive.set(Math.max(maximumActive.get(), concurrent));
+                  try {
+                    entered.countDown();
+                    release.await();
+                    batches.onRemoval(notifications);
+                  } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                  } finally {
+                    active.decrementAndGet();
+                  }
+                }
+              },
+              executor,
+              1,
+              1);
+      listener.onRemoval(notification(0));
+      assertTrue(entered.await(10, SECONDS));
+      listener.onRemoval(notification(1));
+      // the queue is full, so this thread delivers a batch, once the task's delivery is done
+      Thread remover =
+          new Thread() {
+            @Override
+            public void run() {
+              listener.onRemoval(notification(2));
+            }
+          };
+      remover.start();
+      while (remover.getState() != Thread.State.WAITING && maximumActive.get() == 1) {
+        Thread.yield();
+      }
+      assertEquals(1, maximumActive.get());
+      release.countDown();
+      remover.join();
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, SECONDS));
+      assertEquals(1, maximumActive.get());
+      assertEquals(
+          ImmutableList.of(ImmutableList.of(0), ImmutableList.of(1), ImmutableList.of(2)),
+          batches.keys);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testBatching_rejected() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    RecordingListener batches = new RecordingListener();
+    RemovalListener<Integer, Integer> listener =
+        RemovalListeners.batching(batches, executor, 4, 100);
+    listener.onRemoval(notification(0));
+    listener.onRemoval(notification(1));
+    assertEquals(ImmutableList.of(ImmutableList.of(0), ImmutableList.of(1)), batches.keys);
+  }
+
+  public void testBatching_listenerThrows() {
+    final List<Integer> delivered = new CopyOnWriteArrayList<>();
+    RemovalListener<Integer, Integer> listener =
+        RemovalListeners.batching(
+            new BatchRemovalListener<Integer, Integer>() {
+              @Override
+              public void onRemoval(List<RemovalNotification<Integer, Integer>> notifications) {
+                delivered.add(notifications.get(0).getKey());
+                throw new IllegalStateException();
+              }
+            },
+            MoreExecutors.directExecutor(),
+            4,
+            100);
+    listener.onRemoval(notification(0));
+    listener.onRemoval(notification(1));
+    assertEquals(ImmutableList.of(0, 1), delivered);
+  }
+
+  public void testBatching_cache() throws InterruptedException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CountDownLatch evicted = new CountDownLatch(90);
+      Cache<Integer, Integer> cache =
+          CacheBuilder.newBuilder()
+              .concurrencyLevel(1)
+              .maximumSize(10)
+              .removalListener(
+                  RemovalListeners.batching(
+                      new BatchRemovalListener<Integer, Integer>() {
+                        @Override
+                        public void onRemoval(
+                            List<RemovalNotification<Integer, Integer>> notifications) {
+                          for (RemovalNotification<Integer, Integer> notification :
+                              notifications) {
+                            assertEquals(RemovalCause.SIZE, notification.getCause());
+                            evicted.countDown();
+                          }
+                        }
+                      },
+                      executor,
+                      16,
+                      1000))
+              .build();
+      for (int i = 0; i < 100; i++) {
+        cache.put(i, i);
+      }
+      assertTrue(evicted.await(10, SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testBatching_illegalArguments() {
+    RecordingListener batches = new RecordingListener();
+    Executor executor = MoreExecutors.directExecutor();
+    try {
+      RemovalListeners.batching(batches, executor, 0, 100);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      RemovalListeners.batching(batches, executor, 4, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static RemovalNotification<Integer, Integer> notification(int key) {
+    return RemovalNotification.create(key, key, RemovalCause.EXPLICIT);
+  }
+
+  /** Records the keys of each batch it receives. */
+  private static final class RecordingListener implements BatchRemovalListener<Integer, Integer> {
+    final List<List<Integer>> keys = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onRemoval(List<RemovalNotification<Integer, Integer>> notifications) {
+      ImmutableList.Builder<Integer> batch = ImmutableList.builder();
+      for (RemovalNotification<Integer, Integer> notification : notifications) {
+        batch.add(notification.getKey());
+      }
+      keys.add(batch.build());
+    }
+  }
+
+  /** An executor that runs tasks only when asked to. */
+  private static final class ManualExecutor implements Executor {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+  }
+}
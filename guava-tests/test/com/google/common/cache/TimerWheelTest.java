@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCacheTest.DummyEntry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link TimerWheel}. */
+public class TimerWheelTest extends TestCase {
+
+  public void testEmpty() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    assertTrue(wheel.isEmpty());
+    assertEquals(0, wheel.size());
+    assertNull(wheel.peek());
+    assertNull(wheel.poll());
+    wheel.advance(DAYS.toNanos(365));
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testOffer_alreadyExpired() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(SECONDS.toNanos(10));
+    DummyEntry<Object, Object> entry = entryExpiringAt(SECONDS.toNanos(5));
+    wheel.add(entry);
+    assertSame(entry, wheel.peek());
+    assertSame(entry, wheel.poll());
+    assertTrue(wheel.isEmpty());
+    assertFalse(wheel.contains(entry));
+  }
+
+  public void testAdvance_expiresDueEntries() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    DummyEntry<Object, Object> soon = entryExpiringAt(MILLISECONDS.toNanos(500));
+    DummyEntry<Object, Object> later = entryExpiringAt(SECONDS.toNanos(30));
+    wheel.add(soon);
+    wheel.add(later);
+    assertEquals(2, wheel.size());
+    assertNull(wheel.peek());
+
+    wheel.advance(SECONDS.toNanos(2));
+    assertSame(soon, wheel.poll());
+    assertNull(wheel.peek());
+    assertTrue(wheel.contains(later));
+
+    wheel.advance(SECONDS.toNanos(40));
+    assertSame(later, wheel.poll());
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testAdvance_withinBucket() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    DummyEntry<Object, Object> entry = entryExpiringAt(MILLISECONDS.toNanos(1500));
+    wheel.add(entry);
+    // the entry is only reconsidered once time moves on to a later bucket
+    wheel.advance(MILLISECONDS.toNanos(1600));
+    assertSame(entry, wheel.peek());
+  }
+
+  public void testAdvance_cascades() {
+    long[] durations = {
+      SECONDS.toNanos(1),
+      SECONDS.toNanos(90),
+      MINUTES.toNanos(45),
+      HOURS.toNanos(5),
+      DAYS.toNanos(3),
+      DAYS.toNanos(40),
+      DAYS.toNanos(3650),
+    };
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    List<DummyEntry<Object, Object>> entries = new ArrayList<>();
+    for (long duration : durations) {
+      DummyEntry<Object, Object> entry = entryExpiringAt(duration);
+      entries.add(entry);
+      wheel.add(entry);
+    }
+
+    // every entry must expire within one bucket of the finest level of its deadline
+    long step = HOURS.toNanos(1);
+    long now = 0;
+    int next = 0;
+    while (next < entries.size()) {
+      now += step;
+      wheel.advance(now);
+      ReferenceEntry<Object, Object> e;
+      while ((e = wheel.poll()) != null) {
+        assertTrue(entries.contains(e));
+        assertThat(e.getAccessTime()).isAtMost(now);
+        assertThat(now - e.getAccessTime()).isLessThan(step);
+        next++;
+      }
+    }
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testAdvance_randomized() {
+    Random random = new Random(42);
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    List<DummyEntry<Object, Object>> entries = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      long deadline = (long) (random.nextDouble() * DAYS.toNanos(30));
+      DummyEntry<Object, Object> entry = entryExpiringAt(deadline);
+      entries.add(entry);
+      wheel.add(entry);
+    }
+    assertEquals(entries.size(), wheel.size());
+
+    int expired = 0;
+    long now = 0;
+    while (now < DAYS.toNanos(31)) {
+      now += (long) (random.nextDouble() * HOURS.toNanos(2));
+      wheel.advance(now);
+      ReferenceEntry<Object, Object> e;
+      while ((e = wheel.poll()) != null) {
+        assertThat(e.getAccessTime()).isAtMost(now);
+        expired++;
+      }
+      for (ReferenceEntry<Object, Object> remaining : wheel) {
+        assertThat(remaining.getAccessTime()).isGreaterThan(now - SECONDS.toNanos(2));
+      }
+    }
+    assertEquals(entries.size(), expired);
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testAdvance_negativeTime() {
+    long start = -SECONDS.toNanos(10);
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(start);
+    DummyEntry<Object, Object> entry = entryExpiringAt(start + SECONDS.toNanos(20));
+    wheel.add(entry);
+    wheel.advance(0);
+    assertNull(wheel.peek());
+    wheel.advance(SECONDS.toNanos(12));
+    assertSame(entry, wheel.poll());
+  }
+
+  public void testRemove() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    DummyEntry<Object, Object> entry = entryExpiringAt(SECONDS.toNanos(5));
+    wheel.add(entry);
+    assertTrue(wheel.remove(entry));
+    assertFalse(wheel.contains(entry));
+    assertFalse(wheel.remove(entry));
+    wheel.advance(SECONDS.toNanos(10));
+    assertNull(wheel.peek());
+  }
+
+  public void testOffer_reschedules() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    DummyEntry<Object, Object> entry = entryExpiringAt(SECONDS.toNanos(5));
+    wheel.add(entry);
+    entry.setAccessTime(HOURS.toNanos(5));
+    wheel.add(entry);
+    assertEquals(1, wheel.size());
+    wheel.advance(SECONDS.toNanos(10));
+    assertNull(wheel.peek());
+    wheel.advance(HOURS.toNanos(6));
+    assertSame(entry, wheel.peek());
+  }
+
+  public void testClear() {
+    TimerWheel<Object, Object> wheel = new TimerWheel<>(0);
+    DummyEntry<Object, Object> one = entryExpiringAt(SECONDS.toNanos(5));
+    DummyEntry<Object, Object> two = entryExpiringAt(DAYS.toNanos(5));
+    DummyEntry<Object, Object> three = entryExpiringAt(-1);
+    wheel.addAll(ImmutableList.of(one, two, three));
+    assertEquals(ImmutableSet.of(one, two, three), ImmutableSet.copyOf(wheel));
+    wheel.clear();
+    assertTrue(wheel.isEmpty());
+    assertFalse(wheel.contains(one));
+    assertFalse(wheel.contains(two));
+    assertFalse(wheel.contains(three));
+  }
+
+  private static DummyEntry<Object, Object> entryExpiringAt(long time) {
+    DummyEntry<Object, Object> entry = DummyEntry.create(new Object(), 0, null);
+    entry.setAccessTime(time);
+    return entry;
+  }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Functions;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.cache.UnsegmentedLocalCache.UnsegmentedLoadingCache;
+import com.google.common.cache.UnsegmentedLocalCache.UnsegmentedManualCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.SerializableTester;
+import com.google.common.util.concurrent.Callables;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/** Tests relating to {@link CacheBuilder#unsegmented}. */
+public class UnsegmentedCacheTest extends TestCase {
+
+  public void testMaximumSize_exact() {
+    QueuingRemovalListener<Integer, Integer> listener = queuingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .concurrencyLevel(16)
+            .maximumSize(10)
+            .removalListener(listener)
+            .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+      assertTrue(cache.size() <= 10);
+    }
+    assertEquals(10, cache.size());
+    assertEquals(90, listener.size());
+    for (RemovalNotification<Integer, Integer> notification : listener) {
+      assertEquals(RemovalCause.SIZE, notification.getCause());
+      assertTrue(notification.getKey() < 90);
+    }
+  }
+
+  public void testMaximumSize_leastRecentlyUsed() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().unsegmented().maximumSize(3).build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.put(3, 3);
+    assertEquals((Integer) 1, cache.getIfPresent(1));
+    cache.cleanUp();
+    cache.put(4, 4);
+    assertEquals(ImmutableMap.of(1, 1, 3, 3, 4, 4), ImmutableMap.copyOf(cache.asMap()));
+  }
+
+  public void testMaximumWeight() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .maximumWeight(10)
+            .weigher(
+                new Weigher<Integer, Integer>() {
+                  @Override
+                  public int weigh(Integer key, Integer value) {
+                    return value;
+                  }
+                })
+            .build();
+    cache.put(1, 4);
+    cache.put(2, 4);
+    cache.put(3, 4);
+    assertEquals(ImmutableMap.of(2, 4, 3, 4), ImmutableMap.copyOf(cache.asMap()));
+    cache.put(4, 11);
+    assertEquals(ImmutableMap.of(2, 4, 3, 4), ImmutableMap.copyOf(cache.asMap()));
+  }
+
+  public void testExpireAfterWrite() {
+    FakeTicker ticker = new FakeTicker();
+    QueuingRemovalListener<Integer, Integer> listener = queuingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .expireAfterWrite(1, SECONDS)
+            .ticker(ticker)
+            .removalListener(listener)
+            .build();
+    cache.put(1, 1);
+    ticker.advance(999, MILLISECONDS);
+    cache.put(2, 2);
+    assertEquals((Integer) 1, cache.getIfPresent(1));
+    ticker.advance(1, MILLISECONDS);
+    assertNull(cache.getIfPresent(1));
+    assertEquals((Integer) 2, cache.getIfPresent(2));
+    assertEquals(ImmutableMap.of(2, 2), ImmutableMap.copyOf(cache.asMap()));
+
+    ticker.advance(1, SECONDS);
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+    assertEquals(2, listener.size());
+    for (RemovalNotification<Integer, Integer> notification : listener) {
+      assertEquals(RemovalCause.EXPIRED, notification.getCause());
+    }
+  }
+
+  public void testExpireAfterAccess() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .expireAfterAccess(1, SECONDS)
+            .ticker(ticker)
+            .build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    for (int i = 0; i < 3; i++) {
+      ticker.advance(600, MILLISECONDS);
+      assertEquals((Integer) 1, cache.getIfPresent(1));
+    }
+    cache.cleanUp();
+    assertEquals(ImmutableMap.of(1, 1), ImmutableMap.copyOf(cache.asMap()));
+  }
+
+  public void testRemovalCauses() {
+    QueuingRemovalListener<Integer, Integer> listener = queuingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().unsegmented().removalListener(listener).build();
+    cache.put(1, 1);
+    cache.put(1, 2);
+    cache.invalidate(1);
+    cache.put(2, 2);
+    cache.invalidateAll();
+    assertEquals(
+        ImmutableList.of(RemovalCause.REPLACED, RemovalCause.EXPLICIT, RemovalCause.EXPLICIT),
+        causes(listener));
+  }
+
+  public void testLoadingCache() throws ExecutionException {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .recordStats()
+            .build(TestingCacheLoaders.<Integer>identityLoader());
+    assertEquals((Integer) 1, cache.get(1));
+    assertEquals((Integer) 1, cache.getUnchecked(1));
+    assertEquals(ImmutableMap.of(1, 1, 2, 2), cache.getAll(ImmutableList.of(1, 2)));
+    CacheStats stats = cache.stats();
+    assertEquals(2, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(2, stats.loadSuccessCount());
+  }
+
+  public void testLoadingCache_concurrentLoadsOfAKey() throws InterruptedException {
+    final AtomicInteger loads = new AtomicInteger();
+    final LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) throws InterruptedException {
+                    loads.incrementAndGet();
+                    Thread.sleep(10);
+                    return key;
+                  }
+                });
+    final CountDownLatch done = new CountDownLatch(8);
+    for (int i = 0; i < 8; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          cache.getUnchecked(1);
+          done.countDown();
+        }
+      }.start();
+    }
+    assertTrue(done.await(10, SECONDS));
+    assertEquals(1, loads.get());
+  }
+
+  public void testLoadingCache_loadOfAnotherKeyDuringLoad() {
+    final AtomicReference<LoadingCache<Integer, Integer>> cacheRef = new AtomicReference<>();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    // 1 and 17 share a bin of the initial hash table
+                    return (key == 1) ? cacheRef.get().getUnchecked(17) + 1 : key;
+                  }
+                });
+    cacheRef.set(cache);
+    assertEquals((Integer) 18, cache.getUnchecked(1));
+    assertEquals((Integer) 17, cache.getIfPresent(17));
+  }
+
+  public void testLoadingCache_writeDuringLoadIsKept() {
+    final AtomicReference<LoadingCache<Integer, Integer>> cacheRef = new AtomicReference<>();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    cacheRef.get().put(key, -key);
+                    return key;
+                  }
+                });
+    cacheRef.set(cache);
+    assertEquals((Integer) 1, cache.getUnchecked(1));
+    assertEquals((Integer) (-1), cache.getIfPresent(1));
+  }
+
+  public void testGetAll_loadAll() throws ExecutionException {
+    final AtomicInteger loadAllCalls = new AtomicInteger();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .recordStats()
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    throw new AssertionError();
+                  }
+
+                  @Override
+                  public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+                    loadAllCalls.incrementAndGet();
+                    Map<Integer, Integer> result = new HashMap<>();
+                    for (Integer key : keys) {
+                      result.put(key, -key);
+                    }
+                    return result;
+                  }
+                });
+    cache.put(1, 1);
+    assertEquals(
+        ImmutableMap.of(1, 1, 2, -2, 3, -3), cache.getAll(ImmutableList.of(1, 2, 3, 2)));
+    assertEquals(1, loadAllCalls.get());
+    assertEquals((Integer) (-3), cache.getIfPresent(3));
+    CacheStats stats = cache.stats();
+    assertEquals(2, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+  }
+
+  public void testLoadingCache_exceptions() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .recordStats()
+            .build(TestingCacheLoaders.<Integer, Integer>exceptionLoader(new IOException()));
+    try {
+      cache.get(1);
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof IOException);
+    }
+    try {
+      cache.getUnchecked(1);
+      fail();
+    } catch (UncheckedExecutionException expected) {
+      assertTrue(expected.getCause() instanceof IOException);
+    }
+    assertEquals(2, cache.stats().loadExceptionCount());
+    assertEquals(0, cache.size());
+
+    LoadingCache<Integer, Integer> nulls =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .build(TestingCacheLoaders.<Integer, Integer>constantLoader(null));
+    try {
+      nulls.getUnchecked(1);
+      fail();
+    } catch (InvalidCacheLoadException expected) {
+    }
+  }
+
+  public void testGetWithCallable() throws ExecutionException {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder().unsegmented().build();
+    cache.put(1, 1);
+    assertEquals((Integer) 1, cache.get(1, Callables.returning(2)));
+    assertEquals((Integer) 3, cache.get(3, Callables.returning(3)));
+    assertEquals((Integer) 3, cache.getIfPresent(3));
+  }
+
+  public void testRefresh() {
+    IdentityLoaderWithCount loader = new IdentityLoaderWithCount();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder().unsegmented().build(loader);
+    cache.refresh(1);
+    assertEquals((Integer) 1, cache.getIfPresent(1));
+    cache.refresh(1);
+    assertEquals(2, loader.count.get());
+  }
+
+  public void testAsMap() {
+    QueuingRemovalListener<Integer, Integer> listener = queuingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().unsegmented().removalListener(listener).build();
+    ConcurrentMap<Integer, Integer> map = cache.asMap();
+    assertNull(map.putIfAbsent(1, 1));
+    assertEquals((Integer) 1, map.putIfAbsent(1, 2));
+    assertEquals((Integer) 1, map.replace(1, 3));
+    assertFalse(map.replace(1, 1, 4));
+    assertTrue(map.replace(1, 3, 4));
+    assertNull(map.replace(2, 2));
+    assertFalse(map.remove(1, 3));
+    assertTrue(map.containsKey(1));
+    assertEquals(1, map.size());
+
+    map.put(2, 2);
+    // the hash table iterates over small integer keys in order
+    Iterator<Map.Entry<Integer, Integer>> entries = map.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Integer, Integer> entry = entries.next();
+      if (entry.getKey() == 1) {
+        entry.setValue(5);
+      } else {
+        entries.remove();
+      }
+    }
+    assertEquals(ImmutableMap.of(1, 5), ImmutableMap.copyOf(map));
+    assertTrue(map.remove(1, 5));
+    assertTrue(map.isEmpty());
+    assertEquals(
+        ImmutableList.of(
+            RemovalCause.REPLACED,
+            RemovalCause.REPLACED,
+            RemovalCause.REPLACED,
+            RemovalCause.EXPLICIT,
+            RemovalCause.EXPLICIT),
+        causes(listener));
+  }
+
+  public void testConcurrentWrites() throws InterruptedException {
+    final Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().unsegmented().maximumSize(100).build();
+    final CountDownLatch done = new CountDownLatch(4);
+    for (int t = 0; t < 4; t++) {
+      final int offset = t * 10000;
+      new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            cache.put(offset + i, i);
+            cache.getIfPresent(offset + i / 2);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    assertTrue(done.await(10, SECONDS));
+    cache.cleanUp();
+    assertEquals(100, cache.size());
+    UnsegmentedLocalCache<Integer, Integer> localCache =
+        ((UnsegmentedManualCache<Integer, Integer>) cache).localCache;
+    assertEquals(100, localCache.totalWeight);
+    assertTrue(localCache.writeBuffer.isEmpty());
+  }
+
+  public void testSerialization() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .maximumSize(10)
+            .expireAfterWrite(1, SECONDS)
+            .build();
+    cache.put(1, 1);
+    Cache<Integer, Integer> copy = SerializableTester.reserialize(cache);
+    assertTrue(copy instanceof UnsegmentedManualCache);
+    assertNull(copy.getIfPresent(1));
+    UnsegmentedLocalCache<Integer, Integer> localCopy =
+        ((UnsegmentedManualCache<Integer, Integer>) copy).localCache;
+    assertEquals(10, localCopy.maxWeight);
+    assertEquals(SECONDS.toNanos(1), localCopy.expireAfterWriteNanos);
+
+    LoadingCache<Integer, Integer> loadingCache =
+        CacheBuilder.newBuilder()
+            .unsegmented()
+            .build(CacheLoader.from(Functions.<Integer>identity()));
+    LoadingCache<Integer, Integer> loadingCopy = SerializableTester.reserialize(loadingCache);
+    assertTrue(loadingCopy instanceof UnsegmentedLoadingCache);
+    assertEquals((Integer) 2, loadingCopy.getUnchecked(2));
+  }
+
+  public void testIncompatibleOptions() {
+    try {
+      CacheBuilder.newBuilder().unsegmented().weakKeys().build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder()
+          .unsegmented()
+          .refreshAfterWrite(1, SECONDS)
+          .build(identityLoader());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().unsegmented().onHeapTier(10).build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().unsegmented().buildLongKeyed();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      CacheBuilder.newBuilder().unsegmented().unsegmented();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static ImmutableList<RemovalCause> causes(
+      QueuingRemovalListener<Integer, Integer> listener) {
+    ImmutableList.Builder<RemovalCause> causes = ImmutableList.builder();
+    for (RemovalNotification<Integer, Integer> notification : listener) {
+      causes.add(notification.getCause());
+    }
+    return causes.build();
+  }
+
+  private static final class IdentityLoaderWithCount extends CacheLoader<Integer, Integer> {
+    final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Integer load(Integer key) {
+      count.incrementAndGet();
+      return key;
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.base.Ascii;
 import com.google.common.collect.testing.SpliteratorTester;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Spliterator;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -60,6 +61,67 @@ public class CollectSpliteratorsTest extends TestCase {
         .expect('a', 'b', 'c', 'd', 'e', 'f', 'g');
   }
 
+  public void testFlatMap_splitsInnerSpliterator() {
+    List<Integer> inner = ContiguousSet.closedOpen(0, 100).asList();
+    Spliterator<Integer> spliterator =
+        CollectSpliterators.flatMap(
+            ImmutableList.of(inner).spliterator(), List::spliterator, Spliterator.SIZED, 100);
+    Spliterator<Integer> prefix = spliterator.trySplit();
+    assertNotNull(prefix);
+    List<Integer> elements = Lists.newArrayList();
+    prefix.forEachRemaining(elements::add);
+    assertThat(elements).isNotEmpty();
+    spliterator.forEachRemaining(elements::add);
+    assertEquals(inner, elements);
+
+    SpliteratorTester.of(
+            () ->
+                CollectSpliterators.flatMap(
+                    ImmutableList.of(inner).spliterator(),
+                    List::spliterator,
+                    Spliterator.SIZED,
+                    100))
+        .expect(inner)
+        .inOrder();
+  }
+
+  public void testConcat() {
+    SpliteratorTester.of(
+            () ->
+                CollectSpliterators.concat(
+                    ImmutableList.of("a", "b").spliterator(),
+                    ImmutableList.of("c", "d", "e").spliterator(),
+                    Spliterator.DISTINCT))
+        .expect("a", "b", "c", "d", "e")
+        .inOrder();
+  }
+
+  public void testConcat_splitsBetweenSpliterators() {
+    Spliterator<String> spliterator =
+        CollectSpliterators.concat(
+            ImmutableList.of("a", "b").spliterator(),
+            ImmutableList.of("c", "d", "e").spliterator(),
+            0);
+    assertEquals(5, spliterator.estimateSize());
+    List<String> prefix = Lists.newArrayList();
+    spliterator.trySplit().forEachRemaining(prefix::add);
+    assertEquals(ImmutableList.of("a", "b"), prefix);
+  }
+
+  public void testMultimapEntriesSpliterator_splitsSingleKey() {
+    Multimap<String, Integer> multimap = ArrayListMultimap.create();
+    for (int i = 0; i < 100; i++) {
+      multimap.put("a", i);
+    }
+    Spliterator<Entry<String, Integer>> spliterator = multimap.entries().spliterator();
+    Spliterator<Entry<String, Integer>> prefix = spliterator.trySplit();
+    assertNotNull(prefix);
+    List<Entry<String, Integer>> entries = Lists.newArrayList();
+    prefix.forEachRemaining(entries::add);
+    spliterator.forEachRemaining(entries::add);
+    assertEquals(ImmutableList.copyOf(multimap.entries()), entries);
+  }
+
   public void testFlatMapToInt_nullStream() {
     SpliteratorTester.ofInt(
             () ->
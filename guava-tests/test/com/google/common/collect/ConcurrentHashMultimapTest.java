@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+import com.google.common.collect.testing.google.SetMultimapTestSuiteBuilder;
+import com.google.common.collect.testing.google.TestStringSetMultimapGenerator;
+import com.google.common.testing.SerializableTester;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/** Unit tests for {@link ConcurrentHashMultimap}. */
+public class ConcurrentHashMultimapTest extends TestCase {
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(
+        SetMultimapTestSuiteBuilder.using(
+                new TestStringSetMultimapGenerator() {
+                  @Override
+                  protected SetMultimap<String, String> create(Entry<String, String>[] entries) {
+                    SetMultimap<String, String> multimap = ConcurrentHashMultimap.create();
+                    for (Entry<String, String> entry : entries) {
+                      multimap.put(entry.getKey(), entry.getValue());
+                    }
+                    return multimap;
+                  }
+                })
+            .named("ConcurrentHashMultimap")
+            .withFeatures(
+                MapFeature.ALLOWS_ANY_NULL_QUERIES,
+                MapFeature.GENERAL_PURPOSE,
+                CollectionFeature.SUPPORTS_ITERATOR_REMOVE,
+                CollectionFeature.SERIALIZABLE,
+                CollectionSize.ANY)
+            .createTestSuite());
+    suite.addTestSuite(ConcurrentHashMultimapTest.class);
+    return suite;
+  }
+
+  public void testSerialization() {
+    ConcurrentHashMultimap<String, Integer> multimap =
+        ConcurrentHashMultimap.create(ImmutableSetMultimap.of("foo", 1, "foo", 2, "bar", 3));
+    ConcurrentHashMultimap<String, Integer> copy =
+        SerializableTester.reserializeAndAssert(multimap);
+    assertEquals(multimap.size(), copy.size());
+    copy.put("baz", 4);
+    assertTrue(copy.containsEntry("baz", 4));
+    assertFalse(multimap.containsKey("baz"));
+  }
+
+  public void testCreateFromMultimap() {
+    Multimap<String, Integer> multimap = ImmutableListMultimap.of("foo", 1, "bar", 2, "foo", 1);
+    ConcurrentHashMultimap<String, Integer> copy = ConcurrentHashMultimap.create(multimap);
+    assertEquals(ImmutableSetMultimap.of("foo", 1, "bar", 2), copy);
+    assertEquals(2, copy.size());
+  }
+
+  public void testNulls() {
+    ConcurrentHashMultimap<String, Integer> multimap = ConcurrentHashMultimap.create();
+    try {
+      multimap.put(null, 1);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      multimap.put("foo", null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    assertFalse(multimap.containsEntry(null, null));
+    assertFalse(multimap.remove(null, 1));
+    assertTrue(multimap.removeAll(null).isEmpty());
+  }
+
+  public void testRemovedValuesAreDetached() {
+    ConcurrentHashMultimap<String, Integer> multimap = ConcurrentHashMultimap.create();
+    multimap.putAll("foo", ImmutableList.of(1, 2));
+    Set<Integer> removed = multimap.replaceValues("foo", ImmutableList.of(3));
+    assertEquals(ImmutableSet.of(1, 2), removed);
+    multimap.put("foo", 1);
+    assertEquals(ImmutableSet.of(1, 2), removed);
+    try {
+      removed.add(4);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    assertEquals(ImmutableSet.of(1, 3), multimap.removeAll("foo"));
+    assertTrue(multimap.isEmpty());
+    assertEquals(0, multimap.size());
+  }
+
+  public void testIteratorIsWeaklyConsistent() {
+    ConcurrentHashMultimap<String, Integer> multimap = ConcurrentHashMultimap.create();
+    multimap.putAll("foo", ImmutableList.of(1, 2, 3));
+    Iterator<Entry<String, Integer>> iterator = multimap.entries().iterator();
+    iterator.next();
+    multimap.put("bar", 4);
+    multimap.remove("foo", 2);
+    while (iterator.hasNext()) {
+      iterator.next();
+    }
+    assertEquals(3, multimap.size());
+  }
+
+  public void testConcurrentPutAndRemove() throws InterruptedException {
+    ConcurrentHashMultimap<Integer, Integer> multimap = ConcurrentHashMultimap.create();
+    int threadCount = 4;
+    int valueCount = 2000;
+    CountDownLatch done = new CountDownLatch(threadCount);
+    for (int t = 0; t < threadCount; t++) {
+      int thread = t;
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < valueCount; i++) {
+              multimap.put(i % 8, thread * valueCount + i);
+              if (i % 2 == 1) {
+                // every other value is removed again, sometimes emptying a key
+                assertTrue(multimap.remove(i % 8, thread * valueCount + i));
+              }
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    assertTrue(done.await(30, SECONDS));
+    assertEquals(threadCount * valueCount / 2, multimap.size());
+    assertEquals(threadCount * valueCount / 2, multimap.values().size());
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i % 2 == 0 ? threadCount * valueCount / 8 : 0, multimap.get(i).size());
+    }
+  }
+}
@@ -57,10 +57,19 @@ public class ConcurrentHashMultisetBasherTest extends TestCase {
     testAddAndRemove(mapMaker.<String, AtomicInteger>makeMap());
   }
 
+  public void testAddAndRemove_Striped() throws Exception {
+    testAddAndRemove(new ConcurrentHashMap<String, AtomicInteger>(), true);
+  }
+
   private void testAddAndRemove(ConcurrentMap<String, AtomicInteger> map)
       throws ExecutionException, InterruptedException {
+    testAddAndRemove(map, false);
+  }
+
+  private void testAddAndRemove(ConcurrentMap<String, AtomicInteger> map, boolean striped)
+      throws ExecutionException, InterruptedException {
 
-    final ConcurrentHashMultiset<String> multiset = new ConcurrentHashMultiset<>(map);
+    final ConcurrentHashMultiset<String> multiset = new ConcurrentHashMultiset<>(map, striped);
     int nThreads = 20;
     int tasksPerThread = 10;
     int nTasks = nThreads * tasksPerThread;
@@ -128,6 +137,12 @@ public class ConcurrentHashMultisetBasherTest extends TestCase {
               deltas[keyIndex] += delta;
               break;
             }
+          case ADD_ONE:
+            {
+              multiset.add(key);
+              deltas[keyIndex]++;
+              break;
+            }
           case SET_COUNT:
             {
               int newValue = random.nextInt(3);
@@ -166,6 +181,7 @@ public class ConcurrentHashMultisetBasherTest extends TestCase {
 
     private enum Operation {
       ADD,
+      ADD_ONE,
       SET_COUNT,
       SET_COUNT_IF,
       REMOVE,
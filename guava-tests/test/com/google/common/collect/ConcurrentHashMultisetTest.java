@@ -20,6 +20,7 @@ import static com.google.common.collect.MapMakerInternalMap.Strength.STRONG;
 import static com.google.common.collect.MapMakerInternalMap.Strength.WEAK;
 import static com.google.common.testing.SerializableTester.reserializeAndAssert;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
 import static org.mockito.Mockito.mock;
@@ -35,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -59,6 +61,15 @@ public class ConcurrentHashMultisetTest extends TestCase {
                 CollectionFeature.ALLOWS_NULL_QUERIES)
             .named("ConcurrentHashMultiset")
             .createTestSuite());
+    suite.addTest(
+        MultisetTestSuiteBuilder.using(stripedConcurrentHashMultisetGenerator())
+            .withFeatures(
+                CollectionSize.ANY,
+                CollectionFeature.GENERAL_PURPOSE,
+                CollectionFeature.SERIALIZABLE,
+                CollectionFeature.ALLOWS_NULL_QUERIES)
+            .named("StripedConcurrentHashMultiset")
+            .createTestSuite());
     suite.addTest(
         MultisetTestSuiteBuilder.using(concurrentSkipListMultisetGenerator())
             .withFeatures(
@@ -82,6 +93,17 @@ public class ConcurrentHashMultisetTest extends TestCase {
     };
   }
 
+  private static TestStringMultisetGenerator stripedConcurrentHashMultisetGenerator() {
+    return new TestStringMultisetGenerator() {
+      @Override
+      protected Multiset<String> create(String[] elements) {
+        Multiset<String> multiset = ConcurrentHashMultiset.createStriped();
+        Collections.addAll(multiset, elements);
+        return multiset;
+      }
+    };
+  }
+
   private static TestStringMultisetGenerator concurrentSkipListMultisetGenerator() {
     return new TestStringMultisetGenerator() {
       @Override
@@ -317,6 +339,46 @@ public class ConcurrentHashMultisetTest extends TestCase {
     reserializeAndAssert(multiset);
   }
 
+  public void testCreateStriped() {
+    ConcurrentHashMultiset<Integer> multiset = ConcurrentHashMultiset.createStriped();
+    assertTrue(multiset.isEmpty());
+    multiset.add(1);
+    assertEquals(1, multiset.add(1, 2));
+    assertEquals(3, multiset.count(1));
+    multiset = reserializeAndAssert(multiset);
+    multiset.add(1);
+    assertEquals(4, multiset.count(1));
+  }
+
+  public void testStriped_concurrentAdds() throws Exception {
+    ConcurrentHashMultiset<String> multiset = ConcurrentHashMultiset.createStriped();
+    multiset.add(KEY);
+    int threadCount = 8;
+    int addsPerThread = 100000;
+    CountDownLatch done = new CountDownLatch(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < addsPerThread; j++) {
+            multiset.add(KEY);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    assertTrue(done.await(30, SECONDS));
+    int count = threadCount * addsPerThread + 1;
+    assertEquals(count, multiset.count(KEY));
+    assertEquals(count, multiset.size());
+    assertEquals(count, multiset.setCount(KEY, 10));
+    assertEquals(10, multiset.remove(KEY, 4));
+    assertTrue(multiset.removeExactly(KEY, 6));
+    assertTrue(multiset.isEmpty());
+    multiset.add(KEY);
+    assertEquals(1, multiset.count(KEY));
+  }
+
   public void testCreateFromIterable() {
     Iterable<Integer> iterable = asList(1, 2, 2, 3, 4);
     ConcurrentHashMultiset<Integer> multiset = ConcurrentHashMultiset.create(iterable);
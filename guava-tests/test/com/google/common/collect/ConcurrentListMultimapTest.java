@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+import com.google.common.collect.testing.google.ListMultimapTestSuiteBuilder;
+import com.google.common.collect.testing.google.TestStringListMultimapGenerator;
+import com.google.common.testing.SerializableTester;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/** Unit tests for {@link ConcurrentListMultimap}. */
+public class ConcurrentListMultimapTest extends TestCase {
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(
+        ListMultimapTestSuiteBuilder.using(
+                new TestStringListMultimapGenerator() {
+                  @Override
+                  protected ListMultimap<String, String> create(Entry<String, String>[] entries) {
+                    ListMultimap<String, String> multimap = ConcurrentListMultimap.create();
+                    for (Entry<String, String> entry : entries) {
+                      multimap.put(entry.getKey(), entry.getValue());
+                    }
+                    return multimap;
+                  }
+                })
+            .named("ConcurrentListMultimap")
+            .withFeatures(
+                MapFeature.ALLOWS_ANY_NULL_QUERIES,
+                MapFeature.GENERAL_PURPOSE,
+                CollectionFeature.SUPPORTS_ITERATOR_REMOVE,
+                CollectionFeature.SERIALIZABLE,
+                CollectionSize.ANY)
+            .createTestSuite());
+    suite.addTestSuite(ConcurrentListMultimapTest.class);
+    return suite;
+  }
+
+  public void testSerialization() {
+    ConcurrentListMultimap<String, Integer> multimap =
+        ConcurrentListMultimap.create(
+            ImmutableListMultimap.of("foo", 1, "foo", 2, "bar", 3, "foo", 1));
+    ConcurrentListMultimap<String, Integer> copy =
+        SerializableTester.reserializeAndAssert(multimap);
+    assertEquals(multimap.size(), copy.size());
+    copy.put("baz", 4);
+    assertTrue(copy.containsEntry("baz", 4));
+    assertFalse(multimap.containsKey("baz"));
+  }
+
+  public void testPositionalOperations() {
+    ConcurrentListMultimap<String, Integer> multimap = ConcurrentListMultimap.create();
+    List<Integer> list = multimap.get("foo");
+    list.add(0, 1);
+    list.add(0, 2);
+    list.add(2, 3);
+    assertEquals(ImmutableList.of(2, 1, 3), list);
+    assertEquals(3, multimap.size());
+    assertEquals(1, (int) list.set(1, 4));
+    assertEquals(2, (int) list.remove(0));
+    assertEquals(ImmutableList.of(4, 3), multimap.get("foo"));
+    assertEquals(2, multimap.size());
+    try {
+      list.add(3, 5);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      multimap.get("bar").set(0, 5);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    list.remove(0);
+    list.remove(0);
+    assertFalse(multimap.containsKey("foo"));
+    assertTrue(multimap.isEmpty());
+  }
+
+  public void testIteratorIsSnapshot() {
+    ConcurrentListMultimap<String, Integer> multimap = ConcurrentListMultimap.create();
+    multimap.putAll("foo", ImmutableList.of(1, 2, 1));
+    Iterator<Integer> iterator = multimap.get("foo").iterator();
+    multimap.removeAll("foo");
+    assertEquals(ImmutableList.of(1, 2, 1), ImmutableList.copyOf(iterator));
+  }
+
+  public void testBulkRemoval() {
+    ConcurrentListMultimap<String, Integer> multimap = ConcurrentListMultimap.create();
+    multimap.putAll("foo", ImmutableList.of(1, 2, 1, 3));
+    assertTrue(multimap.get("foo").removeAll(ImmutableList.of(1)));
+    assertEquals(ImmutableList.of(2, 3), multimap.get("foo"));
+    assertTrue(multimap.get("foo").retainAll(ImmutableList.of(4)));
+    assertFalse(multimap.containsKey("foo"));
+    assertEquals(0, multimap.size());
+  }
+
+  public void testConcurrentPutAll() throws InterruptedException {
+    ConcurrentListMultimap<Integer, Integer> multimap = ConcurrentListMultimap.create();
+    int threadCount = 4;
+    int batchCount = 500;
+    CountDownLatch done = new CountDownLatch(threadCount);
+    for (int t = 0; t < threadCount; t++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < batchCount; i++) {
+              multimap.putAll(i % 4, ImmutableList.of(i, i, i));
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    assertTrue(done.await(30, SECONDS));
+    assertEquals(threadCount * batchCount * 3, multimap.size());
+    for (int key = 0; key < 4; key++) {
+      // each batch was added atomically, so its values are adjacent
+      List<Integer> values = multimap.get(key);
+      for (int i = 0; i < values.size(); i += 3) {
+        assertEquals(values.get(i), values.get(i + 1));
+        assertEquals(values.get(i), values.get(i + 2));
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import junit.framework.TestCase;
+
+/** Tests for {@link EytzingerIndex}. */
+@GwtIncompatible
+public class EytzingerIndexTest extends TestCase {
+  @SuppressWarnings("unchecked") // Integers are comparable
+  private static final Comparator<Object> NATURAL =
+      (Comparator<Object>) (Comparator<?>) Ordering.natural();
+
+  public void testSearch_allSizes() {
+    for (int size = 0; size <= 130; size++) {
+      List<Integer> sorted = evens(size);
+      EytzingerIndex index = new EytzingerIndex(sorted);
+      for (int key = -1; key <= 2 * size; key++) {
+        assertEquals(
+            "size " + size + ", key " + key,
+            Collections.binarySearch(sorted, key),
+            index.search(key, NATURAL));
+      }
+    }
+  }
+
+  public void testSearch_comparatorArgumentOrder() {
+    List<Integer> sorted = evens(10);
+    EytzingerIndex index = new EytzingerIndex(sorted);
+    Comparator<Object> comparator =
+        (element, key) -> {
+          assertTrue(sorted.contains(element));
+          return NATURAL.compare(element, key);
+        };
+    assertEquals(3, index.search(6, comparator));
+    assertEquals(~4, index.search(7, comparator));
+  }
+
+  private static List<Integer> evens(int size) {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      builder.add(2 * i);
+    }
+    return builder.build();
+  }
+}
@@ -30,6 +30,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.testing.IteratorFeature;
 import com.google.common.collect.testing.IteratorTester;
+import com.google.common.collect.testing.SpliteratorTester;
 import com.google.common.testing.NullPointerTester;
 import com.google.common.truth.IterableSubject;
 import com.google.common.truth.Truth;
@@ -40,6 +41,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.Spliterator;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import junit.framework.AssertionFailedError;
@@ -80,6 +82,14 @@ public class FluentIterableTest extends TestCase {
         Lists.newArrayList(FluentIterable.from(ImmutableList.of(1, 2, 3, 4))));
   }
 
+  public void testFrom_spliterator() {
+    List<Integer> list = ImmutableList.of(1, 2, 3, 4);
+    SpliteratorTester.of(() -> FluentIterable.from(list).spliterator())
+        .expect(1, 2, 3, 4)
+        .inOrder();
+    assertTrue(FluentIterable.from(list).spliterator().hasCharacteristics(Spliterator.SUBSIZED));
+  }
+
   @SuppressWarnings("deprecation") // test of deprecated method
   public void testFrom_alreadyFluentIterable() {
     FluentIterable<Integer> iterable = FluentIterable.from(asList(1));
@@ -133,6 +143,22 @@ public class FluentIterableTest extends TestCase {
     assertEquals("[1, 4, 7, 8, 9, 10]", result.toString());
   }
 
+  public void testConcatIterable_spliterator() {
+    List<List<Integer>> input = ImmutableList.of(asList(1), asList(2, 3), asList(), asList(4));
+    SpliteratorTester.of(() -> FluentIterable.concat(input).spliterator())
+        .expect(1, 2, 3, 4)
+        .inOrder();
+  }
+
+  public void testConcatVarargs_spliterator() {
+    List<Integer> list1 = newArrayList(1);
+    List<Integer> list2 = newArrayList(4);
+    List<Integer> list3 = newArrayList(7, 8);
+    SpliteratorTester.of(() -> FluentIterable.concat(list1, list2, list3).spliterator())
+        .expect(1, 4, 7, 8)
+        .inOrder();
+  }
+
   public void testConcatNullPointerException() {
     List<Integer> list1 = newArrayList(1);
     List<Integer> list2 = newArrayList(4);
@@ -285,6 +285,16 @@ public class ImmutableBiMapTest extends TestCase {
       }
     }
 
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookupFails() {
+      ImmutableBiMap.Builder<String, Integer> builder = ImmutableBiMap.builder();
+      try {
+        builder.optimizeForLookup();
+        fail("Expected UnsupportedOperationException");
+      } catch (UnsupportedOperationException expected) {
+      }
+    }
+
     public void testBuilderPutAllWithEmptyMap() {
       ImmutableBiMap<String, Integer> map =
           new Builder<String, Integer>().putAll(Collections.<String, Integer>emptyMap()).build();
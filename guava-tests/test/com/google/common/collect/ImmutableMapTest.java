@@ -114,6 +114,26 @@ public class ImmutableMapTest extends TestCase {
             .named("ImmutableMap [JDK backed]")
             .createTestSuite());
 
+    suite.addTest(
+        MapTestSuiteBuilder.using(
+                new TestStringMapGenerator() {
+                  @Override
+                  protected Map<String, String> create(Entry<String, String>[] entries) {
+                    ImmutableMap.Builder<String, String> builder =
+                        ImmutableMap.<String, String>builder().optimizeForLookup();
+                    builder.putAll(Arrays.asList(entries));
+                    return builder.build();
+                  }
+                })
+            .withFeatures(
+                CollectionSize.ANY,
+                CollectionFeature.SERIALIZABLE_INCLUDING_VIEWS,
+                CollectionFeature.KNOWN_ORDER,
+                MapFeature.REJECTS_DUPLICATES_AT_CREATION,
+                CollectionFeature.ALLOWS_NULL_QUERIES)
+            .named("ImmutableMap [optimized for lookup]")
+            .createTestSuite());
+
     suite.addTest(
         MapTestSuiteBuilder.using(new ImmutableMapCopyOfGenerator())
             .withFeatures(
@@ -415,6 +435,73 @@ public class ImmutableMapTest extends TestCase {
       }
     }
 
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup() {
+      ImmutableMap.Builder<Integer, String> builder =
+          new Builder<Integer, String>().optimizeForLookup();
+      int size = 10000;
+      for (int i = 0; i < size; i++) {
+        builder.put(i * 31, Integer.toString(i));
+      }
+      ImmutableMap<Integer, String> map = builder.build();
+      assertEquals(size, map.size());
+      for (int i = 0; i < size; i++) {
+        assertEquals(Integer.toString(i), map.get(i * 31));
+        assertNull(map.get(i * 31 + 1));
+      }
+      assertEquals(Integer.valueOf(0), map.keySet().asList().get(0));
+      assertEquals(Integer.valueOf((size - 1) * 31), map.keySet().asList().get(size - 1));
+    }
+
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup_sameHashCodes() {
+      ImmutableMap<String, Integer> map =
+          new Builder<String, Integer>()
+              .optimizeForLookup()
+              .put("AaAa", 1)
+              .put("one", 2)
+              .put("BBBB", 3)
+              .put("AaBB", 4)
+              .put("two", 5)
+              .put("BBAa", 6)
+              .build();
+      assertMapEquals(map, "AaAa", 1, "one", 2, "BBBB", 3, "AaBB", 4, "two", 5, "BBAa", 6);
+      assertNull(map.get("Aa"));
+      assertNull(map.get("BBBBAa"));
+    }
+
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup_duplicateKeys() {
+      ImmutableMap.Builder<String, Integer> builder =
+          new Builder<String, Integer>()
+              .optimizeForLookup()
+              .put("AaAa", 1)
+              .put("BBBB", 2)
+              .put("AaAa", 3);
+      try {
+        builder.build();
+        fail();
+      } catch (IllegalArgumentException expected) {
+        assertThat(expected.getMessage()).contains("AaAa");
+      }
+    }
+
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup_manySameHashCodes() {
+      List<CountsHashCodeAndEquals> keys = createAdversarialInput(6, new CallsCounter());
+      ImmutableMap.Builder<Object, Integer> builder =
+          new Builder<Object, Integer>().optimizeForLookup();
+      for (int i = 0; i < keys.size(); i++) {
+        builder.put(keys.get(i), i);
+      }
+      ImmutableMap<Object, Integer> map = builder.build();
+      assertEquals(keys.size(), map.size());
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals(Integer.valueOf(i), map.get(keys.get(i)));
+      }
+      assertEquals(keys, map.keySet().asList());
+    }
+
     public void testBuilder_withImmutableEntry() {
       ImmutableMap<String, Integer> map =
           new Builder<String, Integer>().put(Maps.immutableEntry("one", 1)).build();
@@ -903,6 +990,7 @@ public class ImmutableMapTest extends TestCase {
   }
 
   /** All the ways to create an ImmutableMap. */
+  @GwtIncompatible // optimizeForLookup
   enum ConstructionPathway {
     COPY_OF_MAP {
       @Override
@@ -964,6 +1052,16 @@ public class ImmutableMapTest extends TestCase {
             .build();
       }
     },
+    BUILDER_OPTIMIZED_FOR_LOOKUP {
+      @Override
+      ImmutableMap<?, ?> create(List<?> keys, Object value, CallsCounter counter) {
+        ImmutableMap.Builder<Object, Object> builder = ImmutableMap.builder().optimizeForLookup();
+        for (Object k : keys) {
+          builder.put(k, value);
+        }
+        return builder.build();
+      }
+    },
     FORCE_JDK {
       @Override
       ImmutableMap<?, ?> create(List<?> keys, Object value, CallsCounter counter) {
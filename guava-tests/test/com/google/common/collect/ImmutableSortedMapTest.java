@@ -28,6 +28,7 @@ import com.google.common.collect.testing.ListTestSuiteBuilder;
 import com.google.common.collect.testing.MapTestSuiteBuilder;
 import com.google.common.collect.testing.NavigableMapTestSuiteBuilder;
 import com.google.common.collect.testing.SortedMapInterfaceTest;
+import com.google.common.collect.testing.TestStringSortedMapGenerator;
 import com.google.common.collect.testing.features.CollectionFeature;
 import com.google.common.collect.testing.features.CollectionSize;
 import com.google.common.collect.testing.features.MapFeature;
@@ -80,6 +81,27 @@ public class ImmutableSortedMapTest extends TestCase {
                 MapFeature.ALLOWS_ANY_NULL_QUERIES)
             .named("ImmutableSortedMap")
             .createTestSuite());
+    suite.addTest(
+        NavigableMapTestSuiteBuilder.using(
+                new TestStringSortedMapGenerator() {
+                  @Override
+                  protected SortedMap<String, String> create(Entry<String, String>[] entries) {
+                    ImmutableSortedMap.Builder<String, String> builder =
+                        ImmutableSortedMap.<String, String>naturalOrder().optimizeForLookup();
+                    for (Entry<String, String> entry : entries) {
+                      builder.put(entry);
+                    }
+                    return builder.build();
+                  }
+                })
+            .withFeatures(
+                CollectionSize.ANY,
+                CollectionFeature.SERIALIZABLE_INCLUDING_VIEWS,
+                CollectionFeature.KNOWN_ORDER,
+                MapFeature.REJECTS_DUPLICATES_AT_CREATION,
+                MapFeature.ALLOWS_ANY_NULL_QUERIES)
+            .named("ImmutableSortedMap [optimized for lookup]")
+            .createTestSuite());
     suite.addTest(
         MapTestSuiteBuilder.using(new ImmutableSortedMapCopyOfEntriesGenerator())
             .withFeatures(
@@ -329,6 +351,41 @@ public class ImmutableSortedMapTest extends TestCase {
       }
     }
 
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup() {
+      TreeMap<Integer, String> expected = new TreeMap<>();
+      ImmutableSortedMap.Builder<Integer, String> builder =
+          ImmutableSortedMap.<Integer, String>naturalOrder().optimizeForLookup();
+      for (int i = 999; i >= 0; i -= 3) {
+        expected.put(i, Integer.toString(i));
+        builder.put(i, Integer.toString(i));
+      }
+      ImmutableSortedMap<Integer, String> map = builder.build();
+      assertEquals(expected, map);
+      assertEquals(ImmutableList.copyOf(expected.keySet()), map.keySet().asList());
+      for (int i = -1; i <= 1000; i++) {
+        assertEquals(expected.get(i), map.get(i));
+        assertEquals(expected.lowerEntry(i), map.lowerEntry(i));
+        assertEquals(expected.floorEntry(i), map.floorEntry(i));
+        assertEquals(expected.ceilingEntry(i), map.ceilingEntry(i));
+        assertEquals(expected.higherEntry(i), map.higherEntry(i));
+      }
+    }
+
+    @GwtIncompatible // optimizeForLookup
+    public void testBuilder_optimizeForLookup_duplicateKeys() {
+      ImmutableSortedMap.Builder<String, Integer> builder =
+          ImmutableSortedMap.<String, Integer>naturalOrder()
+              .optimizeForLookup()
+              .put("one", 1)
+              .put("one", 2);
+      try {
+        builder.build();
+        fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+
     public void testBuilder_withImmutableEntry() {
       ImmutableSortedMap<String, Integer> map =
           ImmutableSortedMap.<String, Integer>naturalOrder()
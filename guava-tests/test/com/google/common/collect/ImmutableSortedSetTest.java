@@ -24,6 +24,7 @@ import com.google.common.annotations.GwtIncompatible;
 import com.google.common.base.Equivalence;
 import com.google.common.collect.testing.ListTestSuiteBuilder;
 import com.google.common.collect.testing.NavigableSetTestSuiteBuilder;
+import com.google.common.collect.testing.TestStringSortedSetGenerator;
 import com.google.common.collect.testing.features.CollectionFeature;
 import com.google.common.collect.testing.features.CollectionSize;
 import com.google.common.collect.testing.google.SetGenerators.ImmutableSortedSetAsListGenerator;
@@ -75,6 +76,25 @@ public class ImmutableSortedSetTest extends AbstractImmutableSetTest {
                 CollectionFeature.ALLOWS_NULL_QUERIES)
             .createTestSuite());
 
+    suite.addTest(
+        NavigableSetTestSuiteBuilder.using(
+                new TestStringSortedSetGenerator() {
+                  @Override
+                  protected SortedSet<String> create(String[] elements) {
+                    return ImmutableSortedSet.<String>naturalOrder()
+                        .optimizeForLookup()
+                        .add(elements)
+                        .build();
+                  }
+                })
+            .named(ImmutableSortedSetTest.class.getName() + ", optimized for lookup")
+            .withFeatures(
+                CollectionSize.ANY,
+                CollectionFeature.KNOWN_ORDER,
+                CollectionFeature.SERIALIZABLE,
+                CollectionFeature.ALLOWS_NULL_QUERIES)
+            .createTestSuite());
+
     suite.addTest(
         NavigableSetTestSuiteBuilder.using(new ImmutableSortedSetExplicitComparator())
             .named(ImmutableSortedSetTest.class.getName() + ", explicit comparator, vararg")
@@ -974,6 +994,31 @@ public class ImmutableSortedSetTest extends AbstractImmutableSetTest {
     }
   }
 
+  @GwtIncompatible // optimizeForLookup
+  public void testBuilder_optimizeForLookup() {
+    TreeSet<Integer> expected = new TreeSet<>();
+    ImmutableSortedSet.Builder<Integer> builder =
+        ImmutableSortedSet.<Integer>reverseOrder().optimizeForLookup();
+    for (int i = 0; i < 1000; i += 2) {
+      expected.add(i);
+      builder.add(i);
+    }
+    ImmutableSortedSet<Integer> set = builder.build();
+    assertEquals(expected.descendingSet(), set);
+    assertThat(set).containsExactlyElementsIn(expected.descendingSet()).inOrder();
+    for (int i = -1; i <= 1000; i++) {
+      assertEquals(expected.contains(i), set.contains(i));
+      assertEquals(expected.higher(i), set.lower(i));
+      assertEquals(expected.ceiling(i), set.floor(i));
+      assertEquals(expected.floor(i), set.ceiling(i));
+      assertEquals(expected.lower(i), set.higher(i));
+    }
+    assertEquals(249, set.headSet(500).size());
+    assertEquals(251, set.tailSet(500).size());
+    assertEquals(498, set.asList().indexOf(2));
+    assertEquals(-1, set.asList().indexOf(3));
+  }
+
   public void testAsList() {
     ImmutableSet<String> set = ImmutableSortedSet.of("a", "e", "i", "o", "u");
     ImmutableList<String> list = set.asList();
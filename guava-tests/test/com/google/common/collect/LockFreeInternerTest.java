@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.testing.GcFinalization;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link LockFreeInterner}. */
+public class LockFreeInternerTest extends TestCase {
+
+  public void testStrong_simplistic() {
+    String canonical = "a";
+    String not = new String("a");
+
+    Interner<String> pool = Interners.newBuilder().strong().lockFree().build();
+    assertSame(canonical, pool.intern(canonical));
+    assertSame(canonical, pool.intern(not));
+  }
+
+  public void testWeak_simplistic() {
+    String canonical = "a";
+    String not = new String("a");
+
+    Interner<String> pool = Interners.newBuilder().weak().lockFree().build();
+    assertSame(canonical, pool.intern(canonical));
+    assertSame(canonical, pool.intern(not));
+  }
+
+  public void testNull() {
+    Interner<String> pool = Interners.newBuilder().weak().lockFree().build();
+    try {
+      pool.intern(null);
+      fail();
+    } catch (NullPointerException ok) {
+    }
+  }
+
+  public void testConcurrencyLevel() {
+    LockFreeInterner<Object> interner =
+        (LockFreeInterner<Object>) Interners.newBuilder().lockFree().concurrencyLevel(42).build();
+    assertEquals(64 * LockFreeInterner.MIN_CAPACITY, interner.capacity());
+  }
+
+  public void testResize() {
+    LockFreeInterner<String> interner = new LockFreeInterner<>(false, 1);
+    String[] canonicals = new String[10000];
+    for (int i = 0; i < canonicals.length; i++) {
+      canonicals[i] = Integer.toString(i);
+      assertSame(canonicals[i], interner.intern(canonicals[i]));
+    }
+    for (int i = 0; i < canonicals.length; i++) {
+      assertSame(canonicals[i], interner.intern(new String(canonicals[i])));
+    }
+    assertEquals(canonicals.length, interner.liveCount());
+    assertTrue(interner.capacity() <= 4 * canonicals.length);
+  }
+
+  public void testWeak_collectedEntriesAreDiscarded() {
+    LockFreeInterner<Integer> interner = new LockFreeInterner<>(true, 1);
+    Integer canonical = new Integer(-1);
+    assertSame(canonical, interner.intern(canonical));
+    Integer[] garbage = new Integer[1000];
+    for (int i = 0; i < garbage.length; i++) {
+      garbage[i] = new Integer(i);
+      interner.intern(garbage[i]);
+    }
+    WeakReference<Integer> signal = new WeakReference<>(garbage[0]);
+    garbage = null;
+    GcFinalization.awaitClear(signal);
+    GcFinalization.awaitFullGc();
+
+    // adding instances rebuilds the table without the collected ones
+    List<Integer> added = Lists.newArrayList();
+    while (interner.filledCount() == 1001 + added.size()) {
+      Integer instance = new Integer(-2 - added.size());
+      added.add(instance);
+      interner.intern(instance);
+    }
+    assertEquals(1 + added.size(), interner.filledCount());
+    assertEquals(1 + added.size(), interner.liveCount());
+    assertSame(canonical, interner.intern(new Integer(-1)));
+  }
+
+  public void testConcurrentInterning() throws InterruptedException {
+    final LockFreeInterner<String> interner = new LockFreeInterner<>(true, 1);
+    final int threadCount = 8;
+    final int keyCount = 20000;
+    final AtomicReferenceArray<String> results = new AtomicReferenceArray<>(threadCount * keyCount);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threadCount);
+    for (int t = 0; t < threadCount; t++) {
+      final int thread = t;
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < keyCount; i++) {
+              results.set(thread * keyCount + i, interner.intern(new String("key" + i)));
+            }
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    start.countDown();
+    assertTrue(done.await(30, SECONDS));
+    for (int i = 0; i < keyCount; i++) {
+      String canonical = results.get(i);
+      assertEquals("key" + i, canonical);
+      for (int t = 1; t < threadCount; t++) {
+        assertSame(canonical, results.get(t * keyCount + i));
+      }
+    }
+    assertEquals(keyCount, interner.liveCount());
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.TestStringListGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/** Tests for {@link PersistentList}. */
+@GwtIncompatible
+public class PersistentListTest extends TestCase {
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTestSuite(PersistentListTest.class);
+    suite.addTest(
+        ListTestSuiteBuilder.using(
+                new TestStringListGenerator() {
+                  @Override
+                  protected List<String> create(String[] elements) {
+                    return PersistentList.copyOf(asList(elements));
+                  }
+                })
+            .named("PersistentList")
+            .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_QUERIES)
+            .createTestSuite());
+    suite.addTest(
+        ListTestSuiteBuilder.using(
+                new TestStringListGenerator() {
+                  @Override
+                  protected List<String> create(String[] elements) {
+                    // Insert from both ends, so that the tree is rebalanced.
+                    PersistentList<String> list = PersistentList.of();
+                    for (int i = elements.length / 2; i < elements.length; i++) {
+                      list = list.withAdded(elements[i]);
+                    }
+                    for (int i = elements.length / 2 - 1; i >= 0; i--) {
+                      list = list.withAdded(0, elements[i]);
+                    }
+                    return list;
+                  }
+                })
+            .named("PersistentList, built with withAdded")
+            .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_QUERIES)
+            .createTestSuite());
+    return suite;
+  }
+
+  public void testModifications_leaveOriginalUnchanged() {
+    PersistentList<String> list = PersistentList.copyOf(asList("a", "b", "c"));
+
+    assertEquals(asList("a", "x", "c"), list.with(1, "x"));
+    assertEquals(asList("a", "b", "c", "d"), list.withAdded("d"));
+    assertEquals(asList("a", "x", "b", "c"), list.withAdded(1, "x"));
+    assertEquals(asList("a", "c"), list.without(1));
+    assertEquals(asList("a", "b", "c"), list);
+    assertSame(list, list.with(1, list.get(1)));
+    assertSame(PersistentList.of(), PersistentList.copyOf(asList("a")).without(0));
+  }
+
+  public void testIndexChecks() {
+    PersistentList<String> list = PersistentList.copyOf(asList("a", "b"));
+    try {
+      list.with(2, "x");
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      list.withAdded(3, "x");
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      list.without(-1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testNulls() {
+    PersistentList<String> list = PersistentList.copyOf(asList("a", "b"));
+    try {
+      list.withAdded(null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      list.with(0, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      PersistentList.copyOf(asList("a", null));
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testCopyOf() {
+    PersistentList<String> list = PersistentList.copyOf(ImmutableList.of("a", "b"));
+    assertSame(list, PersistentList.copyOf(list));
+    assertEquals(ImmutableList.of("a", "b"), list.toImmutableList());
+    assertSame(PersistentList.of(), PersistentList.copyOf(ImmutableList.of()));
+  }
+
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    PersistentList<Integer> list = PersistentList.of();
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      int operation = random.nextInt(4);
+      if (operation == 0 && !expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        list = list.without(index);
+        expected.remove(index);
+      } else if (operation == 1 && !expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        list = list.with(index, i);
+        expected.set(index, i);
+      } else {
+        int index = random.nextInt(expected.size() + 1);
+        list = list.withAdded(index, i);
+        expected.add(index, i);
+      }
+      if (i % 1000 == 0) {
+        assertEquals(expected, list);
+      }
+    }
+    assertEquals(expected, list);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), list.get(i));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.testing.MapTestSuiteBuilder;
+import com.google.common.collect.testing.SampleElements.Colliders;
+import com.google.common.collect.testing.TestStringMapGenerator;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+import com.google.common.testing.EqualsTester;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/** Tests for {@link PersistentMap}. */
+@GwtIncompatible
+public class PersistentMapTest extends TestCase {
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTestSuite(PersistentMapTest.class);
+    suite.addTest(
+        MapTestSuiteBuilder.using(
+                new TestStringMapGenerator() {
+                  @Override
+                  protected Map<String, String> create(Entry<String, String>[] entries) {
+                    PersistentMap<String, String> map = PersistentMap.of();
+                    for (Entry<String, String> entry : entries) {
+                      map = map.with(entry.getKey(), entry.getValue());
+                    }
+                    return map;
+                  }
+                })
+            .named("PersistentMap")
+            .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_QUERIES)
+            .createTestSuite());
+    suite.addTest(
+        MapTestSuiteBuilder.using(
+                new TestStringMapGenerator() {
+                  @Override
+                  protected Map<String, String> create(Entry<String, String>[] entries) {
+                    Map<String, String> map = new HashMap<>();
+                    for (Entry<String, String> entry : entries) {
+                      map.put(entry.getKey(), entry.getValue());
+                    }
+                    return PersistentMap.copyOf(map).with("extra", "value").without("extra");
+                  }
+                })
+            .named("PersistentMap, copied")
+            .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_QUERIES)
+            .createTestSuite());
+    return suite;
+  }
+
+  public void testWith_leavesOriginalUnchanged() {
+    PersistentMap<String, Integer> one = PersistentMap.<String, Integer>of().with("one", 1);
+    PersistentMap<String, Integer> two = one.with("two", 2);
+    PersistentMap<String, Integer> three = two.with("one", 3);
+
+    assertEquals(ImmutableMap.of("one", 1), one);
+    assertEquals(ImmutableMap.of("one", 1, "two", 2), two);
+    assertEquals(ImmutableMap.of("one", 3, "two", 2), three);
+    assertSame(two, two.with("two", 2));
+  }
+
+  public void testWithout_leavesOriginalUnchanged() {
+    PersistentMap<String, Integer> map = PersistentMap.copyOf(ImmutableMap.of("one", 1, "two", 2));
+    PersistentMap<String, Integer> withoutOne = map.without("one");
+
+    assertEquals(ImmutableMap.of("one", 1, "two", 2), map);
+    assertEquals(ImmutableMap.of("two", 2), withoutOne);
+    assertSame(map, map.without("three"));
+    assertSame(map, map.without(null));
+    assertSame(PersistentMap.of(), withoutOne.without("two"));
+  }
+
+  public void testWith_nulls() {
+    PersistentMap<String, String> map = PersistentMap.of();
+    try {
+      map.with(null, "value");
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      map.with("key", null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testCopyOf() {
+    PersistentMap<String, Integer> map = PersistentMap.copyOf(ImmutableMap.of("one", 1, "two", 2));
+    assertSame(map, PersistentMap.copyOf(map));
+    assertEquals(ImmutableMap.of("one", 1, "two", 2), map.toImmutableMap());
+    assertEquals(ImmutableList.copyOf(map.entrySet()), map.toImmutableMap().entrySet().asList());
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(PersistentMap.of(), ImmutableMap.of())
+        .addEqualityGroup(
+            PersistentMap.of().with(1, "a").with(2, "b"),
+            PersistentMap.of().with(2, "b").with(1, "a"),
+            ImmutableMap.of(1, "a", 2, "b"))
+        .addEqualityGroup(PersistentMap.of().with(1, "a"))
+        .testEquals();
+  }
+
+  public void testCollidingKeys() {
+    PersistentMap<Object, Integer> map = PersistentMap.of();
+    Map<Object, Integer> expected = new HashMap<>();
+    int i = 0;
+    for (Object key : new Colliders()) {
+      map = map.with(key, i);
+      expected.put(key, i++);
+    }
+    assertEquals(expected, map);
+    for (Object key : new Colliders()) {
+      map = map.without(key);
+      expected.remove(key);
+      assertEquals(expected, map);
+    }
+    assertTrue(map.isEmpty());
+  }
+
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    PersistentMap<Integer, Integer> map = PersistentMap.of();
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      // Small hash codes and some full collisions exercise every kind of node.
+      Integer key = random.nextInt(2000);
+      if (random.nextInt(3) == 0) {
+        map = map.without(key);
+        expected.remove(key);
+      } else {
+        map = map.with(key, i);
+        expected.put(key, i);
+      }
+      if (i % 1000 == 0) {
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+      }
+    }
+    assertEquals(expected, map);
+    for (Integer key : expected.keySet()) {
+      assertEquals(expected.get(key), map.get(key));
+      map = map.without(key);
+    }
+    assertTrue(map.isEmpty());
+  }
+
+  public void testRandomOperations_collidingHashCodes() {
+    Random random = new Random(0);
+    PersistentMap<CollidingKey, Integer> map = PersistentMap.of();
+    Map<CollidingKey, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 5000; i++) {
+      CollidingKey key = new CollidingKey(random.nextInt(300));
+      if (random.nextInt(3) == 0) {
+        map = map.without(key);
+        expected.remove(key);
+      } else {
+        map = map.with(key, i);
+        expected.put(key, i);
+      }
+    }
+    assertEquals(expected, map);
+    assertEquals(expected, ImmutableMap.copyOf(map));
+  }
+
+  /** A key whose hash code is the same for several values. */
+  private static final class CollidingKey {
+    final int value;
+
+    CollidingKey(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public int hashCode() {
+      return value / 7;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      return object instanceof CollidingKey && ((CollidingKey) object).value == value;
+    }
+  }
+}
@@ -25,14 +25,24 @@ import com.google.common.collect.testing.SetTestSuiteBuilder;
 import com.google.common.collect.testing.TestStringSetGenerator;
 import com.google.common.collect.testing.features.CollectionFeature;
 import com.google.common.collect.testing.features.CollectionSize;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.TreeSet;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 /**
- * Unit tests for {@link Sets#union}, {@link Sets#intersection} and {@link Sets#difference}.
+ * Unit tests for {@link Sets#union}, {@link Sets#intersection}, {@link Sets#difference} and {@link
+ * Sets#intersectAll}.
  *
  * @author Kevin Bourrillion
  */
@@ -291,6 +301,60 @@ public class SetOperationsTest extends TestCase {
             .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_VALUES)
             .createTestSuite());
 
+    suite.addTest(
+        SetTestSuiteBuilder.using(
+                new TestStringSetGenerator() {
+                  @Override
+                  protected Set<String> create(String[] elements) {
+                    int half = elements.length / 2;
+                    return Sets.union(
+                        ImmutableSortedSet.copyOf(asList(elements).subList(0, half + 1)),
+                        ImmutableSortedSet.copyOf(asList(elements).subList(half, elements.length)));
+                  }
+                })
+            .named("sorted set U sorted set")
+            .withFeatures(CollectionSize.ONE, CollectionSize.SEVERAL)
+            .createTestSuite());
+
+    suite.addTest(
+        SetTestSuiteBuilder.using(
+                new TestStringSetGenerator() {
+                  @Override
+                  protected Set<String> create(String[] elements) {
+                    ImmutableSortedSet<String> set =
+                        ImmutableSortedSet.<String>naturalOrder()
+                            .add(elements)
+                            .add("aa", "pq", "zz")
+                            .build();
+                    ImmutableSortedSet<String> other =
+                        ImmutableSortedSet.<String>naturalOrder()
+                            .add(elements)
+                            .add("ab", "wz", "zzz")
+                            .build();
+                    return Sets.intersection(set, other);
+                  }
+                })
+            .named("sorted set & sorted set")
+            .withFeatures(CollectionSize.ANY)
+            .createTestSuite());
+
+    suite.addTest(
+        SetTestSuiteBuilder.using(
+                new TestStringSetGenerator() {
+                  @Override
+                  protected Set<String> create(String[] elements) {
+                    ImmutableSortedSet<String> set =
+                        ImmutableSortedSet.<String>naturalOrder()
+                            .add(elements)
+                            .add("aa", "wz", "xq")
+                            .build();
+                    return Sets.difference(set, ImmutableSortedSet.of("aa", "pq", "wz", "xq"));
+                  }
+                })
+            .named("sorted set - sorted set")
+            .withFeatures(CollectionSize.ANY)
+            .createTestSuite());
+
     suite.addTestSuite(MoreTests.class);
     return suite;
   }
@@ -318,6 +382,16 @@ public class SetOperationsTest extends TestCase {
       assertEquals(5, mut.size());
     }
 
+    public void testUnion_spliteratorSplitsBetweenSets() {
+      Spliterator<String> spliterator = Sets.union(friends, enemies).spliterator();
+      Set<String> prefix = new HashSet<>();
+      spliterator.trySplit().forEachRemaining(prefix::add);
+      Set<String> rest = new HashSet<>();
+      spliterator.forEachRemaining(rest::add);
+      assertEquals(friends, prefix);
+      assertEquals(ImmutableSet.of("Dick", "Harry"), rest);
+    }
+
     public void testIntersection() {
       Set<String> friends = Sets.newHashSet("Tom", "Joe", "Dave");
       Set<String> enemies = Sets.newHashSet("Dick", "Harry", "Tom");
@@ -350,6 +424,182 @@ public class SetOperationsTest extends TestCase {
       assertEquals(2, mut.size());
     }
 
+    public void testSortedSetViews_matchUnsortedSetViews() {
+      Random random = new Random(0);
+      for (int trial = 0; trial < 100; trial++) {
+        ImmutableSortedSet<Integer> set1 = randomSortedSet(random);
+        ImmutableSortedSet<Integer> set2 = randomSortedSet(random);
+        Set<Integer> hashSet1 = new HashSet<>(set1);
+        Set<Integer> hashSet2 = new HashSet<>(set2);
+
+        assertEquals(
+            ImmutableList.copyOf(Sets.intersection(set1, hashSet2)),
+            ImmutableList.copyOf(Sets.intersection(set1, set2)));
+        assertEquals(
+            ImmutableList.copyOf(Sets.difference(set1, hashSet2)),
+            ImmutableList.copyOf(Sets.difference(set1, set2)));
+        assertEquals(
+            Sets.intersection(hashSet1, hashSet2).size(), Sets.intersection(set1, set2).size());
+        assertEquals(
+            Sets.difference(hashSet1, hashSet2).size(), Sets.difference(set1, set2).size());
+        assertEquals(Sets.union(hashSet1, hashSet2).size(), Sets.union(set1, set2).size());
+        assertEquals(
+            ImmutableList.copyOf(Sets.union(set1, new LinkedHashSet<>(set2))),
+            ImmutableList.copyOf(Sets.union(set1, set2)));
+        assertEquals(
+            Sets.intersection(hashSet1, hashSet2).isEmpty(),
+            Sets.intersection(set1, set2).isEmpty());
+        assertEquals(
+            Sets.difference(hashSet1, hashSet2).isEmpty(), Sets.difference(set1, set2).isEmpty());
+      }
+    }
+
+    private static ImmutableSortedSet<Integer> randomSortedSet(Random random) {
+      ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+      // Vary the density, so that the merges both step and gallop through the sets.
+      int bound = 1 + random.nextInt(1000);
+      int size = random.nextInt(200);
+      for (int i = 0; i < size; i++) {
+        builder.add(random.nextInt(bound));
+      }
+      return builder.build();
+    }
+
+    public void testSortedSetViews_immutableCopy() {
+      Ordering<String> reverse = Ordering.<String>natural().reverse();
+      ImmutableSortedSet<String> friends =
+          ImmutableSortedSet.orderedBy(reverse).add("Tom", "Joe", "Dave").build();
+      ImmutableSortedSet<String> enemies =
+          ImmutableSortedSet.orderedBy(reverse).add("Dick", "Harry", "Tom").build();
+
+      ImmutableSet<String> frenemies = Sets.intersection(friends, enemies).immutableCopy();
+      assertEquals(ImmutableSet.of("Tom"), frenemies);
+      ImmutableSet<String> goodFriends = Sets.difference(friends, enemies).immutableCopy();
+      assertEquals(ImmutableList.of("Joe", "Dave"), goodFriends.asList());
+      assertEquals(friends.comparator(), ((ImmutableSortedSet<String>) goodFriends).comparator());
+    }
+
+    public void testIntersectAll() {
+      ImmutableSortedSet<Integer> evens = multiplesBelow(2, 1000);
+      ImmutableSortedSet<Integer> threes = multiplesBelow(3, 1000);
+      TreeSet<Integer> some = new TreeSet<>(asList(6, 7, 12, 500, 996, 999, 1200));
+
+      assertEquals(
+          ImmutableList.of(6, 12, 996),
+          Sets.intersectAll(ImmutableList.of(evens, threes, some)).asList());
+      assertEquals(
+          ImmutableList.of(6, 12, 996),
+          Sets.intersectAll(ImmutableList.of(some, threes, evens)).asList());
+      assertEquals(
+          Sets.intersection(evens, threes),
+          Sets.intersectAll(ImmutableList.<SortedSet<Integer>>of(evens, threes)));
+      assertEquals(evens, Sets.intersectAll(ImmutableList.of(evens)));
+      assertEquals(evens, Sets.intersectAll(ImmutableList.of(evens, evens, evens)));
+      assertTrue(
+          Sets.intersectAll(ImmutableList.of(evens, ImmutableSortedSet.<Integer>of())).isEmpty());
+    }
+
+    private static ImmutableSortedSet<Integer> multiplesBelow(int factor, int bound) {
+      ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+      for (int i = 0; i < bound; i += factor) {
+        builder.add(i);
+      }
+      return builder.build();
+    }
+
+    public void testIntersectAll_randomSets() {
+      Random random = new Random(0);
+      for (int trial = 0; trial < 100; trial++) {
+        List<ImmutableSortedSet<Integer>> sets = new ArrayList<>();
+        Set<Integer> expected = null;
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+          ImmutableSortedSet<Integer> set = randomSortedSet(random);
+          sets.add(set);
+          expected = (expected == null) ? new HashSet<>(set) : Sets.intersection(expected, set);
+        }
+        assertEquals(
+            ImmutableSortedSet.copyOf(expected).asList(), Sets.intersectAll(sets).asList());
+      }
+    }
+
+    public void testIntersectAll_keepsComparator() {
+      ImmutableSortedSet<String> set1 =
+          ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER).add("a", "B", "c").build();
+      TreeSet<String> set2 = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+      set2.addAll(asList("A", "b", "d"));
+      ImmutableSortedSet<String> intersection = Sets.intersectAll(ImmutableList.of(set1, set2));
+      assertEquals(ImmutableList.of("a", "B"), intersection.asList());
+      assertEquals(String.CASE_INSENSITIVE_ORDER, intersection.comparator());
+
+      // the elements are those of the first set
+      intersection = Sets.intersectAll(ImmutableList.of(set2, set1, set1));
+      assertEquals(ImmutableList.of("A", "b"), intersection.asList());
+    }
+
+    public void testIntersectAll_navigableSetIsNotCopied() {
+      TreeSet<Integer> uncopyable =
+          new TreeSet<Integer>(asList(3, 500, 999)) {
+            @Override
+            public Iterator<Integer> iterator() {
+              throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Object[] toArray() {
+              throw new UnsupportedOperationException();
+            }
+          };
+      assertEquals(
+          ImmutableList.of(3, 999),
+          Sets.intersectAll(ImmutableList.of(multiplesBelow(3, 1000), uncopyable)).asList());
+    }
+
+    public void testIntersectAll_mixedSets() {
+      Random random = new Random(0);
+      for (int trial = 0; trial < 100; trial++) {
+        List<SortedSet<Integer>> sets = new ArrayList<>();
+        Set<Integer> expected = null;
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+          ImmutableSortedSet<Integer> elements = randomSortedSet(random);
+          SortedSet<Integer> set;
+          switch (random.nextInt(3)) {
+            case 0:
+              set = elements;
+              break;
+            case 1:
+              set = new TreeSet<>(elements);
+              break;
+            default:
+              // neither immutable nor navigable
+              set = Collections.unmodifiableSortedSet(new TreeSet<>(elements));
+              break;
+          }
+          sets.add(set);
+          expected = (expected == null) ? new HashSet<>(set) : Sets.intersection(expected, set);
+        }
+        assertEquals(
+            ImmutableSortedSet.copyOf(expected).asList(), Sets.intersectAll(sets).asList());
+      }
+    }
+
+    public void testIntersectAll_illegalArguments() {
+      try {
+        Sets.intersectAll(ImmutableList.<SortedSet<String>>of());
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        Sets.intersectAll(
+            ImmutableList.of(
+                ImmutableSortedSet.of("a"),
+                ImmutableSortedSet.orderedBy(Ordering.<String>natural().reverse())
+                    .add("a")
+                    .build()));
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+
     public void testSymmetricDifference() {
       Set<String> friends = Sets.newHashSet("Tom", "Joe", "Dave");
       Set<String> enemies = Sets.newHashSet("Dick", "Harry", "Tom");
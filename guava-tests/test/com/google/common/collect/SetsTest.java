@@ -178,6 +178,26 @@ public class SetsTest extends TestCase {
             .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_VALUES)
             .createTestSuite());
 
+    suite.addTest(
+        SetTestSuiteBuilder.using(
+                new TestStringSetGenerator() {
+                  @Override
+                  protected Set<String> create(String[] elements) {
+                    // Duplicates must not end up in both sets, where they would cancel out.
+                    List<String> distinct =
+                        new ArrayList<>(Sets.newLinkedHashSet(Arrays.asList(elements)));
+                    int half = distinct.size() / 2;
+                    Set<String> set1 = Sets.newHashSet(distinct.subList(0, half));
+                    set1.add("in both");
+                    Set<String> set2 = Sets.newHashSet(distinct.subList(half, distinct.size()));
+                    set2.add("in both");
+                    return Sets.symmetricDifference(set1, set2);
+                  }
+                })
+            .named("Sets.symmetricDifference")
+            .withFeatures(CollectionSize.ANY, CollectionFeature.ALLOWS_NULL_VALUES)
+            .createTestSuite());
+
     suite.addTest(
         SetTestSuiteBuilder.using(
                 new TestEnumSetGenerator() {
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.EqualsTester;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link LongLongMap}. */
+public class LongLongMapTest extends TestCase {
+
+  public void testPutGet() {
+    LongLongMap map = LongLongMap.create();
+    assertTrue(map.isEmpty());
+    map.put(1, 10);
+    map.put(0, 20);
+    map.put(-1, 30);
+    map.put(1, 40);
+    assertEquals(3, map.size());
+    assertEquals(40, map.getOrDefault(1, -1));
+    assertEquals(20, map.getOrDefault(0, -1));
+    assertEquals(30, map.getOrDefault(-1, -1));
+    assertEquals(-1, map.getOrDefault(2, -1));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(2));
+  }
+
+  public void testPutIfAbsent() {
+    LongLongMap map = LongLongMap.create();
+    assertTrue(map.putIfAbsent(0, 1));
+    assertFalse(map.putIfAbsent(0, 2));
+    assertTrue(map.putIfAbsent(5, 1));
+    assertFalse(map.putIfAbsent(5, 2));
+    assertEquals(1, map.getOrDefault(0, -1));
+    assertEquals(1, map.getOrDefault(5, -1));
+  }
+
+  public void testAddTo() {
+    LongLongMap map = LongLongMap.create();
+    assertEquals(3, map.addTo(7, 3));
+    assertEquals(5, map.addTo(7, 2));
+    assertEquals(-1, map.addTo(0, -1));
+    assertEquals(-3, map.addTo(0, -2));
+    assertEquals(Long.MIN_VALUE, map.addTo(8, Long.MIN_VALUE));
+    assertEquals(Long.MAX_VALUE, map.addTo(8, -1));
+    assertEquals(3, map.size());
+  }
+
+  public void testRemove() {
+    LongLongMap map = LongLongMap.create();
+    map.put(0, 1);
+    map.put(1, 1);
+    assertTrue(map.remove(0));
+    assertFalse(map.remove(0));
+    assertTrue(map.remove(1));
+    assertFalse(map.remove(1));
+    assertTrue(map.isEmpty());
+  }
+
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    LongLongMap map = LongLongMap.create();
+    Map<Long, Long> expected = new HashMap<>();
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(2000) - 1000;
+      switch (random.nextInt(4)) {
+        case 0:
+          map.put(key, i);
+          expected.put(key, (long) i);
+          break;
+        case 1:
+          assertEquals(expected.remove(key) != null, map.remove(key));
+          break;
+        case 2:
+          long sum = map.addTo(key, i);
+          expected.put(key, expected.containsKey(key) ? expected.get(key) + i : (long) i);
+          assertEquals((long) expected.get(key), sum);
+          break;
+        default:
+          assertEquals(expected.containsKey(key), map.containsKey(key));
+          assertEquals(
+              expected.containsKey(key) ? expected.get(key) : -1L, map.getOrDefault(key, -1));
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    assertEquals(expected, toMap(map));
+    assertEquals(expected.hashCode(), map.hashCode());
+  }
+
+  public void testCursor() {
+    LongLongMap map = LongLongMap.create();
+    for (int i = 0; i < 100; i++) {
+      map.put(i, -i);
+    }
+    int count = 0;
+    for (LongLongMap.Cursor cursor = map.cursor(); cursor.advance(); ) {
+      assertEquals(-cursor.key(), cursor.value());
+      cursor.setValue(cursor.key());
+      count++;
+    }
+    assertEquals(100, count);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, map.getOrDefault(i, -1));
+    }
+
+    LongLongMap.Cursor cursor = map.cursor();
+    try {
+      cursor.key();
+      fail();
+    } catch (NoSuchElementException expected) {
+    }
+    assertTrue(cursor.advance());
+    map.put(1000, 0);
+    try {
+      cursor.advance();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testKeysAndValues() {
+    LongLongMap map = LongLongMap.of(0, 1);
+    map.put(2, 3);
+    ImmutableLongArray keys = map.keys();
+    ImmutableLongArray values = map.values();
+    assertEquals(2, keys.length());
+    for (int i = 0; i < keys.length(); i++) {
+      assertEquals(keys.get(i) + 1, values.get(i));
+    }
+  }
+
+  public void testPutAll() {
+    LongLongMap map = LongLongMap.of(0, 1);
+    map.put(2, 3);
+    LongLongMap other = LongLongMap.of(2, 4);
+    other.put(5, 6);
+    map.putAll(other);
+    assertEquals(ImmutableMap.of(0L, 1L, 2L, 4L, 5L, 6L), toMap(map));
+  }
+
+  public void testImmutableCopy() {
+    LongLongMap map = LongLongMap.create(1000);
+    map.put(0, 1);
+    map.put(2, 3);
+    LongLongMap copy = map.immutableCopy();
+    assertSame(copy, copy.immutableCopy());
+    assertEquals(map, copy);
+    map.put(4, 5);
+    assertEquals(2, copy.size());
+    try {
+      copy.put(6, 7);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      copy.clear();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    LongLongMap.Cursor cursor = copy.cursor();
+    assertTrue(cursor.advance());
+    try {
+      cursor.setValue(0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    LongLongMap map = LongLongMap.of(1, 2);
+    map.put(0, 3);
+    LongLongMap equal = LongLongMap.create(100);
+    equal.put(0, 3);
+    equal.put(1, 2);
+    new EqualsTester()
+        .addEqualityGroup(map, equal, equal.immutableCopy())
+        .addEqualityGroup(LongLongMap.of(1, 2))
+        .addEqualityGroup(LongLongMap.of(0, 2))
+        .addEqualityGroup(LongLongMap.create())
+        .testEquals();
+    assertEquals(ImmutableMap.of(0L, 3L, 1L, 2L).hashCode(), map.hashCode());
+  }
+
+  public void testToString() {
+    assertEquals("{}", LongLongMap.create().toString());
+    LongLongMap map = LongLongMap.of(0, 1);
+    assertEquals("{0=1}", map.toString());
+  }
+
+  public void testHashFlooding() {
+    // keys whose products with the default multiplier are 1, 2, 3... all have the same home slot
+    long inverse = PrimitiveHashing.LONG_MULTIPLIER;
+    for (int i = 0; i < 6; i++) {
+      inverse *= 2 - PrimitiveHashing.LONG_MULTIPLIER * inverse;
+    }
+    LongLongMap map = LongLongMap.create();
+    for (int i = 1; i <= 10000; i++) {
+      map.put(i * inverse, i);
+    }
+    assertTrue(map.multiplier != PrimitiveHashing.LONG_MULTIPLIER);
+    for (int i = 1; i <= 10000; i++) {
+      assertEquals(i, map.getOrDefault(i * inverse, -1));
+    }
+  }
+
+  private static Map<Long, Long> toMap(LongLongMap map) {
+    Map<Long, Long> result = new HashMap<>();
+    for (LongLongMap.Cursor cursor = map.cursor(); cursor.advance(); ) {
+      result.put(cursor.key(), cursor.value());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.EqualsTester;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link LongObjectMap}. */
+public class LongObjectMapTest extends TestCase {
+
+  public void testPutGet() {
+    LongObjectMap<String> map = LongObjectMap.create();
+    assertNull(map.put(1, "a"));
+    assertNull(map.put(0, "b"));
+    assertEquals("a", map.put(1, "c"));
+    assertEquals("b", map.put(0, "d"));
+    assertEquals(2, map.size());
+    assertEquals("c", map.get(1));
+    assertEquals("d", map.get(0));
+    assertNull(map.get(2));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(2));
+    try {
+      map.put(2, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testPutIfAbsent() {
+    LongObjectMap<String> map = LongObjectMap.create();
+    assertNull(map.putIfAbsent(0, "a"));
+    assertEquals("a", map.putIfAbsent(0, "b"));
+    assertNull(map.putIfAbsent(5, "a"));
+    assertEquals("a", map.putIfAbsent(5, "b"));
+    assertEquals(2, map.size());
+  }
+
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    LongObjectMap<Integer> map = LongObjectMap.create();
+    Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(2000) - 1000;
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.put(key, i), map.put(key, i));
+          break;
+        case 1:
+          assertEquals(expected.remove(key), map.remove(key));
+          break;
+        default:
+          assertEquals(expected.get(key), map.get(key));
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    assertEquals(expected, toMap(map));
+    assertEquals(expected.hashCode(), map.hashCode());
+  }
+
+  public void testCursor() {
+    LongObjectMap<String> map = LongObjectMap.of(0, "0");
+    for (long i = 1; i < 100; i++) {
+      map.put(i, Long.toString(i));
+    }
+    int count = 0;
+    for (LongObjectMap<String>.Cursor cursor = map.cursor(); cursor.advance(); ) {
+      assertEquals(Long.toString(cursor.key()), cursor.value());
+      cursor.setValue("x");
+      count++;
+    }
+    assertEquals(100, count);
+    assertEquals(Collections.nCopies(100, "x"), map.values());
+    assertEquals("x", map.get(0));
+    assertEquals("x", map.get(99));
+
+    LongObjectMap<String>.Cursor cursor = map.cursor();
+    assertTrue(cursor.advance());
+    map.remove(0);
+    try {
+      cursor.value();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testImmutableCopy() {
+    LongObjectMap<String> map = LongObjectMap.of(0, "a");
+    map.put(2, "b");
+    LongObjectMap<String> copy = map.immutableCopy();
+    assertSame(copy, copy.immutableCopy());
+    assertEquals(map, copy);
+    map.remove(2);
+    assertEquals(2, copy.size());
+    try {
+      copy.remove(2);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    LongObjectMap<String> map = LongObjectMap.of(1, "a");
+    map.put(0, "b");
+    LongObjectMap<String> equal = LongObjectMap.create(100);
+    equal.put(0, "b");
+    equal.put(1, "a");
+    new EqualsTester()
+        .addEqualityGroup(map, equal, equal.immutableCopy())
+        .addEqualityGroup(LongObjectMap.of(1, "a"))
+        .addEqualityGroup(LongObjectMap.of(0, "a"))
+        .addEqualityGroup(LongObjectMap.create())
+        .testEquals();
+    assertEquals(ImmutableMap.of(0L, "b", 1L, "a").hashCode(), map.hashCode());
+    assertEquals("{0=a}", LongObjectMap.of(0, "a").toString());
+  }
+
+  public void testHashFlooding() {
+    long inverse = PrimitiveHashing.LONG_MULTIPLIER;
+    for (int i = 0; i < 6; i++) {
+      inverse *= 2 - PrimitiveHashing.LONG_MULTIPLIER * inverse;
+    }
+    LongObjectMap<Integer> map = LongObjectMap.create();
+    for (int i = 1; i <= 10000; i++) {
+      map.put(i * inverse, i);
+    }
+    assertTrue(map.multiplier != PrimitiveHashing.LONG_MULTIPLIER);
+    for (int i = 1; i <= 10000; i++) {
+      assertEquals((Integer) i, map.get(i * inverse));
+    }
+  }
+
+  private static <V> Map<Long, V> toMap(LongObjectMap<V> map) {
+    Map<Long, V> result = new HashMap<>();
+    for (LongObjectMap<V>.Cursor cursor = map.cursor(); cursor.advance(); ) {
+      result.put(cursor.key(), cursor.value());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.testing.EqualsTester;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link LongSet}. */
+public class LongSetTest extends TestCase {
+
+  public void testAddContainsRemove() {
+    LongSet set = LongSet.create();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(0));
+    assertTrue(set.add(-1));
+    assertFalse(set.add(0));
+    assertFalse(set.add(-1));
+    assertEquals(2, set.size());
+    assertTrue(set.contains(0));
+    assertFalse(set.contains(1));
+    assertTrue(set.remove(0));
+    assertFalse(set.remove(0));
+    assertFalse(set.contains(0));
+    assertEquals(1, set.size());
+  }
+
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    LongSet set = LongSet.create();
+    Set<Long> expected = new HashSet<>();
+    for (int i = 0; i < 100000; i++) {
+      long element = random.nextInt(2000) - 1000;
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(element), set.add(element));
+          break;
+        case 1:
+          assertEquals(expected.remove(element), set.remove(element));
+          break;
+        default:
+          assertEquals(expected.contains(element), set.contains(element));
+      }
+      assertEquals(expected.size(), set.size());
+    }
+    assertEquals(expected, toSet(set));
+    assertEquals(expected.hashCode(), set.hashCode());
+  }
+
+  public void testBulkOperations() {
+    LongSet set = LongSet.of(0, 1, 2, 3, 4);
+    assertFalse(set.addAll(0, 1));
+    assertTrue(set.addAll(LongSet.of(4, 5)));
+    assertEquals(ImmutableSet.of(0L, 1L, 2L, 3L, 4L, 5L), toSet(set));
+    assertTrue(set.removeAll(LongSet.of(0, 2, 6)));
+    assertFalse(set.removeAll(LongSet.of(0, 2, 6)));
+    assertEquals(ImmutableSet.of(1L, 3L, 4L, 5L), toSet(set));
+    assertTrue(set.retainAll(LongSet.of(0, 1, 5)));
+    assertFalse(set.retainAll(LongSet.of(0, 1, 5)));
+    assertEquals(ImmutableSet.of(1L, 5L), toSet(set));
+  }
+
+  public void testRetainAll_large() {
+    LongSet set = LongSet.create();
+    LongSet evens = LongSet.create();
+    for (int i = 0; i < 10000; i++) {
+      set.add(i);
+      if (i % 2 == 0) {
+        evens.add(i);
+      }
+    }
+    assertTrue(set.retainAll(evens));
+    assertEquals(evens, set);
+    assertTrue(set.removeAll(set));
+    assertTrue(set.isEmpty());
+  }
+
+  public void testCursor() {
+    LongSet set = LongSet.of(0, 1, 2);
+    ImmutableLongArray elements = set.elements();
+    assertEquals(3, elements.length());
+    LongSet.Cursor cursor = set.cursor();
+    try {
+      cursor.element();
+      fail();
+    } catch (NoSuchElementException expected) {
+    }
+    for (int i = 0; i < elements.length(); i++) {
+      assertTrue(cursor.advance());
+      assertEquals(elements.get(i), cursor.element());
+    }
+    assertFalse(cursor.advance());
+
+    cursor = set.cursor();
+    set.add(3);
+    try {
+      cursor.advance();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testImmutableCopy() {
+    LongSet set = LongSet.of(0, 1);
+    LongSet copy = set.immutableCopy();
+    assertSame(copy, copy.immutableCopy());
+    assertEquals(set, copy);
+    set.add(2);
+    assertEquals(2, copy.size());
+    try {
+      copy.add(3);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      copy.retainAll(LongSet.create());
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    LongSet set = LongSet.of(1, 0);
+    LongSet equal = LongSet.create(100);
+    equal.add(0);
+    equal.add(1);
+    new EqualsTester()
+        .addEqualityGroup(set, equal, equal.immutableCopy())
+        .addEqualityGroup(LongSet.of(1))
+        .addEqualityGroup(LongSet.of(0))
+        .addEqualityGroup(LongSet.create())
+        .testEquals();
+    assertEquals(ImmutableSet.of(0L, 1L).hashCode(), set.hashCode());
+    assertEquals("[]", LongSet.create().toString());
+    assertEquals("[0]", LongSet.of(0).toString());
+  }
+
+  public void testHashFlooding() {
+    long inverse = PrimitiveHashing.LONG_MULTIPLIER;
+    for (int i = 0; i < 6; i++) {
+      inverse *= 2 - PrimitiveHashing.LONG_MULTIPLIER * inverse;
+    }
+    LongSet set = LongSet.create();
+    for (int i = 1; i <= 10000; i++) {
+      set.add(i * inverse);
+    }
+    assertTrue(set.multiplier != PrimitiveHashing.LONG_MULTIPLIER);
+    for (int i = 1; i <= 10000; i++) {
+      assertTrue(set.contains(i * inverse));
+    }
+  }
+
+  private static Set<Long> toSet(LongSet set) {
+    Set<Long> result = new HashSet<>();
+    for (LongSet.Cursor cursor = set.cursor(); cursor.advance(); ) {
+      result.add(cursor.element());
+    }
+    return result;
+  }
+}
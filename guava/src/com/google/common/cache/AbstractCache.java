@@ -181,6 +181,18 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
      */
     void recordEviction();
 
+    /**
+     * Records the load of a batch of {@code batchSize} new entries by a cache built with {@link
+     * CacheBuilder#batchLoads}. Each entry of the batch is also recorded by {@link
+     * #recordLoadSuccess} or {@link #recordLoadException}. The default implementation does nothing.
+     *
+     * @param batchSize the number of keys in the batch
+     * @param loadTime the number of nanoseconds the cache spent computing the batch
+     * @since 28.2
+     */
+    @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+    default void recordBatchLoad(int batchSize, long loadTime) {}
+
     /**
      * Returns a snapshot of this counter's values. Note that this may be an inconsistent view, as
      * it may be interleaved with update operations.
@@ -200,6 +212,9 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
     private final LongAddable loadExceptionCount = LongAddables.create();
     private final LongAddable totalLoadTime = LongAddables.create();
     private final LongAddable evictionCount = LongAddables.create();
+    private final LongAddable batchCount = LongAddables.create();
+    private final LongAddable batchedKeyCount = LongAddables.create();
+    private final LongAddable totalBatchLoadTime = LongAddables.create();
 
     /** Constructs an instance with all counts initialized to zero. */
     public SimpleStatsCounter() {}
@@ -235,6 +250,15 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
       evictionCount.increment();
     }
 
+    /** @since 28.2 */
+    @SuppressWarnings("GoodTime") // b/122668874
+    @Override
+    public void recordBatchLoad(int batchSize, long loadTime) {
+      batchCount.increment();
+      batchedKeyCount.add(batchSize);
+      totalBatchLoadTime.add(loadTime);
+    }
+
     @Override
     public CacheStats snapshot() {
       return new CacheStats(
@@ -243,7 +267,10 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
           negativeToMaxValue(loadSuccessCount.sum()),
           negativeToMaxValue(loadExceptionCount.sum()),
           negativeToMaxValue(totalLoadTime.sum()),
-          negativeToMaxValue(evictionCount.sum()));
+          negativeToMaxValue(evictionCount.sum()),
+          negativeToMaxValue(batchCount.sum()),
+          negativeToMaxValue(batchedKeyCount.sum()),
+          negativeToMaxValue(totalBatchLoadTime.sum()));
     }
 
     /** Returns {@code value}, if non-negative. Otherwise, returns {@link Long#MAX_VALUE}. */
@@ -260,6 +287,9 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
       loadExceptionCount.add(otherStats.loadExceptionCount());
       totalLoadTime.add(otherStats.totalLoadTime());
       evictionCount.add(otherStats.evictionCount());
+      batchCount.add(otherStats.batchCount());
+      batchedKeyCount.add(otherStats.batchedKeyCount());
+      totalBatchLoadTime.add(otherStats.totalBatchLoadTime());
     }
   }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Computes or retrieves values asynchronously, based on a key, for use in populating an {@link
+ * AsyncLoadingCache}.
+ *
+ * <p>Unlike {@link CacheLoader#load}, {@link #asyncLoad} should not block: it is called on the
+ * thread requesting the value, and should return a future that is completed once the value is
+ * available, for example by submitting the work to an executor or by issuing a non-blocking RPC.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+@FunctionalInterface
+public interface AsyncCacheLoader<K, V> {
+
+  /**
+   * Starts computing or retrieving the value corresponding to {@code key}.
+   *
+   * @param key the non-null key whose value should be loaded
+   * @return a future of the value associated with {@code key}; <b>must not be null, and must not
+   *     complete with a null value</b>
+   * @throws Exception if unable to start loading the value; this is equivalent to returning a
+   *     failed future
+   */
+  ListenableFuture<V> asyncLoad(K key) throws Exception;
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.ConcurrentMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A semi-persistent mapping from keys to futures of values, whose values are loaded asynchronously
+ * by an {@link AsyncCacheLoader}. Unlike {@link LoadingCache}, no method of this interface blocks
+ * while a value is being loaded: a future is returned at once, which may be composed using {@link
+ * com.google.common.util.concurrent.Futures} or {@link
+ * com.google.common.util.concurrent.FluentFuture}.
+ *
+ * <p>Each cache entry holds the future of its value from the moment its load starts, so concurrent
+ * requests for a key that is being loaded share a single load. A future that fails is removed from
+ * the cache, so that the next request for its key starts a new load. Entries are evicted and
+ * expire as configured by the {@link CacheBuilder}, exactly as they would be in a synchronous
+ * cache; weights are computed once an entry's value is available, and are zero until then.
+ *
+ * <p>Implementations of this interface are expected to be thread-safe, and can be safely accessed
+ * by multiple concurrent threads.
+ *
+ * @param <K> the type of the cache's keys, which are not permitted to be null
+ * @param <V> the type of the cache's values, which are not permitted to be null
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public interface AsyncLoadingCache<K, V> {
+
+  /**
+   * Returns the future associated with {@code key} in this cache, or {@code null} if there is none.
+   * The returned future may still be pending, if the value is being loaded; cancelling it does not
+   * cancel the load.
+   */
+  @Nullable
+  ListenableFuture<V> getIfPresent(Object key);
+
+  /**
+   * Returns the future associated with {@code key} in this cache, first starting to load the value
+   * if necessary. If another call to {@link #get} is currently loading the value for {@code key},
+   * a future of that load is returned. Cancelling the returned future does not cancel the load,
+   * which other callers may be waiting for.
+   *
+   * <p>If the loader throws, returns null, or returns a future that fails or completes with a null
+   * value, the returned future fails with the same exception (or an {@link
+   * CacheLoader.InvalidCacheLoadException}), and the entry is removed.
+   *
+   * @throws NullPointerException if {@code key} is null
+   */
+  ListenableFuture<V> get(K key);
+
+  /**
+   * Returns a future of a map of the values associated with {@code keys}, starting to load any
+   * values that are absent. The returned map contains entries that were already cached, combined
+   * with newly loaded entries, and iterates in the order of {@code keys}. The returned future fails
+   * if the future of any of the values fails.
+   *
+   * @throws NullPointerException if {@code keys} or any of its elements is null
+   */
+  ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys);
+
+  /**
+   * Associates {@code valueFuture} with {@code key} in this cache, replacing any previous future.
+   * If {@code valueFuture} fails, the entry is removed.
+   */
+  void put(K key, ListenableFuture<V> valueFuture);
+
+  /** Discards any cached value for key {@code key}. */
+  void invalidate(Object key);
+
+  /** Discards all entries in the cache. */
+  void invalidateAll();
+
+  /** Returns the approximate number of entries in this cache, including pending loads. */
+  long size();
+
+  /**
+   * Returns a current snapshot of this cache's cumulative statistics, or a set of default values if
+   * the cache is not recording statistics. A load is counted once its future completes, and its
+   * load time measures how long the future took to complete.
+   */
+  CacheStats stats();
+
+  /** Performs any pending maintenance operations needed by the cache. */
+  void cleanUp();
+
+  /**
+   * Returns a view of the entries stored in this cache as a thread-safe map, in which each value is
+   * the future of the cached value. Modifications made to the map directly affect the cache.
+   */
+  ConcurrentMap<K, ListenableFuture<V>> asMap();
+}
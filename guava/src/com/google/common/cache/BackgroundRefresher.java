@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.LocalCache.Segment;
+import com.google.common.util.concurrent.RateLimiter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * The periodic task that refreshes the entries of a cache built with {@link
+ * CacheBuilder#refreshInBackground} before they become eligible for refresh on request.
+ *
+ * <p>Each run finds the live entries that will be due for refresh before the next run, by walking
+ * the write queue of each segment from its least recently written entry until the first entry that
+ * is not yet due. It orders them by the access frequency recorded in the {@link FrequencySketch} of
+ * their segment, and submits the refreshes of as many as the rate limit permits to the executor,
+ * so that a slow load does not delay the others. The task only weakly references the cache, so
+ * that it does not prevent the cache from being garbage collected, and cancels itself once it has
+ * been.
+ */
+@GwtIncompatible
+final class BackgroundRefresher<K, V> implements Runnable {
+  private static final Logger logger = Logger.getLogger(BackgroundRefresher.class.getName());
+
+  /** The shortest period between runs, so that very short refresh intervals do not spin. */
+  static final long MINIMUM_PERIOD_NANOS = 1000000L; // 1 ms
+
+  /** The number of runs per refresh interval. */
+  static final int RUNS_PER_REFRESH = 4;
+
+  final WeakReference<LocalCache<K, V>> cacheReference;
+  final ScheduledExecutorService executor;
+  final RateLimiter rateLimiter;
+  final long periodNanos;
+
+  @MonotonicNonNull volatile ScheduledFuture<?> future;
+
+  BackgroundRefresher(
+      LocalCache<K, V> cache, ScheduledExecutorService executor, double refreshesPerSecond) {
+    this.cacheReference = new WeakReference<>(cache);
+    this.executor = executor;
+    this.rateLimiter = RateLimiter.create(refreshesPerSecond);
+    this.periodNanos = Math.max(cache.refreshNanos / RUNS_PER_REFRESH, MINIMUM_PERIOD_NANOS);
+  }
+
+  /**
+   * Schedules the refresh of the cache's entries on the executor. This must only be called once the
+   * cache is fully constructed, as the task runs on other threads.
+   */
+  void start() {
+    future = executor.scheduleWithFixedDelay(this, periodNanos, periodNanos, NANOSECONDS);
+  }
+
+  @Override
+  public void run() {
+    LocalCache<K, V> cache = cacheReference.get();
+    if (cache == null) {
+      ScheduledFuture<?> future = this.future;
+      if (future != null) {
+        future.cancel(false);
+      }
+      return;
+    }
+    try {
+      refreshDueEntries(cache, executor);
+    } catch (Throwable t) {
+      // an exception would suppress all subsequent runs
+      logger.log(Level.WARNING, "Exception thrown during background refresh", t);
+    }
+  }
+
+  /** Submits the refreshes of the entries that are due to {@code refreshExecutor}. */
+  @VisibleForTesting
+  void refreshDueEntries(LocalCache<K, V> cache, Executor refreshExecutor) {
+    long now = cache.ticker.read();
+    List<Candidate<K, V>> candidates = new ArrayList<>();
+    for (Segment<K, V> segment : cache.segments) {
+      segment.collectDueForRefresh(now, periodNanos, candidates);
+    }
+    Collections.sort(candidates, MOST_FREQUENT_FIRST);
+    for (final Candidate<K, V> candidate : candidates) {
+      if (!rateLimiter.tryAcquire()) {
+        break; // the remaining entries are reconsidered by the next run
+      }
+      try {
+        refreshExecutor.execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  candidate.segment.refreshIfDue(candidate.key, candidate.hash, periodNanos);
+                } catch (Throwable t) {
+                  logger.log(Level.WARNING, "Exception thrown during background refresh", t);
+                }
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        break; // the executor is shutting down
+      }
+    }
+  }
+
+  /** An entry that is due for refresh. */
+  static final class Candidate<K, V> {
+    final Segment<K, V> segment;
+    final K key;
+    final int hash;
+    final int frequency;
+
+    Candidate(Segment<K, V> segment, K key, int hash, int frequency) {
+      this.segment = segment;
+      this.key = key;
+      this.hash = hash;
+      this.frequency = frequency;
+    }
+  }
+
+  private static final Comparator<Candidate<?, ?>> MOST_FREQUENT_FIRST =
+      new Comparator<Candidate<?, ?>>() {
+        @Override
+        public int compare(Candidate<?, ?> a, Candidate<?, ?> b) {
+          return Integer.compare(b.frequency, a.frequency);
+        }
+      };
+}
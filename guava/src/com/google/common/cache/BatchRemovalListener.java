@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import java.util.List;
+
+/**
+ * An object that receives the notifications of removals from a cache in batches, as delivered by
+ * the listener returned by {@link RemovalListeners#batching}. This is more efficient than a {@link
+ * RemovalListener} when each notification is cheap to process, such as by appending it to a log.
+ *
+ * <p>The listener returned by {@link RemovalListeners#batching} delivers one batch at a time, so
+ * it does not call an instance concurrently, though it may call it from different threads.
+ *
+ * @param <K> the most general type of keys this listener can listen for
+ * @param <V> the most general type of values this listener can listen for
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible // To be supported
+@FunctionalInterface
+public interface BatchRemovalListener<K, V> {
+  /**
+   * Notifies the listener that the given removals occurred at some point in the past, in the order
+   * in which they were reported. The list is never empty and cannot be modified. Each call receives
+   * a new list, which the listener may keep after this method returns.
+   */
+  void onRemoval(List<RemovalNotification<K, V>> notifications);
+}
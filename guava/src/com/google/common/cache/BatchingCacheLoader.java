@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.AbstractCache.StatsCounter;
+import com.google.common.cache.CacheLoader.UnsupportedLoadingOperationException;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A loader that coalesces the single-key loads requested by concurrent cache misses into batches,
+ * each loaded by one call to {@link CacheLoader#loadAll}. Used by {@link CacheBuilder#batchLoads}.
+ *
+ * <p>No thread is owned: the first thread to miss opens a batch and waits up to the batch window
+ * for other misses to join it, then loads the batch itself. A thread that fills a batch to its
+ * maximum size closes it and loads it immediately instead, so that the opening thread only waits
+ * for the result. Every other thread of the batch simply waits for its own value.
+ */
+@GwtIncompatible
+final class BatchingCacheLoader<K, V> extends CacheLoader<K, V> {
+  final CacheLoader<? super K, V> loader;
+  final int maximumBatchSize;
+  final long windowNanos;
+  final StatsCounter statsCounter;
+
+  /** The cache that stores the entries {@code loadAll} returns for keys outside of a batch. */
+  final Map<K, V> cache;
+
+  /** The batch that misses currently join, or null if there is none. */
+  @GuardedBy("this")
+  @Nullable Map<K, SettableFuture<V>> openBatch;
+
+  BatchingCacheLoader(
+      CacheLoader<? super K, V> loader,
+      int maximumBatchSize,
+      long windowNanos,
+      StatsCounter statsCounter,
+      Map<K, V> cache) {
+    this.loader = checkNotNull(loader);
+    this.maximumBatchSize = maximumBatchSize;
+    this.windowNanos = windowNanos;
+    this.statsCounter = checkNotNull(statsCounter);
+    this.cache = checkNotNull(cache);
+  }
+
+  @Override
+  public V load(K key) throws Exception {
+    Map<K, SettableFuture<V>> batch;
+    SettableFuture<V> future;
+    boolean opened;
+    boolean closed;
+    synchronized (this) {
+      opened = (openBatch == null);
+      if (opened) {
+        openBatch = new LinkedHashMap<>();
+      }
+      batch = openBatch;
+      future = batch.get(key);
+      if (future == null) {
+        future = SettableFuture.create();
+        batch.put(key, future);
+      }
+      closed = (batch.size() >= maximumBatchSize);
+      if (closed) {
+        openBatch = null;
+      }
+    }
+
+    if (closed) {
+      loadBatch(batch);
+    } else if (opened) {
+      try {
+        return getValue(future, windowNanos);
+      } catch (TimeoutException e) {
+        synchronized (this) {
+          // otherwise the batch was filled, and is being loaded by the thread that filled it
+          closed = (openBatch == batch);
+          if (closed) {
+            openBatch = null;
+          }
+        }
+        if (closed) {
+          loadBatch(batch);
+        }
+      }
+    }
+    return getValue(future);
+  }
+
+  /**
+   * Loads all the keys of a closed batch, and completes their futures. Stores any other entries
+   * that were loaded in the cache, as {@link LoadingCache#getAll} does.
+   */
+  private void loadBatch(Map<K, SettableFuture<V>> batch) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Map<?, V> result;
+    try {
+      result = loader.loadAll(batch.keySet());
+    } catch (UnsupportedLoadingOperationException e) {
+      // the loader cannot load in bulk, so the batch was for nothing
+      for (Map.Entry<K, SettableFuture<V>> entry : batch.entrySet()) {
+        loadOne(entry.getKey(), entry.getValue());
+      }
+      statsCounter.recordBatchLoad(batch.size(), stopwatch.elapsed(NANOSECONDS));
+      return;
+    } catch (Throwable t) {
+      for (SettableFuture<V> future : batch.values()) {
+        future.setException(t);
+      }
+      statsCounter.recordBatchLoad(batch.size(), stopwatch.elapsed(NANOSECONDS));
+      if (t instanceof Error) {
+        throw (Error) t;
+      }
+      return;
+    }
+    statsCounter.recordBatchLoad(batch.size(), stopwatch.elapsed(NANOSECONDS));
+
+    for (Map.Entry<K, SettableFuture<V>> entry : batch.entrySet()) {
+      // a missing value is returned as null, which fails the load as for any other loader
+      entry.getValue().set((result == null) ? null : result.get(entry.getKey()));
+    }
+    if (result != null && result.size() > batch.size()) {
+      for (Map.Entry<?, V> entry : result.entrySet()) {
+        Object key = entry.getKey();
+        V value = entry.getValue();
+        if (key != null && value != null && !batch.containsKey(key)) {
+          @SuppressWarnings("unchecked") // the loader returns values for keys of type K
+          K castKey = (K) key;
+          cache.put(castKey, value);
+        }
+      }
+    }
+  }
+
+  private void loadOne(K key, SettableFuture<V> future) {
+    try {
+      future.set(loader.load(key));
+    } catch (Throwable t) {
+      future.setException(t);
+    }
+  }
+
+  @Override
+  public ListenableFuture<V> reload(K key, V oldValue) throws Exception {
+    return loader.reload(key, oldValue);
+  }
+
+  @Override
+  public Map<K, V> loadAll(Iterable<? extends K> keys) throws Exception {
+    @SuppressWarnings("unchecked") // the loader returns values for keys of type K
+    Map<K, V> result = (Map<K, V>) loader.loadAll(keys);
+    return result;
+  }
+
+  private static <V> V getValue(ListenableFuture<V> future) throws Exception {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  private static <V> V getValue(ListenableFuture<V> future, long timeoutNanos) throws Exception {
+    try {
+      return Uninterruptibles.getUninterruptibly(future, timeoutNanos, NANOSECONDS);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  /** Returns the exception with which the load of a value failed, so that it can be rethrown. */
+  private static Exception unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    Throwables.throwIfUnchecked(cause);
+    return (cause instanceof Exception)
+        ? (Exception) cause
+        : new UncheckedExecutionException(cause);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link RemovalListener} returned by {@link RemovalListeners#batching}. Notifications are
+ * added to a bounded queue, which a single task at a time drains in batches on the executor. A
+ * thread that finds the queue full delivers a batch itself, which slows down the threads that
+ * remove entries faster than the listener can keep up with. Draining a batch and delivering it is
+ * done under {@link #deliveryLock}, so that batches are delivered one at a time and in order,
+ * whichever thread delivers them.
+ */
+@GwtIncompatible
+final class BatchingRemovalListener<K, V> implements RemovalListener<K, V>, Runnable {
+  private static final Logger logger = Logger.getLogger(BatchingRemovalListener.class.getName());
+
+  final BatchRemovalListener<K, V> listener;
+  final Executor executor;
+  final int maximumBatchSize;
+  final BlockingQueue<RemovalNotification<K, V>> pending;
+
+  /** Whether a task to drain {@link #pending} was submitted and has not yet finished draining. */
+  final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /** Held while a batch is drained from {@link #pending} and delivered. */
+  final ReentrantLock deliveryLock = new ReentrantLock();
+
+  BatchingRemovalListener(
+      BatchRemovalListener<K, V> listener,
+      Executor executor,
+      int maximumBatchSize,
+      int maximumPending) {
+    this.listener = listener;
+    this.executor = executor;
+    this.maximumBatchSize = maximumBatchSize;
+    this.pending = new ArrayBlockingQueue<>(maximumPending);
+  }
+
+  @Override
+  public void onRemoval(RemovalNotification<K, V> notification) {
+    while (!pending.offer(notification)) {
+      // back pressure: the listener is falling behind, so help it
+      deliverBatch();
+    }
+    schedule();
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // as with a full queue, deliver the notifications on this thread rather than lose them
+        scheduled.set(false);
+        while (deliverBatch()) {}
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (deliverBatch()) {}
+    } finally {
+      scheduled.set(false);
+    }
+    // a notification added after the last batch, but before the flag was cleared, needs a task
+    if (!pending.isEmpty()) {
+      schedule();
+    }
+  }
+
+  /** Delivers up to {@link #maximumBatchSize} pending notifications, if there are any. */
+  boolean deliverBatch() {
+    deliveryLock.lock();
+    try {
+      List<RemovalNotification<K, V>> batch = new ArrayList<>(Math.min(maximumBatchSize, 16));
+      pending.drainTo(batch, maximumBatchSize);
+      if (batch.isEmpty()) {
+        return false;
+      }
+      try {
+        listener.onRemoval(Collections.unmodifiableList(batch));
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown by removal listener", t);
+      }
+      return true;
+    } finally {
+      deliveryLock.unlock();
+    }
+  }
+}
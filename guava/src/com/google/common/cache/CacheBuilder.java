@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 import com.google.common.base.Ascii;
@@ -29,18 +30,22 @@ import com.google.common.base.Ticker;
 import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.LocalCache.Strength;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.j2objc.annotations.J2ObjCIncompatible;
+import java.io.File;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.ConcurrentModificationException;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * A builder of {@link LoadingCache} and {@link Cache} instances having any combination of the
@@ -48,7 +53,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *
  * <ul>
  *   <li>automatic loading of entries into the cache
- *   <li>least-recently-used eviction when a maximum size is exceeded
+ *   <li>least-recently-used or frequency-aware eviction when a maximum size is exceeded
  *   <li>time-based expiration of entries, measured since last access or last write
  *   <li>keys automatically wrapped in {@linkplain WeakReference weak} references
  *   <li>values automatically wrapped in {@linkplain WeakReference weak} or {@linkplain
@@ -108,17 +113,18 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *
  * <p>Entries are automatically evicted from the cache when any of {@linkplain #maximumSize(long)
  * maximumSize}, {@linkplain #maximumWeight(long) maximumWeight}, {@linkplain #expireAfterWrite
- * expireAfterWrite}, {@linkplain #expireAfterAccess expireAfterAccess}, {@linkplain #weakKeys
- * weakKeys}, {@linkplain #weakValues weakValues}, or {@linkplain #softValues softValues} are
- * requested.
+ * expireAfterWrite}, {@linkplain #expireAfterAccess expireAfterAccess}, {@linkplain #expireAfter
+ * expireAfter}, {@linkplain #weakKeys weakKeys}, {@linkplain #weakValues weakValues}, or
+ * {@linkplain #softValues softValues} are requested.
  *
  * <p>If {@linkplain #maximumSize(long) maximumSize} or {@linkplain #maximumWeight(long)
  * maximumWeight} is requested entries may be evicted on each cache modification.
  *
- * <p>If {@linkplain #expireAfterWrite expireAfterWrite} or {@linkplain #expireAfterAccess
- * expireAfterAccess} is requested entries may be evicted on each cache modification, on occasional
- * cache accesses, or on calls to {@link Cache#cleanUp}. Expired entries may be counted by {@link
- * Cache#size}, but will never be visible to read or write operations.
+ * <p>If {@linkplain #expireAfterWrite expireAfterWrite}, {@linkplain #expireAfterAccess
+ * expireAfterAccess} or {@linkplain #expireAfter expireAfter} is requested entries may be evicted
+ * on each cache modification, on occasional cache accesses, or on calls to {@link Cache#cleanUp}.
+ * Expired entries may be counted by {@link Cache#size}, but will never be visible to read or write
+ * operations.
  *
  * <p>If {@linkplain #weakKeys weakKeys}, {@linkplain #weakValues weakValues}, or {@linkplain
  * #softValues softValues} are requested, it is possible for a key or value present in the cache to
@@ -234,6 +240,7 @@ public final class CacheBuilder<K, V> {
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
   @MonotonicNonNull Weigher<? super K, ? super V> weigher;
+  @MonotonicNonNull EvictionPolicy evictionPolicy;
 
   @MonotonicNonNull Strength keyStrength;
   @MonotonicNonNull Strength valueStrength;
@@ -247,12 +254,30 @@ public final class CacheBuilder<K, V> {
   @SuppressWarnings("GoodTime") // should be a java.time.Duration
   long refreshNanos = UNSET_INT;
 
+  @MonotonicNonNull ScheduledExecutorService refreshExecutor;
+  double refreshesPerSecond;
+
+  @MonotonicNonNull ScheduledExecutorService maintenanceExecutor;
+
+  boolean unsegmented;
+
+  int maximumBatchSize = UNSET_INT;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  long batchWindowNanos = UNSET_INT;
+
+  @MonotonicNonNull Expiry<? super K, ? super V> expiry;
+
   @MonotonicNonNull Equivalence<Object> keyEquivalence;
   @MonotonicNonNull Equivalence<Object> valueEquivalence;
 
   @MonotonicNonNull RemovalListener<? super K, ? super V> removalListener;
   @MonotonicNonNull Ticker ticker;
 
+  @MonotonicNonNull CacheSerializer<?> valueSerializer;
+  @MonotonicNonNull File offHeapFile;
+  long onHeapTierSize = UNSET_INT;
+
   Supplier<? extends StatsCounter> statsCounterSupplier = NULL_STATS_COUNTER;
 
   private CacheBuilder() {}
@@ -545,6 +570,74 @@ public final class CacheBuilder<K, V> {
     return (Weigher<K1, V1>) MoreObjects.firstNonNull(weigher, OneWeigher.INSTANCE);
   }
 
+  /**
+   * Specifies the policy used to choose which entries to evict once the cache exceeds its
+   * {@linkplain #maximumSize(long) maximum size} or {@linkplain #maximumWeight(long) maximum
+   * weight}. By default, {@link EvictionPolicy#LEAST_RECENTLY_USED} is used.
+   *
+   * <p>With {@link EvictionPolicy#TINY_LFU}, a write that would push the cache over capacity only
+   * displaces the least-recently-used entry if the written key has been requested more often
+   * recently; otherwise the newly written entry is evicted in its place. This protects a frequently
+   * used working set from being flushed by a scan over many rarely used keys. Note that a value
+   * which is loaded but not admitted is still returned to the caller that requested it.
+   *
+   * <p>Use of this method requires a corresponding call to {@link #maximumSize(long)} or {@link
+   * #maximumWeight(long)} prior to calling {@link #build}.
+   *
+   * @param evictionPolicy the policy used to select entries for size-based eviction
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if an eviction policy was already set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public CacheBuilder<K, V> evictionPolicy(EvictionPolicy evictionPolicy) {
+    checkState(
+        this.evictionPolicy == null,
+        "eviction policy was already set to %s",
+        this.evictionPolicy);
+    this.evictionPolicy = checkNotNull(evictionPolicy);
+    return this;
+  }
+
+  EvictionPolicy getEvictionPolicy() {
+    return MoreObjects.firstNonNull(evictionPolicy, EvictionPolicy.LEAST_RECENTLY_USED);
+  }
+
+  /**
+   * Specifies that the cache should store all its entries in a single concurrent hash table, which
+   * grows as needed, rather than in a fixed number of segments chosen by the {@linkplain
+   * #concurrencyLevel concurrency level}, each of which is a separately locked table that evicts
+   * its own entries.
+   *
+   * <p>The entries are then evicted and expired in the order of their use across the whole cache:
+   * the {@linkplain #maximumSize maximum size} is enforced exactly, rather than per segment, and
+   * the least recently used entry of the cache is the one evicted. Reads and writes of different
+   * keys rarely contend, whatever the concurrency level, which is ignored. Reads and writes are
+   * recorded in buffers and applied to the eviction order in batches, so that they do not contend
+   * on the lock that guards it; the cache may therefore briefly exceed its maximum size while
+   * writes are in progress.
+   *
+   * <p>A load blocks the writes, and the other loads, of the keys that share its bin of the hash
+   * table, and a loader must not read or write the cache. Only the following options can be
+   * combined with this one: {@link #initialCapacity}, {@link #concurrencyLevel}, {@link
+   * #maximumSize}, {@link #maximumWeight} and {@link #weigher}, {@link #expireAfterAccess}, {@link
+   * #expireAfterWrite}, {@link #ticker}, {@link #removalListener}, {@link #recordStats}, and the
+   * {@link EvictionPolicy#LEAST_RECENTLY_USED} eviction policy. An unsegmented cache cannot be
+   * {@linkplain #buildAsync built asynchronously} or {@linkplain #buildLongKeyed keyed by longs}.
+   *
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if the cache was already specified to be unsegmented
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public CacheBuilder<K, V> unsegmented() {
+    checkState(!unsegmented, "cache was already specified to be unsegmented");
+    this.unsegmented = true;
+    return this;
+  }
+
   /**
    * Specifies that each key (not value) stored in the cache should be wrapped in a {@link
    * WeakReference} (by default, strong references are used).
@@ -688,6 +781,7 @@ public final class CacheBuilder<K, V> {
         expireAfterWriteNanos == UNSET_INT,
         "expireAfterWrite was already set to %s ns",
         expireAfterWriteNanos);
+    checkState(this.expiry == null, "expireAfterWrite cannot be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterWriteNanos = unit.toNanos(duration);
     return this;
@@ -762,6 +856,7 @@ public final class CacheBuilder<K, V> {
         expireAfterAccessNanos == UNSET_INT,
         "expireAfterAccess was already set to %s ns",
         expireAfterAccessNanos);
+    checkState(this.expiry == null, "expireAfterAccess cannot be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterAccessNanos = unit.toNanos(duration);
     return this;
@@ -773,6 +868,57 @@ public final class CacheBuilder<K, V> {
         : expireAfterAccessNanos;
   }
 
+  /**
+   * Specifies that each entry should be automatically removed from the cache once a duration
+   * computed by {@code expiry} has elapsed. Unlike {@link #expireAfterWrite(long, TimeUnit)
+   * expireAfterWrite} and {@link #expireAfterAccess(long, TimeUnit) expireAfterAccess}, which apply
+   * the same duration to every entry, this allows each entry to have its own lifetime, for example
+   * one taken from the value itself. The lifetime is recomputed whenever the entry is created,
+   * updated or read.
+   *
+   * <p>Entries are expired in amortized constant time using a hierarchical timing wheel, so caches
+   * holding many entries with widely varying lifetimes do not need to keep them sorted.
+   *
+   * <p>Expired entries may be counted in {@link Cache#size}, but will never be visible to read or
+   * write operations. Expired entries are cleaned up as part of the routine maintenance described
+   * in the class javadoc.
+   *
+   * <p><b>Warning:</b> after invoking this method, do not continue to use <i>this</i> cache builder
+   * reference; instead use the reference this method <i>returns</i>. At runtime, these point to the
+   * same instance, but only the returned reference has the correct generic type information so as
+   * to ensure type safety.
+   *
+   * @param expiry the expiry used to compute the lifetime of each entry
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if an expiry, the time to live or the time to idle was already
+   *     set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> expireAfter(
+      Expiry<? super K1, ? super V1> expiry) {
+    checkState(this.expiry == null, "expiry was already set to %s", this.expiry);
+    checkState(
+        expireAfterWriteNanos == UNSET_INT,
+        "expireAfter cannot be combined with expireAfterWrite");
+    checkState(
+        expireAfterAccessNanos == UNSET_INT,
+        "expireAfter cannot be combined with expireAfterAccess");
+
+    // safely limiting the kinds of caches this can produce
+    @SuppressWarnings("unchecked")
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.expiry = checkNotNull(expiry);
+    return me;
+  }
+
+  // Make a safe contravariant cast now so we don't have to do it over and over.
+  @SuppressWarnings("unchecked")
+  <K1 extends K, V1 extends V> @Nullable Expiry<K1, V1> getExpiry() {
+    return (Expiry<K1, V1>) expiry;
+  }
+
   /**
    * Specifies that active entries are eligible for automatic refresh once a fixed duration has
    * elapsed after the entry's creation, or the most recent replacement of its value. The semantics
@@ -849,6 +995,150 @@ public final class CacheBuilder<K, V> {
     return (refreshNanos == UNSET_INT) ? DEFAULT_REFRESH_NANOS : refreshNanos;
   }
 
+  /**
+   * Specifies that entries should be refreshed in the background by tasks run on {@code executor},
+   * shortly before they become eligible for refresh under {@link #refreshAfterWrite}, rather than
+   * only when they are requested after that. Entries that are not requested therefore do not go
+   * stale, and requests of frequently used entries do not trigger their refresh.
+   *
+   * <p>A task periodically finds the entries that are due to be refreshed before its next run, and
+   * submits a task to {@code executor} for each that refreshes it by calling {@link
+   * CacheLoader#reload}, the most frequently accessed ones first. The task runs four times per
+   * refresh interval, but at most once per millisecond. Entries are kept in write order, so that
+   * finding the due entries takes time proportional to their number, unless the cache also uses
+   * {@link #expireAfter}, in which case it is proportional to the size of the cache. No more than
+   * {@code refreshesPerSecond} entries are refreshed per second; the others are considered again
+   * on the next run. An entry is still refreshed on request, as described by {@link
+   * #refreshAfterWrite}, if it was not refreshed in the background in time.
+   *
+   * <p>The task is scheduled when the cache is built, and cancels itself once the cache has been
+   * garbage collected. The executor is not shut down by the cache. As the default implementation
+   * of {@link CacheLoader#reload} is synchronous, reloads are then performed by the executor's
+   * threads.
+   *
+   * @param executor the executor that runs the refresh task
+   * @param refreshesPerSecond the maximum rate at which entries are refreshed in the background
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code refreshesPerSecond} is not positive
+   * @throws IllegalStateException if background refresh was already requested
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // ScheduledExecutorService
+  public CacheBuilder<K, V> refreshInBackground(
+      ScheduledExecutorService executor, double refreshesPerSecond) {
+    checkNotNull(executor);
+    checkState(this.refreshExecutor == null, "background refresh was already requested");
+    checkArgument(
+        refreshesPerSecond > 0.0, "refreshesPerSecond must be positive: %s", refreshesPerSecond);
+    this.refreshExecutor = executor;
+    this.refreshesPerSecond = refreshesPerSecond;
+    return this;
+  }
+
+  /**
+   * Specifies that the cache's routine maintenance should be performed by tasks run on {@code
+   * executor}, rather than only by the threads that read and write the cache. Maintenance consists
+   * of removing expired entries and entries whose keys or values were garbage collected, applying
+   * the recorded reads to the eviction order, and delivering the resulting removal notifications.
+   *
+   * <p>By default, every 64th read of a segment performs that segment's maintenance, and every
+   * write performs it before and after updating the segment, so that an unlucky request may pay
+   * for a large amount of work, and a cache that is no longer used never releases the entries it
+   * holds. With a maintenance executor, reads instead submit a task to perform the maintenance, and
+   * a write only delivers up to 16 removal notifications itself, leaving the rest to a task. Writes
+   * still remove the entries that expired since the last run, as they must not observe them. A
+   * task also runs periodically, so that entries expire on time even if the cache is idle: four
+   * times per shortest expiration interval, but at most once per millisecond and at least once per
+   * second.
+   *
+   * <p>Removal listeners are therefore mostly invoked by the executor's threads. The periodic task
+   * is scheduled when the cache is built, and cancels itself once the cache has been garbage
+   * collected. The executor is not shut down by the cache, and may be shared by many caches.
+   *
+   * @param executor the executor that runs the maintenance tasks
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a maintenance executor was already set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // ScheduledExecutorService
+  public CacheBuilder<K, V> maintenanceExecutor(ScheduledExecutorService executor) {
+    checkNotNull(executor);
+    checkState(this.maintenanceExecutor == null, "maintenance executor was already set");
+    this.maintenanceExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Specifies that the loads of missing entries requested by concurrent lookups should be
+   * coalesced into batches of up to {@code maximumBatchSize} keys, each loaded by a single call to
+   * {@link CacheLoader#loadAll}. This reduces the number of round-trips to a backend that can
+   * serve many keys at once.
+   *
+   * <p>The first lookup to miss opens a batch, and waits up to the given window for other misses
+   * to join it before loading it; the lookup that fills a batch loads it immediately. Lookups
+   * therefore wait up to the window longer than an unbatched load, in exchange for sharing it.
+   * Lookups of keys that are already being loaded wait for that load, as usual. {@link
+   * LoadingCache#getAll} still loads all its missing keys at once, and {@linkplain
+   * LoadingCache#refresh refreshes} are not batched.
+   *
+   * <p>The {@code CacheLoader} should implement {@link CacheLoader#loadAll}; otherwise the keys of
+   * each batch are loaded one at a time. A key that {@code loadAll} does not return a value for
+   * fails to load with an {@link CacheLoader.InvalidCacheLoadException}, and any entries returned
+   * for keys that were not requested are stored in the cache, as by {@link LoadingCache#getAll}.
+   * If {@code loadAll} throws, the load of every key of the batch fails with that exception.
+   *
+   * <p>When {@linkplain #recordStats recording stats}, each batch is counted by {@link
+   * CacheStats#batchCount}, {@link CacheStats#batchedKeyCount} and {@link
+   * CacheStats#totalBatchLoadTime}, in addition to the loads of its keys.
+   *
+   * @param maximumBatchSize the maximum number of keys to load at once
+   * @param window how long the first miss of a batch waits for other misses to join it
+   * @param unit the unit that {@code window} is expressed in
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code maximumBatchSize} is not positive, or {@code window}
+   *     is negative
+   * @throws IllegalStateException if batched loads were already requested
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  public CacheBuilder<K, V> batchLoads(int maximumBatchSize, long window, TimeUnit unit) {
+    checkNotNull(unit);
+    checkState(
+        this.maximumBatchSize == UNSET_INT,
+        "maximum batch size was already set to %s",
+        this.maximumBatchSize);
+    checkArgument(maximumBatchSize > 0, "maximum batch size must be positive");
+    checkArgument(window >= 0, "window must not be negative: %s %s", window, unit);
+    this.maximumBatchSize = maximumBatchSize;
+    this.batchWindowNanos = unit.toNanos(window);
+    return this;
+  }
+
+  /**
+   * Specifies that the loads of missing entries requested by concurrent lookups should be
+   * coalesced into batches of up to {@code maximumBatchSize} keys, each loaded by a single call to
+   * {@link CacheLoader#loadAll}. See {@link #batchLoads(int, long, TimeUnit)}.
+   *
+   * @param maximumBatchSize the maximum number of keys to load at once
+   * @param window how long the first miss of a batch waits for other misses to join it
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code maximumBatchSize} is not positive, or {@code window}
+   *     is negative
+   * @throws IllegalStateException if batched loads were already requested
+   * @since 28.2
+   */
+  @Beta
+  @J2ObjCIncompatible
+  @GwtIncompatible // java.time.Duration
+  @SuppressWarnings("GoodTime") // java.time.Duration decomposition
+  public CacheBuilder<K, V> batchLoads(int maximumBatchSize, java.time.Duration window) {
+    return batchLoads(maximumBatchSize, saturatedToNanos(window), TimeUnit.NANOSECONDS);
+  }
+
   /**
    * Specifies a nanosecond-precision time source for this cache. By default, {@link
    * System#nanoTime} is used.
@@ -912,6 +1202,100 @@ public final class CacheBuilder<K, V> {
         MoreObjects.firstNonNull(removalListener, NullListener.INSTANCE);
   }
 
+  /**
+   * Specifies that values should be stored outside of the Java heap, in direct {@link
+   * java.nio.ByteBuffer} memory, in the serialized form produced by {@code serializer}. This keeps
+   * the values of a large cache from burdening the garbage collector, at the cost of deserializing
+   * a value each time it is read. Consider also {@link #onHeapTier} to avoid deserializing the most
+   * frequently read values.
+   *
+   * <p>Size-based eviction, expiration, removal notifications and statistics behave as they would
+   * for an on-heap cache. A {@linkplain #weigher weigher} is applied to each value when it is
+   * stored, and may for instance return its serialized size. The memory of a value is released
+   * when it is removed from the cache for any reason, and reused for later values of a similar
+   * size.
+   *
+   * <p>Values are serialized when they are stored, and deserialized each time they are read, so
+   * each read returns a distinct but equal object. Off-heap values cannot be combined with {@link
+   * #weakValues}, {@link #softValues} or {@link #expireAfter}.
+   *
+   * @param serializer converts values to and from bytes
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if off-heap values were already requested
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // ByteBuffer
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> offHeapValues(
+      CacheSerializer<V1> serializer) {
+    checkState(this.valueSerializer == null, "offHeapValues was already set");
+
+    @SuppressWarnings("unchecked") // the serializer is only used on values of type V1
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.valueSerializer = checkNotNull(serializer);
+    return me;
+  }
+
+  /**
+   * Specifies that values should be stored outside of the Java heap, in memory mapped from {@code
+   * file}, in the serialized form produced by {@code serializer}. Otherwise behaves like {@link
+   * #offHeapValues(CacheSerializer)}.
+   *
+   * <p>The file is created if it does not exist, grows as needed, and its previous contents are
+   * overwritten. It is not deleted when the cache is no longer used. A deserialized copy of the
+   * cache stores its values in direct memory instead, since it cannot share the file.
+   *
+   * @param serializer converts values to and from bytes
+   * @param file the file whose memory holds the values
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if off-heap values were already requested
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // MappedByteBuffer
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> offHeapValues(
+      CacheSerializer<V1> serializer, File file) {
+    checkNotNull(file);
+    CacheBuilder<K1, V1> me = offHeapValues(serializer);
+    me.offHeapFile = file;
+    return me;
+  }
+
+  @SuppressWarnings("unchecked") // the serializer was supplied for values of type V1
+  <V1 extends V> CacheSerializer<V1> getValueSerializer() {
+    return (CacheSerializer<V1>) valueSerializer;
+  }
+
+  @GwtIncompatible // ByteBuffer
+  OffHeapStore.SlabFactory getSlabFactory() {
+    return (offHeapFile == null) ? OffHeapStore.DIRECT : OffHeapStore.mapped(offHeapFile);
+  }
+
+  /**
+   * Specifies that up to {@code maximumSize} values of an {@linkplain #offHeapValues off-heap}
+   * cache should also be kept deserialized on the heap, so that reading them again does not
+   * deserialize them. A value is promoted to this tier once it has been read repeatedly, and the
+   * least recently read values are demoted when the tier is full. Promotion does not affect
+   * eviction from the cache, nor its statistics.
+   *
+   * @param maximumSize the maximum number of values to keep on the heap
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code maximumSize} is negative
+   * @throws IllegalStateException if an on-heap tier size was already set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // ByteBuffer
+  public CacheBuilder<K, V> onHeapTier(long maximumSize) {
+    checkState(
+        this.onHeapTierSize == UNSET_INT,
+        "on-heap tier size was already set to %s",
+        this.onHeapTierSize);
+    checkArgument(maximumSize >= 0, "maximum size must not be negative");
+    this.onHeapTierSize = maximumSize;
+    return this;
+  }
+
   /**
    * Enable the accumulation of {@link CacheStats} during the operation of the cache. Without this
    * {@link Cache#stats} will return zero for all statistics. Note that recording stats requires
@@ -919,13 +1303,84 @@ public final class CacheBuilder<K, V> {
    * cache operation.
    *
    * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if detailed stats were already requested
    * @since 12.0 (previously, stats collection was automatic)
    */
   public CacheBuilder<K, V> recordStats() {
+    checkState(
+        statsCounterSupplier == NULL_STATS_COUNTER || statsCounterSupplier == CACHE_STATS_COUNTER,
+        "recordStats cannot be combined with recordDetailedStats");
     statsCounterSupplier = CACHE_STATS_COUNTER;
     return this;
   }
 
+  /**
+   * Enables the accumulation of detailed {@link CacheStats} during the operation of the cache, in
+   * addition to those enabled by {@link #recordStats}. The time taken by each load is counted in a
+   * {@linkplain CacheStats#loadLatencies histogram}, from which percentiles of the load latency
+   * can be estimated, and hits and misses are also counted in {@linkplain CacheStats#windows
+   * windows} of the given duration, the most recent {@code windowCount} of which are reported.
+   *
+   * <p>The detailed stats are kept in striped counters, as are the basic stats, so that they are
+   * cheap enough to be recorded in production: a hit costs no more than with {@link #recordStats},
+   * and each histogram bucket only takes memory once a load time falls into it. To keep hits cheap,
+   * the current window is only replaced when the cache performs its routine maintenance, on a miss,
+   * or when the stats are read, so a hit may be counted in the window that preceded it, by at most
+   * a few dozen requests.
+   *
+   * @param window the duration of each window of hits and misses
+   * @param unit the unit that {@code window} is expressed in
+   * @param windowCount the number of most recent windows to report
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code window} or {@code windowCount} is not positive
+   * @throws IllegalStateException if stats were already requested by this method or by {@link
+   *     #recordStats}
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  public CacheBuilder<K, V> recordDetailedStats(long window, TimeUnit unit, int windowCount) {
+    checkState(
+        statsCounterSupplier != CACHE_STATS_COUNTER,
+        "recordDetailedStats cannot be combined with recordStats");
+    checkState(statsCounterSupplier == NULL_STATS_COUNTER, "detailed stats were already requested");
+    checkNotNull(unit);
+    checkArgument(window > 0, "window must be positive: %s %s", window, unit);
+    checkArgument(windowCount > 0, "windowCount must be positive: %s", windowCount);
+    final long windowNanos = unit.toNanos(window);
+    final int count = windowCount;
+    statsCounterSupplier =
+        new Supplier<StatsCounter>() {
+          @Override
+          public StatsCounter get() {
+            return new DetailedStatsCounter(getTicker(true), windowNanos, count);
+          }
+        };
+    return this;
+  }
+
+  /**
+   * Enables the accumulation of detailed {@link CacheStats}, counting hits and misses in windows of
+   * the given duration. See {@link #recordDetailedStats(long, TimeUnit, int)}.
+   *
+   * @param window the duration of each window of hits and misses
+   * @param windowCount the number of most recent windows to report
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code window} or {@code windowCount} is not positive
+   * @throws IllegalStateException if stats were already requested by this method or by {@link
+   *     #recordStats}
+   * @throws ArithmeticException for durations greater than +/- approximately 292 years
+   * @since 28.2
+   */
+  @Beta
+  @J2ObjCIncompatible
+  @GwtIncompatible // java.time.Duration
+  @SuppressWarnings("GoodTime") // java.time.Duration decomposition
+  public CacheBuilder<K, V> recordDetailedStats(java.time.Duration window, int windowCount) {
+    return recordDetailedStats(saturatedToNanos(window), TimeUnit.NANOSECONDS, windowCount);
+  }
+
   boolean isRecordingStats() {
     return statsCounterSupplier == CACHE_STATS_COUNTER;
   }
@@ -949,6 +1404,15 @@ public final class CacheBuilder<K, V> {
   public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(
       CacheLoader<? super K1, V1> loader) {
     checkWeightWithWeigher();
+    checkBackgroundRefresh();
+    checkEvictionPolicyWithMaximum();
+    if (unsegmented) {
+      checkUnsegmented();
+      return new UnsegmentedLocalCache.UnsegmentedLoadingCache<>(this, loader);
+    }
+    if (checkOffHeapValues()) {
+      return new OffHeapLocalCache.OffHeapLoadingCache<>(this, loader);
+    }
     return new LocalCache.LocalLoadingCache<>(this, loader);
   }
 
@@ -966,12 +1430,157 @@ public final class CacheBuilder<K, V> {
    */
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     checkWeightWithWeigher();
+    checkEvictionPolicyWithMaximum();
     checkNonLoadingCache();
+    if (unsegmented) {
+      checkUnsegmented();
+      return new UnsegmentedLocalCache.UnsegmentedManualCache<>(this);
+    }
+    if (checkOffHeapValues()) {
+      return new OffHeapLocalCache.OffHeapManualCache<>(this);
+    }
     return new LocalCache.LocalManualCache<>(this);
   }
 
+  /**
+   * Builds a cache keyed by primitive {@code long}s, which either returns an already-loaded value
+   * for a given key or atomically computes or retrieves it using the supplied {@code CacheLoader},
+   * as does {@link #build(CacheLoader)}. Keys are stored in primitive arrays rather than boxed and
+   * wrapped in entry objects, so the cache takes much less memory per entry; each key is only
+   * boxed to be passed to the loader.
+   *
+   * <p>The cache supports the {@linkplain #maximumSize maximum size}, {@linkplain #expireAfterWrite
+   * expiration}, {@linkplain #ticker ticker}, {@linkplain #concurrencyLevel concurrency level},
+   * {@linkplain #initialCapacity initial capacity} and {@linkplain #recordStats stats} options.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @param loader the cache loader used to obtain new values
+   * @return a cache having the requested features
+   * @throws IllegalStateException if any other option was set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public <V1 extends V> LongLoadingCache<V1> buildLongKeyed(CacheLoader<? super Long, V1> loader) {
+    checkLongKeyed();
+    return new LongLocalCache.LongLocalLoadingCache<V1>(this, loader);
+  }
+
+  /**
+   * Builds a cache keyed by primitive {@code long}s, which does not automatically load values when
+   * keys are requested. See {@link #buildLongKeyed(CacheLoader)} for the supported options.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @return a cache having the requested features
+   * @throws IllegalStateException if any other option was set
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public <V1 extends V> LongKeyedCache<V1> buildLongKeyed() {
+    checkLongKeyed();
+    return new LongLocalCache.LongLocalManualCache<V1>(this);
+  }
+
+  /**
+   * Builds a cache whose values are loaded asynchronously by the supplied {@code AsyncCacheLoader}.
+   * The cache holds the future of each value from the moment its load starts, so requests never
+   * block on a load, and concurrent requests for the same key share a single load. Futures that
+   * fail are removed from the cache.
+   *
+   * <p>The removal listener, if any, is notified of an entry's value once its future has completed
+   * successfully; entries whose future failed are removed without notification. The weigher, if
+   * any, weighs an entry once its value is available; until then its weight is zero.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @param loader the cache loader used to start loading new values
+   * @return a cache having the requested features
+   * @throws IllegalStateException if weak values, {@link #refreshAfterWrite refreshAfterWrite},
+   *     {@link #expireAfter expireAfter}, {@link #offHeapValues offHeapValues}, {@link #onHeapTier
+   *     onHeapTier}, {@link #batchLoads batchLoads} or {@link #refreshInBackground
+   *     refreshInBackground} were requested, which are not supported by asynchronous caches
+   * @since 28.2
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public <K1 extends K, V1 extends V> AsyncLoadingCache<K1, V1> buildAsync(
+      AsyncCacheLoader<? super K1, V1> loader) {
+    checkWeightWithWeigher();
+    checkEvictionPolicyWithMaximum();
+    checkState(valueStrength != Strength.WEAK, "weakValues is not supported by buildAsync");
+    checkState(refreshNanos == UNSET_INT, "refreshAfterWrite is not supported by buildAsync");
+    checkState(expiry == null, "expireAfter is not supported by buildAsync");
+    checkState(valueSerializer == null, "offHeapValues is not supported by buildAsync");
+    checkState(onHeapTierSize == UNSET_INT, "onHeapTier is not supported by buildAsync");
+    checkState(maximumBatchSize == UNSET_INT, "batchLoads is not supported by buildAsync");
+    checkState(!unsegmented, "unsegmented is not supported by buildAsync");
+    checkState(refreshExecutor == null, "refreshInBackground is not supported by buildAsync");
+    return new LocalCache.LocalAsyncLoadingCache<>(this, loader);
+  }
+
+  /**
+   * Returns a copy of this builder for a cache that holds the futures of values, as used by {@link
+   * #buildAsync}. The weigher and removal listener are adapted to apply to completed values.
+   */
+  @GwtIncompatible // buildAsync
+  <K1 extends K, V1 extends V> CacheBuilder<K1, ListenableFuture<V1>> forFutureValues() {
+    CacheBuilder<K1, ListenableFuture<V1>> builder = copySettings();
+    if (weigher != null) {
+      builder.weigher = new LocalCache.FutureWeigher<K1, V1>(this.<K1, V1>getWeigher());
+    }
+    if (removalListener != null) {
+      builder.removalListener =
+          new LocalCache.FutureRemovalListener<K1, V1>(this.<K1, V1>getRemovalListener());
+    }
+    return builder;
+  }
+
+  /**
+   * Returns a builder with the same settings as this one, for a cache that stores a different type
+   * of value. The settings that apply to values themselves are not copied: the weigher, removal
+   * listener, value equivalence, expiry and value serializer.
+   */
+  <K1 extends K, V2> CacheBuilder<K1, V2> copySettings() {
+    CacheBuilder<K1, V2> builder = new CacheBuilder<>();
+    builder.strictParsing = strictParsing;
+    builder.initialCapacity = initialCapacity;
+    builder.concurrencyLevel = concurrencyLevel;
+    builder.maximumSize = maximumSize;
+    builder.maximumWeight = maximumWeight;
+    builder.evictionPolicy = evictionPolicy;
+    builder.keyStrength = keyStrength;
+    builder.valueStrength = valueStrength;
+    builder.expireAfterWriteNanos = expireAfterWriteNanos;
+    builder.expireAfterAccessNanos = expireAfterAccessNanos;
+    builder.refreshNanos = refreshNanos;
+    builder.refreshExecutor = refreshExecutor;
+    builder.refreshesPerSecond = refreshesPerSecond;
+    builder.maintenanceExecutor = maintenanceExecutor;
+    builder.unsegmented = unsegmented;
+    builder.maximumBatchSize = maximumBatchSize;
+    builder.batchWindowNanos = batchWindowNanos;
+    builder.keyEquivalence = keyEquivalence;
+    builder.ticker = ticker;
+    builder.statsCounterSupplier = statsCounterSupplier;
+    return builder;
+  }
+
   private void checkNonLoadingCache() {
     checkState(refreshNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
+    checkState(maximumBatchSize == UNSET_INT, "batchLoads requires a LoadingCache");
+    checkState(refreshExecutor == null, "refreshInBackground requires a LoadingCache");
+  }
+
+  private void checkBackgroundRefresh() {
+    if (refreshExecutor != null) {
+      checkState(refreshNanos != UNSET_INT, "refreshInBackground requires refreshAfterWrite");
+    }
   }
 
   private void checkWeightWithWeigher() {
@@ -988,6 +1597,69 @@ public final class CacheBuilder<K, V> {
     }
   }
 
+  /** Returns whether values are stored off-heap, after checking the compatible options. */
+  private boolean checkOffHeapValues() {
+    if (valueSerializer == null) {
+      checkState(onHeapTierSize == UNSET_INT, "onHeapTier requires offHeapValues");
+      return false;
+    }
+    checkState(valueStrength == null, "offHeapValues cannot be combined with weak or soft values");
+    checkState(expiry == null, "offHeapValues cannot be combined with expireAfter");
+    return true;
+  }
+
+  /** Checks that only the options supported by long-keyed caches were set. */
+  private void checkLongKeyed() {
+    checkState(maximumWeight == UNSET_INT, "long-keyed caches do not support maximumWeight");
+    checkState(
+        evictionPolicy == null || evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED,
+        "long-keyed caches only support the LEAST_RECENTLY_USED eviction policy");
+    checkState(
+        keyStrength == null && valueStrength == null,
+        "long-keyed caches do not support weak or soft references");
+    checkState(
+        keyEquivalence == null && valueEquivalence == null,
+        "long-keyed caches do not support custom equivalences");
+    checkState(expiry == null, "long-keyed caches do not support expireAfter");
+    checkState(removalListener == null, "long-keyed caches do not support removalListener");
+    checkState(valueSerializer == null, "long-keyed caches do not support offHeapValues");
+    checkState(onHeapTierSize == UNSET_INT, "onHeapTier requires offHeapValues");
+    checkState(refreshNanos == UNSET_INT, "long-keyed caches do not support refreshAfterWrite");
+    checkState(maximumBatchSize == UNSET_INT, "long-keyed caches do not support batchLoads");
+    checkState(
+        maintenanceExecutor == null, "long-keyed caches do not support maintenanceExecutor");
+    checkState(!unsegmented, "long-keyed caches do not support unsegmented");
+    checkBackgroundRefresh();
+  }
+
+  /** Checks that only the options supported by unsegmented caches were set. */
+  private void checkUnsegmented() {
+    checkState(
+        evictionPolicy == null || evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED,
+        "unsegmented caches only support the LEAST_RECENTLY_USED eviction policy");
+    checkState(
+        keyStrength == null && valueStrength == null,
+        "unsegmented caches do not support weak or soft references");
+    checkState(
+        keyEquivalence == null && valueEquivalence == null,
+        "unsegmented caches do not support custom equivalences");
+    checkState(expiry == null, "unsegmented caches do not support expireAfter");
+    checkState(valueSerializer == null, "unsegmented caches do not support offHeapValues");
+    checkState(onHeapTierSize == UNSET_INT, "onHeapTier requires offHeapValues");
+    checkState(refreshNanos == UNSET_INT, "unsegmented caches do not support refreshAfterWrite");
+    checkState(maximumBatchSize == UNSET_INT, "unsegmented caches do not support batchLoads");
+    checkState(
+        maintenanceExecutor == null, "unsegmented caches do not support maintenanceExecutor");
+  }
+
+  private void checkEvictionPolicyWithMaximum() {
+    if (evictionPolicy != null) {
+      checkState(
+          maximumSize != UNSET_INT || maximumWeight != UNSET_INT,
+          "evictionPolicy requires maximumSize or maximumWeight");
+    }
+  }
+
   /**
    * Returns a string representation for this CacheBuilder instance. The exact form of the returned
    * string is not specified.
@@ -1007,12 +1679,18 @@ public final class CacheBuilder<K, V> {
     if (maximumWeight != UNSET_INT) {
       s.add("maximumWeight", maximumWeight);
     }
+    if (evictionPolicy != null) {
+      s.add("evictionPolicy", Ascii.toLowerCase(evictionPolicy.toString()));
+    }
     if (expireAfterWriteNanos != UNSET_INT) {
       s.add("expireAfterWrite", expireAfterWriteNanos + "ns");
     }
     if (expireAfterAccessNanos != UNSET_INT) {
       s.add("expireAfterAccess", expireAfterAccessNanos + "ns");
     }
+    if (expiry != null) {
+      s.addValue("expiry");
+    }
     if (keyStrength != null) {
       s.add("keyStrength", Ascii.toLowerCase(keyStrength.toString()));
     }
@@ -1028,6 +1706,25 @@ public final class CacheBuilder<K, V> {
     if (removalListener != null) {
       s.addValue("removalListener");
     }
+    if (valueSerializer != null) {
+      s.addValue("offHeapValues");
+    }
+    if (onHeapTierSize != UNSET_INT) {
+      s.add("onHeapTier", onHeapTierSize);
+    }
+    if (refreshExecutor != null) {
+      s.add("refreshesPerSecond", refreshesPerSecond);
+    }
+    if (maintenanceExecutor != null) {
+      s.addValue("maintenanceExecutor");
+    }
+    if (unsegmented) {
+      s.addValue("unsegmented");
+    }
+    if (maximumBatchSize != UNSET_INT) {
+      s.add("maximumBatchSize", maximumBatchSize);
+      s.add("batchWindow", batchWindowNanos + "ns");
+    }
     return s.toString();
   }
 
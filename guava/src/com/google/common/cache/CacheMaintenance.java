@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.LocalCache.Segment;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * The periodic task that performs the maintenance of a cache built with {@link
+ * CacheBuilder#maintenanceExecutor}, and that performs the maintenance of a single segment on
+ * request of the threads that use it.
+ *
+ * <p>Like the {@link BackgroundRefresher}, the task only weakly references the cache, so that it
+ * does not prevent the cache from being garbage collected, and cancels itself once it has been.
+ */
+@GwtIncompatible
+final class CacheMaintenance<K, V> implements Runnable {
+  private static final Logger logger = Logger.getLogger(CacheMaintenance.class.getName());
+
+  /** The shortest period between runs, so that very short expiration intervals do not spin. */
+  static final long MINIMUM_PERIOD_NANOS = 1000000L; // 1 ms
+
+  /** The longest period between runs, so that collected entries are released promptly. */
+  static final long MAXIMUM_PERIOD_NANOS = 1000000000L; // 1 s
+
+  /** The number of runs per expiration interval. */
+  static final int RUNS_PER_EXPIRATION = 4;
+
+  final WeakReference<LocalCache<K, V>> cacheReference;
+  final ScheduledExecutorService executor;
+  final long periodNanos;
+
+  @MonotonicNonNull volatile ScheduledFuture<?> future;
+
+  CacheMaintenance(LocalCache<K, V> cache, ScheduledExecutorService executor) {
+    this.cacheReference = new WeakReference<>(cache);
+    this.executor = executor;
+    this.periodNanos = periodNanos(cache);
+  }
+
+  /**
+   * Schedules the periodic maintenance of the cache on the executor. This must only be called once
+   * the cache is fully constructed, as the task runs on other threads.
+   */
+  void start() {
+    future = executor.scheduleWithFixedDelay(this, periodNanos, periodNanos, NANOSECONDS);
+  }
+
+  @VisibleForTesting
+  static long periodNanos(LocalCache<?, ?> cache) {
+    long shortest = Long.MAX_VALUE;
+    if (cache.expiresAfterWrite()) {
+      shortest = cache.expireAfterWriteNanos;
+    }
+    if (cache.expiresAfterAccess()) {
+      shortest = Math.min(shortest, cache.expireAfterAccessNanos);
+    }
+    if (shortest == Long.MAX_VALUE) {
+      return MAXIMUM_PERIOD_NANOS;
+    }
+    return Math.min(
+        Math.max(shortest / RUNS_PER_EXPIRATION, MINIMUM_PERIOD_NANOS), MAXIMUM_PERIOD_NANOS);
+  }
+
+  @Override
+  public void run() {
+    LocalCache<K, V> cache = cacheReference.get();
+    if (cache == null) {
+      ScheduledFuture<?> future = this.future;
+      if (future != null) {
+        future.cancel(false);
+      }
+      return;
+    }
+    try {
+      for (Segment<K, V> segment : cache.segments) {
+        segment.runScheduledCleanup();
+      }
+    } catch (Throwable t) {
+      // an exception would suppress all subsequent runs
+      logger.log(Level.WARNING, "Exception thrown during cache maintenance", t);
+    }
+  }
+
+  /**
+   * Submits a task that performs the maintenance of {@code segment}, unless one is already
+   * pending. If the executor rejects the task, the maintenance is performed by the calling thread.
+   */
+  void requestCleanUp(Segment<K, V> segment) {
+    if (!segment.cleanUpRequested.compareAndSet(false, true)) {
+      return;
+    }
+    CleanUpTask<K, V> task = new CleanUpTask<>(segment, executor);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      if (!segment.runScheduledCleanup()) {
+        // a later read or write will request it again
+        segment.cleanUpRequested.set(false);
+      }
+    }
+  }
+
+  /**
+   * The requested maintenance of a single segment. If the segment lock is busy when it runs, it is
+   * retried after {@link #MINIMUM_PERIOD_NANOS} rather than dropped, so that the segment is not
+   * left untidy until its next request.
+   */
+  static final class CleanUpTask<K, V> implements Runnable {
+    final Segment<K, V> segment;
+    final ScheduledExecutorService executor;
+
+    CleanUpTask(Segment<K, V> segment, ScheduledExecutorService executor) {
+      this.segment = segment;
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      boolean done;
+      try {
+        done = segment.runScheduledCleanup();
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown during cache maintenance", t);
+        segment.cleanUpRequested.set(false);
+        return;
+      }
+      if (!done) {
+        try {
+          executor.schedule(this, MINIMUM_PERIOD_NANOS, NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+          segment.cleanUpRequested.set(false);
+        }
+      }
+    }
+  }
+}
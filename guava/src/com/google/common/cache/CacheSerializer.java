@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * Converts cached objects to and from bytes, so that they can be stored outside of the Java heap.
+ * Supplied to {@link CacheBuilder#offHeapValues}.
+ *
+ * <p>For any object {@code o} that is serialized, {@code deserialize(serialize(o))} must return an
+ * object equal to {@code o}. Both methods may be called concurrently from multiple threads, and
+ * should not access the cache.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public interface CacheSerializer<T> {
+
+  /** Returns the serialized form of {@code object}. The returned array is not retained. */
+  byte[] serialize(T object);
+
+  /**
+   * Returns the object whose serialized form is {@code bytes}, which must not be null. The array is
+   * not used again after this method returns.
+   */
+  T deserialize(byte[] bytes);
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.OffHeapLocalCache.OffHeapManualCache;
+import com.google.common.cache.OffHeapLocalCache.OffHeapValue;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Closer;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static methods to save the hottest entries of a {@link Cache} and to load them into a new cache,
+ * so that a restarted process does not begin with a cold cache.
+ *
+ * <p>A snapshot holds the serialized keys and values of the entries, most recently accessed first.
+ * Entries are ordered by access only if the cache was built with {@link
+ * CacheBuilder#maximumSize}, {@link CacheBuilder#maximumWeight} or {@link
+ * CacheBuilder#expireAfterAccess}; otherwise, and for caches not built by {@link CacheBuilder},
+ * the entries written are chosen arbitrarily. Writing a snapshot does not count as an access, nor
+ * does it affect the statistics of the cache.
+ *
+ * <p>Loading a snapshot into a cache built by {@link CacheBuilder} groups the entries by segment
+ * and inserts each group under a single lock, into a table that is grown only once; it is therefore
+ * considerably faster than calling {@link Cache#put} for each entry. The hottest entries are
+ * inserted last, so that they are the last to be evicted.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class CacheSnapshots {
+  private static final int MAGIC = 0x47434853; // "GCHS"
+  private static final int VERSION = 1;
+
+  private CacheSnapshots() {}
+
+  /**
+   * Writes the up to {@code maximumEntries} most recently accessed entries of {@code cache} to
+   * {@code sink}. Returns the number of entries written.
+   *
+   * @throws IllegalArgumentException if {@code maximumEntries} is negative
+   * @throws IOException if an I/O error occurs while writing to {@code sink}
+   */
+  @CanIgnoreReturnValue
+  public static <K, V> int write(
+      Cache<K, V> cache,
+      CacheSerializer<? super K> keySerializer,
+      CacheSerializer<? super V> valueSerializer,
+      int maximumEntries,
+      ByteSink sink)
+      throws IOException {
+    checkArgument(maximumEntries >= 0, "maximumEntries must not be negative: %s", maximumEntries);
+    return write(cache, keySerializer, valueSerializer, maximumEntries, Long.MAX_VALUE, sink);
+  }
+
+  /**
+   * Writes the most recently accessed entries of {@code cache} to {@code sink}, stopping before the
+   * total weight of the entries written would exceed {@code maximumWeight}. Entries are weighed by
+   * the {@link Weigher} of the cache; if it has none, or was not built by {@link CacheBuilder},
+   * each entry weighs one. Returns the number of entries written.
+   *
+   * @throws IllegalArgumentException if {@code maximumWeight} is negative
+   * @throws IOException if an I/O error occurs while writing to {@code sink}
+   */
+  @CanIgnoreReturnValue
+  public static <K, V> int writeByWeight(
+      Cache<K, V> cache,
+      CacheSerializer<? super K> keySerializer,
+      CacheSerializer<? super V> valueSerializer,
+      long maximumWeight,
+      ByteSink sink)
+      throws IOException {
+    checkArgument(maximumWeight >= 0, "maximumWeight must not be negative: %s", maximumWeight);
+    return write(cache, keySerializer, valueSerializer, Integer.MAX_VALUE, maximumWeight, sink);
+  }
+
+  private static <K, V> int write(
+      Cache<K, V> cache,
+      CacheSerializer<? super K> keySerializer,
+      CacheSerializer<? super V> valueSerializer,
+      int maximumEntries,
+      long maximumWeight,
+      ByteSink sink)
+      throws IOException {
+    checkNotNull(keySerializer);
+    checkNotNull(valueSerializer);
+    checkNotNull(sink);
+    List<K> keys = new ArrayList<>();
+    List<V> values = new ArrayList<>();
+    hottest(cache, maximumEntries, maximumWeight, keys, values);
+
+    Closer closer = Closer.create();
+    try {
+      OutputStream out = closer.register(sink.openBufferedStream());
+      DataOutputStream data = new DataOutputStream(out);
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        writeBytes(data, keySerializer.serialize(keys.get(i)));
+        writeBytes(data, valueSerializer.serialize(values.get(i)));
+      }
+      data.flush();
+      return keys.size();
+    } catch (Throwable e) {
+      throw closer.rethrow(e);
+    } finally {
+      closer.close();
+    }
+  }
+
+  /** Appends the hottest entries of {@code cache}, hottest first, to the given lists. */
+  @SuppressWarnings("unchecked") // the caches built by CacheBuilder have these implementations
+  private static <K, V> void hottest(
+      Cache<K, V> cache, int maximumEntries, long maximumWeight, List<K> keys, List<V> values) {
+    if (cache instanceof LocalManualCache) {
+      LocalCache<K, V> localCache = ((LocalManualCache<K, V>) cache).localCache;
+      long now = localCache.ticker.read();
+      for (ReferenceEntry<K, V> e : localCache.hottestEntries(maximumEntries, maximumWeight)) {
+        V value = localCache.getLiveValue(e, now);
+        K key = e.getKey();
+        if (key != null && value != null) {
+          keys.add(key);
+          values.add(value);
+        }
+      }
+    } else if (cache instanceof OffHeapManualCache) {
+      OffHeapLocalCache<K, V> offHeapCache = ((OffHeapManualCache<K, V>) cache).offHeapCache;
+      LocalCache<K, OffHeapValue<V>> localCache = offHeapCache.localCache;
+      long now = localCache.ticker.read();
+      for (ReferenceEntry<K, OffHeapValue<V>> e :
+          localCache.hottestEntries(maximumEntries, maximumWeight)) {
+        OffHeapValue<V> offHeapValue = localCache.getLiveValue(e, now);
+        K key = e.getKey();
+        V value = (offHeapValue == null) ? null : offHeapCache.peek(offHeapValue);
+        if (key != null && value != null) {
+          keys.add(key);
+          values.add(value);
+        }
+      }
+    } else {
+      long limit = Math.min(maximumEntries, maximumWeight);
+      for (Map.Entry<K, V> entry : cache.asMap().entrySet()) {
+        if (keys.size() == limit) {
+          break;
+        }
+        keys.add(entry.getKey());
+        values.add(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Loads the entries of a snapshot written by {@link #write} or {@link #writeByWeight} from {@code
+   * source} into {@code cache}. Keys that are already present in the cache keep their current
+   * values. Returns the number of entries inserted.
+   *
+   * <p>No {@link RemovalListener} is notified of the insertions, and they are not recorded in the
+   * statistics of the cache. Entries of a cache with a maximum size or weight may however be
+   * evicted, with notification, to make room for the loaded entries.
+   *
+   * @throws IOException if an I/O error occurs while reading from {@code source}, or if it does not
+   *     hold a snapshot
+   */
+  @CanIgnoreReturnValue
+  public static <K, V> int load(
+      Cache<K, V> cache,
+      CacheSerializer<? extends K> keySerializer,
+      CacheSerializer<? extends V> valueSerializer,
+      ByteSource source)
+      throws IOException {
+    checkNotNull(cache);
+    checkNotNull(keySerializer);
+    checkNotNull(valueSerializer);
+    List<K> keys;
+    List<V> values;
+
+    Closer closer = Closer.create();
+    try {
+      InputStream in = closer.register(source.openStream());
+      DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+      if (data.readInt() != MAGIC) {
+        throw new IOException("Not a cache snapshot: " + source);
+      }
+      int version = data.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported cache snapshot version " + version + ": " + source);
+      }
+      int size = data.readInt();
+      if (size < 0) {
+        throw new IOException("Corrupt cache snapshot: " + source);
+      }
+      keys = new ArrayList<>(size);
+      values = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        keys.add(checkNotNull(keySerializer.deserialize(readBytes(data))));
+        values.add(checkNotNull(valueSerializer.deserialize(readBytes(data))));
+      }
+    } catch (Throwable e) {
+      throw closer.rethrow(e);
+    } finally {
+      closer.close();
+    }
+
+    // coldest first, so that the hottest entries are the most recently inserted
+    Collections.reverse(keys);
+    Collections.reverse(values);
+    return putAllIfAbsent(cache, keys, values);
+  }
+
+  @SuppressWarnings("unchecked") // the caches built by CacheBuilder have these implementations
+  private static <K, V> int putAllIfAbsent(Cache<K, V> cache, List<K> keys, List<V> values) {
+    if (cache instanceof LocalManualCache) {
+      return ((LocalManualCache<K, V>) cache).localCache.putAllIfAbsent(keys, values);
+    } else if (cache instanceof OffHeapManualCache) {
+      OffHeapLocalCache<K, V> offHeapCache = ((OffHeapManualCache<K, V>) cache).offHeapCache;
+      List<OffHeapValue<V>> offHeapValues = new ArrayList<>(values.size());
+      for (int i = 0; i < keys.size(); i++) {
+        offHeapValues.add(offHeapCache.store(keys.get(i), values.get(i)));
+      }
+      int inserted = offHeapCache.localCache.putAllIfAbsent(keys, offHeapValues);
+      for (int i = 0; i < keys.size(); i++) {
+        // frees the values that were not inserted; releasing a removed value again has no effect
+        ReferenceEntry<K, OffHeapValue<V>> e = offHeapCache.localCache.getEntry(keys.get(i));
+        if (e == null || e.getValueReference().get() != offHeapValues.get(i)) {
+          offHeapCache.release(offHeapValues.get(i));
+        }
+      }
+      return inserted;
+    } else {
+      int inserted = 0;
+      for (int i = 0; i < keys.size(); i++) {
+        if (cache.asMap().putIfAbsent(keys.get(i), values.get(i)) == null) {
+          inserted++;
+        }
+      }
+      return inserted;
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Corrupt cache snapshot");
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -18,9 +18,13 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.math.LongMath.saturatedAdd;
 import static com.google.common.math.LongMath.saturatedSubtract;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -44,6 +48,13 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  *             missCount}.
  *       </ul>
  *   <li>When an entry is evicted from the cache, {@code evictionCount} is incremented.
+ *   <li>When a cache built with {@link CacheBuilder#batchLoads} loads a batch of missing entries,
+ *       {@code batchCount} is incremented, the number of keys in the batch is added to {@code
+ *       batchedKeyCount}, and the time spent in {@link CacheLoader#loadAll} is added to {@code
+ *       totalBatchLoadTime}. Each entry of the batch is also counted as a load, as above.
+ *   <li>When a cache is built with {@link CacheBuilder#recordDetailedStats}, the time taken by
+ *       each load is also counted in {@code loadLatencies}, and each hit and miss is also counted
+ *       in the {@linkplain #windows window} during which it occurred.
  *   <li>No stats are modified when a cache entry is invalidated or manually removed.
  *   <li>No stats are modified by operations invoked on the {@linkplain Cache#asMap asMap} view of
  *       the cache.
@@ -67,6 +78,14 @@ public final class CacheStats {
   private final long totalLoadTime;
 
   private final long evictionCount;
+  private final long batchCount;
+  private final long batchedKeyCount;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  private final long totalBatchLoadTime;
+
+  private final LoadLatencyHistogram loadLatencies;
+  private final ImmutableList<Window> windows;
 
   /**
    * Constructs a new {@code CacheStats} instance.
@@ -82,12 +101,36 @@ public final class CacheStats {
       long loadExceptionCount,
       long totalLoadTime,
       long evictionCount) {
+    this(
+        hitCount, missCount, loadSuccessCount, loadExceptionCount, totalLoadTime, evictionCount, 0,
+        0, 0);
+  }
+
+  /**
+   * Constructs a new {@code CacheStats} instance, including the statistics of batched loads.
+   *
+   * @since 28.2
+   */
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  public CacheStats(
+      long hitCount,
+      long missCount,
+      long loadSuccessCount,
+      long loadExceptionCount,
+      long totalLoadTime,
+      long evictionCount,
+      long batchCount,
+      long batchedKeyCount,
+      long totalBatchLoadTime) {
     checkArgument(hitCount >= 0);
     checkArgument(missCount >= 0);
     checkArgument(loadSuccessCount >= 0);
     checkArgument(loadExceptionCount >= 0);
     checkArgument(totalLoadTime >= 0);
     checkArgument(evictionCount >= 0);
+    checkArgument(batchCount >= 0);
+    checkArgument(batchedKeyCount >= 0);
+    checkArgument(totalBatchLoadTime >= 0);
 
     this.hitCount = hitCount;
     this.missCount = missCount;
@@ -95,6 +138,33 @@ public final class CacheStats {
     this.loadExceptionCount = loadExceptionCount;
     this.totalLoadTime = totalLoadTime;
     this.evictionCount = evictionCount;
+    this.batchCount = batchCount;
+    this.batchedKeyCount = batchedKeyCount;
+    this.totalBatchLoadTime = totalBatchLoadTime;
+    this.loadLatencies = LoadLatencyHistogram.empty();
+    this.windows = ImmutableList.of();
+  }
+
+  private CacheStats(CacheStats counts, LoadLatencyHistogram loadLatencies, List<Window> windows) {
+    this.hitCount = counts.hitCount;
+    this.missCount = counts.missCount;
+    this.loadSuccessCount = counts.loadSuccessCount;
+    this.loadExceptionCount = counts.loadExceptionCount;
+    this.totalLoadTime = counts.totalLoadTime;
+    this.evictionCount = counts.evictionCount;
+    this.batchCount = counts.batchCount;
+    this.batchedKeyCount = counts.batchedKeyCount;
+    this.totalBatchLoadTime = counts.totalBatchLoadTime;
+    this.loadLatencies = loadLatencies;
+    this.windows = ImmutableList.copyOf(windows);
+  }
+
+  /**
+   * Returns a copy of these statistics with the given load latencies and windows, which must be
+   * ordered by start time.
+   */
+  CacheStats withDetails(LoadLatencyHistogram loadLatencies, List<Window> windows) {
+    return new CacheStats(this, loadLatencies, windows);
   }
 
   /**
@@ -234,6 +304,80 @@ public final class CacheStats {
     return evictionCount;
   }
 
+  /**
+   * Returns the number of batches of missing entries that a cache built with {@link
+   * CacheBuilder#batchLoads} has loaded with a single call to {@link CacheLoader#loadAll}.
+   *
+   * @since 28.2
+   */
+  public long batchCount() {
+    return batchCount;
+  }
+
+  /**
+   * Returns the total number of keys in the batches counted by {@link #batchCount}.
+   *
+   * @since 28.2
+   */
+  public long batchedKeyCount() {
+    return batchedKeyCount;
+  }
+
+  /**
+   * Returns the average number of keys in a batch. This is defined as {@code batchedKeyCount /
+   * batchCount}, or {@code 0.0} when {@code batchCount == 0}.
+   *
+   * @since 28.2
+   */
+  public double averageBatchSize() {
+    return (batchCount == 0) ? 0.0 : (double) batchedKeyCount / batchCount;
+  }
+
+  /**
+   * Returns the total number of nanoseconds spent loading the batches counted by {@link
+   * #batchCount}. This is also included in {@link #totalLoadTime}, once for each key of a batch.
+   *
+   * @since 28.2
+   */
+  @SuppressWarnings("GoodTime") // should return a java.time.Duration
+  public long totalBatchLoadTime() {
+    return totalBatchLoadTime;
+  }
+
+  /**
+   * Returns the average time spent loading a batch. This is defined as {@code totalBatchLoadTime /
+   * batchCount}, or {@code 0.0} when {@code batchCount == 0}.
+   *
+   * @since 28.2
+   */
+  public double averageBatchLoadPenalty() {
+    return (batchCount == 0) ? 0.0 : (double) totalBatchLoadTime / batchCount;
+  }
+
+  /**
+   * Returns the histogram of the time, in nanoseconds, spent by each of the loads counted by {@link
+   * #loadCount}. This is empty unless the cache was built with {@link
+   * CacheBuilder#recordDetailedStats}.
+   *
+   * @since 28.2
+   */
+  @Beta
+  public LoadLatencyHistogram loadLatencies() {
+    return loadLatencies;
+  }
+
+  /**
+   * Returns the hits and misses of the most recent windows of time, oldest first, the last of which
+   * may still be in progress. This is empty unless the cache was built with {@link
+   * CacheBuilder#recordDetailedStats}.
+   *
+   * @since 28.2
+   */
+  @Beta
+  public ImmutableList<Window> windows() {
+    return windows;
+  }
+
   /**
    * Returns a new {@code CacheStats} representing the difference between this {@code CacheStats}
    * and {@code other}. Negative values, which aren't supported by {@code CacheStats} will be
@@ -246,7 +390,12 @@ public final class CacheStats {
         Math.max(0, saturatedSubtract(loadSuccessCount, other.loadSuccessCount)),
         Math.max(0, saturatedSubtract(loadExceptionCount, other.loadExceptionCount)),
         Math.max(0, saturatedSubtract(totalLoadTime, other.totalLoadTime)),
-        Math.max(0, saturatedSubtract(evictionCount, other.evictionCount)));
+        Math.max(0, saturatedSubtract(evictionCount, other.evictionCount)),
+        Math.max(0, saturatedSubtract(batchCount, other.batchCount)),
+        Math.max(0, saturatedSubtract(batchedKeyCount, other.batchedKeyCount)),
+        Math.max(0, saturatedSubtract(totalBatchLoadTime, other.totalBatchLoadTime)))
+        .withDetails(
+            loadLatencies.minus(other.loadLatencies), Window.minus(windows, other.windows));
   }
 
   /**
@@ -266,13 +415,27 @@ public final class CacheStats {
         saturatedAdd(loadSuccessCount, other.loadSuccessCount),
         saturatedAdd(loadExceptionCount, other.loadExceptionCount),
         saturatedAdd(totalLoadTime, other.totalLoadTime),
-        saturatedAdd(evictionCount, other.evictionCount));
+        saturatedAdd(evictionCount, other.evictionCount),
+        saturatedAdd(batchCount, other.batchCount),
+        saturatedAdd(batchedKeyCount, other.batchedKeyCount),
+        saturatedAdd(totalBatchLoadTime, other.totalBatchLoadTime))
+        .withDetails(loadLatencies.plus(other.loadLatencies), Window.plus(windows, other.windows));
   }
 
   @Override
   public int hashCode() {
     return Objects.hashCode(
-        hitCount, missCount, loadSuccessCount, loadExceptionCount, totalLoadTime, evictionCount);
+        hitCount,
+        missCount,
+        loadSuccessCount,
+        loadExceptionCount,
+        totalLoadTime,
+        evictionCount,
+        batchCount,
+        batchedKeyCount,
+        totalBatchLoadTime,
+        loadLatencies,
+        windows);
   }
 
   @Override
@@ -284,20 +447,184 @@ public final class CacheStats {
           && loadSuccessCount == other.loadSuccessCount
           && loadExceptionCount == other.loadExceptionCount
           && totalLoadTime == other.totalLoadTime
-          && evictionCount == other.evictionCount;
+          && evictionCount == other.evictionCount
+          && batchCount == other.batchCount
+          && batchedKeyCount == other.batchedKeyCount
+          && totalBatchLoadTime == other.totalBatchLoadTime
+          && loadLatencies.equals(other.loadLatencies)
+          && windows.equals(other.windows);
     }
     return false;
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this)
-        .add("hitCount", hitCount)
-        .add("missCount", missCount)
-        .add("loadSuccessCount", loadSuccessCount)
-        .add("loadExceptionCount", loadExceptionCount)
-        .add("totalLoadTime", totalLoadTime)
-        .add("evictionCount", evictionCount)
-        .toString();
+    ToStringHelper helper =
+        MoreObjects.toStringHelper(this)
+            .add("hitCount", hitCount)
+            .add("missCount", missCount)
+            .add("loadSuccessCount", loadSuccessCount)
+            .add("loadExceptionCount", loadExceptionCount)
+            .add("totalLoadTime", totalLoadTime)
+            .add("evictionCount", evictionCount);
+    if (batchCount != 0) {
+      helper
+          .add("batchCount", batchCount)
+          .add("batchedKeyCount", batchedKeyCount)
+          .add("totalBatchLoadTime", totalBatchLoadTime);
+    }
+    if (loadLatencies.count() > 0) {
+      helper.add("loadLatencies", loadLatencies);
+    }
+    if (!windows.isEmpty()) {
+      helper.add("windows", windows);
+    }
+    return helper.toString();
+  }
+
+  /**
+   * The hits and misses of a cache during a window of time, as measured by the cache's {@linkplain
+   * CacheBuilder#ticker ticker}. Instances of this class are immutable.
+   *
+   * @since 28.2
+   */
+  @Beta
+  public static final class Window {
+    @SuppressWarnings("GoodTime") // should be a java.time.Duration
+    private final long startTime;
+
+    @SuppressWarnings("GoodTime") // should be a java.time.Duration
+    private final long duration;
+
+    private final long hitCount;
+    private final long missCount;
+
+    @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+    Window(long startTime, long duration, long hitCount, long missCount) {
+      checkArgument(duration > 0);
+      checkArgument(hitCount >= 0);
+      checkArgument(missCount >= 0);
+      this.startTime = startTime;
+      this.duration = duration;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+    }
+
+    /** Returns the ticker time, in nanoseconds, at which this window starts. */
+    @SuppressWarnings("GoodTime") // should return a java.time.Duration
+    public long startTime() {
+      return startTime;
+    }
+
+    /** Returns the length of this window, in nanoseconds. */
+    @SuppressWarnings("GoodTime") // should return a java.time.Duration
+    public long duration() {
+      return duration;
+    }
+
+    /** Returns the number of lookups during this window. */
+    public long requestCount() {
+      return saturatedAdd(hitCount, missCount);
+    }
+
+    /** Returns the number of lookups during this window that returned a cached value. */
+    public long hitCount() {
+      return hitCount;
+    }
+
+    /** Returns the number of lookups during this window that did not return a cached value. */
+    public long missCount() {
+      return missCount;
+    }
+
+    /**
+     * Returns the ratio of the lookups during this window which were hits, or {@code 1.0} when
+     * {@code requestCount == 0}.
+     */
+    public double hitRate() {
+      long requestCount = requestCount();
+      return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /** Returns the windows of either list, adding the counts of those that start together. */
+    static ImmutableList<Window> plus(List<Window> a, List<Window> b) {
+      if (b.isEmpty()) {
+        return ImmutableList.copyOf(a);
+      } else if (a.isEmpty()) {
+        return ImmutableList.copyOf(b);
+      }
+      ImmutableList.Builder<Window> sum = ImmutableList.builder();
+      int i = 0;
+      int j = 0;
+      while (i < a.size() || j < b.size()) {
+        if (j == b.size() || (i < a.size() && a.get(i).startTime < b.get(j).startTime)) {
+          sum.add(a.get(i++));
+        } else if (i == a.size() || b.get(j).startTime < a.get(i).startTime) {
+          sum.add(b.get(j++));
+        } else {
+          Window x = a.get(i++);
+          Window y = b.get(j++);
+          sum.add(
+              new Window(
+                  x.startTime,
+                  x.duration,
+                  saturatedAdd(x.hitCount, y.hitCount),
+                  saturatedAdd(x.missCount, y.missCount)));
+        }
+      }
+      return sum.build();
+    }
+
+    /**
+     * Returns the windows of {@code a}, subtracting the counts of those of {@code b} that start at
+     * the same time.
+     */
+    static ImmutableList<Window> minus(List<Window> a, List<Window> b) {
+      ImmutableList.Builder<Window> difference = ImmutableList.builder();
+      int j = 0;
+      for (Window x : a) {
+        while (j < b.size() && b.get(j).startTime < x.startTime) {
+          j++;
+        }
+        if (j < b.size() && b.get(j).startTime == x.startTime) {
+          Window y = b.get(j);
+          x =
+              new Window(
+                  x.startTime,
+                  x.duration,
+                  Math.max(0, saturatedSubtract(x.hitCount, y.hitCount)),
+                  Math.max(0, saturatedSubtract(x.missCount, y.missCount)));
+        }
+        difference.add(x);
+      }
+      return difference.build();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      if (object instanceof Window) {
+        Window other = (Window) object;
+        return startTime == other.startTime
+            && duration == other.duration
+            && hitCount == other.hitCount
+            && missCount == other.missCount;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(startTime, duration, hitCount, missCount);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("startTime", startTime)
+          .add("duration", duration)
+          .add("hitCount", hitCount)
+          .add("missCount", missCount)
+          .toString();
+    }
   }
 }
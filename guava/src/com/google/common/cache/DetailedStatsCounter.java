@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Ticker;
+import com.google.common.cache.AbstractCache.SimpleStatsCounter;
+import com.google.common.cache.AbstractCache.StatsCounter;
+import com.google.common.cache.CacheStats.Window;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link StatsCounter} that also records a {@link LoadLatencyHistogram} of load times and the
+ * hits and misses of recent windows of time. Used by {@link CacheBuilder#recordDetailedStats}.
+ *
+ * <p>Every count is a {@link LongAddable}, as for {@link SimpleStatsCounter}, so that concurrent
+ * updates do not contend. The counters of the histogram's buckets are only created once a latency
+ * falls into them.
+ *
+ * <p>Hits and misses are only counted in their window, and the totals are the sums of the windows,
+ * so that a hit costs a single striped add and no read of the ticker. The current window is
+ * replaced by {@link #rotateWindows}, which the cache calls when it performs its maintenance, and
+ * which misses and snapshots also call. A hit is therefore counted in the window that was current
+ * when its segment was last maintained, which is at most a few dozen requests earlier.
+ */
+@GwtIncompatible
+final class DetailedStatsCounter implements StatsCounter {
+  private final SimpleStatsCounter counter = new SimpleStatsCounter();
+  private final AtomicReferenceArray<LongAddable> latencyCounts =
+      new AtomicReferenceArray<>(LoadLatencyHistogram.BUCKETS);
+  private final Ticker ticker;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  private final long windowNanos;
+
+  private final int windowCount;
+
+  /** The window that hits and misses are counted in. */
+  private volatile WindowCounter current;
+
+  /**
+   * The windows that may still be reported, and the one before them, oldest first and ending with
+   * {@link #current}. The one before them is kept so that an update that raced with its
+   * replacement is not lost. Guarded by {@code this}.
+   */
+  private final ArrayDeque<WindowCounter> windows = new ArrayDeque<>();
+
+  /** The hits of the windows that were discarded. Guarded by {@code this}. */
+  private long discardedHitCount;
+
+  /** The misses of the windows that were discarded. Guarded by {@code this}. */
+  private long discardedMissCount;
+
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  DetailedStatsCounter(Ticker ticker, long windowNanos, int windowCount) {
+    this.ticker = checkNotNull(ticker);
+    this.windowNanos = windowNanos;
+    this.windowCount = windowCount;
+    this.current = new WindowCounter(windowIndex());
+    windows.add(current);
+  }
+
+  @Override
+  public void recordHits(int count) {
+    current.hitCount.add(count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    rotateWindows();
+    current.missCount.add(count);
+  }
+
+  @SuppressWarnings("GoodTime") // takes nanos
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    counter.recordLoadSuccess(loadTime);
+    recordLatency(loadTime);
+  }
+
+  @SuppressWarnings("GoodTime") // takes nanos
+  @Override
+  public void recordLoadException(long loadTime) {
+    counter.recordLoadException(loadTime);
+    recordLatency(loadTime);
+  }
+
+  @Override
+  public void recordEviction() {
+    counter.recordEviction();
+  }
+
+  @Override
+  public void recordBatchLoad(int batchSize, long loadTime) {
+    counter.recordBatchLoad(batchSize, loadTime);
+  }
+
+  @Override
+  public CacheStats snapshot() {
+    long[] counts = new long[latencyCounts.length()];
+    for (int i = 0; i < counts.length; i++) {
+      LongAddable count = latencyCounts.get(i);
+      if (count != null) {
+        counts[i] = count.sum();
+      }
+    }
+
+    long hitCount;
+    long missCount;
+    List<Window> recent = new ArrayList<>(windowCount);
+    synchronized (this) {
+      rotateWindows(windowIndex());
+      hitCount = discardedHitCount;
+      missCount = discardedMissCount;
+      for (WindowCounter window : windows) {
+        long hits = window.hitCount.sum();
+        long misses = window.missCount.sum();
+        hitCount += hits;
+        missCount += misses;
+        if (window.index > current.index - windowCount && hits + misses != 0) {
+          recent.add(new Window(window.index * windowNanos, windowNanos, hits, misses));
+        }
+      }
+    }
+
+    CacheStats stats = counter.snapshot();
+    return new CacheStats(
+            hitCount,
+            missCount,
+            stats.loadSuccessCount(),
+            stats.loadExceptionCount(),
+            stats.totalLoadTime(),
+            stats.evictionCount(),
+            stats.batchCount(),
+            stats.batchedKeyCount(),
+            stats.totalBatchLoadTime())
+        .withDetails(LoadLatencyHistogram.of(counts), recent);
+  }
+
+  /** Begins a new window of hits and misses, if the current one has ended. */
+  void rotateWindows() {
+    long index = windowIndex();
+    if (index > current.index) {
+      rotateWindows(index);
+    }
+  }
+
+  private synchronized void rotateWindows(long index) {
+    if (index <= current.index) {
+      return;
+    }
+    current = new WindowCounter(index);
+    windows.addLast(current);
+    while (windows.getFirst().index < index - windowCount) {
+      WindowCounter discarded = windows.removeFirst();
+      discardedHitCount += discarded.hitCount.sum();
+      discardedMissCount += discarded.missCount.sum();
+    }
+  }
+
+  private void recordLatency(long loadTime) {
+    int bucket = LoadLatencyHistogram.bucketIndex(Math.max(0, loadTime));
+    LongAddable count = latencyCounts.get(bucket);
+    if (count == null) {
+      count = LongAddables.create();
+      if (!latencyCounts.compareAndSet(bucket, null, count)) {
+        count = latencyCounts.get(bucket);
+      }
+    }
+    count.increment();
+  }
+
+  private long windowIndex() {
+    return Math.floorDiv(ticker.read(), windowNanos);
+  }
+
+  /** The hits and misses of one window, the {@code index}th since the ticker's origin. */
+  private static final class WindowCounter {
+    final long index;
+    final LongAddable hitCount = LongAddables.create();
+    final LongAddable missCount = LongAddables.create();
+
+    WindowCounter(long index) {
+      this.index = index;
+    }
+  }
+}
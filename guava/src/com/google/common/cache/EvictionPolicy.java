@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+/**
+ * The strategy used by a size-bounded cache to choose which entries to discard once its {@linkplain
+ * CacheBuilder#maximumSize(long) maximum size} or {@linkplain CacheBuilder#maximumWeight(long)
+ * maximum weight} is exceeded.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtCompatible
+public enum EvictionPolicy {
+  /**
+   * Discards the entries that were least recently accessed. This is the default policy, and works
+   * well when recently used entries are the most likely to be used again.
+   */
+  LEAST_RECENTLY_USED,
+
+  /**
+   * Admits a newly written entry only if it has been requested more often than the entry that the
+   * least-recently-used policy would otherwise discard to make room for it; otherwise the new entry
+   * is discarded instead.
+   *
+   * <p>Request frequencies are estimated by a compact count-min sketch that is periodically aged,
+   * so that entries which were popular long ago do not stay resident forever. Because a single
+   * pass over many rarely used keys cannot displace frequently used ones, this policy retains a
+   * hot working set through large scans, and generally yields a higher hit rate than {@link
+   * #LEAST_RECENTLY_USED} on skewed workloads. It may perform worse on workloads in which newly
+   * written entries are much more likely to be used again than established ones.
+   */
+  TINY_LFU
+}
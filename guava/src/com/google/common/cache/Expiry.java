@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * Calculates when cache entries expire, allowing each entry to have its own lifetime. Supplied to
+ * {@link CacheBuilder#expireAfter}.
+ *
+ * <p>Each method is passed the current time and returns the length of time, in nanoseconds, that
+ * the entry should remain in the cache from now on. A duration of zero or less causes the entry to
+ * expire immediately. Durations are measured with the cache's {@linkplain CacheBuilder#ticker
+ * ticker}, and are capped at about 146 years.
+ *
+ * <p>These methods are called while the cache holds a lock, or on the thread reading an entry, so
+ * they should be fast and must not access the cache.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public interface Expiry<K, V> {
+
+  /**
+   * Returns the duration until the entry should be automatically removed, after it has been
+   * created, or after its value has been loaded or put when no live value was present.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @param currentTime the current time, in nanoseconds, according to the cache's ticker
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  long expireAfterCreate(K key, V value, long currentTime);
+
+  /**
+   * Returns the duration until the entry should be automatically removed, after its value has been
+   * replaced or refreshed. To leave the expiration time unchanged, return {@code currentDuration}.
+   *
+   * @param key the key of the entry
+   * @param value the new value of the entry
+   * @param currentTime the current time, in nanoseconds, according to the cache's ticker
+   * @param currentDuration the entry's remaining lifetime, in nanoseconds
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  long expireAfterUpdate(K key, V value, long currentTime, long currentDuration);
+
+  /**
+   * Returns the duration until the entry should be automatically removed, after it has been read.
+   * To leave the expiration time unchanged, return {@code currentDuration}.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @param currentTime the current time, in nanoseconds, according to the cache's ticker
+   * @param currentDuration the entry's remaining lifetime, in nanoseconds
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  long expireAfterRead(K key, V value, long currentTime, long currentDuration);
+}
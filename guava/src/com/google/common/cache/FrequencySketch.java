@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.math.LongMath;
+
+/**
+ * A probabilistic multiset for estimating how often an element has been seen recently, used by
+ * {@link EvictionPolicy#TINY_LFU} to decide whether a new entry is admitted into a full cache.
+ *
+ * <p>This is a count-min sketch of 4-bit counters, sixteen of which are packed into each {@code
+ * long}. An element is mapped to four counters, each of which is taken from a different word of
+ * the table, and its frequency is the minimum of those counters. Counters saturate at 15, which is
+ * enough to distinguish popular elements from unpopular ones.
+ *
+ * <p>To keep the estimates biased towards recent history, the sketch is aged once the number of
+ * increments reaches a sample size of ten times the sketch's capacity: all counters are then
+ * halved.
+ *
+ * <p>This class is not thread-safe; {@code LocalCache} only accesses it under the segment lock.
+ */
+@GwtIncompatible
+final class FrequencySketch {
+  /** Clears the top bit of each 4-bit counter, so that a shifted word halves every counter. */
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  /** Selects the lowest bit of each 4-bit counter. */
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  /** Seeds of the four hash functions. */
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+
+  /** The maximum table length, bounding the sketch's footprint to 8 MiB. */
+  private static final int MAXIMUM_TABLE_LENGTH = 1 << 20;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * Creates a sketch that accurately tracks the frequencies of up to {@code maximumSize} distinct
+   * elements.
+   */
+  FrequencySketch(long maximumSize) {
+    checkArgument(maximumSize >= 0, "maximumSize must not be negative: %s", maximumSize);
+    table = new long[0];
+    ensureCapacity(maximumSize);
+  }
+
+  /**
+   * Grows the sketch so that it can accurately track up to {@code maximumSize} distinct elements.
+   * Growing discards all previously recorded frequencies; shrinking is never performed.
+   */
+  void ensureCapacity(long maximumSize) {
+    int length =
+        (int) Math.min(LongMath.ceilingPowerOfTwo(Math.max(maximumSize, 8)), MAXIMUM_TABLE_LENGTH);
+    if (length <= table.length) {
+      return;
+    }
+    table = new long[length];
+    tableMask = length - 1;
+    sampleSize = (int) Math.min(10L * length, Integer.MAX_VALUE);
+    size = 0;
+  }
+
+  /** Returns the estimated number of occurrences of the element with the given hash, up to 15. */
+  int frequency(int hash) {
+    int start = (spread(hash) & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the estimated number of occurrences of the element with the given hash, aging the
+   * sketch if the sample size has been reached.
+   */
+  void increment(int hash) {
+    int start = (spread(hash) & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && (++size == sampleSize)) {
+      reset();
+    }
+  }
+
+  /** Increments the {@code counter}-th 4-bit counter of {@code table[index]}, unless saturated. */
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter, and the number of recorded increments accordingly. */
+  @VisibleForTesting
+  void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    // Each increment touched four counters, so a quarter of the truncated remainders are lost.
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  @VisibleForTesting
+  int sampleSize() {
+    return sampleSize;
+  }
+
+  @VisibleForTesting
+  int size() {
+    return size;
+  }
+
+  /** Returns the table index of the {@code i}-th counter of the element with the given hash. */
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  /** Applies a supplemental hash, since the low bits of {@code hash} select the segment table. */
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+}
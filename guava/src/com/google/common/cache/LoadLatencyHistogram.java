@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.math.LongMath.saturatedAdd;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.base.MoreObjects;
+import java.util.Arrays;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable histogram of the time, in nanoseconds, that a cache spent loading values. Obtained
+ * from {@link CacheStats#loadLatencies} when a cache was built with {@link
+ * CacheBuilder#recordDetailedStats}.
+ *
+ * <p>Latencies are counted in log-linear buckets: each power of two is divided into {@value
+ * #SUB_BUCKETS} buckets of equal width, so that a latency is known to within about 6% of its value,
+ * while the whole range of {@code long} values needs fewer than a thousand buckets. Latencies below
+ * {@value #SUB_BUCKETS} nanoseconds are counted exactly. Histograms can be merged with {@link
+ * #plus} and subtracted with {@link #minus} without losing precision.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtCompatible
+public final class LoadLatencyHistogram {
+  /** The base two logarithm of {@link #SUB_BUCKETS}. */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /** The number of buckets into which each power of two is divided. */
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** The number of buckets needed to count any non-negative {@code long}. */
+  static final int BUCKETS = bucketIndex(Long.MAX_VALUE) + 1;
+
+  private static final LoadLatencyHistogram EMPTY = new LoadLatencyHistogram(new long[0], 0);
+
+  /** The count of each bucket, up to the last non-empty one. */
+  private final long[] counts;
+
+  private final long count;
+
+  private LoadLatencyHistogram(long[] counts, long count) {
+    this.counts = counts;
+    this.count = count;
+  }
+
+  /** Returns a histogram with no recorded latencies. */
+  public static LoadLatencyHistogram empty() {
+    return EMPTY;
+  }
+
+  /** Returns a histogram of the given counts, indexed by {@link #bucketIndex}. */
+  static LoadLatencyHistogram of(long[] counts) {
+    int length = counts.length;
+    while (length > 0 && counts[length - 1] == 0) {
+      length--;
+    }
+    if (length == 0) {
+      return EMPTY;
+    }
+    long count = 0;
+    for (int i = 0; i < length; i++) {
+      checkArgument(counts[i] >= 0);
+      count = saturatedAdd(count, counts[i]);
+    }
+    return new LoadLatencyHistogram(Arrays.copyOf(counts, length), count);
+  }
+
+  /** Returns the index of the bucket that counts {@code latency}, which must not be negative. */
+  static int bucketIndex(long latency) {
+    if (latency < SUB_BUCKETS) {
+      return (int) latency;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(latency);
+    int subBucket = (int) (latency >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the greatest latency counted by the bucket at {@code index}. */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowerBound = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    return lowerBound + ((1L << shift) - 1);
+  }
+
+  /** Returns the number of latencies recorded by this histogram. */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns an upper bound of the latency, in nanoseconds, below which the given percentage of the
+   * recorded latencies fall, or zero if no latencies were recorded. For example, {@code
+   * valueAtPercentile(99.0)} estimates the 99th percentile. The returned value is the greatest
+   * latency of its bucket, and so exceeds the true percentile by at most about 6%.
+   *
+   * @throws IllegalArgumentException if {@code percentile} is not between 0 and 100, inclusive
+   */
+  public long valueAtPercentile(double percentile) {
+    checkArgument(
+        percentile >= 0.0 && percentile <= 100.0,
+        "percentile must be between 0 and 100: %s",
+        percentile);
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return bucketUpperBound(i);
+      }
+    }
+    return bucketUpperBound(counts.length - 1);
+  }
+
+  /**
+   * Returns a new histogram that records the latencies of both this histogram and {@code other}.
+   */
+  public LoadLatencyHistogram plus(LoadLatencyHistogram other) {
+    long[] sum = Arrays.copyOf(counts, Math.max(counts.length, other.counts.length));
+    for (int i = 0; i < other.counts.length; i++) {
+      sum[i] = saturatedAdd(sum[i], other.counts[i]);
+    }
+    return of(sum);
+  }
+
+  /**
+   * Returns a new histogram that records the latencies of this histogram that are not in {@code
+   * other}. Negative counts, which are not supported, are rounded up to zero.
+   */
+  public LoadLatencyHistogram minus(LoadLatencyHistogram other) {
+    long[] difference = Arrays.copyOf(counts, counts.length);
+    for (int i = 0; i < Math.min(counts.length, other.counts.length); i++) {
+      difference[i] = Math.max(0, difference[i] - other.counts[i]);
+    }
+    return of(difference);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object instanceof LoadLatencyHistogram) {
+      return Arrays.equals(counts, ((LoadLatencyHistogram) object).counts);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(counts);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("count", count)
+        .add("p50", valueAtPercentile(50.0))
+        .add("p90", valueAtPercentile(90.0))
+        .add("p99", valueAtPercentile(99.0))
+        .add("max", valueAtPercentile(100.0))
+        .toString();
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.google.common.cache;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.cache.CacheBuilder.NULL_TICKER;
@@ -29,7 +30,6 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Equivalence;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Ticker;
-import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.CacheBuilder.NullListener;
 import com.google.common.cache.CacheBuilder.OneWeigher;
@@ -40,6 +40,7 @@ import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
@@ -64,8 +65,11 @@ import java.util.AbstractMap;
 import java.util.AbstractQueue;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -75,7 +79,9 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
@@ -199,6 +205,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** Weigher to weigh cache entries. */
   final Weigher<K, V> weigher;
 
+  /** The policy used to select entries for size-based eviction. */
+  final EvictionPolicy evictionPolicy;
+
   /** How long after the last access to an entry the map will retain that entry. */
   final long expireAfterAccessNanos;
 
@@ -208,6 +217,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** How long after the last write an entry becomes a candidate for refresh. */
   final long refreshNanos;
 
+  /** Computes the lifetime of each entry, if entries expire variably. */
+  final @Nullable Expiry<K, V> expiry;
+
   /** Entries waiting to be consumed by the removal listener. */
   // TODO(fry): define a new type which creates event objects and automates the clear logic
   final Queue<RemovalNotification<K, V>> removalNotificationQueue;
@@ -233,6 +245,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** The default cache loader to use on loading operations. */
   final @Nullable CacheLoader<? super K, V> defaultLoader;
 
+  /** Runs the background refresh of entries, if requested by the builder. */
+  final @Nullable ScheduledExecutorService refreshExecutor;
+
+  /** Refreshes entries before they are requested, if {@link #refreshExecutor} is set. */
+  final @Nullable BackgroundRefresher<K, V> backgroundRefresher;
+
+  /** Performs the maintenance of segments in the background, if requested by the builder. */
+  final @Nullable CacheMaintenance<K, V> maintenance;
+
   /**
    * Creates a new, empty map with the specified strategy, initial capacity and concurrency level.
    */
@@ -248,9 +269,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     maxWeight = builder.getMaximumWeight();
     weigher = builder.getWeigher();
+    evictionPolicy = builder.getEvictionPolicy();
     expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
     expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
     refreshNanos = builder.getRefreshNanos();
+    expiry = builder.getExpiry();
 
     removalListener = builder.getRemovalListener();
     removalNotificationQueue =
@@ -261,7 +284,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     ticker = builder.getTicker(recordsTime());
     entryFactory = EntryFactory.getFactory(keyStrength, usesAccessEntries(), usesWriteEntries());
     globalStatsCounter = builder.getStatsCounterSupplier().get();
-    defaultLoader = loader;
+    defaultLoader =
+        (loader == null || builder.maximumBatchSize == UNSET_INT)
+            ? loader
+            : new BatchingCacheLoader<K, V>(
+                loader,
+                builder.maximumBatchSize,
+                builder.batchWindowNanos,
+                globalStatsCounter,
+                this);
+    refreshExecutor = (loader == null) ? null : builder.refreshExecutor;
 
     int initialCapacity = Math.min(builder.getInitialCapacity(), MAXIMUM_CAPACITY);
     if (evictsBySize() && !customWeigher()) {
@@ -311,6 +343,31 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             createSegment(segmentSize, UNSET_INT, builder.getStatsCounterSupplier().get());
       }
     }
+
+    backgroundRefresher =
+        refreshesInBackground()
+            ? new BackgroundRefresher<K, V>(this, refreshExecutor, builder.refreshesPerSecond)
+            : null;
+    maintenance =
+        (builder.maintenanceExecutor == null)
+            ? null
+            : new CacheMaintenance<K, V>(this, builder.maintenanceExecutor);
+  }
+
+  /**
+   * Creates a new, empty cache, and then starts the background tasks requested by {@code builder}.
+   * They are only started once the cache is fully constructed, as they run on other threads.
+   */
+  static <K, V> LocalCache<K, V> create(
+      CacheBuilder<? super K, ? super V> builder, @Nullable CacheLoader<? super K, V> loader) {
+    LocalCache<K, V> cache = new LocalCache<>(builder, loader);
+    if (cache.backgroundRefresher != null) {
+      cache.backgroundRefresher.start();
+    }
+    if (cache.maintenance != null) {
+      cache.maintenance.start();
+    }
+    return cache;
   }
 
   boolean evictsBySize() {
@@ -321,8 +378,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return weigher != OneWeigher.INSTANCE;
   }
 
+  boolean usesFrequencySketch() {
+    return admitsByFrequency() || refreshesInBackground();
+  }
+
+  boolean admitsByFrequency() {
+    return evictsBySize() && evictionPolicy == EvictionPolicy.TINY_LFU;
+  }
+
   boolean expires() {
-    return expiresAfterWrite() || expiresAfterAccess();
+    return expiresAfterWrite() || expiresAfterAccess() || expiresVariably();
   }
 
   boolean expiresAfterWrite() {
@@ -333,16 +398,33 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return expireAfterAccessNanos > 0;
   }
 
+  /**
+   * Returns true if each entry has its own expiration time, which is stored in place of its access
+   * time, and is ordered by a {@link TimerWheel} that is linked through the write queue pointers.
+   */
+  boolean expiresVariably() {
+    return expiry != null;
+  }
+
   boolean refreshes() {
     return refreshNanos > 0;
   }
 
+  boolean refreshesInBackground() {
+    return refreshExecutor != null;
+  }
+
   boolean usesAccessQueue() {
     return expiresAfterAccess() || evictsBySize();
   }
 
+  /**
+   * Returns true if the entries are kept in write order, which background refresh uses to find the
+   * entries that are due. Variable expiration links its timer wheel through the same pointers, so
+   * background refresh then scans the table instead.
+   */
   boolean usesWriteQueue() {
-    return expiresAfterWrite();
+    return expiresAfterWrite() || (refreshesInBackground() && !expiresVariably());
   }
 
   boolean recordsWrite() {
@@ -354,15 +436,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean recordsTime() {
-    return recordsWrite() || recordsAccess();
+    return recordsWrite() || recordsAccess() || expiresVariably();
   }
 
   boolean usesWriteEntries() {
-    return usesWriteQueue() || recordsWrite();
+    return usesWriteQueue() || recordsWrite() || expiresVariably();
   }
 
   boolean usesAccessEntries() {
-    return usesAccessQueue() || recordsAccess();
+    return usesAccessQueue() || recordsAccess() || expiresVariably();
   }
 
   boolean usesKeyReferences() {
@@ -1767,9 +1849,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     if (expiresAfterWrite() && (now - entry.getWriteTime() >= expireAfterWriteNanos)) {
       return true;
     }
+    if (expiresVariably() && (now - entry.getAccessTime() >= 0)) {
+      return true;
+    }
     return false;
   }
 
+  /** The longest lifetime that an {@link Expiry} may give an entry, about 146 years. */
+  static final long MAXIMUM_EXPIRY_NANOS = Long.MAX_VALUE >>> 1;
+
+  /**
+   * Returns the time at which an entry expires, given a lifetime returned by the {@link Expiry}.
+   * Lifetimes are bounded so that expiration times can be compared without overflow.
+   */
+  static long expirationTime(long now, long duration) {
+    return now + Math.max(0, Math.min(duration, MAXIMUM_EXPIRY_NANOS));
+  }
+
   // queues
 
   // Guarded By Segment.this
@@ -1804,14 +1900,26 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    * evictEntry is called (once the lock is released).
    */
   void processPendingNotifications() {
+    processPendingNotifications(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Notifies listeners of up to {@code maximum} pending removals, and returns true if no more
+   * removals were pending.
+   */
+  boolean processPendingNotifications(int maximum) {
     RemovalNotification<K, V> notification;
-    while ((notification = removalNotificationQueue.poll()) != null) {
+    for (int i = 0; i < maximum; i++) {
+      if ((notification = removalNotificationQueue.poll()) == null) {
+        return true;
+      }
       try {
         removalListener.onRemoval(notification);
       } catch (Throwable e) {
         logger.log(Level.WARNING, "Exception thrown by removal listener", e);
       }
     }
+    return removalNotificationQueue.isEmpty();
   }
 
   @SuppressWarnings("unchecked")
@@ -1905,7 +2013,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /**
      * The recency queue is used to record which entries were accessed for updating the access
      * list's ordering. It is drained as a batch operation when either the DRAIN_THRESHOLD is
-     * crossed or a write occurs on the segment.
+     * crossed or a write occurs on the segment. This is a lossy {@link ReadBuffer}, so that reads
+     * neither allocate nor contend with each other.
      */
     final Queue<ReferenceEntry<K, V>> recencyQueue;
 
@@ -1915,13 +2024,24 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      */
     final AtomicInteger readCount = new AtomicInteger();
 
+    /** Whether a task to perform the maintenance of this segment was submitted but not yet run. */
+    final AtomicBoolean cleanUpRequested = new AtomicBoolean();
+
     /**
      * A queue of elements currently in the map, ordered by write time. Elements are added to the
-     * tail of the queue on write.
+     * tail of the queue on write. When entries expire variably, this is the {@link #timerWheel}
+     * instead.
      */
     @GuardedBy("this")
     final Queue<ReferenceEntry<K, V>> writeQueue;
 
+    /**
+     * The elements currently in the map, bucketed by their expiration time. Null unless an {@link
+     * Expiry} is in use.
+     */
+    @GuardedBy("this")
+    final @Nullable TimerWheel<K, V> timerWheel;
+
     /**
      * A queue of elements currently in the map, ordered by access time. Elements are added to the
      * tail of the queue on access (note that writes count as accesses).
@@ -1929,6 +2049,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     final Queue<ReferenceEntry<K, V>> accessQueue;
 
+    /**
+     * Estimates how often the keys of this segment were recently accessed. Used to decide whether a
+     * new entry should displace the least-recently-used one under {@link EvictionPolicy#TINY_LFU},
+     * and which entries to refresh first when {@linkplain CacheBuilder#refreshInBackground
+     * refreshing in the background}. Null unless either is in use.
+     */
+    @GuardedBy("this")
+    final @Nullable FrequencySketch frequencySketch;
+
     /** Accumulates cache statistics. */
     final StatsCounter statsCounter;
 
@@ -1947,19 +2076,29 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       valueReferenceQueue = map.usesValueReferences() ? new ReferenceQueue<V>() : null;
 
       recencyQueue =
-          map.usesAccessQueue()
-              ? new ConcurrentLinkedQueue<ReferenceEntry<K, V>>()
+          (map.usesAccessQueue() || map.expiresVariably() || map.usesFrequencySketch())
+              ? new ReadBuffer<K, V>()
               : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
 
-      writeQueue =
-          map.usesWriteQueue()
-              ? new WriteQueue<K, V>()
-              : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+      timerWheel = map.expiresVariably() ? new TimerWheel<K, V>(map.ticker.read()) : null;
+
+      if (map.usesWriteQueue()) {
+        writeQueue = new WriteQueue<K, V>();
+      } else if (timerWheel != null) {
+        writeQueue = timerWheel;
+      } else {
+        writeQueue = LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+      }
 
       accessQueue =
           map.usesAccessQueue()
               ? new AccessQueue<K, V>()
               : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+
+      frequencySketch =
+          map.usesFrequencySketch()
+              ? new FrequencySketch(boundsEntries() ? maxSegmentWeight : initialCapacity)
+              : null;
     }
 
     AtomicReferenceArray<ReferenceEntry<K, V>> newEntryArray(int size) {
@@ -2010,6 +2149,14 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       int weight = map.weigher.weigh(key, value);
       checkState(weight >= 0, "Weights must be non-negative");
 
+      if (map.expiresVariably()) {
+        long duration =
+            (previous.get() == null || map.isExpired(entry, now))
+                ? map.expiry.expireAfterCreate(key, value, now)
+                : map.expiry.expireAfterUpdate(key, value, now, entry.getAccessTime() - now);
+        entry.setAccessTime(expirationTime(now, duration));
+      }
+
       ValueReference<K, V> valueReference =
           map.valueStrength.referenceValue(this, entry, value, weight);
       entry.setValueReference(valueReference);
@@ -2343,6 +2490,74 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return oldValue;
     }
 
+    /**
+     * Adds to {@code candidates} the live entries of this segment that will be due for refresh
+     * within {@code lookaheadNanos}, and are not already being refreshed. Skips the segment if its
+     * lock is not available, so that the background refresh never waits for a writer.
+     *
+     * <p>The write queue is in write order, so only the entries at its head, up to the first one
+     * that is not yet due, are visited. Only a cache that expires variably has no write queue, and
+     * has its whole table scanned.
+     */
+    @GwtIncompatible // BackgroundRefresher
+    void collectDueForRefresh(
+        long now, long lookaheadNanos, List<BackgroundRefresher.Candidate<K, V>> candidates) {
+      if (!tryLock()) {
+        return;
+      }
+      try {
+        drainRecencyQueue(); // records the frequency of the latest reads
+        if (map.usesWriteQueue()) {
+          for (ReferenceEntry<K, V> e : writeQueue) {
+            if (now - e.getWriteTime() <= map.refreshNanos - lookaheadNanos) {
+              break; // neither are the entries written after it
+            }
+            addIfDueForRefresh(e, now, lookaheadNanos, candidates);
+          }
+        } else {
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          for (int i = 0; i < table.length(); ++i) {
+            for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
+              addIfDueForRefresh(e, now, lookaheadNanos, candidates);
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    @GuardedBy("this")
+    @GwtIncompatible // BackgroundRefresher
+    private void addIfDueForRefresh(
+        ReferenceEntry<K, V> e,
+        long now,
+        long lookaheadNanos,
+        List<BackgroundRefresher.Candidate<K, V>> candidates) {
+      K key = e.getKey();
+      if (key != null && isDueForRefresh(e, now, lookaheadNanos) && getLiveValue(e, now) != null) {
+        int frequency = frequencySketch.frequency(e.getHash());
+        candidates.add(new BackgroundRefresher.Candidate<K, V>(this, key, e.getHash(), frequency));
+      }
+    }
+
+    /**
+     * Refreshes the entry for {@code key} in the background, if it is still live and will be due
+     * for refresh within {@code lookaheadNanos}.
+     */
+    void refreshIfDue(K key, int hash, long lookaheadNanos) {
+      long now = map.ticker.read();
+      ReferenceEntry<K, V> e = getLiveEntry(key, hash, now);
+      if (e != null && isDueForRefresh(e, now, lookaheadNanos)) {
+        refresh(key, hash, map.defaultLoader, false);
+      }
+    }
+
+    private boolean isDueForRefresh(ReferenceEntry<K, V> e, long now, long lookaheadNanos) {
+      return (now - e.getWriteTime() > map.refreshNanos - lookaheadNanos)
+          && !e.getValueReference().isLoading();
+    }
+
     /**
      * Refreshes the value associated with {@code key}, unless another thread is already doing so.
      * Returns the newly refreshed value associated with {@code key} if it was refreshed inline, or
@@ -2438,20 +2653,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     /**
      * Drain the key and value reference queues, cleaning up internal entries containing garbage
-     * collected keys or values.
+     * collected keys or values. Returns true if {@link #DRAIN_MAX} references were drained from
+     * either queue, so that more may remain.
      */
     @GuardedBy("this")
-    void drainReferenceQueues() {
+    boolean drainReferenceQueues() {
+      boolean more = false;
       if (map.usesKeyReferences()) {
-        drainKeyReferenceQueue();
+        more |= drainKeyReferenceQueue();
       }
       if (map.usesValueReferences()) {
-        drainValueReferenceQueue();
+        more |= drainValueReferenceQueue();
       }
+      return more;
     }
 
     @GuardedBy("this")
-    void drainKeyReferenceQueue() {
+    boolean drainKeyReferenceQueue() {
       Reference<? extends K> ref;
       int i = 0;
       while ((ref = keyReferenceQueue.poll()) != null) {
@@ -2459,13 +2677,14 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         ReferenceEntry<K, V> entry = (ReferenceEntry<K, V>) ref;
         map.reclaimKey(entry);
         if (++i == DRAIN_MAX) {
-          break;
+          return true;
         }
       }
+      return false;
     }
 
     @GuardedBy("this")
-    void drainValueReferenceQueue() {
+    boolean drainValueReferenceQueue() {
       Reference<? extends V> ref;
       int i = 0;
       while ((ref = valueReferenceQueue.poll()) != null) {
@@ -2473,9 +2692,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         ValueReference<K, V> valueReference = (ValueReference<K, V>) ref;
         map.reclaimValue(valueReference);
         if (++i == DRAIN_MAX) {
-          break;
+          return true;
         }
       }
+      return false;
     }
 
     /** Clears all entries from the key and value reference queues. */
@@ -2501,7 +2721,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /**
      * Records the relative order in which this read was performed by adding {@code entry} to the
      * recency queue. At write-time, or when the queue is full past the threshold, the queue will be
-     * drained and the entries therein processed.
+     * drained and the entries therein processed. The read may be dropped if the queue is full or
+     * contended.
      *
      * <p>Note: locked reads should use {@link #recordLockedRead}.
      */
@@ -2509,7 +2730,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
-      recencyQueue.add(entry);
+      if (map.expiresVariably()) {
+        recordExpiryRead(entry, now);
+      }
+      recencyQueue.offer(entry);
     }
 
     /**
@@ -2524,7 +2748,26 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
+      if (map.expiresVariably()) {
+        recordExpiryRead(entry, now);
+        timerWheel.add(entry);
+      }
       accessQueue.add(entry);
+      recordFrequency(entry);
+    }
+
+    /**
+     * Updates the expiration time of {@code entry} after it was read, as chosen by the cache's
+     * {@link Expiry}. After an unlocked read, the entry is rescheduled in the timer wheel once the
+     * recency queue is drained.
+     */
+    void recordExpiryRead(ReferenceEntry<K, V> entry, long now) {
+      K key = entry.getKey();
+      V value = entry.getValueReference().get();
+      if (key != null && value != null) {
+        long duration = map.expiry.expireAfterRead(key, value, now, entry.getAccessTime() - now);
+        entry.setAccessTime(expirationTime(now, duration));
+      }
     }
 
     /**
@@ -2545,6 +2788,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
       accessQueue.add(entry);
       writeQueue.add(entry);
+      recordFrequency(entry);
     }
 
     /**
@@ -2563,7 +2807,29 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         // all of the segment's entries.
         if (accessQueue.contains(e)) {
           accessQueue.add(e);
+          recordFrequency(e);
+        } else if (!map.usesAccessQueue()) {
+          recordFrequency(e);
         }
+        if (timerWheel != null && timerWheel.contains(e)) {
+          timerWheel.add(e);
+        }
+      }
+    }
+
+    /**
+     * Returns whether the number of entries of this segment is bounded by its maximum weight, which
+     * is only the case when entries are not weighed.
+     */
+    boolean boundsEntries() {
+      return map.evictsBySize() && !map.customWeigher();
+    }
+
+    /** Records an access to {@code entry}'s key in the frequency sketch, if there is one. */
+    @GuardedBy("this")
+    void recordFrequency(ReferenceEntry<K, V> entry) {
+      if (frequencySketch != null) {
+        frequencySketch.increment(entry.getHash());
       }
     }
 
@@ -2584,6 +2850,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     void expireEntries(long now) {
       drainRecencyQueue();
+      if (timerWheel != null) {
+        timerWheel.advance(now);
+      }
 
       ReferenceEntry<K, V> e;
       while ((e = writeQueue.peek()) != null && map.isExpired(e, now)) {
@@ -2629,20 +2898,43 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
       // If the newest entry by itself is too heavy for the segment, don't bother evicting
       // anything else, just that
+      ReferenceEntry<K, V> candidate = newest;
       if (newest.getValueReference().getWeight() > maxSegmentWeight) {
         if (!removeEntry(newest, newest.getHash(), RemovalCause.SIZE)) {
           throw new AssertionError();
         }
+        candidate = null;
       }
 
       while (totalWeight > maxSegmentWeight) {
         ReferenceEntry<K, V> e = getNextEvictable();
+        if (candidate != null && e != candidate && !admit(candidate, e)) {
+          // the newest entry is less popular than the one it would displace
+          e = candidate;
+        }
+        if (e == candidate) {
+          candidate = null;
+        }
         if (!removeEntry(e, e.getHash(), RemovalCause.SIZE)) {
           throw new AssertionError();
         }
       }
     }
 
+    /**
+     * Returns whether {@code candidate} should be retained at the expense of {@code victim}. Under
+     * {@link EvictionPolicy#TINY_LFU} the candidate is only admitted if its key was accessed more
+     * frequently; otherwise the least-recently-used victim is always evicted.
+     */
+    @GuardedBy("this")
+    boolean admit(ReferenceEntry<K, V> candidate, ReferenceEntry<K, V> victim) {
+      if (!map.admitsByFrequency()) {
+        return true;
+      }
+      return frequencySketch.frequency(candidate.getHash())
+          > frequencySketch.frequency(victim.getHash());
+    }
+
     // TODO(fry): instead implement this with an eviction head
     @GuardedBy("this")
     ReferenceEntry<K, V> getNextEvictable() {
@@ -2841,6 +3133,132 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Inserts the entries at {@code indexes[from, to)} of {@code keys} and {@code values} whose
+     * keys are not yet present, under a single acquisition of the lock and after growing the table
+     * once for all of them. Existing entries, including those being loaded, are left unchanged,
+     * but an entry whose value was collected is replaced. Returns the number of entries inserted.
+     */
+    int putAllIfAbsent(
+        List<? extends K> keys,
+        List<? extends V> values,
+        int[] hashes,
+        int[] indexes,
+        int from,
+        int to) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        long expectedCount = (long) this.count + (to - from);
+        if (map.evictsBySize() && !map.customWeigher()) {
+          expectedCount = Math.min(expectedCount, maxSegmentWeight);
+        }
+        while (expectedCount > this.threshold && table.length() < MAXIMUM_CAPACITY) {
+          expand();
+        }
+
+        int inserted = 0;
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        entries:
+        for (int i = from; i < to; i++) {
+          K key = keys.get(indexes[i]);
+          V value = values.get(indexes[i]);
+          int hash = hashes[indexes[i]];
+          if (this.count + 1 > this.threshold) { // only when the table could not be presized
+            expand();
+            table = this.table;
+          }
+
+          int index = hash & (table.length() - 1);
+          ReferenceEntry<K, V> first = table.get(index);
+          for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+            K entryKey = e.getKey();
+            if (e.getHash() == hash
+                && entryKey != null
+                && map.keyEquivalence.equivalent(key, entryKey)) {
+              ValueReference<K, V> valueReference = e.getValueReference();
+              if (valueReference.get() != null || !valueReference.isActive()) {
+                continue entries;
+              }
+              // the value was collected, so the key is absent, as it is for put
+              ++modCount;
+              enqueueNotification(
+                  key, hash, null, valueReference.getWeight(), RemovalCause.COLLECTED);
+              setValue(e, key, value, now);
+              evictEntries(e);
+              inserted++;
+              continue entries;
+            }
+          }
+
+          ++modCount;
+          ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
+          setValue(newEntry, key, value, now);
+          table.set(index, newEntry);
+          this.count = this.count + 1; // write-volatile
+          evictEntries(newEntry);
+          inserted++;
+        }
+        return inserted;
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
+    /**
+     * Returns up to {@code maximumEntries} of this segment's live entries, weighing at most {@code
+     * maximumWeight} in total, most recently accessed first. If entries are not ordered by access,
+     * they are returned in no particular order.
+     */
+    List<ReferenceEntry<K, V>> hottestEntries(int maximumEntries, long maximumWeight) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        List<ReferenceEntry<K, V>> result = new ArrayList<>(Math.min(maximumEntries, count));
+        long weight = 0;
+        if (map.usesAccessQueue()) {
+          ReferenceEntry<K, V> head = ((AccessQueue<K, V>) accessQueue).head;
+          for (ReferenceEntry<K, V> e = head.getPreviousInAccessQueue();
+              e != head && result.size() < maximumEntries;
+              e = e.getPreviousInAccessQueue()) {
+            if (getLiveValue(e, now) != null) {
+              weight += e.getValueReference().getWeight();
+              if (weight > maximumWeight) {
+                break;
+              }
+              result.add(e);
+            }
+          }
+        } else {
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          tableLoop:
+          for (int i = 0; i < table.length(); i++) {
+            for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
+              if (result.size() == maximumEntries) {
+                break tableLoop;
+              }
+              if (getLiveValue(e, now) != null) {
+                weight += e.getValueReference().getWeight();
+                if (weight > maximumWeight) {
+                  break tableLoop;
+                }
+                result.add(e);
+              }
+            }
+          }
+        }
+        return result;
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
     /** Expands the table if possible. */
     @GuardedBy("this")
     void expand() {
@@ -2863,6 +3281,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       int newCount = count;
       AtomicReferenceArray<ReferenceEntry<K, V>> newTable = newEntryArray(oldCapacity << 1);
       threshold = newTable.length() * 3 / 4;
+      if (frequencySketch != null && !boundsEntries()) {
+        frequencySketch.ensureCapacity(newTable.length());
+      }
       int newMask = newTable.length() - 1;
       for (int oldIndex = 0; oldIndex < oldCapacity; ++oldIndex) {
         // We need to guarantee that any existing reads of old Map can
@@ -3180,6 +3601,48 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Recomputes the weight of the entry for {@code key}, if it is still mapped to {@code value}.
+     * Unlike a replacement, this neither notifies the removal listener nor counts as a write. Used
+     * once the value of an entry of an {@link AsyncLoadingCache} becomes available.
+     */
+    boolean reweigh(K key, int hash, V value) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        int index = hash & (table.length() - 1);
+        ReferenceEntry<K, V> first = table.get(index);
+
+        for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+          K entryKey = e.getKey();
+          if (e.getHash() == hash
+              && entryKey != null
+              && map.keyEquivalence.equivalent(key, entryKey)) {
+            ValueReference<K, V> valueReference = e.getValueReference();
+            if (valueReference.get() != value) {
+              return false;
+            }
+            int weight = map.weigher.weigh(key, value);
+            checkState(weight >= 0, "Weights must be non-negative");
+
+            ++modCount;
+            totalWeight += weight - valueReference.getWeight();
+            e.setValueReference(map.valueStrength.referenceValue(this, e, value, weight));
+            evictEntries(e);
+            return true;
+          }
+        }
+
+        return false;
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
     void clear() {
       if (count != 0) { // read-volatile
         lock();
@@ -3419,7 +3882,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      */
     void postReadCleanup() {
       if ((readCount.incrementAndGet() & DRAIN_THRESHOLD) == 0) {
-        cleanUp();
+        if (map.maintenance == null) {
+          cleanUp();
+        } else {
+          map.maintenance.requestCleanUp(this);
+        }
       }
     }
 
@@ -3446,6 +3913,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
 
     void runLockedCleanup(long now) {
+      rotateStatsWindows();
       if (tryLock()) {
         try {
           drainReferenceQueues();
@@ -3460,9 +3928,49 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     void runUnlockedCleanup() {
       // locked cleanup may generate notifications we can send unlocked
       if (!isHeldByCurrentThread()) {
-        map.processPendingNotifications();
+        if (map.maintenance == null) {
+          map.processPendingNotifications();
+        } else if (!map.processPendingNotifications(DRAIN_MAX)) {
+          map.maintenance.requestCleanUp(this);
+        }
+      }
+    }
+
+    /**
+     * Begins a new window of the detailed stats, if they are recorded and the current window has
+     * ended. Hits are counted in the current window without reading the ticker, so this is done as
+     * part of the routine cleanup instead.
+     */
+    void rotateStatsWindows() {
+      if (statsCounter instanceof DetailedStatsCounter) {
+        ((DetailedStatsCounter) statsCounter).rotateWindows();
       }
     }
+
+    /**
+     * Performs the maintenance of this segment on behalf of its {@link CacheMaintenance}: drains
+     * the reference queues completely, expires entries and delivers all pending notifications.
+     * Returns false if the segment lock was busy, in which case only the notifications were
+     * delivered and any requested clean up is still pending.
+     */
+    @GwtIncompatible // CacheMaintenance
+    boolean runScheduledCleanup() {
+      rotateStatsWindows();
+      boolean locked = tryLock();
+      if (locked) {
+        try {
+          // cleared before the work, so that a request made while it runs submits another task
+          cleanUpRequested.set(false);
+          while (drainReferenceQueues()) {}
+          expireEntries(map.ticker.read()); // calls drainRecencyQueue
+          readCount.set(0);
+        } finally {
+          unlock();
+        }
+      }
+      map.processPendingNotifications();
+      return locked;
+    }
   }
 
   static class LoadingValueReference<K, V> implements ValueReference<K, V> {
@@ -4229,6 +4737,110 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /**
+   * Inserts each of {@code keys}, mapped to the value at the same index of {@code values}, unless
+   * the key is already present. The entries are grouped by segment in a single pass, and each
+   * segment is locked and grown only once. Entries are inserted in order, so that with size-based
+   * eviction the last ones are considered the most recently used. Returns the number of entries
+   * inserted.
+   */
+  int putAllIfAbsent(List<? extends K> keys, List<? extends V> values) {
+    checkArgument(keys.size() == values.size());
+    int size = keys.size();
+    int[] hashes = new int[size];
+    int[] segmentStarts = new int[segments.length + 1];
+    for (int i = 0; i < size; i++) {
+      hashes[i] = hash(checkNotNull(keys.get(i)));
+      checkNotNull(values.get(i));
+      segmentStarts[((hashes[i] >>> segmentShift) & segmentMask) + 1]++;
+    }
+    for (int i = 0; i < segments.length; i++) {
+      segmentStarts[i + 1] += segmentStarts[i];
+    }
+
+    // a counting sort of the entries by segment, which keeps their order within each segment
+    int[] indexes = new int[size];
+    int[] next = Arrays.copyOf(segmentStarts, segments.length);
+    for (int i = 0; i < size; i++) {
+      indexes[next[((hashes[i] >>> segmentShift) & segmentMask)]++] = i;
+    }
+
+    int inserted = 0;
+    for (int i = 0; i < segments.length; i++) {
+      if (segmentStarts[i] < segmentStarts[i + 1]) {
+        inserted +=
+            segments[i].putAllIfAbsent(
+                keys, values, hashes, indexes, segmentStarts[i], segmentStarts[i + 1]);
+      }
+    }
+    return inserted;
+  }
+
+  /**
+   * Returns up to {@code maximumEntries} live entries, weighing at most {@code maximumWeight} in
+   * total, most recently accessed first. Segments are ordered independently, so when access times
+   * are not recorded the most recent entries of each segment are interleaved. If entries are not
+   * ordered by access, they are returned in no particular order.
+   */
+  List<ReferenceEntry<K, V>> hottestEntries(int maximumEntries, long maximumWeight) {
+    List<List<ReferenceEntry<K, V>>> perSegment = new ArrayList<>(segments.length);
+    for (Segment<K, V> segment : segments) {
+      perSegment.add(segment.hottestEntries(maximumEntries, maximumWeight));
+    }
+    Iterator<ReferenceEntry<K, V>> merged;
+    if (recordsAccess()) {
+      merged =
+          Iterators.mergeSorted(
+              Lists.transform(perSegment, LocalCache.<ReferenceEntry<K, V>>toIterator()),
+              new Comparator<ReferenceEntry<K, V>>() {
+                @Override
+                public int compare(ReferenceEntry<K, V> a, ReferenceEntry<K, V> b) {
+                  return Long.compare(b.getAccessTime(), a.getAccessTime());
+                }
+              });
+    } else {
+      merged = roundRobin(perSegment);
+    }
+
+    List<ReferenceEntry<K, V>> result = new ArrayList<>();
+    long weight = 0;
+    while (merged.hasNext() && result.size() < maximumEntries) {
+      ReferenceEntry<K, V> e = merged.next();
+      weight += e.getValueReference().getWeight();
+      if (weight > maximumWeight) {
+        break;
+      }
+      result.add(e);
+    }
+    return result;
+  }
+
+  private static <E> com.google.common.base.Function<List<E>, Iterator<E>> toIterator() {
+    return new com.google.common.base.Function<List<E>, Iterator<E>>() {
+      @Override
+      public Iterator<E> apply(List<E> list) {
+        return list.iterator();
+      }
+    };
+  }
+
+  /** Returns the first element of each list, then the second of each, and so on. */
+  private static <E> Iterator<E> roundRobin(List<List<E>> lists) {
+    List<E> result = new ArrayList<>();
+    for (int i = 0; ; i++) {
+      boolean found = false;
+      for (List<E> list : lists) {
+        if (i < list.size()) {
+          result.add(list.get(i));
+          found = true;
+        }
+      }
+      if (!found) {
+        return result.iterator();
+      }
+    }
+  }
+
   @Override
   public V remove(@Nullable Object key) {
     if (key == null) {
@@ -4697,6 +5309,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     final long expireAfterAccessNanos;
     final long maxWeight;
     final Weigher<K, V> weigher;
+    final EvictionPolicy evictionPolicy;
+    final @Nullable Expiry<? super K, ? super V> expiry;
     final int concurrencyLevel;
     final RemovalListener<? super K, ? super V> removalListener;
     final @Nullable Ticker ticker;
@@ -4714,6 +5328,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           cache.expireAfterAccessNanos,
           cache.maxWeight,
           cache.weigher,
+          cache.evictionPolicy,
+          cache.expiry,
           cache.concurrencyLevel,
           cache.removalListener,
           cache.ticker,
@@ -4729,6 +5345,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         long expireAfterAccessNanos,
         long maxWeight,
         Weigher<K, V> weigher,
+        EvictionPolicy evictionPolicy,
+        @Nullable Expiry<? super K, ? super V> expiry,
         int concurrencyLevel,
         RemovalListener<? super K, ? super V> removalListener,
         Ticker ticker,
@@ -4741,6 +5359,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       this.expireAfterAccessNanos = expireAfterAccessNanos;
       this.maxWeight = maxWeight;
       this.weigher = weigher;
+      this.evictionPolicy = evictionPolicy;
+      this.expiry = expiry;
       this.concurrencyLevel = concurrencyLevel;
       this.removalListener = removalListener;
       this.ticker = (ticker == Ticker.systemTicker() || ticker == NULL_TICKER) ? null : ticker;
@@ -4763,6 +5383,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (expireAfterAccessNanos > 0) {
         builder.expireAfterAccess(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
       }
+      if (expiry != null) {
+        builder.expireAfter(expiry);
+      }
       if (weigher != OneWeigher.INSTANCE) {
         builder.weigher(weigher);
         if (maxWeight != UNSET_INT) {
@@ -4773,6 +5396,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           builder.maximumSize(maxWeight);
         }
       }
+      if (evictionPolicy != null
+          && evictionPolicy != EvictionPolicy.LEAST_RECENTLY_USED
+          && maxWeight != UNSET_INT) {
+        builder.evictionPolicy(evictionPolicy);
+      }
       if (ticker != null) {
         builder.ticker(ticker);
       }
@@ -4853,7 +5481,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     final LocalCache<K, V> localCache;
 
     LocalManualCache(CacheBuilder<? super K, ? super V> builder) {
-      this(new LocalCache<K, V>(builder, null));
+      this(LocalCache.<K, V>create(builder, null));
     }
 
     private LocalManualCache(LocalCache<K, V> localCache) {
@@ -4923,12 +5551,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     @Override
     public CacheStats stats() {
-      SimpleStatsCounter aggregator = new SimpleStatsCounter();
-      aggregator.incrementBy(localCache.globalStatsCounter);
+      // merged as snapshots, so that the details of a DetailedStatsCounter are kept
+      CacheStats stats = localCache.globalStatsCounter.snapshot();
       for (Segment<K, V> segment : localCache.segments) {
-        aggregator.incrementBy(segment.statsCounter);
+        stats = stats.plus(segment.statsCounter.snapshot());
       }
-      return aggregator.snapshot();
+      return stats;
     }
 
     @Override
@@ -4950,7 +5578,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     LocalLoadingCache(
         CacheBuilder<? super K, ? super V> builder, CacheLoader<? super K, V> loader) {
-      super(new LocalCache<K, V>(builder, checkNotNull(loader)));
+      super(LocalCache.<K, V>create(builder, checkNotNull(loader)));
     }
 
     // LoadingCache methods
@@ -4993,4 +5621,244 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new LoadingSerializationProxy<>(localCache);
     }
   }
+
+  /**
+   * An {@link AsyncLoadingCache} backed by a {@code LocalCache} whose values are the futures of the
+   * cached values.
+   */
+  static final class LocalAsyncLoadingCache<K, V> implements AsyncLoadingCache<K, V> {
+    final LocalCache<K, ListenableFuture<V>> localCache;
+    final AsyncCacheLoader<? super K, V> loader;
+
+    LocalAsyncLoadingCache(
+        CacheBuilder<? super K, ? super V> builder, AsyncCacheLoader<? super K, V> loader) {
+      this.localCache = LocalCache.create(builder.<K, V>forFutureValues(), null);
+      this.loader = checkNotNull(loader);
+    }
+
+    @Override
+    public @Nullable ListenableFuture<V> getIfPresent(Object key) {
+      ListenableFuture<V> future = localCache.getIfPresent(key);
+      return (future == null) ? null : shared(future);
+    }
+
+    @Override
+    public ListenableFuture<V> get(K key) {
+      ListenableFuture<V> future = localCache.getIfPresent(checkNotNull(key));
+      if (future != null) {
+        return shared(future);
+      }
+
+      // the placeholder is cached before the load starts, so that concurrent requests share it
+      SettableFuture<V> placeholder = SettableFuture.create();
+      future = localCache.putIfAbsent(key, placeholder);
+      if (future != null) {
+        return shared(future);
+      }
+      load(key, placeholder);
+      return shared(placeholder);
+    }
+
+    /**
+     * Returns a view of a cached future that its caller may cancel without cancelling the load for
+     * every other caller. A done future cannot be cancelled, so it is returned as is.
+     */
+    private static <V> ListenableFuture<V> shared(ListenableFuture<V> future) {
+      return future.isDone() ? future : Futures.nonCancellationPropagating(future);
+    }
+
+    private void load(final K key, final SettableFuture<V> placeholder) {
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+      ListenableFuture<V> loaded;
+      try {
+        loaded = loader.asyncLoad(key);
+        if (loaded == null) {
+          throw new InvalidCacheLoadException(
+              "AsyncCacheLoader returned null for key " + key + ".");
+        }
+      } catch (Throwable t) {
+        loaded = Futures.immediateFailedFuture(t);
+      }
+      placeholder.setFuture(
+          transform(
+              loaded,
+              new com.google.common.base.Function<V, V>() {
+                @Override
+                public V apply(V value) {
+                  if (value == null) {
+                    throw new InvalidCacheLoadException(
+                        "AsyncCacheLoader returned null for key " + key + ".");
+                  }
+                  return value;
+                }
+              },
+              directExecutor()));
+      placeholder.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              StatsCounter statsCounter = localCache.segmentFor(localCache.hash(key)).statsCounter;
+              long loadTime = stopwatch.elapsed(NANOSECONDS);
+              if (onCompletion(key, placeholder)) {
+                statsCounter.recordLoadSuccess(loadTime);
+              } else {
+                statsCounter.recordLoadException(loadTime);
+              }
+            }
+          },
+          directExecutor());
+    }
+
+    /**
+     * Updates the entry for {@code key} once {@code future} has completed: its weight if it
+     * succeeded, or removes it if it failed. Returns whether it succeeded.
+     */
+    boolean onCompletion(K key, ListenableFuture<V> future) {
+      if (FutureWeigher.succeeded(future)) {
+        if (localCache.customWeigher()) {
+          int hash = localCache.hash(key);
+          localCache.segmentFor(hash).reweigh(key, hash, future);
+        }
+        return true;
+      }
+      localCache.remove(key, future);
+      return false;
+    }
+
+    @Override
+    public ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys) {
+      final Map<K, ListenableFuture<V>> futures = Maps.newLinkedHashMap();
+      for (K key : keys) {
+        if (!futures.containsKey(checkNotNull(key))) {
+          futures.put(key, get(key));
+        }
+      }
+      return Futures.whenAllSucceed(futures.values())
+          .call(
+              new Callable<ImmutableMap<K, V>>() {
+                @Override
+                public ImmutableMap<K, V> call() throws ExecutionException {
+                  ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+                  for (Entry<K, ListenableFuture<V>> entry : futures.entrySet()) {
+                    result.put(entry.getKey(), Futures.getDone(entry.getValue()));
+                  }
+                  return result.build();
+                }
+              },
+              directExecutor());
+    }
+
+    @Override
+    public void put(final K key, final ListenableFuture<V> valueFuture) {
+      localCache.put(key, valueFuture);
+      if (!FutureWeigher.succeeded(valueFuture) || localCache.customWeigher()) {
+        valueFuture.addListener(
+            new Runnable() {
+              @Override
+              public void run() {
+                onCompletion(key, valueFuture);
+              }
+            },
+            directExecutor());
+      }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+      checkNotNull(key);
+      localCache.remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+      localCache.clear();
+    }
+
+    @Override
+    public long size() {
+      return localCache.longSize();
+    }
+
+    @Override
+    public CacheStats stats() {
+      CacheStats stats = localCache.globalStatsCounter.snapshot();
+      for (Segment<K, ListenableFuture<V>> segment : localCache.segments) {
+        stats = stats.plus(segment.statsCounter.snapshot());
+      }
+      return stats;
+    }
+
+    @Override
+    public void cleanUp() {
+      localCache.cleanUp();
+    }
+
+    @Override
+    public ConcurrentMap<K, ListenableFuture<V>> asMap() {
+      return localCache;
+    }
+  }
+
+  /** Weighs the entries of an {@link AsyncLoadingCache} by their values, once available. */
+  static final class FutureWeigher<K, V> implements Weigher<K, ListenableFuture<V>> {
+    final Weigher<K, V> weigher;
+
+    FutureWeigher(Weigher<K, V> weigher) {
+      this.weigher = checkNotNull(weigher);
+    }
+
+    @Override
+    public int weigh(K key, ListenableFuture<V> future) {
+      return succeeded(future) ? weigher.weigh(key, Futures.getUnchecked(future)) : 0;
+    }
+
+    static boolean succeeded(ListenableFuture<?> future) {
+      if (!future.isDone()) {
+        return false;
+      }
+      try {
+        Futures.getDone(future);
+        return true;
+      } catch (ExecutionException | RuntimeException e) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Notifies a removal listener of the removal of an entry of an {@link AsyncLoadingCache} once its
+   * value is available. Entries whose future fails are not notified.
+   */
+  static final class FutureRemovalListener<K, V>
+      implements RemovalListener<K, ListenableFuture<V>> {
+    final RemovalListener<K, V> removalListener;
+
+    FutureRemovalListener(RemovalListener<K, V> removalListener) {
+      this.removalListener = checkNotNull(removalListener);
+    }
+
+    @Override
+    public void onRemoval(final RemovalNotification<K, ListenableFuture<V>> notification) {
+      final ListenableFuture<V> future = notification.getValue();
+      if (future == null) {
+        removalListener.onRemoval(
+            RemovalNotification.<K, V>create(notification.getKey(), null, notification.getCause()));
+        return;
+      }
+      future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              if (FutureWeigher.succeeded(future)) {
+                removalListener.onRemoval(
+                    RemovalNotification.create(
+                        notification.getKey(),
+                        Futures.getUnchecked(future),
+                        notification.getCause()));
+              }
+            }
+          },
+          directExecutor());
+    }
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2011 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link Cache} whose keys are primitive {@code long}s, which are neither boxed nor wrapped in an
+ * entry object, so that each entry takes far less memory. Built by {@link
+ * CacheBuilder#buildLongKeyed()}.
+ *
+ * <p>Entries are evicted and expired as by a {@code Cache} built with the same options, and the
+ * same statistics are recorded. Implementations of this interface are expected to be thread-safe,
+ * and can be safely accessed by multiple concurrent threads.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible // To be supported
+public interface LongKeyedCache<V> {
+
+  /**
+   * Returns the value associated with {@code key} in this cache, or {@code null} if there is no
+   * cached value for {@code key}.
+   */
+  @Nullable
+  V getIfPresent(long key);
+
+  /**
+   * Returns the value associated with {@code key} in this cache, obtaining that value from {@code
+   * loader} if necessary, as by {@link Cache#get(Object, Callable)}. Concurrent requests for the
+   * same key wait for a single load.
+   *
+   * @throws ExecutionException if a checked exception was thrown while loading the value
+   * @throws UncheckedExecutionException if an unchecked exception was thrown while loading the
+   *     value
+   * @throws ExecutionError if an error was thrown while loading the value
+   */
+  V get(long key, Callable<? extends V> loader) throws ExecutionException;
+
+  /**
+   * Associates {@code value} with {@code key} in this cache. If the cache previously contained a
+   * value associated with {@code key}, the old value is replaced by {@code value}.
+   */
+  void put(long key, V value);
+
+  /** Discards any cached value for key {@code key}. */
+  void invalidate(long key);
+
+  /** Discards all entries in the cache. */
+  void invalidateAll();
+
+  /** Returns the approximate number of entries in this cache. */
+  long size();
+
+  /**
+   * Returns a current snapshot of this cache's cumulative statistics, as by {@link Cache#stats}.
+   */
+  CacheStats stats();
+
+  /** Performs any pending maintenance operations needed by the cache. */
+  void cleanUp();
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link LongKeyedCache} whose values are automatically loaded, as are those of a {@link
+ * LoadingCache}. Built by {@link CacheBuilder#buildLongKeyed(CacheLoader)}.
+ *
+ * <p>The key is boxed only to be passed to {@link CacheLoader#load}.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible // To be supported
+public interface LongLoadingCache<V> extends LongKeyedCache<V> {
+
+  /**
+   * Returns the value associated with {@code key} in this cache, first loading that value if
+   * necessary, as by {@link LoadingCache#get}.
+   *
+   * @throws ExecutionException if a checked exception was thrown while loading the value
+   * @throws UncheckedExecutionException if an unchecked exception was thrown while loading the
+   *     value
+   * @throws ExecutionError if an error was thrown while loading the value
+   */
+  V get(long key) throws ExecutionException;
+
+  /**
+   * Returns the value associated with {@code key} in this cache, first loading that value if
+   * necessary, as by {@link LoadingCache#getUnchecked}.
+   *
+   * @throws UncheckedExecutionException if an exception was thrown while loading the value
+   * @throws ExecutionError if an error was thrown while loading the value
+   */
+  V getUnchecked(long key);
+}
@@ -0,0 +1,905 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.cache.AbstractCache.StatsCounter;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The implementation of the caches built by {@link CacheBuilder#buildLongKeyed}, which are keyed by
+ * primitive {@code long}s.
+ *
+ * <p>As in {@link LocalCache}, the cache is divided into segments, each of which evicts and expires
+ * its own entries. Rather than a table of linked entries, each segment stores its entries in
+ * parallel arrays, indexed by slot, of an open-addressed table with linear probing: the keys in a
+ * {@code long[]}, the values in an {@code Object[]}, and, when needed, the access and write times
+ * in {@code long[]}s. The access and write orders are doubly linked lists threaded through {@code
+ * int[]}s of the previous and next slots. No object is allocated per entry, and no key is boxed
+ * except to load it.
+ *
+ * <p>Reads take no lock: they read the table in the optimistic mode of the segment's {@link
+ * StampedLock}, and only retry under the read lock if a write intervened. As in {@code LocalCache},
+ * a read records the access in a buffer, which is drained under the write lock by writes and by
+ * every {@value #DRAIN_THRESHOLD}th read. The buffer is lossy: reads that overflow it before it is
+ * drained do not update the access order.
+ */
+@GwtIncompatible
+final class LongLocalCache<V> {
+  /** The maximum number of segments, as in {@link LocalCache}. */
+  static final int MAX_SEGMENTS = 1 << 16;
+
+  /** The maximum capacity of a segment's table. */
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  /** The number of reads recorded between attempts to drain them, minus one. */
+  static final int DRAIN_THRESHOLD = 0x3F;
+
+  /** The number of reads that a segment's buffer holds. A power of two. */
+  static final int READ_BUFFER_SIZE = 2 * (DRAIN_THRESHOLD + 1);
+
+  /** Indicates that a key is absent from a table. */
+  static final int ABSENT = -1;
+
+  final Segment<V>[] segments;
+  final int segmentShift;
+  final int segmentMask;
+
+  final Ticker ticker;
+  final long maxSize;
+  final long expireAfterAccessNanos;
+  final long expireAfterWriteNanos;
+
+  final @Nullable CacheLoader<? super Long, V> defaultLoader;
+
+  LongLocalCache(CacheBuilder<?, ?> builder, @Nullable CacheLoader<? super Long, V> loader) {
+    int concurrencyLevel = Math.min(builder.getConcurrencyLevel(), MAX_SEGMENTS);
+    maxSize = builder.getMaximumWeight();
+    expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
+    expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+    ticker = builder.getTicker(expiresAfterAccess() || expiresAfterWrite());
+    defaultLoader = loader;
+
+    int initialCapacity = Math.min(builder.getInitialCapacity(), MAXIMUM_CAPACITY);
+    if (evictsBySize()) {
+      initialCapacity = (int) Math.min(initialCapacity, maxSize);
+    }
+
+    // as in LocalCache, each segment of a size-bounded cache holds at least 10 entries
+    int segmentShift = 0;
+    int segmentCount = 1;
+    while (segmentCount < concurrencyLevel && (!evictsBySize() || segmentCount * 20 <= maxSize)) {
+      ++segmentShift;
+      segmentCount <<= 1;
+    }
+    this.segmentShift = 32 - segmentShift;
+    segmentMask = segmentCount - 1;
+
+    int segmentCapacity = initialCapacity / segmentCount;
+    if (segmentCapacity * segmentCount < initialCapacity) {
+      ++segmentCapacity;
+    }
+
+    @SuppressWarnings("unchecked") // generic array creation
+    Segment<V>[] segments = (Segment<V>[]) new Segment<?>[segmentCount];
+    long maxSegmentSize = maxSize / segmentCount + 1;
+    long remainder = maxSize % segmentCount;
+    for (int i = 0; i < segments.length; ++i) {
+      if (evictsBySize() && i == remainder) {
+        maxSegmentSize--;
+      }
+      segments[i] =
+          new Segment<V>(
+              this,
+              segmentCapacity,
+              evictsBySize() ? maxSegmentSize : CacheBuilder.UNSET_INT,
+              builder.getStatsCounterSupplier().get());
+    }
+    this.segments = segments;
+  }
+
+  boolean evictsBySize() {
+    return maxSize >= 0;
+  }
+
+  boolean expiresAfterAccess() {
+    return expireAfterAccessNanos > 0;
+  }
+
+  boolean expiresAfterWrite() {
+    return expireAfterWriteNanos > 0;
+  }
+
+  /** Returns whether entries are kept in access order, for eviction or for expiration. */
+  boolean recordsAccess() {
+    return evictsBySize() || expiresAfterAccess();
+  }
+
+  static int hash(long key) {
+    return LocalCache.rehash(Long.hashCode(key));
+  }
+
+  Segment<V> segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  @Nullable
+  V getIfPresent(long key) {
+    int hash = hash(key);
+    Segment<V> segment = segmentFor(hash);
+    V value = segment.get(key, hash);
+    if (value == null) {
+      segment.statsCounter.recordMisses(1);
+    } else {
+      segment.statsCounter.recordHits(1);
+    }
+    return value;
+  }
+
+  V get(long key, CacheLoader<? super Long, V> loader) throws ExecutionException {
+    int hash = hash(key);
+    Segment<V> segment = segmentFor(hash);
+    V value = segment.get(key, hash);
+    if (value != null) {
+      segment.statsCounter.recordHits(1);
+      return value;
+    }
+    return segment.lockedGetOrLoad(key, hash, loader);
+  }
+
+  V getOrLoad(long key) throws ExecutionException {
+    return get(key, defaultLoader);
+  }
+
+  void put(long key, V value) {
+    checkNotNull(value);
+    int hash = hash(key);
+    segmentFor(hash).put(key, hash, value);
+  }
+
+  void remove(long key) {
+    int hash = hash(key);
+    segmentFor(hash).remove(key, hash);
+  }
+
+  void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  void cleanUp() {
+    for (Segment<V> segment : segments) {
+      segment.cleanUp();
+    }
+  }
+
+  long size() {
+    long size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  CacheStats stats() {
+    CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+    for (Segment<V> segment : segments) {
+      stats = stats.plus(segment.statsCounter.snapshot());
+    }
+    return stats;
+  }
+
+  /**
+   * An open-addressed table of a segment's entries. The entry at a slot is described by the
+   * elements at that index of each array; a slot is empty if its value is null. The lists of the
+   * access and write orders use the slot after the last one as their sentinel.
+   */
+  static final class Table {
+    final int mask;
+    final long[] keys;
+    final Object[] values;
+    final long @Nullable [] accessTimes;
+    final long @Nullable [] writeTimes;
+    final int @Nullable [] accessPrevious;
+    final int @Nullable [] accessNext;
+    final int @Nullable [] writePrevious;
+    final int @Nullable [] writeNext;
+
+    Table(int capacity, boolean accessOrder, boolean accessTimes, boolean writeOrder) {
+      this.mask = capacity - 1;
+      this.keys = new long[capacity];
+      this.values = new Object[capacity];
+      this.accessTimes = accessTimes ? new long[capacity] : null;
+      this.writeTimes = writeOrder ? new long[capacity] : null;
+      this.accessPrevious = accessOrder ? newList(capacity) : null;
+      this.accessNext = accessOrder ? newList(capacity) : null;
+      this.writePrevious = writeOrder ? newList(capacity) : null;
+      this.writeNext = writeOrder ? newList(capacity) : null;
+    }
+
+    private static int[] newList(int capacity) {
+      int[] links = new int[capacity + 1];
+      links[capacity] = capacity;
+      return links;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    /**
+     * Returns the slot of {@code key}, or {@link #ABSENT}. Terminates even if the table is being
+     * modified concurrently, in which case the result is meaningless.
+     */
+    int find(long key, int hash) {
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        if (values[i] == null) {
+          return ABSENT;
+        } else if (keys[i] == key) {
+          return i;
+        }
+      }
+      return ABSENT;
+    }
+
+    /** Returns the empty slot at which {@code key}, which is absent, should be inserted. */
+    int emptySlot(int hash) {
+      int i = hash & mask;
+      while (values[i] != null) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    /** Appends {@code slot} to the end of a list. */
+    void link(int[] previous, int[] next, int slot) {
+      int sentinel = capacity();
+      int last = previous[sentinel];
+      previous[slot] = last;
+      next[slot] = sentinel;
+      next[last] = slot;
+      previous[sentinel] = slot;
+    }
+
+    static void unlink(int[] previous, int[] next, int slot) {
+      next[previous[slot]] = next[slot];
+      previous[next[slot]] = previous[slot];
+    }
+
+    /** Moves the links of a list from the {@code from} slot to the {@code to} slot. */
+    static void relink(int[] previous, int[] next, int from, int to) {
+      previous[to] = previous[from];
+      next[to] = next[from];
+      next[previous[to]] = to;
+      previous[next[to]] = to;
+    }
+
+    /** Returns the first slot of a list, or the sentinel if it is empty. */
+    int first(int[] next) {
+      return next[capacity()];
+    }
+  }
+
+  /** A segment of the cache, guarded by a {@link StampedLock}. */
+  static final class Segment<V> {
+    final LongLocalCache<V> map;
+    final StampedLock lock = new StampedLock();
+    final long maxSegmentSize;
+    final StatsCounter statsCounter;
+
+    /**
+     * The table of entries, which is replaced rather than modified when it is resized. Read without
+     * a lock by {@link #get}, in the optimistic mode of {@link #lock}.
+     */
+    Table table;
+
+    @GuardedBy("lock")
+    int count;
+
+    /** The number of entries above which the table is resized. */
+    @GuardedBy("lock")
+    int threshold;
+
+    /** The keys and times of recent reads, indexed by their count modulo the buffer size. */
+    final AtomicLongArray readKeys = new AtomicLongArray(READ_BUFFER_SIZE);
+
+    final AtomicLongArray readTimes = new AtomicLongArray(READ_BUFFER_SIZE);
+    final AtomicInteger readCount = new AtomicInteger();
+
+    /** The number of reads that have been drained from the buffer. */
+    @GuardedBy("lock")
+    int drainedCount;
+
+    /**
+     * The loads in progress, which later requests for the same key wait for. A write or removal of
+     * a key removes its load from here, so that the load does not store the value it loads.
+     */
+    @GuardedBy("lock")
+    final Map<Long, SettableFuture<V>> loading = new HashMap<>();
+
+    Segment(LongLocalCache<V> map, int initialCapacity, long maxSegmentSize, StatsCounter counter) {
+      this.map = map;
+      this.maxSegmentSize = maxSegmentSize;
+      this.statsCounter = checkNotNull(counter);
+      int capacity = 2;
+      while (capacity * 3 / 4 < initialCapacity && capacity < MAXIMUM_CAPACITY) {
+        capacity <<= 1;
+      }
+      initTable(capacity);
+    }
+
+    @GuardedBy("lock")
+    private void initTable(int capacity) {
+      table =
+          new Table(
+              capacity, map.recordsAccess(), map.expiresAfterAccess(), map.expiresAfterWrite());
+      threshold = (capacity == MAXIMUM_CAPACITY) ? capacity - 1 : capacity * 3 / 4;
+    }
+
+    /**
+     * Returns the live value of {@code key}, or null, and records the access. Does not record
+     * stats.
+     */
+    @Nullable
+    V get(long key, int hash) {
+      long now = map.ticker.read();
+      Object value = null;
+      long accessTime = 0;
+      long writeTime = 0;
+      long stamp = lock.tryOptimisticRead();
+      boolean locked = false;
+      while (true) {
+        // the values read by a failed optimistic read must not survive into the locked read
+        value = null;
+        Table table = this.table;
+        int slot = table.find(key, hash);
+        if (slot != ABSENT) {
+          value = table.values[slot];
+          if (table.accessTimes != null) {
+            accessTime = table.accessTimes[slot];
+          }
+          if (table.writeTimes != null) {
+            writeTime = table.writeTimes[slot];
+          }
+        }
+        if (locked) {
+          lock.unlockRead(stamp);
+          break;
+        } else if (lock.validate(stamp)) {
+          break;
+        }
+        stamp = lock.readLock();
+        locked = true;
+      }
+
+      if (value == null) {
+        return null;
+      } else if (map.expiresAfterWrite() && now - writeTime >= map.expireAfterWriteNanos) {
+        tryExpireEntries(now);
+        return null;
+      } else if (map.expiresAfterAccess() && now - accessTime >= map.expireAfterAccessNanos) {
+        // the access time may be stale, until the buffered reads of the entry are drained
+        return lockedGet(key, hash, now);
+      }
+      recordRead(key, now);
+      @SuppressWarnings("unchecked") // only values of type V are stored
+      V result = (V) value;
+      return result;
+    }
+
+    @Nullable
+    private V lockedGet(long key, int hash, long now) {
+      long stamp = lock.writeLock();
+      try {
+        preWriteCleanup(now);
+        Table table = this.table;
+        int slot = table.find(key, hash);
+        if (slot == ABSENT) {
+          return null;
+        }
+        recordLockedRead(table, slot, now);
+        @SuppressWarnings("unchecked") // only values of type V are stored
+        V value = (V) table.values[slot];
+        return value;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /** Records a read without the lock, in the lossy buffer. */
+    private void recordRead(long key, long now) {
+      if (!map.recordsAccess()) {
+        return;
+      }
+      int index = readCount.getAndIncrement();
+      readKeys.lazySet(index & (READ_BUFFER_SIZE - 1), key);
+      readTimes.lazySet(index & (READ_BUFFER_SIZE - 1), now);
+      if ((index & DRAIN_THRESHOLD) == DRAIN_THRESHOLD) {
+        long stamp = lock.tryWriteLock();
+        if (stamp != 0) {
+          try {
+            preWriteCleanup(now);
+          } finally {
+            lock.unlockWrite(stamp);
+          }
+        }
+      }
+    }
+
+    /** Records a read of the entry at {@code slot}, under the lock. */
+    @GuardedBy("lock")
+    private void recordLockedRead(Table table, int slot, long now) {
+      if (table.accessTimes != null) {
+        table.accessTimes[slot] = Math.max(table.accessTimes[slot], now);
+      }
+      if (table.accessNext != null) {
+        Table.unlink(table.accessPrevious, table.accessNext, slot);
+        table.link(table.accessPrevious, table.accessNext, slot);
+      }
+    }
+
+    /** Applies the buffered reads to the access order. */
+    @GuardedBy("lock")
+    private void drainReads() {
+      int end = readCount.get();
+      // only the most recent reads are still in the buffer
+      int start = (end - drainedCount > READ_BUFFER_SIZE) ? end - READ_BUFFER_SIZE : drainedCount;
+      Table table = this.table;
+      for (int i = start; i != end; i++) {
+        int index = i & (READ_BUFFER_SIZE - 1);
+        long key = readKeys.get(index);
+        int slot = table.find(key, hash(key));
+        if (slot != ABSENT) {
+          recordLockedRead(table, slot, readTimes.get(index));
+        }
+      }
+      drainedCount = end;
+    }
+
+    @GuardedBy("lock")
+    private void preWriteCleanup(long now) {
+      if (map.recordsAccess()) {
+        drainReads();
+      }
+      expireEntries(now);
+    }
+
+    private void tryExpireEntries(long now) {
+      long stamp = lock.tryWriteLock();
+      if (stamp != 0) {
+        try {
+          preWriteCleanup(now);
+        } finally {
+          lock.unlockWrite(stamp);
+        }
+      }
+    }
+
+    /** Removes the expired entries, which are at the start of the access and write orders. */
+    @GuardedBy("lock")
+    private void expireEntries(long now) {
+      Table table = this.table;
+      if (map.expiresAfterWrite()) {
+        int slot;
+        while ((slot = table.first(table.writeNext)) != table.capacity()
+            && now - table.writeTimes[slot] >= map.expireAfterWriteNanos) {
+          removeSlot(table, slot);
+          statsCounter.recordEviction();
+        }
+      }
+      if (map.expiresAfterAccess()) {
+        int slot;
+        while ((slot = table.first(table.accessNext)) != table.capacity()
+            && now - table.accessTimes[slot] >= map.expireAfterAccessNanos) {
+          removeSlot(table, slot);
+          statsCounter.recordEviction();
+        }
+      }
+    }
+
+    /** Evicts the least recently accessed entries while the segment is too large. */
+    @GuardedBy("lock")
+    private void evictEntries() {
+      if (maxSegmentSize == CacheBuilder.UNSET_INT) {
+        return;
+      }
+      Table table = this.table;
+      while (count > maxSegmentSize) {
+        removeSlot(table, table.first(table.accessNext));
+        statsCounter.recordEviction();
+      }
+    }
+
+    void put(long key, int hash, V value) {
+      long stamp = lock.writeLock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+        loading.remove(key);
+        store(key, hash, value, now);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /** Sets the value of {@code key}, as a write, and evicts entries if the segment is full. */
+    @GuardedBy("lock")
+    private void store(long key, int hash, V value, long now) {
+      Table table = this.table;
+      int slot = table.find(key, hash);
+      if (slot == ABSENT) {
+        if (count + 1 > threshold) {
+          expand();
+          table = this.table;
+        }
+        slot = table.emptySlot(hash);
+        table.keys[slot] = key;
+        count++;
+        if (table.accessNext != null) {
+          table.link(table.accessPrevious, table.accessNext, slot);
+        }
+        if (table.writeNext != null) {
+          table.link(table.writePrevious, table.writeNext, slot);
+        }
+      } else {
+        if (table.accessNext != null) {
+          Table.unlink(table.accessPrevious, table.accessNext, slot);
+          table.link(table.accessPrevious, table.accessNext, slot);
+        }
+        if (table.writeNext != null) {
+          Table.unlink(table.writePrevious, table.writeNext, slot);
+          table.link(table.writePrevious, table.writeNext, slot);
+        }
+      }
+      table.values[slot] = value;
+      if (table.accessTimes != null) {
+        table.accessTimes[slot] = now;
+      }
+      if (table.writeTimes != null) {
+        table.writeTimes[slot] = now;
+      }
+      evictEntries();
+    }
+
+    /** Doubles the capacity of the table, preserving the access and write orders. */
+    @GuardedBy("lock")
+    private void expand() {
+      Table oldTable = this.table;
+      if (oldTable.capacity() >= MAXIMUM_CAPACITY) {
+        return;
+      }
+      initTable(oldTable.capacity() << 1);
+      Table newTable = this.table;
+      int[] newSlots = new int[oldTable.capacity() + 1];
+      newSlots[oldTable.capacity()] = newTable.capacity();
+      for (int i = 0; i < oldTable.capacity(); i++) {
+        if (oldTable.values[i] != null) {
+          long key = oldTable.keys[i];
+          int slot = newTable.emptySlot(hash(key));
+          newTable.keys[slot] = key;
+          newTable.values[slot] = oldTable.values[i];
+          if (oldTable.accessTimes != null) {
+            newTable.accessTimes[slot] = oldTable.accessTimes[i];
+          }
+          if (oldTable.writeTimes != null) {
+            newTable.writeTimes[slot] = oldTable.writeTimes[i];
+          }
+          newSlots[i] = slot;
+        }
+      }
+      if (oldTable.accessNext != null) {
+        for (int i = oldTable.first(oldTable.accessNext);
+            i != oldTable.capacity();
+            i = oldTable.accessNext[i]) {
+          newTable.link(newTable.accessPrevious, newTable.accessNext, newSlots[i]);
+        }
+      }
+      if (oldTable.writeNext != null) {
+        for (int i = oldTable.first(oldTable.writeNext);
+            i != oldTable.capacity();
+            i = oldTable.writeNext[i]) {
+          newTable.link(newTable.writePrevious, newTable.writeNext, newSlots[i]);
+        }
+      }
+    }
+
+    /**
+     * Removes the entry at {@code slot}, and shifts back the entries that follow it in its probe
+     * sequence, so that none of them is separated from its hash slot by an empty slot.
+     */
+    @GuardedBy("lock")
+    private void removeSlot(Table table, int slot) {
+      if (table.accessNext != null) {
+        Table.unlink(table.accessPrevious, table.accessNext, slot);
+      }
+      if (table.writeNext != null) {
+        Table.unlink(table.writePrevious, table.writeNext, slot);
+      }
+      int empty = slot;
+      for (int i = (slot + 1) & table.mask; table.values[i] != null; i = (i + 1) & table.mask) {
+        int home = hash(table.keys[i]) & table.mask;
+        // the entry may move to the empty slot unless its home is cyclically in (empty, i]
+        boolean homeBetween =
+            (empty <= i) ? (empty < home && home <= i) : (empty < home || home <= i);
+        if (!homeBetween) {
+          moveSlot(table, i, empty);
+          empty = i;
+        }
+      }
+      table.values[empty] = null;
+      count--;
+    }
+
+    @GuardedBy("lock")
+    private static void moveSlot(Table table, int from, int to) {
+      table.keys[to] = table.keys[from];
+      table.values[to] = table.values[from];
+      if (table.accessTimes != null) {
+        table.accessTimes[to] = table.accessTimes[from];
+      }
+      if (table.writeTimes != null) {
+        table.writeTimes[to] = table.writeTimes[from];
+      }
+      if (table.accessNext != null) {
+        Table.relink(table.accessPrevious, table.accessNext, from, to);
+      }
+      if (table.writeNext != null) {
+        Table.relink(table.writePrevious, table.writeNext, from, to);
+      }
+    }
+
+    void remove(long key, int hash) {
+      long stamp = lock.writeLock();
+      try {
+        preWriteCleanup(map.ticker.read());
+        loading.remove(key);
+        int slot = table.find(key, hash);
+        if (slot != ABSENT) {
+          removeSlot(table, slot);
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void clear() {
+      long stamp = lock.writeLock();
+      try {
+        if (count != 0) {
+          initTable(table.capacity());
+          count = 0;
+        }
+        loading.clear();
+        drainedCount = readCount.get();
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void cleanUp() {
+      long stamp = lock.writeLock();
+      try {
+        preWriteCleanup(map.ticker.read());
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    int size() {
+      long stamp = lock.readLock();
+      try {
+        return count;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    /**
+     * Returns the value of {@code key}, loading it if it is absent. Concurrent requests for the
+     * same key wait for a single load.
+     */
+    V lockedGetOrLoad(long key, int hash, CacheLoader<? super Long, V> loader)
+        throws ExecutionException {
+      SettableFuture<V> future;
+      boolean createNewLoad;
+      long stamp = lock.writeLock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+        Table table = this.table;
+        int slot = table.find(key, hash);
+        if (slot != ABSENT) {
+          recordLockedRead(table, slot, now);
+          statsCounter.recordHits(1);
+          @SuppressWarnings("unchecked") // only values of type V are stored
+          V value = (V) table.values[slot];
+          return value;
+        }
+        future = loading.get(key);
+        createNewLoad = (future == null);
+        if (createNewLoad) {
+          future = SettableFuture.create();
+          loading.put(key, future);
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+
+      statsCounter.recordMisses(1);
+      if (createNewLoad) {
+        load(key, hash, loader, future);
+      }
+      return getValue(future);
+    }
+
+    private void load(
+        long key, int hash, CacheLoader<? super Long, V> loader, SettableFuture<V> future) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      V value = null;
+      Throwable failure = null;
+      try {
+        value = loader.load(key);
+        if (value == null) {
+          failure =
+              new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+        }
+      } catch (Throwable t) {
+        failure = t;
+      }
+      long loadTime = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+      long stamp = lock.writeLock();
+      try {
+        // A write or removal of the key during the load takes precedence over the loaded value.
+        if (loading.remove(key, future) && failure == null) {
+          store(key, hash, value, map.ticker.read());
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+      if (failure == null) {
+        statsCounter.recordLoadSuccess(loadTime);
+        future.set(value);
+      } else {
+        statsCounter.recordLoadException(loadTime);
+        future.setException(failure);
+      }
+    }
+
+    /** Returns the result of a load, throwing its failure as {@link LocalCache} would. */
+    private static <V> V getValue(SettableFuture<V> future) throws ExecutionException {
+      try {
+        return Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InvalidCacheLoadException) {
+          throw new InvalidCacheLoadException(cause.getMessage());
+        } else if (cause instanceof Error) {
+          throw new ExecutionError((Error) cause);
+        } else if (cause instanceof RuntimeException) {
+          throw new UncheckedExecutionException(cause);
+        }
+        throw e;
+      }
+    }
+
+    @VisibleForTesting
+    int capacity() {
+      return table.capacity();
+    }
+  }
+
+  static class LongLocalManualCache<V> implements LongKeyedCache<V> {
+    final LongLocalCache<V> localCache;
+
+    LongLocalManualCache(CacheBuilder<?, ?> builder) {
+      this(new LongLocalCache<V>(builder, null));
+    }
+
+    LongLocalManualCache(LongLocalCache<V> localCache) {
+      this.localCache = localCache;
+    }
+
+    @Override
+    public @Nullable V getIfPresent(long key) {
+      return localCache.getIfPresent(key);
+    }
+
+    @Override
+    public V get(long key, final Callable<? extends V> valueLoader) throws ExecutionException {
+      checkNotNull(valueLoader);
+      return localCache.get(
+          key,
+          new CacheLoader<Object, V>() {
+            @Override
+            public V load(Object key) throws Exception {
+              return valueLoader.call();
+            }
+          });
+    }
+
+    @Override
+    public void put(long key, V value) {
+      localCache.put(key, value);
+    }
+
+    @Override
+    public void invalidate(long key) {
+      localCache.remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+      localCache.clear();
+    }
+
+    @Override
+    public long size() {
+      return localCache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+      return localCache.stats();
+    }
+
+    @Override
+    public void cleanUp() {
+      localCache.cleanUp();
+    }
+  }
+
+  static class LongLocalLoadingCache<V> extends LongLocalManualCache<V>
+      implements LongLoadingCache<V> {
+
+    LongLocalLoadingCache(CacheBuilder<?, ?> builder, CacheLoader<? super Long, V> loader) {
+      super(new LongLocalCache<V>(builder, checkNotNull(loader)));
+    }
+
+    @Override
+    public V get(long key) throws ExecutionException {
+      return localCache.getOrLoad(key);
+    }
+
+    @Override
+    public V getUnchecked(long key) {
+      try {
+        return get(key);
+      } catch (ExecutionException e) {
+        throw new UncheckedExecutionException(e.getCause());
+      }
+    }
+  }
+}
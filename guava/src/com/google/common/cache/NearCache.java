@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.IntMath;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A cache that keeps a small, per-thread cache of recently read entries in front of another cache,
+ * so that repeated reads of the hottest keys by the same thread do not touch the shared cache at
+ * all.
+ *
+ * <p>Each thread has its own near cache of up to {@code maximumSize} entries, in which each key can
+ * only be stored at one position, so that a read costs little more than the lookup of a {@link
+ * ThreadLocal}, and one key replaces another that hashes to the same position. Reads that miss the
+ * near cache are served by the backing cache, and their result is then kept in the near cache.
+ *
+ * <p>Writes and invalidations through this cache advance a generation counter shared by the keys
+ * that hash to the same stripe, and entries of every thread's near cache that were read in an
+ * older generation of their stripe are then ignored. The near cache is therefore never stale with
+ * respect to writes through this cache. It cannot observe the entries that the backing cache
+ * evicts, expires or refreshes, nor writes to the backing cache or to the {@link #asMap} view, so
+ * each entry of a near cache is only used for up to {@code maximumAge} after it was read from the
+ * backing cache.
+ *
+ * <p>The {@link #stats} are those of the backing cache, which only counts the requests that miss
+ * the near caches; {@link #nearStats} counts the hits and misses of the near caches.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible // ThreadLocal
+public class NearCache<K, V> extends ForwardingCache<K, V> {
+  /** The number of generation counters, each shared by the keys that hash to the same stripe. */
+  static final int STRIPES = 64;
+
+  private final Cache<K, V> delegate;
+  private final int mask;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  private final long maximumAgeNanos;
+
+  private final Ticker ticker;
+  private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+  private final LongAddable hitCount = LongAddables.create();
+  private final LongAddable missCount = LongAddables.create();
+
+  // Each thread's Near must not refer to this cache: it is the value of a ThreadLocalMap entry, so
+  // it would keep the weakly referenced ThreadLocal, and this cache, alive as long as the thread.
+  final ThreadLocal<Near<K, V>> near =
+      new ThreadLocal<Near<K, V>>() {
+        @Override
+        protected Near<K, V> initialValue() {
+          return new Near<>(mask, generations, maximumAgeNanos, ticker, hitCount, missCount);
+        }
+      };
+
+  /**
+   * Returns a cache that keeps up to {@code maximumSize} recently read entries of {@code cache} per
+   * thread, each for up to the given maximum age.
+   *
+   * @throws IllegalArgumentException if {@code maximumSize} or {@code maximumAge} is not positive
+   */
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  public static <K, V> NearCache<K, V> create(
+      Cache<K, V> cache, int maximumSize, long maximumAge, TimeUnit unit) {
+    return new NearCache<>(cache, maximumSize, unit.toNanos(maximumAge), Ticker.systemTicker());
+  }
+
+  /**
+   * Returns a loading cache that keeps up to {@code maximumSize} recently read entries of {@code
+   * cache} per thread, each for up to the given maximum age.
+   *
+   * @throws IllegalArgumentException if {@code maximumSize} or {@code maximumAge} is not positive
+   */
+  @SuppressWarnings("GoodTime") // should accept a java.time.Duration
+  public static <K, V> NearLoadingCache<K, V> create(
+      LoadingCache<K, V> cache, int maximumSize, long maximumAge, TimeUnit unit) {
+    return new NearLoadingCache<>(
+        cache, maximumSize, unit.toNanos(maximumAge), Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  NearCache(Cache<K, V> delegate, int maximumSize, long maximumAgeNanos, Ticker ticker) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive: %s", maximumSize);
+    checkArgument(maximumAgeNanos > 0, "maximumAge must be positive: %s ns", maximumAgeNanos);
+    this.delegate = checkNotNull(delegate);
+    this.mask = IntMath.ceilingPowerOfTwo(Math.min(maximumSize, 1 << 30)) - 1;
+    this.maximumAgeNanos = maximumAgeNanos;
+    this.ticker = checkNotNull(ticker);
+  }
+
+  @Override
+  protected Cache<K, V> delegate() {
+    return delegate;
+  }
+
+  @Override
+  public @Nullable V getIfPresent(Object key) {
+    int hash = LocalCache.rehash(key.hashCode());
+    Near<K, V> near = this.near.get();
+    V value = near.get(key, hash);
+    if (value != null) {
+      return value;
+    }
+    long generation = generation(hash);
+    value = delegate.getIfPresent(key);
+    if (value != null) {
+      @SuppressWarnings("unchecked") // it was found in the cache, so it is a K
+      K k = (K) key;
+      near.put(k, hash, value, generation);
+    }
+    return value;
+  }
+
+  @Override
+  public V get(K key, Callable<? extends V> loader) throws ExecutionException {
+    int hash = LocalCache.rehash(key.hashCode());
+    Near<K, V> near = this.near.get();
+    V value = near.get(key, hash);
+    if (value != null) {
+      return value;
+    }
+    long generation = generation(hash);
+    value = delegate.get(key, loader);
+    near.put(key, hash, value, generation);
+    return value;
+  }
+
+  @Override
+  public void put(K key, V value) {
+    delegate.put(key, value);
+    invalidateNear(key);
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> m) {
+    delegate.putAll(m);
+    for (K key : m.keySet()) {
+      invalidateNear(key);
+    }
+  }
+
+  @Override
+  public void invalidate(Object key) {
+    delegate.invalidate(key);
+    invalidateNear(key);
+  }
+
+  @Override
+  public void invalidateAll(Iterable<?> keys) {
+    delegate.invalidateAll(keys);
+    for (Object key : keys) {
+      invalidateNear(key);
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    delegate.invalidateAll();
+    for (int i = 0; i < STRIPES; i++) {
+      generations.incrementAndGet(i);
+    }
+  }
+
+  /** Returns the hits and misses of the near caches of all threads. */
+  public CacheStats nearStats() {
+    return new CacheStats(hitCount.sum(), missCount.sum(), 0, 0, 0, 0);
+  }
+
+  /**
+   * Returns the current generation of the stripe of the keys with the given hash. This must be read
+   * before the backing cache, so that a write that races with the read advances the generation past
+   * the one that the value read is stored with.
+   */
+  final long generation(int hash) {
+    return generations.get(hash & (STRIPES - 1));
+  }
+
+  /**
+   * Makes the near caches of all threads ignore the entry of {@code key}, and those of the keys
+   * that share its stripe. This must follow the write to the backing cache, so that a read that
+   * raced with the write, and may have read the old value, is stored in an older generation.
+   */
+  final void invalidateNear(Object key) {
+    generations.incrementAndGet(LocalCache.rehash(key.hashCode()) & (STRIPES - 1));
+  }
+
+  /**
+   * The near cache of a thread, in which the entry of each key can only be at one position. It is
+   * given what it shares with its {@link NearCache} rather than a reference to it.
+   */
+  static final class Near<K, V> {
+    final int mask;
+    final AtomicLongArray stripeGenerations;
+
+    @SuppressWarnings("GoodTime") // should be a java.time.Duration
+    final long maximumAgeNanos;
+
+    final Ticker ticker;
+    final LongAddable hitCount;
+    final LongAddable missCount;
+
+    final Object[] keys;
+    final Object[] values;
+    final long[] generations;
+    final long[] readTimes;
+
+    Near(
+        int mask,
+        AtomicLongArray stripeGenerations,
+        long maximumAgeNanos,
+        Ticker ticker,
+        LongAddable hitCount,
+        LongAddable missCount) {
+      this.mask = mask;
+      this.stripeGenerations = stripeGenerations;
+      this.maximumAgeNanos = maximumAgeNanos;
+      this.ticker = ticker;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      keys = new Object[mask + 1];
+      values = new Object[mask + 1];
+      generations = new long[mask + 1];
+      readTimes = new long[mask + 1];
+    }
+
+    @Nullable
+    V get(Object key, int hash) {
+      int index = hash & mask;
+      Object k = keys[index];
+      if (k != null
+          && k.equals(key)
+          && generations[index] == stripeGenerations.get(hash & (STRIPES - 1))
+          && ticker.read() - readTimes[index] < maximumAgeNanos) {
+        hitCount.increment();
+        @SuppressWarnings("unchecked") // only values of type V are stored
+        V value = (V) values[index];
+        return value;
+      }
+      missCount.increment();
+      return null;
+    }
+
+    void put(K key, int hash, V value, long generation) {
+      int index = hash & mask;
+      keys[index] = key;
+      values[index] = value;
+      generations[index] = generation;
+      readTimes[index] = ticker.read();
+    }
+  }
+
+  /**
+   * A {@link NearCache} in front of a {@link LoadingCache}, whose loads of single keys are also
+   * served by the near cache.
+   *
+   * @since 28.2
+   */
+  @Beta
+  public static final class NearLoadingCache<K, V> extends NearCache<K, V>
+      implements LoadingCache<K, V> {
+    private final LoadingCache<K, V> loadingDelegate;
+
+    @VisibleForTesting
+    NearLoadingCache(
+        LoadingCache<K, V> delegate, int maximumSize, long maximumAgeNanos, Ticker ticker) {
+      super(delegate, maximumSize, maximumAgeNanos, ticker);
+      this.loadingDelegate = delegate;
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      int hash = LocalCache.rehash(key.hashCode());
+      Near<K, V> near = this.near.get();
+      V value = near.get(key, hash);
+      if (value != null) {
+        return value;
+      }
+      long generation = generation(hash);
+      value = loadingDelegate.get(key);
+      near.put(key, hash, value, generation);
+      return value;
+    }
+
+    @Override
+    public V getUnchecked(K key) {
+      int hash = LocalCache.rehash(key.hashCode());
+      Near<K, V> near = this.near.get();
+      V value = near.get(key, hash);
+      if (value != null) {
+        return value;
+      }
+      long generation = generation(hash);
+      value = loadingDelegate.getUnchecked(key);
+      near.put(key, hash, value, generation);
+      return value;
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+      return loadingDelegate.getAll(keys);
+    }
+
+    @Override
+    @Deprecated
+    public V apply(K key) {
+      return getUnchecked(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The near caches ignore the current value of {@code key} from now on, but may use the
+     * value read by a thread before the refresh completes for up to the maximum age.
+     */
+    @Override
+    public void refresh(K key) {
+      loadingDelegate.refresh(key);
+      invalidateNear(key);
+    }
+  }
+}
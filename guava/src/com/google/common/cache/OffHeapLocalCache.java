@@ -0,0 +1,932 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Equivalence;
+import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.LocalCache.Segment;
+import com.google.common.cache.LocalCache.Strength;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The implementation of the caches built with {@link CacheBuilder#offHeapValues}. Values are
+ * serialized into an {@link OffHeapStore}, and a {@code LocalCache} maps each key to the small
+ * on-heap {@link OffHeapValue} that locates its bytes. Eviction, expiration and statistics are
+ * therefore exactly those of an ordinary cache; the off-heap memory of a value is freed when the
+ * {@code LocalCache} notifies its removal, for whatever cause.
+ *
+ * <p>Because reads do not lock, a reader may find that the value it looked up was freed before it
+ * could be copied. The value was then concurrently removed or replaced, so the read is retried.
+ * The first attempt of a read records its hit or miss, and retries record none, so that each call
+ * is counted once.
+ */
+@GwtIncompatible
+final class OffHeapLocalCache<K, V> {
+  /** The number of times a value must be read before it is promoted to the on-heap tier. */
+  static final int PROMOTION_READS = 2;
+
+  final LocalCache<K, OffHeapValue<V>> localCache;
+  final OffHeapStore store;
+  final CacheSerializer<V> serializer;
+  final @Nullable Weigher<K, V> weigher;
+  final @Nullable RemovalListener<K, V> removalListener;
+  final @Nullable CacheLoader<? super K, V> loader;
+  final long onHeapTierSize;
+
+  /**
+   * Holds the deserialized form of the values that were recently read more than once. Keyed by
+   * identity, so that an entry of this tier can never outlive the value it was read from.
+   */
+  final @Nullable Cache<OffHeapValue<V>, V> onHeapTier;
+
+  OffHeapLocalCache(
+      CacheBuilder<? super K, ? super V> builder, @Nullable CacheLoader<? super K, V> loader) {
+    this.store = new OffHeapStore(builder.getSlabFactory());
+    this.serializer = builder.getValueSerializer();
+    this.weigher = (builder.weigher == null) ? null : builder.<K, V>getWeigher();
+    this.removalListener =
+        (builder.removalListener == null) ? null : builder.<K, V>getRemovalListener();
+    this.loader = loader;
+    this.onHeapTierSize = builder.onHeapTierSize;
+    this.onHeapTier =
+        (builder.onHeapTierSize == CacheBuilder.UNSET_INT)
+            ? null
+            : CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumSize(builder.onHeapTierSize)
+                .<OffHeapValue<V>, V>build();
+
+    CacheBuilder<K, OffHeapValue<V>> offHeapBuilder = builder.copySettings();
+    if (weigher != null) {
+      offHeapBuilder.weigher = OffHeapWeigher.INSTANCE;
+    }
+    offHeapBuilder.removalListener =
+        new RemovalListener<K, OffHeapValue<V>>() {
+          @Override
+          public void onRemoval(RemovalNotification<K, OffHeapValue<V>> notification) {
+            release(notification);
+          }
+        };
+    this.localCache =
+        LocalCache.create(offHeapBuilder, (loader == null) ? null : new OffHeapLoader(loader));
+  }
+
+  /** Serializes {@code value} into off-heap memory. */
+  OffHeapValue<V> store(K key, V value) {
+    checkNotNull(value);
+    int weight = 1;
+    if (weigher != null) {
+      weight = weigher.weigh(key, value);
+      checkState(weight >= 0, "Weights must be non-negative");
+    }
+    return new OffHeapValue<V>(store.store(serializer.serialize(value)), weight);
+  }
+
+  /**
+   * Returns the deserialized value, or null if it has been freed. Promotes the value to the on-heap
+   * tier, if any, once it has been read often enough.
+   */
+  @Nullable
+  V read(OffHeapValue<V> offHeapValue) {
+    if (onHeapTier == null) {
+      return peek(offHeapValue);
+    }
+    V value = onHeapTier.getIfPresent(offHeapValue);
+    if (value != null) {
+      return value;
+    }
+    value = peek(offHeapValue);
+    // a racy count is good enough to tell the values that are read repeatedly
+    if (value != null && ++offHeapValue.reads >= PROMOTION_READS) {
+      onHeapTier.put(offHeapValue, value);
+    }
+    return value;
+  }
+
+  /** Returns the deserialized value, or null if it has been freed, without promoting it. */
+  @Nullable
+  V peek(OffHeapValue<V> offHeapValue) {
+    if (onHeapTier != null) {
+      V value = onHeapTier.getIfPresent(offHeapValue);
+      if (value != null) {
+        return value;
+      }
+    }
+    byte[] bytes = store.load(offHeapValue.handle);
+    if (bytes == null) {
+      return null;
+    }
+    // a null here would be mistaken for a freed value, and retried forever
+    V value = serializer.deserialize(bytes);
+    checkState(value != null, "%s returned null from deserialize", serializer);
+    return value;
+  }
+
+  /** Frees the memory of a value that was never inserted into the cache. */
+  void release(OffHeapValue<V> offHeapValue) {
+    store.free(offHeapValue.handle);
+    if (onHeapTier != null) {
+      onHeapTier.invalidate(offHeapValue);
+    }
+  }
+
+  /** Frees the memory of a removed value, and notifies the user's removal listener of it. */
+  void release(RemovalNotification<K, OffHeapValue<V>> notification) {
+    OffHeapValue<V> offHeapValue = notification.getValue();
+    if (offHeapValue == null) {
+      return;
+    }
+    V value;
+    try {
+      value = (removalListener == null) ? null : peek(offHeapValue);
+    } finally {
+      release(offHeapValue);
+    }
+    if (value != null) {
+      removalListener.onRemoval(
+          RemovalNotification.create(notification.getKey(), value, notification.getCause()));
+    }
+  }
+
+  /** Returns the value of the entry for {@code key}, without recording statistics. */
+  @Nullable
+  V get(Object key) {
+    while (true) {
+      OffHeapValue<V> offHeapValue = localCache.get(key);
+      if (offHeapValue == null) {
+        return null;
+      }
+      V value = read(offHeapValue);
+      if (value != null) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the entry for {@code key}, loading it with {@code loader} if absent. Used
+   * to retry a get whose first attempt found a freed value, and so already recorded its hit or
+   * miss: records the statistics of a load, if any, but no hit or miss. Unlike a first attempt, the
+   * load is not shared with concurrent retries for the same key.
+   */
+  V getAfterFreedRead(K key, CacheLoader<? super K, V> loader) throws ExecutionException {
+    V loaded = null;
+    while (true) {
+      V value = get(key);
+      if (value != null) {
+        return value;
+      }
+      if (loaded == null) {
+        loaded = load(key, loader);
+      }
+      OffHeapValue<V> offHeapValue = store(key, loaded);
+      if (localCache.putIfAbsent(key, offHeapValue) == null) {
+        return loaded;
+      }
+      // another value was inserted meanwhile, which the next attempt returns
+      release(offHeapValue);
+    }
+  }
+
+  /** Loads the value for {@code key}, recording the statistics of the load. */
+  private V load(K key, CacheLoader<? super K, V> loader) throws ExecutionException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    V value = null;
+    try {
+      value = loader.load(key);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(e);
+    } catch (RuntimeException e) {
+      throw new UncheckedExecutionException(e);
+    } catch (Exception e) {
+      throw new ExecutionException(e);
+    } catch (Error e) {
+      throw new ExecutionError(e);
+    } finally {
+      if (value == null) {
+        localCache.globalStatsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+      }
+    }
+    if (value == null) {
+      throw new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+    }
+    localCache.globalStatsCounter.recordLoadSuccess(stopwatch.elapsed(NANOSECONDS));
+    return value;
+  }
+
+  CacheStats stats() {
+    CacheStats stats = localCache.globalStatsCounter.snapshot();
+    for (Segment<K, OffHeapValue<V>> segment : localCache.segments) {
+      stats = stats.plus(segment.statsCounter.snapshot());
+    }
+    return stats;
+  }
+
+  /** The on-heap locator of a value stored off-heap. Compared by identity. */
+  static final class OffHeapValue<V> {
+    final OffHeapStore.Handle handle;
+    final int weight;
+
+    /** The number of times this value was read, while not in the on-heap tier. */
+    int reads;
+
+    OffHeapValue(OffHeapStore.Handle handle, int weight) {
+      this.handle = handle;
+      this.weight = weight;
+    }
+  }
+
+  /** Weighs off-heap values by the weight the user's weigher gave them when they were stored. */
+  enum OffHeapWeigher implements Weigher<Object, OffHeapValue<?>> {
+    INSTANCE;
+
+    @Override
+    public int weigh(Object key, OffHeapValue<?> value) {
+      return value.weight;
+    }
+  }
+
+  /** Loads values with the user's loader, and stores them off-heap. */
+  final class OffHeapLoader extends CacheLoader<K, OffHeapValue<V>> {
+    final CacheLoader<? super K, V> loader;
+
+    OffHeapLoader(CacheLoader<? super K, V> loader) {
+      this.loader = checkNotNull(loader);
+    }
+
+    @Override
+    public @Nullable OffHeapValue<V> load(K key) throws Exception {
+      V value = loader.load(key);
+      return (value == null) ? null : store(key, value);
+    }
+
+    @Override
+    public ListenableFuture<OffHeapValue<V>> reload(final K key, OffHeapValue<V> oldValue)
+        throws Exception {
+      V value = peek(oldValue);
+      ListenableFuture<V> future =
+          (value == null) ? Futures.immediateFuture(loader.load(key)) : loader.reload(key, value);
+      return Futures.transform(
+          future,
+          new Function<V, OffHeapValue<V>>() {
+            @Override
+            public @Nullable OffHeapValue<V> apply(@Nullable V newValue) {
+              return (newValue == null) ? null : store(key, newValue);
+            }
+          },
+          directExecutor());
+    }
+
+    @Override
+    public Map<K, OffHeapValue<V>> loadAll(Iterable<? extends K> keys) throws Exception {
+      @SuppressWarnings("unchecked") // safe since all keys extend K
+      Map<K, V> values = (Map<K, V>) loader.loadAll(keys);
+      Map<K, OffHeapValue<V>> result = Maps.newLinkedHashMapWithExpectedSize(values.size());
+      for (Map.Entry<K, V> entry : values.entrySet()) {
+        V value = entry.getValue();
+        result.put(entry.getKey(), (value == null) ? null : store(entry.getKey(), value));
+      }
+      return result;
+    }
+  }
+
+  /** The {@link Cache} built by {@link CacheBuilder#build()} with off-heap values. */
+  static class OffHeapManualCache<K, V> implements Cache<K, V>, Serializable {
+    final OffHeapLocalCache<K, V> offHeapCache;
+    final LocalCache<K, OffHeapValue<V>> localCache;
+    final ConcurrentMap<K, V> asMap;
+
+    OffHeapManualCache(CacheBuilder<? super K, ? super V> builder) {
+      this(new OffHeapLocalCache<K, V>(builder, null));
+    }
+
+    OffHeapManualCache(OffHeapLocalCache<K, V> offHeapCache) {
+      this.offHeapCache = offHeapCache;
+      this.localCache = offHeapCache.localCache;
+      this.asMap = new AsMapView<>(offHeapCache);
+    }
+
+    @Override
+    public @Nullable V getIfPresent(Object key) {
+      OffHeapValue<V> offHeapValue = localCache.getIfPresent(key);
+      if (offHeapValue == null) {
+        return null;
+      }
+      V value = offHeapCache.read(offHeapValue);
+      return (value == null) ? offHeapCache.get(key) : value;
+    }
+
+    @Override
+    public V get(final K key, final Callable<? extends V> valueLoader) throws ExecutionException {
+      checkNotNull(valueLoader);
+      OffHeapValue<V> offHeapValue =
+          localCache.get(
+              key,
+              new CacheLoader<Object, OffHeapValue<V>>() {
+                @Override
+                public @Nullable OffHeapValue<V> load(Object unused) throws Exception {
+                  V value = valueLoader.call();
+                  return (value == null) ? null : offHeapCache.store(key, value);
+                }
+              });
+      V value = offHeapCache.read(offHeapValue);
+      if (value != null) {
+        return value;
+      }
+      return offHeapCache.getAfterFreedRead(
+          key,
+          new CacheLoader<K, V>() {
+            @Override
+            public V load(K unused) throws Exception {
+              return valueLoader.call();
+            }
+          });
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAllPresent(Iterable<?> keys) {
+      Map<K, V> result = Maps.newLinkedHashMap();
+      for (Object key : keys) {
+        if (!result.containsKey(key)) {
+          V value = getIfPresent(key);
+          if (value != null) {
+            @SuppressWarnings("unchecked") // the key was found in the cache, so it is a K
+            K castKey = (K) key;
+            result.put(castKey, value);
+          }
+        }
+      }
+      return ImmutableMap.copyOf(result);
+    }
+
+    @Override
+    public void put(K key, V value) {
+      checkNotNull(key);
+      localCache.put(key, offHeapCache.store(key, value));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+      for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+      checkNotNull(key);
+      localCache.remove(key);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<?> keys) {
+      localCache.invalidateAll(keys);
+    }
+
+    @Override
+    public void invalidateAll() {
+      localCache.clear();
+    }
+
+    @Override
+    public long size() {
+      return localCache.longSize();
+    }
+
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+      return asMap;
+    }
+
+    @Override
+    public CacheStats stats() {
+      return offHeapCache.stats();
+    }
+
+    @Override
+    public void cleanUp() {
+      localCache.cleanUp();
+    }
+
+    // Serialization Support
+
+    private static final long serialVersionUID = 1;
+
+    Object writeReplace() {
+      return new ManualSerializationProxy<>(offHeapCache);
+    }
+  }
+
+  /**
+   * The {@link LoadingCache} built by {@link CacheBuilder#build(CacheLoader)} with off-heap values.
+   */
+  static final class OffHeapLoadingCache<K, V> extends OffHeapManualCache<K, V>
+      implements LoadingCache<K, V> {
+
+    OffHeapLoadingCache(
+        CacheBuilder<? super K, ? super V> builder, CacheLoader<? super K, V> loader) {
+      super(new OffHeapLocalCache<K, V>(builder, checkNotNull(loader)));
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      V value = offHeapCache.read(localCache.getOrLoad(key));
+      return (value == null) ? offHeapCache.getAfterFreedRead(key, offHeapCache.loader) : value;
+    }
+
+    @Override
+    public V getUnchecked(K key) {
+      try {
+        return get(key);
+      } catch (ExecutionException e) {
+        throw new UncheckedExecutionException(e.getCause());
+      }
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+      ImmutableMap<K, OffHeapValue<V>> offHeapValues = localCache.getAll(keys);
+      ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+      for (Map.Entry<K, OffHeapValue<V>> entry : offHeapValues.entrySet()) {
+        V value = offHeapCache.read(entry.getValue());
+        if (value == null) {
+          value = offHeapCache.getAfterFreedRead(entry.getKey(), offHeapCache.loader);
+        }
+        result.put(entry.getKey(), value);
+      }
+      return result.build();
+    }
+
+    @Override
+    public void refresh(K key) {
+      localCache.refresh(key);
+    }
+
+    @Override
+    public final V apply(K key) {
+      return getUnchecked(key);
+    }
+
+    // Serialization Support
+
+    private static final long serialVersionUID = 1;
+
+    @Override
+    Object writeReplace() {
+      return new LoadingSerializationProxy<>(offHeapCache);
+    }
+  }
+
+  /**
+   * Serializes the configuration of an off-heap cache, reconstituting it as a {@code Cache} using
+   * {@link CacheBuilder} upon deserialization, as {@link LocalCache.ManualSerializationProxy} does
+   * for on-heap caches. The copy stores its values in direct memory, even if the original mapped
+   * them from a file, since the two caches cannot share the file.
+   */
+  static class ManualSerializationProxy<K, V> extends ForwardingCache<K, V>
+      implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    final Strength keyStrength;
+    final Equivalence<Object> keyEquivalence;
+    final long expireAfterWriteNanos;
+    final long expireAfterAccessNanos;
+    final long maxWeight;
+    final @Nullable Weigher<K, V> weigher;
+    final EvictionPolicy evictionPolicy;
+    final int concurrencyLevel;
+    final @Nullable RemovalListener<K, V> removalListener;
+    final @Nullable Ticker ticker;
+    final @Nullable CacheLoader<? super K, V> loader;
+    final CacheSerializer<V> serializer;
+    final long onHeapTierSize;
+
+    transient @MonotonicNonNull Cache<K, V> delegate;
+
+    ManualSerializationProxy(OffHeapLocalCache<K, V> cache) {
+      LocalCache<K, OffHeapValue<V>> localCache = cache.localCache;
+      this.keyStrength = localCache.keyStrength;
+      this.keyEquivalence = localCache.keyEquivalence;
+      this.expireAfterWriteNanos = localCache.expireAfterWriteNanos;
+      this.expireAfterAccessNanos = localCache.expireAfterAccessNanos;
+      this.maxWeight = localCache.maxWeight;
+      this.weigher = cache.weigher;
+      this.evictionPolicy = localCache.evictionPolicy;
+      this.concurrencyLevel = localCache.concurrencyLevel;
+      this.removalListener = cache.removalListener;
+      this.ticker =
+          (localCache.ticker == Ticker.systemTicker()
+                  || localCache.ticker == CacheBuilder.NULL_TICKER)
+              ? null
+              : localCache.ticker;
+      this.loader = cache.loader;
+      this.serializer = cache.serializer;
+      this.onHeapTierSize = cache.onHeapTierSize;
+    }
+
+    CacheBuilder<K, V> recreateCacheBuilder() {
+      CacheBuilder<K, V> builder =
+          CacheBuilder.newBuilder()
+              .setKeyStrength(keyStrength)
+              .keyEquivalence(keyEquivalence)
+              .concurrencyLevel(concurrencyLevel)
+              .offHeapValues(serializer);
+      builder.strictParsing = false;
+      if (removalListener != null) {
+        builder.removalListener(removalListener);
+      }
+      if (expireAfterWriteNanos > 0) {
+        builder.expireAfterWrite(expireAfterWriteNanos, NANOSECONDS);
+      }
+      if (expireAfterAccessNanos > 0) {
+        builder.expireAfterAccess(expireAfterAccessNanos, NANOSECONDS);
+      }
+      if (weigher != null) {
+        builder.weigher(weigher);
+        if (maxWeight != CacheBuilder.UNSET_INT) {
+          builder.maximumWeight(maxWeight);
+        }
+      } else {
+        if (maxWeight != CacheBuilder.UNSET_INT) {
+          builder.maximumSize(maxWeight);
+        }
+      }
+      if (evictionPolicy != null
+          && evictionPolicy != EvictionPolicy.LEAST_RECENTLY_USED
+          && maxWeight != CacheBuilder.UNSET_INT) {
+        builder.evictionPolicy(evictionPolicy);
+      }
+      if (ticker != null) {
+        builder.ticker(ticker);
+      }
+      if (onHeapTierSize != CacheBuilder.UNSET_INT) {
+        builder.onHeapTier(onHeapTierSize);
+      }
+      return builder;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      CacheBuilder<K, V> builder = recreateCacheBuilder();
+      this.delegate = builder.build();
+    }
+
+    private Object readResolve() {
+      return delegate;
+    }
+
+    @Override
+    protected Cache<K, V> delegate() {
+      return delegate;
+    }
+  }
+
+  /**
+   * Serializes the configuration of an off-heap cache, reconstituting it as a {@code LoadingCache}
+   * using {@link CacheBuilder} upon deserialization.
+   */
+  static final class LoadingSerializationProxy<K, V> extends ManualSerializationProxy<K, V>
+      implements LoadingCache<K, V>, Serializable {
+    private static final long serialVersionUID = 1;
+
+    transient @MonotonicNonNull LoadingCache<K, V> autoDelegate;
+
+    LoadingSerializationProxy(OffHeapLocalCache<K, V> cache) {
+      super(cache);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      CacheBuilder<K, V> builder = recreateCacheBuilder();
+      this.autoDelegate = builder.build(loader);
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      return autoDelegate.get(key);
+    }
+
+    @Override
+    public V getUnchecked(K key) {
+      return autoDelegate.getUnchecked(key);
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+      return autoDelegate.getAll(keys);
+    }
+
+    @Override
+    public final V apply(K key) {
+      return autoDelegate.apply(key);
+    }
+
+    @Override
+    public void refresh(K key) {
+      autoDelegate.refresh(key);
+    }
+
+    private Object readResolve() {
+      return autoDelegate;
+    }
+  }
+
+  /**
+   * The {@link Cache#asMap} view of an off-heap cache. Operations that return or compare a previous
+   * value read it before changing the entry, and then change the entry only if it still holds the
+   * value that was read.
+   */
+  static final class AsMapView<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    final OffHeapLocalCache<K, V> offHeapCache;
+    final LocalCache<K, OffHeapValue<V>> localCache;
+
+    AsMapView(OffHeapLocalCache<K, V> offHeapCache) {
+      this.offHeapCache = offHeapCache;
+      this.localCache = offHeapCache.localCache;
+    }
+
+    @Override
+    public int size() {
+      return localCache.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return localCache.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return localCache.containsKey(key);
+    }
+
+    @Override
+    public @Nullable V get(@Nullable Object key) {
+      return (key == null) ? null : offHeapCache.get(key);
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+      checkNotNull(key);
+      OffHeapValue<V> newValue = offHeapCache.store(key, value);
+      try {
+        while (true) {
+          OffHeapValue<V> oldValue = localCache.get(key);
+          if (oldValue == null) {
+            if (localCache.putIfAbsent(key, newValue) == null) {
+              return null;
+            }
+          } else {
+            V old = offHeapCache.peek(oldValue);
+            if (old != null && localCache.replace(key, oldValue, newValue)) {
+              return old;
+            }
+          }
+        }
+      } catch (Throwable t) {
+        // the new value was not inserted
+        offHeapCache.release(newValue);
+        throw t;
+      }
+    }
+
+    @Override
+    public @Nullable V putIfAbsent(K key, V value) {
+      checkNotNull(key);
+      OffHeapValue<V> newValue = offHeapCache.store(key, value);
+      try {
+        while (true) {
+          OffHeapValue<V> oldValue = localCache.putIfAbsent(key, newValue);
+          if (oldValue == null) {
+            return null;
+          }
+          V old = offHeapCache.peek(oldValue);
+          if (old != null) {
+            offHeapCache.release(newValue);
+            return old;
+          }
+        }
+      } catch (Throwable t) {
+        // the new value was not inserted
+        offHeapCache.release(newValue);
+        throw t;
+      }
+    }
+
+    @Override
+    public @Nullable V remove(@Nullable Object key) {
+      if (key == null) {
+        return null;
+      }
+      while (true) {
+        OffHeapValue<V> oldValue = localCache.get(key);
+        if (oldValue == null) {
+          return null;
+        }
+        V old = offHeapCache.peek(oldValue);
+        if (old != null && localCache.remove(key, oldValue)) {
+          return old;
+        }
+      }
+    }
+
+    @Override
+    public boolean remove(@Nullable Object key, @Nullable Object value) {
+      if (key == null || value == null) {
+        return false;
+      }
+      while (true) {
+        OffHeapValue<V> oldValue = localCache.get(key);
+        if (oldValue == null) {
+          return false;
+        }
+        V old = offHeapCache.peek(oldValue);
+        if (old != null) {
+          if (!old.equals(value)) {
+            return false;
+          }
+          if (localCache.remove(key, oldValue)) {
+            return true;
+          }
+        }
+      }
+    }
+
+    @Override
+    public @Nullable V replace(K key, V value) {
+      checkNotNull(key);
+      checkNotNull(value);
+      OffHeapValue<V> newValue = null;
+      try {
+        while (true) {
+          OffHeapValue<V> oldValue = localCache.get(key);
+          if (oldValue == null) {
+            if (newValue != null) {
+              offHeapCache.release(newValue);
+            }
+            return null;
+          }
+          V old = offHeapCache.peek(oldValue);
+          if (old != null) {
+            if (newValue == null) {
+              newValue = offHeapCache.store(key, value);
+            }
+            if (localCache.replace(key, oldValue, newValue)) {
+              return old;
+            }
+          }
+        }
+      } catch (Throwable t) {
+        // the new value was not inserted
+        if (newValue != null) {
+          offHeapCache.release(newValue);
+        }
+        throw t;
+      }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+      checkNotNull(key);
+      checkNotNull(newValue);
+      if (oldValue == null) {
+        return false;
+      }
+      OffHeapValue<V> newOffHeapValue = null;
+      try {
+        while (true) {
+          OffHeapValue<V> oldOffHeapValue = localCache.get(key);
+          V old = (oldOffHeapValue == null) ? null : offHeapCache.peek(oldOffHeapValue);
+          if (oldOffHeapValue == null || (old != null && !old.equals(oldValue))) {
+            if (newOffHeapValue != null) {
+              offHeapCache.release(newOffHeapValue);
+            }
+            return false;
+          }
+          if (old != null) {
+            if (newOffHeapValue == null) {
+              newOffHeapValue = offHeapCache.store(key, newValue);
+            }
+            if (localCache.replace(key, oldOffHeapValue, newOffHeapValue)) {
+              return true;
+            }
+          }
+        }
+      } catch (Throwable t) {
+        // the new value was not inserted
+        if (newOffHeapValue != null) {
+          offHeapCache.release(newOffHeapValue);
+        }
+        throw t;
+      }
+    }
+
+    @Override
+    public void clear() {
+      localCache.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+      return localCache.keySet();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+      return new AbstractSet<Entry<K, V>>() {
+        @Override
+        public int size() {
+          return localCache.size();
+        }
+
+        @Override
+        public void clear() {
+          localCache.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+          return new EntryIterator();
+        }
+      };
+    }
+
+    /** Iterates over the entries whose values are not concurrently freed. */
+    final class EntryIterator implements Iterator<Entry<K, V>> {
+      final Iterator<Entry<K, OffHeapValue<V>>> iterator = localCache.entrySet().iterator();
+      @Nullable Entry<K, V> next;
+      @Nullable K lastReturned;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && iterator.hasNext()) {
+          Entry<K, OffHeapValue<V>> entry = iterator.next();
+          V value = offHeapCache.peek(entry.getValue());
+          if (value != null) {
+            next = Maps.immutableEntry(entry.getKey(), value);
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public Entry<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Entry<K, V> result = next;
+        next = null;
+        lastReturned = result.getKey();
+        return result;
+      }
+
+      @Override
+      public void remove() {
+        checkState(lastReturned != null, "no calls to next() since the last call to remove()");
+        localCache.remove(lastReturned);
+        lastReturned = null;
+      }
+    }
+  }
+}
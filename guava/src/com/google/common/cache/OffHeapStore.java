@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.math.IntMath;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Stores byte arrays outside of the Java heap, in direct or memory-mapped {@link ByteBuffer} slabs.
+ * Used by {@link CacheBuilder#offHeapValues} to hold serialized cache values.
+ *
+ * <p>Each slab is divided into chunks of a single power-of-two size, from 64 bytes up to the size
+ * of a slab, and a value is stored in the smallest chunk that fits it. Freed chunks are reused for
+ * values of the same size class, and a slab whose chunks have all been freed is returned to the
+ * store for any size class to reuse, except for the last one of its class. Values larger than a
+ * slab get a slab of their own, which is released to the garbage collector once freed.
+ *
+ * <p>Storing and freeing are thread-safe. Storing takes no slab lock: a newly allocated chunk is
+ * invisible to readers until its {@link Handle} is published, and any stale handle to the chunk
+ * was invalidated when it was freed. Loading never blocks in the common case: a reader copies the
+ * chunk optimistically and then validates that no chunk of the slab was freed meanwhile, falling
+ * back to a read lock only if one was. A chunk that was freed (and perhaps reused) after a reader
+ * obtained its {@link Handle} is detected by a per-chunk stamp, in which case {@link #load} returns
+ * null instead of another value's bytes.
+ */
+@GwtIncompatible
+final class OffHeapStore {
+  /** The base two logarithm of the size of a slab: 1 MiB. */
+  static final int SLAB_SHIFT = 20;
+
+  static final int SLAB_SIZE = 1 << SLAB_SHIFT;
+
+  /** The base two logarithm of the smallest chunk size: 64 bytes. */
+  static final int MIN_CHUNK_SHIFT = 6;
+
+  /** Allocates the memory of slabs. */
+  interface SlabFactory {
+    ByteBuffer allocate(int capacity);
+  }
+
+  /** Allocates slabs with {@link ByteBuffer#allocateDirect}. */
+  static final SlabFactory DIRECT =
+      new SlabFactory() {
+        @Override
+        public ByteBuffer allocate(int capacity) {
+          return ByteBuffer.allocateDirect(capacity);
+        }
+      };
+
+  /**
+   * Returns a factory that maps consecutive regions of {@code file} as slabs. The file is created
+   * if needed and grows as slabs are allocated; its previous contents are overwritten.
+   */
+  static SlabFactory mapped(final File file) {
+    checkNotNull(file);
+    return new SlabFactory() {
+      long position;
+
+      @Override
+      public synchronized ByteBuffer allocate(int capacity) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+          // the mapping remains valid after the channel is closed
+          ByteBuffer buffer =
+              raf.getChannel().map(FileChannel.MapMode.READ_WRITE, position, capacity);
+          position += capacity;
+          return buffer;
+        } catch (IOException e) {
+          throw new IllegalStateException("Unable to map " + file, e);
+        }
+      }
+    };
+  }
+
+  final SlabFactory slabFactory;
+  final SizeClass[] sizeClasses;
+
+  /** Slab buffers whose chunks have all been freed, to be reused by any size class. */
+  final Queue<ByteBuffer> emptySlabs = new ConcurrentLinkedQueue<>();
+
+  final AtomicLong allocatedBytes = new AtomicLong();
+
+  OffHeapStore(SlabFactory slabFactory) {
+    this.slabFactory = checkNotNull(slabFactory);
+    sizeClasses = new SizeClass[SLAB_SHIFT - MIN_CHUNK_SHIFT + 1];
+    for (int i = 0; i < sizeClasses.length; i++) {
+      sizeClasses[i] = new SizeClass(MIN_CHUNK_SHIFT + i);
+    }
+  }
+
+  /** Copies {@code bytes} into off-heap memory, returning the handle by which to load them. */
+  Handle store(byte[] bytes) {
+    Handle handle;
+    if (bytes.length > SLAB_SIZE) {
+      Slab slab = new Slab(slabFactory.allocate(bytes.length), bytes.length, null);
+      handle = new Handle(slab, 0, 0, bytes.length);
+    } else {
+      int shift = IntMath.log2(Math.max(bytes.length, 1), RoundingMode.CEILING);
+      SizeClass sizeClass = sizeClasses[Math.max(shift, MIN_CHUNK_SHIFT) - MIN_CHUNK_SHIFT];
+      handle = sizeClass.allocate(bytes.length);
+    }
+    allocatedBytes.addAndGet(handle.slab.chunkSize);
+
+    // no lock needed: no reader can observe this chunk until the handle is published
+    ByteBuffer buffer = handle.slab.buffer.duplicate();
+    buffer.position(handle.chunk * handle.slab.chunkSize);
+    buffer.put(bytes);
+    return handle;
+  }
+
+  /**
+   * Returns a copy of the bytes stored under {@code handle}, or null if they have been freed since.
+   */
+  byte @Nullable [] load(Handle handle) {
+    Slab slab = handle.slab;
+    byte[] bytes = new byte[handle.length];
+
+    long stamp = slab.lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      boolean live = (slab.stamps[handle.chunk] == handle.stamp);
+      if (live) {
+        copy(handle, bytes);
+      }
+      if (slab.lock.validate(stamp)) {
+        return live ? bytes : null;
+      }
+    }
+
+    stamp = slab.lock.readLock();
+    try {
+      if (slab.stamps[handle.chunk] != handle.stamp) {
+        return null;
+      }
+      copy(handle, bytes);
+      return bytes;
+    } finally {
+      slab.lock.unlockRead(stamp);
+    }
+  }
+
+  private static void copy(Handle handle, byte[] bytes) {
+    ByteBuffer buffer = handle.slab.buffer.duplicate();
+    buffer.position(handle.chunk * handle.slab.chunkSize);
+    buffer.get(bytes);
+  }
+
+  /** Releases the memory held by {@code handle}, unless it was already freed. */
+  void free(Handle handle) {
+    Slab slab = handle.slab;
+    long stamp = slab.lock.writeLock();
+    try {
+      if (slab.stamps[handle.chunk] != handle.stamp) {
+        return;
+      }
+      slab.stamps[handle.chunk]++;
+    } finally {
+      slab.lock.unlockWrite(stamp);
+    }
+    allocatedBytes.addAndGet(-slab.chunkSize);
+    if (slab.sizeClass != null) {
+      slab.sizeClass.free(slab, handle.chunk);
+    }
+  }
+
+  /** Returns the number of bytes of off-heap memory currently held by stored values. */
+  long allocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  /** The location of a stored byte array. */
+  static final class Handle {
+    final Slab slab;
+    final int chunk;
+    final int stamp;
+    final int length;
+
+    Handle(Slab slab, int chunk, int stamp, int length) {
+      this.slab = slab;
+      this.chunk = chunk;
+      this.stamp = stamp;
+      this.length = length;
+    }
+  }
+
+  /** A buffer divided into equal chunks. */
+  static final class Slab {
+    final ByteBuffer buffer;
+    final int chunkSize;
+    final @Nullable SizeClass sizeClass;
+    final StampedLock lock = new StampedLock();
+
+    /**
+     * The number of times each chunk has been freed. Written under {@link #lock}, so that freeing a
+     * chunk invalidates any optimistic read of it.
+     */
+    final int[] stamps;
+
+    /** A stack of the freed chunks. Guarded by the size class. */
+    final int[] freeChunks;
+
+    int freeCount;
+
+    /** The number of chunks that have been handed out at least once. Guarded by the size class. */
+    int bumpIndex;
+
+    /** The number of chunks currently allocated. Guarded by the size class. */
+    int liveCount;
+
+    Slab(ByteBuffer buffer, int chunkSize, @Nullable SizeClass sizeClass) {
+      this.buffer = buffer;
+      this.chunkSize = chunkSize;
+      this.sizeClass = sizeClass;
+      this.stamps = new int[buffer.capacity() / chunkSize];
+      this.freeChunks = (sizeClass == null) ? new int[0] : new int[stamps.length];
+    }
+  }
+
+  /** The slabs holding chunks of one size. */
+  final class SizeClass {
+    final int chunkSize;
+    final int chunksPerSlab;
+
+    /** The slabs of this size class that have a free chunk, the most recently created first. */
+    final ArrayDeque<Slab> available = new ArrayDeque<>();
+
+    SizeClass(int shift) {
+      this.chunkSize = 1 << shift;
+      this.chunksPerSlab = SLAB_SIZE >>> shift;
+    }
+
+    /** Allocates a chunk to hold {@code length} bytes, reusing or creating a slab if needed. */
+    synchronized Handle allocate(int length) {
+      Slab slab = available.peekFirst();
+      if (slab == null) {
+        ByteBuffer buffer = emptySlabs.poll();
+        if (buffer == null) {
+          buffer = slabFactory.allocate(SLAB_SIZE);
+        }
+        slab = new Slab(buffer, chunkSize, this);
+        available.addFirst(slab);
+      }
+      int chunk = (slab.freeCount > 0) ? slab.freeChunks[--slab.freeCount] : slab.bumpIndex++;
+      if (++slab.liveCount == chunksPerSlab) {
+        available.removeFirst();
+      }
+      return new Handle(slab, chunk, slab.stamps[chunk], length);
+    }
+
+    /**
+     * Returns {@code chunk} to {@code slab}, and the slab to the store if it is now empty and is
+     * not this size class's only slab with room.
+     */
+    synchronized void free(Slab slab, int chunk) {
+      slab.freeChunks[slab.freeCount++] = chunk;
+      if (slab.liveCount-- == chunksPerSlab) {
+        available.addLast(slab);
+      }
+      if (slab.liveCount == 0 && available.size() > 1) {
+        available.remove(slab);
+        emptySlabs.add(slab.buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.math.IntMath;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A bounded, lossy buffer of the entries read from a segment, used by {@code LocalCache} as the
+ * segment's recency queue. Reads are recorded without allocating or taking a lock, and are applied
+ * to the access order in batches by whichever thread next holds the segment lock.
+ *
+ * <p>The buffer is striped across several fixed-size rings, and each thread records into the ring
+ * selected by its id, so that concurrent readers rarely contend on the same counter. Rings are
+ * created when first needed. If a ring is full, or another thread is concurrently adding to it, the
+ * read is dropped rather than retried: losing a few reads only makes the access order slightly less
+ * precise, which is an acceptable price for never blocking a reader.
+ *
+ * <p>Any thread may {@link #offer} an entry. All other operations, including {@link #poll}, must
+ * only be performed while holding the segment lock.
+ */
+@GwtIncompatible
+final class ReadBuffer<K, V> extends AbstractQueue<ReferenceEntry<K, V>> {
+  /** The number of entries each ring can hold, a power of two larger than the drain threshold. */
+  static final int RING_SIZE = 128;
+
+  static final int RING_MASK = RING_SIZE - 1;
+
+  /** The maximum number of rings, a power of two. */
+  static final int MAXIMUM_STRIPES =
+      Math.min(IntMath.ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()), 64);
+
+  final AtomicReferenceArray<Ring<K, V>> rings;
+
+  /** The ring that the next poll starts at. Guarded by the segment lock. */
+  int pollIndex;
+
+  ReadBuffer() {
+    this(MAXIMUM_STRIPES);
+  }
+
+  ReadBuffer(int stripes) {
+    rings = new AtomicReferenceArray<>(stripes);
+  }
+
+  /**
+   * Records that {@code entry} was read, unless the current thread's ring is full or contended.
+   * Returns whether the entry was recorded.
+   */
+  @Override
+  public boolean offer(ReferenceEntry<K, V> entry) {
+    int index = (int) Thread.currentThread().getId() & (rings.length() - 1);
+    Ring<K, V> ring = rings.get(index);
+    if (ring == null) {
+      rings.compareAndSet(index, null, new Ring<K, V>());
+      ring = rings.get(index);
+    }
+    return ring.offer(entry);
+  }
+
+  /**
+   * Removes and returns a recorded entry, or returns null if there are none. Entries are polled
+   * ring by ring, starting with the ring that the previous poll left off at.
+   */
+  @Override
+  public @Nullable ReferenceEntry<K, V> poll() {
+    int length = rings.length();
+    for (int i = 0; i < length; i++) {
+      int index = (pollIndex + i) & (length - 1);
+      Ring<K, V> ring = rings.get(index);
+      if (ring != null) {
+        ReferenceEntry<K, V> e = ring.poll();
+        if (e != null) {
+          pollIndex = index;
+          return e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public @Nullable ReferenceEntry<K, V> peek() {
+    for (int i = 0; i < rings.length(); i++) {
+      Ring<K, V> ring = rings.get(i);
+      if (ring != null) {
+        ReferenceEntry<K, V> e = ring.peek();
+        if (e != null) {
+          return e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < rings.length(); i++) {
+      Ring<K, V> ring = rings.get(i);
+      if (ring != null) {
+        size += ring.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns a snapshot of the recorded entries, ring by ring and in the order they were recorded
+   * within each ring. The iterator does not support removal.
+   */
+  @Override
+  public Iterator<ReferenceEntry<K, V>> iterator() {
+    List<ReferenceEntry<K, V>> entries = new ArrayList<>();
+    for (int i = 0; i < rings.length(); i++) {
+      Ring<K, V> ring = rings.get(i);
+      if (ring != null) {
+        ring.copyInto(entries);
+      }
+    }
+    return Collections.unmodifiableList(entries).iterator();
+  }
+
+  /**
+   * A single-consumer ring of entries. Producers claim a slot by advancing {@code tail}, and then
+   * publish the entry in it; the consumer advances {@code head} past the published entries.
+   */
+  static final class Ring<K, V> {
+    final AtomicReferenceArray<ReferenceEntry<K, V>> buffer =
+        new AtomicReferenceArray<>(RING_SIZE);
+    final AtomicLong tail = new AtomicLong();
+
+    /** The index of the next entry to be polled. Only written while holding the segment lock. */
+    volatile long head;
+
+    boolean offer(ReferenceEntry<K, V> entry) {
+      long t = tail.get();
+      if (t - head >= RING_SIZE) {
+        return false; // full
+      }
+      if (!tail.compareAndSet(t, t + 1)) {
+        return false; // contended
+      }
+      buffer.lazySet((int) t & RING_MASK, entry);
+      return true;
+    }
+
+    @Nullable
+    ReferenceEntry<K, V> poll() {
+      long h = head;
+      if (h == tail.get()) {
+        return null;
+      }
+      int index = (int) h & RING_MASK;
+      ReferenceEntry<K, V> e = buffer.get(index);
+      if (e == null) {
+        // the slot was claimed but the entry is not published yet
+        return null;
+      }
+      buffer.lazySet(index, null);
+      head = h + 1;
+      return e;
+    }
+
+    @Nullable
+    ReferenceEntry<K, V> peek() {
+      long h = head;
+      return (h == tail.get()) ? null : buffer.get((int) h & RING_MASK);
+    }
+
+    int size() {
+      int size = 0;
+      for (long i = head, t = tail.get(); i != t; i++) {
+        if (buffer.get((int) i & RING_MASK) == null) {
+          break;
+        }
+        size++;
+      }
+      return size;
+    }
+
+    void copyInto(List<ReferenceEntry<K, V>> entries) {
+      for (long i = head, t = tail.get(); i != t; i++) {
+        ReferenceEntry<K, V> e = buffer.get((int) i & RING_MASK);
+        if (e == null) {
+          break;
+        }
+        entries.add(e);
+      }
+    }
+  }
+}
@@ -14,8 +14,10 @@
 
 package com.google.common.cache;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtIncompatible;
 import java.util.concurrent.Executor;
 
@@ -54,4 +56,45 @@ public final class RemovalListeners {
       }
     };
   }
+
+  /**
+   * Returns a {@code RemovalListener} which delivers eviction notifications to {@code listener} in
+   * batches, using {@code executor}. Unlike {@link #asynchronous}, which submits a task per
+   * notification, notifications are added to a queue, and a single task at a time delivers them in
+   * lists of up to {@code maximumBatchSize}.
+   *
+   * <p>The queue holds at most {@code maximumPendingNotifications}. A thread that removes an entry
+   * from the cache while the queue is full delivers a batch itself before adding its notification,
+   * so that removals are slowed down, rather than notifications dropped or memory exhausted, when
+   * the listener cannot keep up. Batches are also delivered by the thread that removes an entry if
+   * the executor rejects the task. Whichever thread delivers them, batches are delivered one at a
+   * time, in the order in which their notifications were added: a thread that is to deliver a batch
+   * while another batch is being delivered waits for that delivery to complete. Exceptions thrown
+   * by {@code listener} are logged and ignored.
+   *
+   * @param listener the backing listener
+   * @param executor the executor with which batches of removal notifications are asynchronously
+   *     delivered
+   * @param maximumBatchSize the maximum number of notifications delivered at once
+   * @param maximumPendingNotifications the maximum number of notifications waiting to be delivered
+   * @throws IllegalArgumentException if {@code maximumBatchSize} or {@code
+   *     maximumPendingNotifications} is not positive
+   * @since 28.2
+   */
+  @Beta
+  public static <K, V> RemovalListener<K, V> batching(
+      BatchRemovalListener<K, V> listener,
+      Executor executor,
+      int maximumBatchSize,
+      int maximumPendingNotifications) {
+    checkNotNull(listener);
+    checkNotNull(executor);
+    checkArgument(maximumBatchSize > 0, "maximumBatchSize must be positive: %s", maximumBatchSize);
+    checkArgument(
+        maximumPendingNotifications > 0,
+        "maximumPendingNotifications must be positive: %s",
+        maximumPendingNotifications);
+    return new BatchingRemovalListener<>(
+        listener, executor, maximumBatchSize, maximumPendingNotifications);
+  }
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.LocalCache.connectWriteOrder;
+import static com.google.common.cache.LocalCache.nullEntry;
+import static com.google.common.cache.LocalCache.nullifyWriteOrder;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.LocalCache.AbstractReferenceEntry;
+import com.google.common.collect.AbstractSequentialIterator;
+import com.google.common.collect.Iterators;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hierarchical timing wheel that orders entries by their variable expiration time, used by
+ * {@code LocalCache} in place of the write queue when an {@link Expiry} is configured. An entry's
+ * expiration time is read from {@link ReferenceEntry#getAccessTime}, and the entry is linked into
+ * its bucket through the write queue pointers, so that scheduling and descheduling are O(1).
+ *
+ * <p>Each level of the wheel is an array of buckets that each span a power-of-two number of
+ * nanoseconds, from about a second at the lowest level to about two weeks at the highest. An entry
+ * is placed in the lowest level whose buckets can represent its remaining lifetime. As time
+ * advances, the buckets that were passed over are drained: their entries are either moved to the
+ * expired list, or cascade down into a finer bucket if they are not yet due.
+ *
+ * <p>Viewed as a queue, only the expired list is exposed by {@link #peek} and {@link #poll}, which
+ * is what {@code Segment.expireEntries} relies on; it is populated by {@link #advance}. This class
+ * is not thread-safe, and is guarded by the segment lock.
+ */
+@GwtIncompatible
+final class TimerWheel<K, V> extends AbstractQueue<ReferenceEntry<K, V>> {
+  /** The number of buckets at each level of the wheel, each a power of two. */
+  static final int[] BUCKETS = {64, 64, 32, 8, 1};
+
+  /**
+   * The base two logarithm of the duration spanned by a bucket at each level: about 1.07 seconds,
+   * 1.15 minutes, 1.22 hours, 1.63 days and 13 days. A level's buckets together span one bucket of
+   * the next level.
+   */
+  static final int[] SHIFTS = {30, 36, 42, 47, 50};
+
+  final Sentinel<K, V>[][] wheel;
+  final Sentinel<K, V> expired = new Sentinel<>();
+
+  /** The time up to which the wheel has been advanced. */
+  long nanos;
+
+  @SuppressWarnings("unchecked") // generic array creation
+  TimerWheel(long nanos) {
+    this.nanos = nanos;
+    wheel = new Sentinel[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Sentinel[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        wheel[i][j] = new Sentinel<>();
+      }
+    }
+  }
+
+  /**
+   * Advances the wheel to {@code currentTime}, moving every entry that expires no later than that
+   * onto the expired list, and cascading the entries of every bucket that was passed over into
+   * finer buckets.
+   */
+  void advance(long currentTime) {
+    long previousTime = nanos;
+    if (currentTime - previousTime <= 0) {
+      return;
+    }
+    nanos = currentTime;
+    for (int i = 0; i < SHIFTS.length; i++) {
+      long previousTicks = previousTime >>> SHIFTS[i];
+      long currentTicks = currentTime >>> SHIFTS[i];
+      if (currentTicks - previousTicks <= 0) {
+        break;
+      }
+      drain(i, previousTicks, currentTicks - previousTicks);
+    }
+  }
+
+  /**
+   * Reschedules the entries of the buckets of {@code level} from {@code previousTicks} to {@code
+   * previousTicks + delta} inclusive, which may wrap around the whole level.
+   */
+  private void drain(int level, long previousTicks, long delta) {
+    Sentinel<K, V>[] buckets = wheel[level];
+    int mask = buckets.length - 1;
+    int steps = (int) Math.min(delta + 1, buckets.length);
+    int start = (int) (previousTicks & mask);
+    for (int i = start; i < start + steps; i++) {
+      Sentinel<K, V> sentinel = buckets[i & mask];
+      ReferenceEntry<K, V> e = sentinel.getNextInWriteQueue();
+      sentinel.setNextInWriteQueue(sentinel);
+      sentinel.setPreviousInWriteQueue(sentinel);
+      while (e != sentinel) {
+        ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+        nullifyWriteOrder(e);
+        offer(e);
+        e = next;
+      }
+    }
+  }
+
+  /** Returns the list that an entry expiring at {@code time} belongs to. */
+  private Sentinel<K, V> findBucket(long time) {
+    long duration = time - nanos;
+    if (duration <= 0) {
+      return expired;
+    }
+    int last = SHIFTS.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (duration < (1L << SHIFTS[i + 1])) {
+        long ticks = time >>> SHIFTS[i];
+        return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+      }
+    }
+    return wheel[last][0];
+  }
+
+  // implements Queue
+
+  /** Schedules {@code entry} according to its expiration time, rescheduling it if necessary. */
+  @Override
+  public boolean offer(ReferenceEntry<K, V> entry) {
+    // unlink
+    connectWriteOrder(entry.getPreviousInWriteQueue(), entry.getNextInWriteQueue());
+
+    // add to tail of its bucket
+    Sentinel<K, V> sentinel = findBucket(entry.getAccessTime());
+    connectWriteOrder(sentinel.getPreviousInWriteQueue(), entry);
+    connectWriteOrder(entry, sentinel);
+
+    return true;
+  }
+
+  /** Returns the first entry on the expired list, without removing it. */
+  @Override
+  public @Nullable ReferenceEntry<K, V> peek() {
+    ReferenceEntry<K, V> next = expired.getNextInWriteQueue();
+    return (next == expired) ? null : next;
+  }
+
+  /** Removes and returns the first entry on the expired list. */
+  @Override
+  public @Nullable ReferenceEntry<K, V> poll() {
+    ReferenceEntry<K, V> next = peek();
+    if (next == null) {
+      return null;
+    }
+
+    remove(next);
+    return next;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean remove(Object o) {
+    ReferenceEntry<K, V> e = (ReferenceEntry<K, V>) o;
+    ReferenceEntry<K, V> previous = e.getPreviousInWriteQueue();
+    ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+    connectWriteOrder(previous, next);
+    nullifyWriteOrder(e);
+
+    return next != nullEntry();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean contains(Object o) {
+    ReferenceEntry<K, V> e = (ReferenceEntry<K, V>) o;
+    return e.getNextInWriteQueue() != nullEntry();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Sentinel<K, V> sentinel : sentinels()) {
+      if (sentinel.getNextInWriteQueue() != sentinel) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return Iterators.size(iterator());
+  }
+
+  @Override
+  public void clear() {
+    for (Sentinel<K, V> sentinel : sentinels()) {
+      ReferenceEntry<K, V> e = sentinel.getNextInWriteQueue();
+      while (e != sentinel) {
+        ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+        nullifyWriteOrder(e);
+        e = next;
+      }
+
+      sentinel.setNextInWriteQueue(sentinel);
+      sentinel.setPreviousInWriteQueue(sentinel);
+    }
+  }
+
+  /** Returns the expired list followed by every bucket, from the finest level to the coarsest. */
+  @Override
+  public Iterator<ReferenceEntry<K, V>> iterator() {
+    List<Iterator<ReferenceEntry<K, V>>> iterators = new ArrayList<>();
+    for (final Sentinel<K, V> sentinel : sentinels()) {
+      ReferenceEntry<K, V> first = sentinel.getNextInWriteQueue();
+      iterators.add(
+          new AbstractSequentialIterator<ReferenceEntry<K, V>>((first == sentinel) ? null : first) {
+            @Override
+            protected ReferenceEntry<K, V> computeNext(ReferenceEntry<K, V> previous) {
+              ReferenceEntry<K, V> next = previous.getNextInWriteQueue();
+              return (next == sentinel) ? null : next;
+            }
+          });
+    }
+    return Iterators.concat(iterators.iterator());
+  }
+
+  private List<Sentinel<K, V>> sentinels() {
+    List<Sentinel<K, V>> sentinels = new ArrayList<>();
+    sentinels.add(expired);
+    for (Sentinel<K, V>[] buckets : wheel) {
+      for (Sentinel<K, V> sentinel : buckets) {
+        sentinels.add(sentinel);
+      }
+    }
+    return sentinels;
+  }
+
+  /** The head of a circular, doubly-linked list of entries. */
+  static final class Sentinel<K, V> extends AbstractReferenceEntry<K, V> {
+    ReferenceEntry<K, V> nextWrite = this;
+    ReferenceEntry<K, V> previousWrite = this;
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+}
@@ -0,0 +1,1171 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.cache.AbstractCache.StatsCounter;
+import com.google.common.cache.CacheBuilder.NullListener;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheLoader.UnsupportedLoadingOperationException;
+import com.google.common.cache.LocalCache.AbstractReferenceEntry;
+import com.google.common.cache.LocalCache.AccessQueue;
+import com.google.common.cache.LocalCache.WriteQueue;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The implementation of the caches built by a {@link CacheBuilder#unsegmented unsegmented} {@link
+ * CacheBuilder}.
+ *
+ * <p>Unlike {@link LocalCache}, the entries are not divided into segments of a fixed number: they
+ * are stored in a single {@link ConcurrentHashMap}, which grows as needed and whose writes only
+ * lock one bin of the table. Each mapping is to an immutable {@link Node}, which a write replaces.
+ * The access and write orders of all the entries are kept by a single {@link AccessQueue} and
+ * {@link WriteQueue}, guarded by the eviction lock, so that the least recently used entry of the
+ * whole cache is evicted, and the maximum size is exact.
+ *
+ * <p>To keep the eviction lock off the path of reads and writes, they are recorded in buffers, and
+ * applied to the queues in batches by whichever thread next acquires the lock: reads in a lossy
+ * {@link ReadBuffer}, as by the segments of {@code LocalCache}, and the nodes added to or removed
+ * from the map in an unbounded write buffer. A thread that buffers a write then tries to acquire
+ * the lock, and a thread that releases it drains the write buffer again if it is not empty, so that
+ * no write is left in the buffer while no thread holds the lock. The size bound is therefore only
+ * exceeded while writes are in progress.
+ */
+@GwtIncompatible
+final class UnsegmentedLocalCache<K, V> {
+  static final Logger logger = Logger.getLogger(UnsegmentedLocalCache.class.getName());
+
+  /** The state of a node that was added to the map, but not yet to the queues. */
+  static final int NEW = 0;
+
+  /** The state of a node in the queues, whose weight is part of the total. */
+  static final int LINKED = 1;
+
+  /** The state of a node that was removed from the queues, or was never added to them. */
+  static final int RETIRED = 2;
+
+  final ConcurrentHashMap<K, Node<K, V>> data;
+
+  final long maxWeight;
+  final Weigher<K, V> weigher;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  final long expireAfterAccessNanos;
+
+  @SuppressWarnings("GoodTime") // should be a java.time.Duration
+  final long expireAfterWriteNanos;
+
+  final Ticker ticker;
+  final StatsCounter statsCounter;
+  final RemovalListener<K, V> removalListener;
+  final Queue<RemovalNotification<K, V>> removalNotificationQueue;
+  final @Nullable CacheLoader<? super K, V> defaultLoader;
+
+  /**
+   * The loads in progress, which later requests for the same key wait for. A write or removal of a
+   * key removes its load from here, so that the load does not store the value it loads.
+   */
+  final ConcurrentMap<K, SettableFuture<V>> loading = new ConcurrentHashMap<>();
+
+  final ReentrantLock evictionLock = new ReentrantLock();
+  final ReadBuffer<K, V> readBuffer = new ReadBuffer<>();
+  final Queue<Node<K, V>> writeBuffer = new ConcurrentLinkedQueue<>();
+
+  @GuardedBy("evictionLock")
+  final AccessQueue<K, V> accessQueue = new AccessQueue<>();
+
+  @GuardedBy("evictionLock")
+  final WriteQueue<K, V> writeQueue = new WriteQueue<>();
+
+  /** The total weight of the {@link #LINKED} nodes. */
+  @GuardedBy("evictionLock")
+  long totalWeight;
+
+  UnsegmentedLocalCache(
+      CacheBuilder<? super K, ? super V> builder, @Nullable CacheLoader<? super K, V> loader) {
+    maxWeight = builder.getMaximumWeight();
+    weigher = builder.getWeigher();
+    expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
+    expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+    ticker = builder.getTicker(expiresAfterAccess() || expiresAfterWrite());
+    statsCounter = builder.getStatsCounterSupplier().get();
+    removalListener = builder.getRemovalListener();
+    removalNotificationQueue =
+        (removalListener == NullListener.INSTANCE)
+            ? LocalCache.<RemovalNotification<K, V>>discardingQueue()
+            : new ConcurrentLinkedQueue<RemovalNotification<K, V>>();
+    defaultLoader = loader;
+
+    int initialCapacity = Math.min(builder.getInitialCapacity(), LocalCache.MAXIMUM_CAPACITY);
+    if (evictsBySize() && weigher == CacheBuilder.OneWeigher.INSTANCE) {
+      initialCapacity = (int) Math.min(initialCapacity, maxWeight);
+    }
+    data = new ConcurrentHashMap<>(initialCapacity);
+  }
+
+  boolean evictsBySize() {
+    return maxWeight >= 0;
+  }
+
+  boolean expiresAfterAccess() {
+    return expireAfterAccessNanos > 0;
+  }
+
+  boolean expiresAfterWrite() {
+    return expireAfterWriteNanos > 0;
+  }
+
+  boolean usesAccessQueue() {
+    return evictsBySize() || expiresAfterAccess();
+  }
+
+  boolean isExpired(Node<K, V> node, long now) {
+    return (expiresAfterAccess() && now - node.accessTime >= expireAfterAccessNanos)
+        || (expiresAfterWrite() && now - node.writeTime >= expireAfterWriteNanos);
+  }
+
+  Node<K, V> newNode(K key, V value, long now) {
+    checkNotNull(key);
+    checkNotNull(value);
+    int weight = weigher.weigh(key, value);
+    checkState(weight >= 0, "Weights must be non-negative");
+    return new Node<>(key, value, weight, now);
+  }
+
+  // reads
+
+  /** Returns the live node of {@code key}, recording the read but not the hit or miss. */
+  @Nullable
+  Node<K, V> getLiveNode(Object key) {
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    long now = ticker.read();
+    if (isExpired(node, now)) {
+      removeNode(node, RemovalCause.EXPIRED);
+      return null;
+    }
+    if (expiresAfterAccess()) {
+      node.accessTime = now;
+    }
+    if (usesAccessQueue() && !readBuffer.offer(node)) {
+      // the buffer is full, or contended
+      tryToCleanUp();
+    }
+    return node;
+  }
+
+  @Nullable
+  V get(Object key) {
+    Node<K, V> node = getLiveNode(checkNotNull(key));
+    return (node == null) ? null : node.value;
+  }
+
+  @Nullable
+  V getIfPresent(Object key) {
+    Node<K, V> node = getLiveNode(checkNotNull(key));
+    if (node == null) {
+      statsCounter.recordMisses(1);
+      return null;
+    }
+    statsCounter.recordHits(1);
+    return node.value;
+  }
+
+  /**
+   * Returns the value of {@code key}, loading it with {@code loader} if it is absent. Concurrent
+   * requests for the same key wait for a single load, which is performed without holding any lock
+   * of the map.
+   */
+  V get(K key, CacheLoader<? super K, V> loader) throws ExecutionException {
+    checkNotNull(key);
+    checkNotNull(loader);
+    Node<K, V> node = getLiveNode(key);
+    if (node != null) {
+      statsCounter.recordHits(1);
+      return node.value;
+    }
+    SettableFuture<V> future = SettableFuture.create();
+    SettableFuture<V> existing = loading.putIfAbsent(key, future);
+    if (existing == null) {
+      // a load may have stored the value between the read above and the registration of ours
+      node = getLiveNode(key);
+      if (node != null) {
+        loading.remove(key, future);
+        future.set(node.value);
+        statsCounter.recordHits(1);
+        return node.value;
+      }
+    }
+    statsCounter.recordMisses(1);
+    if (existing != null) {
+      return getValue(existing);
+    }
+    load(key, loader, future);
+    return getValue(future);
+  }
+
+  /**
+   * Loads the value of {@code key} and completes {@code future} with it, or with the failure. The
+   * value is stored unless the key was written or removed during the load, which removes {@code
+   * future} from {@link #loading}.
+   */
+  void load(K key, CacheLoader<? super K, V> loader, SettableFuture<V> future) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    V value = null;
+    Throwable failure = null;
+    try {
+      value = loader.load(key);
+      if (value == null) {
+        failure = new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+      }
+    } catch (Throwable t) {
+      if (t instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      failure = t;
+    }
+    long loadTime = stopwatch.elapsed(NANOSECONDS);
+
+    if (loading.remove(key, future) && failure == null) {
+      store(key, value, false);
+    }
+    if (failure == null) {
+      statsCounter.recordLoadSuccess(loadTime);
+      future.set(value);
+    } else {
+      statsCounter.recordLoadException(loadTime);
+      future.setException(failure);
+    }
+  }
+
+  /** Returns the result of a load, throwing its failure as {@link LocalCache} would. */
+  static <V> V getValue(SettableFuture<V> future) throws ExecutionException {
+    try {
+      return getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof InvalidCacheLoadException) {
+        throw new InvalidCacheLoadException(cause.getMessage());
+      } else if (cause instanceof Error) {
+        throw new ExecutionError((Error) cause);
+      } else if (cause instanceof RuntimeException) {
+        throw new UncheckedExecutionException(cause);
+      }
+      throw e;
+    }
+  }
+
+  V getOrLoad(K key) throws ExecutionException {
+    return get(key, defaultLoader);
+  }
+
+  /**
+   * Returns the values of {@code keys}, loading the missing ones with a single call to {@link
+   * CacheLoader#loadAll}, or one by one if the loader does not implement it.
+   */
+  ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+    int hits = 0;
+    int misses = 0;
+
+    Map<K, V> result = Maps.newLinkedHashMap();
+    Set<K> keysToLoad = Sets.newLinkedHashSet();
+    for (K key : keys) {
+      V value = get(key);
+      if (!result.containsKey(key)) {
+        result.put(key, value);
+        if (value == null) {
+          misses++;
+          keysToLoad.add(key);
+        } else {
+          hits++;
+        }
+      }
+    }
+
+    try {
+      if (!keysToLoad.isEmpty()) {
+        try {
+          Map<K, V> newEntries = loadAll(keysToLoad, defaultLoader);
+          for (K key : keysToLoad) {
+            V value = newEntries.get(key);
+            if (value == null) {
+              throw new InvalidCacheLoadException("loadAll failed to return a value for " + key);
+            }
+            result.put(key, value);
+          }
+        } catch (UnsupportedLoadingOperationException e) {
+          // loadAll not implemented, fallback to load
+          for (K key : keysToLoad) {
+            misses--; // get will count this miss
+            result.put(key, get(key, defaultLoader));
+          }
+        }
+      }
+      return ImmutableMap.copyOf(result);
+    } finally {
+      statsCounter.recordHits(hits);
+      statsCounter.recordMisses(misses);
+    }
+  }
+
+  /**
+   * Returns the result of calling {@link CacheLoader#loadAll}, after storing its entries, or throws
+   * {@link UnsupportedLoadingOperationException} if {@code loader} doesn't implement it.
+   */
+  Map<K, V> loadAll(Set<? extends K> keys, CacheLoader<? super K, V> loader)
+      throws ExecutionException {
+    checkNotNull(loader);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Map<K, V> result;
+    boolean success = false;
+    try {
+      @SuppressWarnings("unchecked") // safe since all keys extend K
+      Map<K, V> map = (Map<K, V>) loader.loadAll(keys);
+      result = map;
+      success = true;
+    } catch (UnsupportedLoadingOperationException e) {
+      success = true;
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(e);
+    } catch (RuntimeException e) {
+      throw new UncheckedExecutionException(e);
+    } catch (Exception e) {
+      throw new ExecutionException(e);
+    } catch (Error e) {
+      throw new ExecutionError(e);
+    } finally {
+      if (!success) {
+        statsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+      }
+    }
+
+    if (result == null) {
+      statsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+      throw new InvalidCacheLoadException(loader + " returned null map from loadAll");
+    }
+
+    stopwatch.stop();
+    boolean nullsPresent = false;
+    for (Map.Entry<K, V> entry : result.entrySet()) {
+      K key = entry.getKey();
+      V value = entry.getValue();
+      if (key == null || value == null) {
+        // delay failure until non-null entries are stored
+        nullsPresent = true;
+      } else {
+        put(key, value, false);
+      }
+    }
+
+    if (nullsPresent) {
+      statsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+      throw new InvalidCacheLoadException(loader + " returned null keys or values from loadAll");
+    }
+
+    statsCounter.recordLoadSuccess(stopwatch.elapsed(NANOSECONDS));
+    return result;
+  }
+
+  /**
+   * Loads a new value of {@code key}, by reloading its current value if it has one, and stores it
+   * unless the entry was written in the meantime. Exceptions are logged and swallowed.
+   */
+  void refresh(K key) {
+    checkNotNull(key);
+    Node<K, V> current = getLiveNode(key);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    V value;
+    try {
+      value =
+          (current == null)
+              ? defaultLoader.load(key)
+              : getUninterruptibly(defaultLoader.reload(key, current.value));
+      if (value == null) {
+        throw new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+      }
+    } catch (Throwable t) {
+      statsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+      if (t instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      logger.log(Level.WARNING, "Exception thrown during refresh", t);
+      return;
+    }
+    statsCounter.recordLoadSuccess(stopwatch.elapsed(NANOSECONDS));
+    Node<K, V> node = newNode(key, value, ticker.read());
+    if (current == null) {
+      if (data.putIfAbsent(key, node) == null) {
+        afterWrite(node, null, null);
+      }
+    } else if (data.replace(key, current, node)) {
+      afterWrite(node, current, RemovalCause.REPLACED);
+    }
+  }
+
+  // writes
+
+  /** Writes the value of {@code key}, which takes precedence over a load of it in progress. */
+  @Nullable
+  V put(K key, V value, boolean onlyIfAbsent) {
+    loading.remove(key);
+    return store(key, value, onlyIfAbsent);
+  }
+
+  @Nullable
+  V store(K key, V value, boolean onlyIfAbsent) {
+    Node<K, V> node = newNode(key, value, ticker.read());
+    while (true) {
+      Node<K, V> current = data.get(key);
+      if (current == null) {
+        if (data.putIfAbsent(key, node) == null) {
+          afterWrite(node, null, null);
+          return null;
+        }
+      } else if (isExpired(current, node.writeTime)) {
+        if (data.replace(key, current, node)) {
+          afterWrite(node, current, RemovalCause.EXPIRED);
+          return null;
+        }
+      } else if (onlyIfAbsent) {
+        return current.value;
+      } else if (data.replace(key, current, node)) {
+        afterWrite(node, current, RemovalCause.REPLACED);
+        return current.value;
+      }
+    }
+  }
+
+  /** Replaces the value of {@code key}, if it has one and {@code oldValue} is null or equal. */
+  @Nullable
+  V replace(K key, @Nullable V oldValue, V newValue) {
+    Node<K, V> node = newNode(key, newValue, ticker.read());
+    while (true) {
+      Node<K, V> current = data.get(key);
+      if (current == null) {
+        return null;
+      } else if (isExpired(current, node.writeTime)) {
+        removeNode(current, RemovalCause.EXPIRED);
+        return null;
+      } else if (oldValue != null && !oldValue.equals(current.value)) {
+        return null;
+      } else if (data.replace(key, current, node)) {
+        afterWrite(node, current, RemovalCause.REPLACED);
+        return current.value;
+      }
+    }
+  }
+
+  /** Removes the entry of {@code key} if {@code value} is null or equal to its value. */
+  @Nullable
+  V remove(Object key, @Nullable Object value) {
+    if (value == null) {
+      loading.remove(key);
+    }
+    while (true) {
+      Node<K, V> current = data.get(checkNotNull(key));
+      if (current == null) {
+        return null;
+      }
+      if (isExpired(current, ticker.read())) {
+        removeNode(current, RemovalCause.EXPIRED);
+        return null;
+      }
+      if (value != null && !value.equals(current.value)) {
+        return null;
+      }
+      if (removeNode(current, RemovalCause.EXPLICIT)) {
+        return current.value;
+      }
+    }
+  }
+
+  void clear() {
+    loading.clear();
+    for (Node<K, V> node : data.values()) {
+      removeNode(node, RemovalCause.EXPLICIT);
+    }
+  }
+
+  /** Removes {@code node} from the map, unless it was already removed or replaced. */
+  boolean removeNode(Node<K, V> node, RemovalCause cause) {
+    if (!data.remove(node.key, node)) {
+      return false;
+    }
+    afterWrite(null, node, cause);
+    return true;
+  }
+
+  /**
+   * Buffers the addition of {@code added} to the map and the removal of {@code removed}, notifies
+   * the removal listener of the latter, and then tries to apply them.
+   */
+  void afterWrite(
+      @Nullable Node<K, V> added, @Nullable Node<K, V> removed, @Nullable RemovalCause cause) {
+    if (removed != null) {
+      removed.removed = true;
+      writeBuffer.add(removed);
+      enqueueNotification(removed, cause);
+    }
+    if (added != null) {
+      writeBuffer.add(added);
+    }
+    tryToCleanUp();
+  }
+
+  void enqueueNotification(Node<K, V> node, RemovalCause cause) {
+    if (cause.wasEvicted()) {
+      statsCounter.recordEviction();
+    }
+    if (removalListener != NullListener.INSTANCE) {
+      removalNotificationQueue.offer(RemovalNotification.create(node.key, node.value, cause));
+    }
+  }
+
+  // maintenance
+
+  /**
+   * Applies the buffered reads and writes, and expires and evicts entries, unless another thread
+   * holds the eviction lock. That thread then applies the writes buffered in the meantime.
+   */
+  void tryToCleanUp() {
+    do {
+      if (!evictionLock.tryLock()) {
+        break;
+      }
+      try {
+        runLockedCleanup();
+      } finally {
+        evictionLock.unlock();
+      }
+    } while (!writeBuffer.isEmpty());
+    processPendingNotifications();
+  }
+
+  void cleanUp() {
+    evictionLock.lock();
+    try {
+      runLockedCleanup();
+    } finally {
+      evictionLock.unlock();
+    }
+    tryToCleanUp();
+  }
+
+  @GuardedBy("evictionLock")
+  void runLockedCleanup() {
+    drainReadBuffer();
+    drainWriteBuffer();
+    long now = ticker.read();
+    expireEntries(now);
+    evictEntries();
+  }
+
+  @GuardedBy("evictionLock")
+  void drainReadBuffer() {
+    ReferenceEntry<K, V> e;
+    while ((e = readBuffer.poll()) != null) {
+      if (((Node<K, V>) e).state == LINKED) {
+        accessQueue.offer(e);
+      }
+    }
+  }
+
+  @GuardedBy("evictionLock")
+  void drainWriteBuffer() {
+    Node<K, V> node;
+    while ((node = writeBuffer.poll()) != null) {
+      if (node.removed) {
+        retire(node);
+      } else if (node.state == NEW) {
+        node.state = LINKED;
+        totalWeight += node.weight;
+        if (usesAccessQueue()) {
+          accessQueue.offer(node);
+        }
+        if (expiresAfterWrite()) {
+          writeQueue.offer(node);
+        }
+        if (evictsBySize() && node.weight > maxWeight) {
+          // as in LocalCache, an entry that is too heavy by itself evicts only itself
+          evict(node, RemovalCause.SIZE);
+        }
+      }
+    }
+  }
+
+  /** Removes {@code node} from the queues, if it is in them. */
+  @GuardedBy("evictionLock")
+  void retire(Node<K, V> node) {
+    if (node.state == LINKED) {
+      totalWeight -= node.weight;
+      accessQueue.remove(node);
+      writeQueue.remove(node);
+    }
+    node.state = RETIRED;
+  }
+
+  @GuardedBy("evictionLock")
+  void expireEntries(long now) {
+    ReferenceEntry<K, V> e;
+    if (expiresAfterWrite()) {
+      while ((e = writeQueue.peek()) != null && isExpired((Node<K, V>) e, now)) {
+        evict((Node<K, V>) e, RemovalCause.EXPIRED);
+      }
+    }
+    if (expiresAfterAccess()) {
+      while ((e = accessQueue.peek()) != null && isExpired((Node<K, V>) e, now)) {
+        evict((Node<K, V>) e, RemovalCause.EXPIRED);
+      }
+    }
+  }
+
+  @GuardedBy("evictionLock")
+  void evictEntries() {
+    if (!evictsBySize()) {
+      return;
+    }
+    ReferenceEntry<K, V> e;
+    while (totalWeight > maxWeight && (e = accessQueue.peek()) != null) {
+      evict((Node<K, V>) e, RemovalCause.SIZE);
+    }
+  }
+
+  /**
+   * Removes {@code node} from the map and the queues. If another thread removed or replaced it in
+   * the meantime, that thread notifies the listener, and its buffered removal is ignored.
+   */
+  @GuardedBy("evictionLock")
+  void evict(Node<K, V> node, RemovalCause cause) {
+    if (data.remove(node.key, node)) {
+      node.removed = true;
+      enqueueNotification(node, cause);
+    }
+    retire(node);
+  }
+
+  void processPendingNotifications() {
+    RemovalNotification<K, V> notification;
+    while ((notification = removalNotificationQueue.poll()) != null) {
+      try {
+        removalListener.onRemoval(notification);
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Exception thrown by removal listener", e);
+      }
+    }
+  }
+
+  long size() {
+    return data.mappingCount();
+  }
+
+  /**
+   * An immutable mapping of the cache. Its links in the queues, and its state, are guarded by the
+   * eviction lock.
+   */
+  static final class Node<K, V> extends AbstractReferenceEntry<K, V> {
+    final K key;
+    final V value;
+    final int weight;
+
+    @SuppressWarnings("GoodTime") // should be a java.time.Instant
+    final long writeTime;
+
+    @SuppressWarnings("GoodTime") // should be a java.time.Instant
+    volatile long accessTime;
+
+    /** Whether the node was removed from the map. Set before the removal is buffered. */
+    volatile boolean removed;
+
+    int state = NEW;
+
+    ReferenceEntry<K, V> nextAccess = LocalCache.nullEntry();
+    ReferenceEntry<K, V> previousAccess = LocalCache.nullEntry();
+    ReferenceEntry<K, V> nextWrite = LocalCache.nullEntry();
+    ReferenceEntry<K, V> previousWrite = LocalCache.nullEntry();
+
+    Node(K key, V value, int weight, long now) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = now;
+      this.accessTime = now;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public long getAccessTime() {
+      return accessTime;
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      this.accessTime = time;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  /** The {@link Cache#asMap} view, whose writes are those of the cache. */
+  final class AsMapView extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    @Override
+    public @Nullable V get(@Nullable Object key) {
+      return (key == null) ? null : UnsegmentedLocalCache.this.get(key);
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+      return UnsegmentedLocalCache.this.put(key, value, false);
+    }
+
+    @Override
+    public @Nullable V putIfAbsent(K key, V value) {
+      return UnsegmentedLocalCache.this.put(key, value, true);
+    }
+
+    @Override
+    public @Nullable V remove(@Nullable Object key) {
+      return (key == null) ? null : UnsegmentedLocalCache.this.remove(key, null);
+    }
+
+    @Override
+    public boolean remove(@Nullable Object key, @Nullable Object value) {
+      return key != null && value != null && UnsegmentedLocalCache.this.remove(key, value) != null;
+    }
+
+    @Override
+    public @Nullable V replace(K key, V value) {
+      return UnsegmentedLocalCache.this.replace(key, null, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+      checkNotNull(oldValue);
+      return UnsegmentedLocalCache.this.replace(key, oldValue, newValue) != null;
+    }
+
+    @Override
+    public int size() {
+      return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return data.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      UnsegmentedLocalCache.this.clear();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+      return new AbstractSet<Entry<K, V>>() {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return data.size();
+        }
+
+        @Override
+        public void clear() {
+          UnsegmentedLocalCache.this.clear();
+        }
+      };
+    }
+  }
+
+  /** Iterates over the live entries, in no particular order. */
+  final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    final Iterator<Node<K, V>> nodes = data.values().iterator();
+    final long now = ticker.read();
+    @Nullable Node<K, V> next;
+    @Nullable Node<K, V> last;
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && nodes.hasNext()) {
+        Node<K, V> node = nodes.next();
+        if (!isExpired(node, now)) {
+          next = node;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = null;
+      final Node<K, V> node = last;
+      return new AbstractMap.SimpleEntry<K, V>(node.key, node.value) {
+        @Override
+        public V setValue(V value) {
+          put(node.key, value, false);
+          return super.setValue(value);
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      checkState(last != null, "no calls to next() since the last call to remove()");
+      removeNode(last, RemovalCause.EXPLICIT);
+      last = null;
+    }
+  }
+
+  /**
+   * Serializes the configuration of an unsegmented cache, reconstituting it as a {@code Cache}
+   * using {@link CacheBuilder} upon deserialization, as {@link LocalCache.ManualSerializationProxy}
+   * does for segmented caches.
+   */
+  static class ManualSerializationProxy<K, V> extends ForwardingCache<K, V>
+      implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    final long expireAfterWriteNanos;
+    final long expireAfterAccessNanos;
+    final long maxWeight;
+    final Weigher<K, V> weigher;
+    final RemovalListener<? super K, ? super V> removalListener;
+    final @Nullable Ticker ticker;
+    final @Nullable CacheLoader<? super K, V> loader;
+
+    transient @MonotonicNonNull Cache<K, V> delegate;
+
+    ManualSerializationProxy(UnsegmentedLocalCache<K, V> cache) {
+      this.expireAfterWriteNanos = cache.expireAfterWriteNanos;
+      this.expireAfterAccessNanos = cache.expireAfterAccessNanos;
+      this.maxWeight = cache.maxWeight;
+      this.weigher = cache.weigher;
+      this.removalListener = cache.removalListener;
+      this.ticker =
+          (cache.ticker == Ticker.systemTicker() || cache.ticker == CacheBuilder.NULL_TICKER)
+              ? null
+              : cache.ticker;
+      this.loader = cache.defaultLoader;
+    }
+
+    CacheBuilder<K, V> recreateCacheBuilder() {
+      CacheBuilder<K, V> builder =
+          CacheBuilder.newBuilder().unsegmented().removalListener(removalListener);
+      builder.strictParsing = false;
+      if (expireAfterWriteNanos > 0) {
+        builder.expireAfterWrite(expireAfterWriteNanos, NANOSECONDS);
+      }
+      if (expireAfterAccessNanos > 0) {
+        builder.expireAfterAccess(expireAfterAccessNanos, NANOSECONDS);
+      }
+      if (weigher != CacheBuilder.OneWeigher.INSTANCE) {
+        builder.weigher(weigher);
+        if (maxWeight != CacheBuilder.UNSET_INT) {
+          builder.maximumWeight(maxWeight);
+        }
+      } else {
+        if (maxWeight != CacheBuilder.UNSET_INT) {
+          builder.maximumSize(maxWeight);
+        }
+      }
+      if (ticker != null) {
+        builder.ticker(ticker);
+      }
+      return builder;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      CacheBuilder<K, V> builder = recreateCacheBuilder();
+      this.delegate = builder.build();
+    }
+
+    private Object readResolve() {
+      return delegate;
+    }
+
+    @Override
+    protected Cache<K, V> delegate() {
+      return delegate;
+    }
+  }
+
+  /**
+   * Serializes the configuration of an unsegmented cache, reconstituting it as a {@code
+   * LoadingCache} using {@link CacheBuilder} upon deserialization.
+   */
+  static final class LoadingSerializationProxy<K, V> extends ManualSerializationProxy<K, V>
+      implements LoadingCache<K, V>, Serializable {
+    private static final long serialVersionUID = 1;
+
+    transient @MonotonicNonNull LoadingCache<K, V> autoDelegate;
+
+    LoadingSerializationProxy(UnsegmentedLocalCache<K, V> cache) {
+      super(cache);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      CacheBuilder<K, V> builder = recreateCacheBuilder();
+      this.autoDelegate = builder.build(loader);
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      return autoDelegate.get(key);
+    }
+
+    @Override
+    public V getUnchecked(K key) {
+      return autoDelegate.getUnchecked(key);
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+      return autoDelegate.getAll(keys);
+    }
+
+    @Override
+    public final V apply(K key) {
+      return autoDelegate.apply(key);
+    }
+
+    @Override
+    public void refresh(K key) {
+      autoDelegate.refresh(key);
+    }
+
+    private Object readResolve() {
+      return autoDelegate;
+    }
+  }
+
+  static class UnsegmentedManualCache<K, V> extends AbstractCache<K, V> implements Serializable {
+    final UnsegmentedLocalCache<K, V> localCache;
+    @Nullable ConcurrentMap<K, V> asMap;
+
+    UnsegmentedManualCache(CacheBuilder<? super K, ? super V> builder) {
+      this(new UnsegmentedLocalCache<K, V>(builder, null));
+    }
+
+    UnsegmentedManualCache(UnsegmentedLocalCache<K, V> localCache) {
+      this.localCache = localCache;
+    }
+
+    @Override
+    public @Nullable V getIfPresent(Object key) {
+      return localCache.getIfPresent(key);
+    }
+
+    @Override
+    public V get(K key, final Callable<? extends V> valueLoader) throws ExecutionException {
+      checkNotNull(valueLoader);
+      return localCache.get(
+          key,
+          new CacheLoader<Object, V>() {
+            @Override
+            public V load(Object key) throws Exception {
+              return valueLoader.call();
+            }
+          });
+    }
+
+    @Override
+    public void put(K key, V value) {
+      localCache.put(key, value, false);
+    }
+
+    @Override
+    public void invalidate(Object key) {
+      localCache.remove(key, null);
+    }
+
+    @Override
+    public void invalidateAll() {
+      localCache.clear();
+    }
+
+    @Override
+    public long size() {
+      return localCache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+      return localCache.statsCounter.snapshot();
+    }
+
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+      ConcurrentMap<K, V> result = asMap;
+      return (result == null) ? asMap = localCache.new AsMapView() : result;
+    }
+
+    @Override
+    public void cleanUp() {
+      localCache.cleanUp();
+    }
+
+    // Serialization Support
+
+    private static final long serialVersionUID = 1;
+
+    Object writeReplace() {
+      return new ManualSerializationProxy<>(localCache);
+    }
+  }
+
+  static class UnsegmentedLoadingCache<K, V> extends UnsegmentedManualCache<K, V>
+      implements LoadingCache<K, V> {
+
+    UnsegmentedLoadingCache(
+        CacheBuilder<? super K, ? super V> builder, CacheLoader<? super K, V> loader) {
+      super(new UnsegmentedLocalCache<K, V>(builder, checkNotNull(loader)));
+    }
+
+    @Override
+    public V get(K key) throws ExecutionException {
+      return localCache.getOrLoad(key);
+    }
+
+    @Override
+    public V getUnchecked(K key) {
+      try {
+        return get(key);
+      } catch (ExecutionException e) {
+        throw new UncheckedExecutionException(e.getCause());
+      }
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+      return localCache.getAll(keys);
+    }
+
+    @Override
+    public void refresh(K key) {
+      localCache.refresh(key);
+    }
+
+    @Override
+    public final V apply(K key) {
+      return getUnchecked(key);
+    }
+
+    // Serialization Support
+
+    private static final long serialVersionUID = 1;
+
+    @Override
+    Object writeReplace() {
+      return new LoadingSerializationProxy<>(localCache);
+    }
+  }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.j2objc.annotations.WeakOuter;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Basic implementation of the concurrent multimaps {@link ConcurrentHashMultimap} and {@link
+ * ConcurrentListMultimap}.
+ *
+ * <p>The values of each key are held in a thread-safe collection, mapped to the key in a {@link
+ * ConcurrentHashMap}. That collection is only ever modified by a function computing the key's
+ * mapping, which {@code ConcurrentHashMap} runs while holding the lock of the key's bin, so that
+ * modifications of the values of a key are atomic, and a collection left empty is unmapped before
+ * another thread can add to it. Lookups and iterations take no lock, and see the state of each
+ * collection at some point since they started.
+ */
+@GwtIncompatible
+abstract class AbstractConcurrentMultimap<K, V> extends AbstractMultimap<K, V> {
+  final ConcurrentHashMap<K, Collection<V>> map = new ConcurrentHashMap<>();
+
+  /**
+   * The number of key-value pairs, updated by the thread that modified them once its change is
+   * visible, so that a sum may briefly miss or precede a concurrent change.
+   */
+  final LongAdder totalSize = new LongAdder();
+
+  /** Creates an empty, thread-safe collection for the values of a key. */
+  abstract Collection<V> createCollection();
+
+  /**
+   * Returns an unmodifiable view of {@code values}, which no longer belong to this multimap, or an
+   * empty collection if {@code values} is null.
+   */
+  abstract Collection<V> unmodifiableCollection(@Nullable Collection<V> values);
+
+  @Override
+  public int size() {
+    return Ints.saturatedCast(Math.max(totalSize.sum(), 0));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return key != null && map.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(@Nullable Object value) {
+    if (value == null) {
+      return false;
+    }
+    for (Collection<V> values : map.values()) {
+      if (values.contains(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean containsEntry(@Nullable Object key, @Nullable Object value) {
+    if (key == null || value == null) {
+      return false;
+    }
+    Collection<V> values = map.get(key);
+    return values != null && values.contains(value);
+  }
+
+  /**
+   * Stores a key-value pair in this multimap.
+   *
+   * @throws NullPointerException if {@code key} or {@code value} is null
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean put(K key, V value) {
+    checkNotNull(key);
+    checkNotNull(value);
+    boolean[] changed = new boolean[1];
+    map.compute(
+        key,
+        (k, values) -> {
+          if (values == null) {
+            values = createCollection();
+          }
+          if (values.add(value)) {
+            totalSize.increment();
+            changed[0] = true;
+          }
+          return values;
+        });
+    return changed[0];
+  }
+
+  /**
+   * Stores a key-value pair in this multimap for each of {@code values}, all with the same key,
+   * atomically.
+   *
+   * @throws NullPointerException if {@code key} or any of {@code values} is null
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean putAll(K key, Iterable<? extends V> values) {
+    checkNotNull(key);
+    ImmutableList<V> toAdd = ImmutableList.copyOf(values);
+    if (toAdd.isEmpty()) {
+      return false;
+    }
+    int[] added = new int[1];
+    map.compute(
+        key,
+        (k, current) -> {
+          if (current == null) {
+            current = createCollection();
+          }
+          int oldSize = current.size();
+          current.addAll(toAdd);
+          added[0] = current.size() - oldSize;
+          totalSize.add(added[0]);
+          return current;
+        });
+    return added[0] != 0;
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  @SuppressWarnings("unchecked") // a key of the map, if any, is a K
+  public boolean remove(@Nullable Object key, @Nullable Object value) {
+    if (!containsEntry(key, value)) {
+      return false;
+    }
+    boolean[] changed = new boolean[1];
+    map.computeIfPresent(
+        (K) key,
+        (k, values) -> {
+          if (values.remove(value)) {
+            totalSize.decrement();
+            changed[0] = true;
+          }
+          return values.isEmpty() ? null : values;
+        });
+    return changed[0];
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned collection is not a view of this multimap, and cannot be modified.
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public Collection<V> removeAll(@Nullable Object key) {
+    Collection<V> removed = (key == null) ? null : map.remove(key);
+    if (removed != null) {
+      totalSize.add(-removed.size());
+    }
+    return unmodifiableCollection(removed);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The values of {@code key} are replaced atomically. The returned collection is not a view of
+   * this multimap, and cannot be modified.
+   *
+   * @throws NullPointerException if {@code key} or any of {@code values} is null
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public Collection<V> replaceValues(K key, Iterable<? extends V> values) {
+    checkNotNull(key);
+    Collection<V> replacement = createCollection();
+    replacement.addAll(ImmutableList.copyOf(values));
+    Collection<V> previous =
+        replacement.isEmpty() ? map.remove(key) : map.put(key, replacement);
+    totalSize.add(replacement.size() - ((previous == null) ? 0 : previous.size()));
+    return unmodifiableCollection(previous);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The values of each key are removed atomically, but pairs that are added while this method
+   * runs may remain.
+   */
+  @Override
+  public void clear() {
+    for (K key : map.keySet()) {
+      removeAll(key);
+    }
+  }
+
+  @Override
+  Collection<Entry<K, V>> createEntries() {
+    return (this instanceof SetMultimap) ? new EntrySet() : new Entries();
+  }
+
+  @Override
+  Iterator<Entry<K, V>> entryIterator() {
+    Iterator<Entry<K, Collection<V>>> keyIterator = map.entrySet().iterator();
+    return new Iterator<Entry<K, V>>() {
+      @Nullable K key;
+      Iterator<V> valueIterator = Iterators.emptyIterator();
+      @Nullable Entry<K, V> last;
+
+      @Override
+      public boolean hasNext() {
+        while (!valueIterator.hasNext() && keyIterator.hasNext()) {
+          Entry<K, Collection<V>> entry = keyIterator.next();
+          key = entry.getKey();
+          valueIterator = entry.getValue().iterator();
+        }
+        return valueIterator.hasNext();
+      }
+
+      @Override
+      public Entry<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return last = Maps.immutableEntry(key, valueIterator.next());
+      }
+
+      @Override
+      public void remove() {
+        checkRemove(last != null);
+        AbstractConcurrentMultimap.this.remove(last.getKey(), last.getValue());
+        last = null;
+      }
+    };
+  }
+
+  @Override
+  Set<K> createKeySet() {
+    return asMap().keySet();
+  }
+
+  @Override
+  Multiset<K> createKeys() {
+    return new Multimaps.Keys<K, V>(this);
+  }
+
+  @Override
+  Collection<V> createValues() {
+    return new Values();
+  }
+
+  @Override
+  Map<K, Collection<V>> createAsMap() {
+    return new AsMap();
+  }
+
+  /** Returns an iterator over the keys, whose {@code remove} removes all the values of a key. */
+  private Iterator<K> keyIterator() {
+    Iterator<K> keyIterator = map.keySet().iterator();
+    return new Iterator<K>() {
+      @Nullable K last;
+
+      @Override
+      public boolean hasNext() {
+        return keyIterator.hasNext();
+      }
+
+      @Override
+      public K next() {
+        return last = keyIterator.next();
+      }
+
+      @Override
+      public void remove() {
+        checkRemove(last != null);
+        removeAll(last);
+        last = null;
+      }
+    };
+  }
+
+  @WeakOuter
+  private final class AsMap extends Maps.ViewCachingAbstractMap<K, Collection<V>> {
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return AbstractConcurrentMultimap.this.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // a key of the map is a K
+    public @Nullable Collection<V> get(@Nullable Object key) {
+      return containsKey(key) ? AbstractConcurrentMultimap.this.get((K) key) : null;
+    }
+
+    @Override
+    public @Nullable Collection<V> remove(@Nullable Object key) {
+      Collection<V> removed = removeAll(key);
+      return removed.isEmpty() ? null : removed;
+    }
+
+    @Override
+    public void clear() {
+      AbstractConcurrentMultimap.this.clear();
+    }
+
+    @Override
+    Set<Entry<K, Collection<V>>> createEntrySet() {
+      return new Maps.EntrySet<K, Collection<V>>() {
+        @Override
+        Map<K, Collection<V>> map() {
+          return AsMap.this;
+        }
+
+        @Override
+        public Iterator<Entry<K, Collection<V>>> iterator() {
+          return new TransformedIterator<K, Entry<K, Collection<V>>>(keyIterator()) {
+            @Override
+            Entry<K, Collection<V>> transform(K key) {
+              return Maps.immutableEntry(key, AbstractConcurrentMultimap.this.get(key));
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * A view of the values of a key, which reads the key's current collection of values, and
+   * modifies it through the multimap.
+   */
+  @WeakOuter
+  class WrappedCollection extends AbstractCollection<V> {
+    final @Nullable K key;
+
+    WrappedCollection(@Nullable K key) {
+      this.key = key;
+    }
+
+    Collection<V> delegate() {
+      Collection<V> values = (key == null) ? null : map.get(key);
+      return (values == null) ? ImmutableSet.<V>of() : values;
+    }
+
+    @Override
+    public int size() {
+      return delegate().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return !containsKey(key);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+      return containsEntry(key, o);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      Iterator<V> iterator = delegate().iterator();
+      return new Iterator<V>() {
+        @Nullable V last;
+
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public V next() {
+          return last = iterator.next();
+        }
+
+        @Override
+        public void remove() {
+          checkRemove(last != null);
+          AbstractConcurrentMultimap.this.remove(key, last);
+          last = null;
+        }
+      };
+    }
+
+    @Override
+    public boolean add(V value) {
+      return put(key, value);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends V> values) {
+      return putAll(key, values);
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+      return AbstractConcurrentMultimap.this.remove(key, o);
+    }
+
+    @Override
+    public void clear() {
+      AbstractConcurrentMultimap.this.removeAll(key);
+    }
+  }
+
+  @WeakOuter
+  final class WrappedSet extends WrappedCollection implements Set<V> {
+    WrappedSet(@Nullable K key) {
+      super(key);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      return Sets.equalsImpl(this, object);
+    }
+
+    @Override
+    public int hashCode() {
+      return Sets.hashCodeImpl(this);
+    }
+  }
+}
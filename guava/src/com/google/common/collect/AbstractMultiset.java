@@ -58,7 +58,7 @@ abstract class AbstractMultiset<E> extends AbstractCollection<E> implements Mult
   // Modification Operations
   @CanIgnoreReturnValue
   @Override
-  public final boolean add(@Nullable E element) {
+  public boolean add(@Nullable E element) {
     add(element, 1);
     return true;
   }
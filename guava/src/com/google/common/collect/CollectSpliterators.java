@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.math.LongMath;
 import com.google.j2objc.annotations.Weak;
 import java.util.Comparator;
 import java.util.Spliterator;
@@ -194,6 +195,78 @@ final class CollectSpliterators {
     return new Splitr();
   }
 
+  /**
+   * Returns a {@code Spliterator} over the elements of {@code first} followed by those of {@code
+   * second}, which is split into the two before either of them is split. It has the
+   * characteristics {@code topCharacteristics} as well as those of both {@code first} and {@code
+   * second} that concatenation preserves.
+   */
+  static <T> Spliterator<T> concat(
+      Spliterator<? extends T> first, Spliterator<? extends T> second, int topCharacteristics) {
+    checkNotNull(first);
+    checkNotNull(second);
+    class ConcatSpliterator implements Spliterator<T> {
+      @Nullable Spliterator<? extends T> first;
+      final Spliterator<? extends T> second;
+      int characteristics;
+
+      ConcatSpliterator(Spliterator<? extends T> first, Spliterator<? extends T> second) {
+        this.first = first;
+        this.second = second;
+        this.characteristics =
+            topCharacteristics
+                | (first.characteristics()
+                    & second.characteristics()
+                    & (Spliterator.ORDERED | Spliterator.NONNULL));
+      }
+
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+        if (first != null) {
+          if (first.tryAdvance(action)) {
+            return true;
+          }
+          first = null;
+        }
+        return second.tryAdvance(action);
+      }
+
+      @Override
+      public void forEachRemaining(Consumer<? super T> action) {
+        if (first != null) {
+          first.forEachRemaining(action);
+          first = null;
+        }
+        second.forEachRemaining(action);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked") // safe upcast, as Spliterator is effectively read-only
+      public Spliterator<T> trySplit() {
+        if (first != null) {
+          Spliterator<T> result = (Spliterator<T>) first;
+          first = null;
+          characteristics = second.characteristics();
+          return result;
+        }
+        return (Spliterator<T>) second.trySplit();
+      }
+
+      @Override
+      public long estimateSize() {
+        return (first == null)
+            ? second.estimateSize()
+            : LongMath.saturatedAdd(first.estimateSize(), second.estimateSize());
+      }
+
+      @Override
+      public int characteristics() {
+        return (first == null) ? second.characteristics() : characteristics;
+      }
+    }
+    return new ConcatSpliterator(first, second);
+  }
+
   /**
    * Returns a {@code Spliterator} that iterates over the elements of the spliterators generated by
    * applying {@code function} to the elements of {@code fromSpliterator}.
@@ -380,13 +453,34 @@ final class CollectSpliterators {
                 this.prefix, fromSplit, function, splitCharacteristics, estSplitSize);
         this.prefix = null;
         return result;
-      } else if (prefix != null) {
-        OutSpliteratorT result = prefix;
-        this.prefix = null;
+      }
+      if (prefix == null) {
+        /*
+         * from can't be split, but the spliterator of its next element may be, as when all the
+         * values of a multimap belong to one key. Only look at it if our size is exact or
+         * unknown, though, since a prefix larger than a guessed size would make that grow.
+         */
+        if ((characteristics & Spliterator.SIZED) == 0 && estimatedSize != Long.MAX_VALUE) {
+          return null;
+        }
+        from.tryAdvance(fromElement -> prefix = function.apply(fromElement));
+        if (prefix == null) {
+          return null;
+        }
+      }
+      if (from.estimateSize() == 0) {
+        // Only the prefix is left, so split it rather than handing it all over.
+        @SuppressWarnings("unchecked") // trySplit returns an OutSpliteratorT for each type
+        OutSpliteratorT result = (OutSpliteratorT) prefix.trySplit();
+        if (result != null && estimatedSize < Long.MAX_VALUE) {
+          this.estimatedSize -= result.estimateSize();
+          this.characteristics &= ~Spliterator.SIZED;
+        }
         return result;
-      } else {
-        return null;
       }
+      OutSpliteratorT result = prefix;
+      this.prefix = null;
+      return result;
     }
 
     @Override
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link SetMultimap} that supports concurrent modifications, without the single lock of a
+ * {@linkplain Multimaps#synchronizedSetMultimap synchronized multimap}. Null keys and values are
+ * not supported.
+ *
+ * <p>The values of each key are held in a concurrent hash set. The operations that modify the
+ * values of a single key, including {@link #putAll(Object, Iterable) putAll}, {@link
+ * #removeAll(Object) removeAll} and {@link #replaceValues replaceValues}, are atomic, and only
+ * contend with concurrent modifications of keys in the same bin of a {@link ConcurrentHashMap}.
+ * Lookups take no lock, and adding a pair that is already present takes none either.
+ *
+ * <p>Like those of {@code ConcurrentHashMap}, the views of a {@code ConcurrentHashMultimap} are
+ * weakly consistent: their iterators never throw {@link
+ * java.util.ConcurrentModificationException}, and reflect the pairs present when they were created,
+ * and may reflect later modifications. Operations that span several keys, such as {@link #size},
+ * {@link #clear} and {@link #equals}, are not atomic. The collections returned by {@link
+ * #removeAll} and {@link #replaceValues} are unmodifiable copies.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class ConcurrentHashMultimap<K, V> extends AbstractConcurrentMultimap<K, V>
+    implements SetMultimap<K, V>, Serializable {
+  /** Creates a new, empty {@code ConcurrentHashMultimap}. */
+  public static <K, V> ConcurrentHashMultimap<K, V> create() {
+    return new ConcurrentHashMultimap<>();
+  }
+
+  /**
+   * Constructs a {@code ConcurrentHashMultimap} with the same mappings as the specified multimap.
+   * If a key-value mapping appears multiple times in the input multimap, it only appears once in
+   * the constructed multimap.
+   *
+   * @throws NullPointerException if {@code multimap} has a null key or value
+   */
+  public static <K, V> ConcurrentHashMultimap<K, V> create(
+      Multimap<? extends K, ? extends V> multimap) {
+    ConcurrentHashMultimap<K, V> result = new ConcurrentHashMultimap<>();
+    result.putAll(multimap);
+    return result;
+  }
+
+  private ConcurrentHashMultimap() {}
+
+  @Override
+  Set<V> createCollection() {
+    return ConcurrentHashMap.newKeySet();
+  }
+
+  @Override
+  Set<V> unmodifiableCollection(@Nullable Collection<V> values) {
+    return (values == null) ? ImmutableSet.<V>of() : Collections.unmodifiableSet((Set<V>) values);
+  }
+
+  /**
+   * Stores a key-value pair in the multimap, unless it is already present.
+   *
+   * @throws NullPointerException if {@code key} or {@code value} is null
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean put(K key, V value) {
+    // a pair that is already present is found without locking
+    return !containsEntry(key, value) && super.put(key, value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned set is a view of the values of {@code key}, which reads their current state.
+   */
+  @Override
+  public Set<V> get(@Nullable K key) {
+    return new WrappedSet(key);
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public Set<V> removeAll(@Nullable Object key) {
+    return (Set<V>) super.removeAll(key);
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public Set<V> replaceValues(K key, Iterable<? extends V> values) {
+    return (Set<V>) super.replaceValues(key, values);
+  }
+
+  @Override
+  public Set<Entry<K, V>> entries() {
+    return (Set<Entry<K, V>>) super.entries();
+  }
+
+  /**
+   * @serialData number of distinct keys, and then for each distinct key: the key, number of values
+   *     for that key, and the key's values
+   */
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    // a copy, so that the counts written match the values written despite concurrent changes
+    Serialization.writeMultimap(ImmutableSetMultimap.copyOf(this), stream);
+  }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    Serialization.populateMultimap(this, stream);
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -41,6 +41,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
@@ -66,11 +67,19 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
    * the entry from the Map. If another operation sees a zero in the map, it knows that the entry is
    * about to be removed, so this operation may remove it (often by replacing it with a new
    * AtomicInteger).
+   *
+   * A striped multiset stores StripedCounts, whose AtomicInteger value follows the same protocol.
+   * Occurrences added to a nonzero StripedCount may instead be added to one of its cells, which are
+   * moved into the AtomicInteger value, or to the element's next counter if the StripedCount has
+   * been removed, by the operations that need an exact count.
    */
 
   /** The number of occurrences of each element. */
   private final transient ConcurrentMap<E, AtomicInteger> countMap;
 
+  /** Whether the counters of this multiset are {@link StripedCount}s. */
+  private final boolean striped;
+
   // This constant allows the deserialization code to set a final field. This holder class
   // makes sure it is not initialized unless an instance is deserialized.
   private static class FieldSettersHolder {
@@ -103,6 +112,26 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     return multiset;
   }
 
+  /**
+   * Creates a new, empty {@code ConcurrentHashMultiset} whose counts are striped: when several
+   * threads add occurrences of the same element, they add them to separate cells, which {@link
+   * #count} sums when it is called. This makes {@link #add(Object) add} scale much better when many
+   * threads count occurrences of a few elements, at the cost of slower calls to {@code count} and
+   * of more memory for each of those elements.
+   *
+   * <p>The operations that remove occurrences or set counts remain atomic, but occurrences that are
+   * added concurrently with them may take effect after them. {@link #add(Object, int)} returns the
+   * count of the element when it was called, which is not atomic with the addition; {@link
+   * #add(Object)} does not need to read the count at all, so it may not detect that the count
+   * overflows, in which case {@link #count} returns {@link Integer#MAX_VALUE}.
+   *
+   * @since 28.2
+   */
+  @Beta
+  public static <E> ConcurrentHashMultiset<E> createStriped() {
+    return new ConcurrentHashMultiset<E>(new ConcurrentHashMap<E, AtomicInteger>(), true);
+  }
+
   /**
    * Creates a new, empty {@code ConcurrentHashMultiset} using {@code countMap} as the internal
    * backing map.
@@ -124,8 +153,23 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
 
   @VisibleForTesting
   ConcurrentHashMultiset(ConcurrentMap<E, AtomicInteger> countMap) {
+    this(countMap, false);
+  }
+
+  @VisibleForTesting
+  ConcurrentHashMultiset(ConcurrentMap<E, AtomicInteger> countMap, boolean striped) {
     checkArgument(countMap.isEmpty(), "the backing map (%s) must be empty", countMap);
     this.countMap = countMap;
+    this.striped = striped;
+  }
+
+  private AtomicInteger newCounter(int count) {
+    return striped ? new StripedCount(count) : new AtomicInteger(count);
+  }
+
+  /** Returns the count held by {@code counter}, summing its cells if it is striped. */
+  private static int currentCount(AtomicInteger counter) {
+    return (counter instanceof StripedCount) ? ((StripedCount) counter).count() : counter.get();
   }
 
   // Query Operations
@@ -139,7 +183,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
   @Override
   public int count(@Nullable Object element) {
     AtomicInteger existingCounter = Maps.safeGet(countMap, element);
-    return (existingCounter == null) ? 0 : existingCounter.get();
+    return (existingCounter == null) ? 0 : currentCount(existingCounter);
   }
 
   /**
@@ -152,7 +196,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
   public int size() {
     long sum = 0L;
     for (AtomicInteger value : countMap.values()) {
-      sum += value.get();
+      sum += currentCount(value);
     }
     return Ints.saturatedCast(sum);
   }
@@ -189,6 +233,26 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
 
   // Modification Operations
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If this multiset is {@linkplain #createStriped striped}, the occurrence is usually added
+   * without reading the count of the element.
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean add(E element) {
+    if (striped) {
+      StripedCount existingCounter = (StripedCount) Maps.safeGet(countMap, element);
+      if (existingCounter != null && existingCounter.tryAdd(1)) {
+        moveRemovedCells(element, existingCounter);
+        return true;
+      }
+    }
+    add(element, 1);
+    return true;
+  }
+
   /**
    * Adds a number of occurrences of the specified element to this multiset.
    *
@@ -207,10 +271,25 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     }
     CollectPreconditions.checkPositive(occurrences, "occurences");
 
+    if (striped) {
+      StripedCount existingCounter = (StripedCount) Maps.safeGet(countMap, element);
+      if (existingCounter != null) {
+        int oldValue = existingCounter.count();
+        if (oldValue > Integer.MAX_VALUE - occurrences) {
+          throw new IllegalArgumentException(
+              "Overflow adding " + occurrences + " occurrences to a count of " + oldValue);
+        }
+        if (oldValue != 0 && existingCounter.tryAdd(occurrences)) {
+          moveRemovedCells(element, existingCounter);
+          return oldValue;
+        }
+      }
+    }
+
     while (true) {
       AtomicInteger existingCounter = Maps.safeGet(countMap, element);
       if (existingCounter == null) {
-        existingCounter = countMap.putIfAbsent(element, new AtomicInteger(occurrences));
+        existingCounter = countMap.putIfAbsent(element, newCounter(occurrences));
         if (existingCounter == null) {
           return 0;
         }
@@ -234,7 +313,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
           // In the case of a concurrent remove, we might observe a zero value, which means another
           // thread is about to remove (element, existingCounter) from the map. Rather than wait,
           // we can just do that work here.
-          AtomicInteger newCounter = new AtomicInteger(occurrences);
+          AtomicInteger newCounter = newCounter(occurrences);
           if ((countMap.putIfAbsent(element, newCounter) == null)
               || countMap.replace(element, existingCounter, newCounter)) {
             return 0;
@@ -277,6 +356,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     if (existingCounter == null) {
       return 0;
     }
+    foldCells(element, existingCounter);
     while (true) {
       int oldValue = existingCounter.get();
       if (oldValue != 0) {
@@ -286,6 +366,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
             // Just CASed to 0; remove the entry to clean up the map. If the removal fails,
             // another thread has already replaced it with a new counter, which is fine.
             countMap.remove(element, existingCounter);
+            moveRemovedCells(element, existingCounter);
           }
           return oldValue;
         }
@@ -318,6 +399,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     if (existingCounter == null) {
       return false;
     }
+    foldCells(element, existingCounter);
     while (true) {
       int oldValue = existingCounter.get();
       if (oldValue < occurrences) {
@@ -329,6 +411,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
           // Just CASed to 0; remove the entry to clean up the map. If the removal fails,
           // another thread has already replaced it with a new counter, which is fine.
           countMap.remove(element, existingCounter);
+          moveRemovedCells(element, existingCounter);
         }
         return true;
       }
@@ -353,13 +436,14 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
         if (count == 0) {
           return 0;
         } else {
-          existingCounter = countMap.putIfAbsent(element, new AtomicInteger(count));
+          existingCounter = countMap.putIfAbsent(element, newCounter(count));
           if (existingCounter == null) {
             return 0;
           }
           // existingCounter != null: fall through
         }
       }
+      foldCells(element, existingCounter);
 
       while (true) {
         int oldValue = existingCounter.get();
@@ -367,7 +451,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
           if (count == 0) {
             return 0;
           } else {
-            AtomicInteger newCounter = new AtomicInteger(count);
+            AtomicInteger newCounter = newCounter(count);
             if ((countMap.putIfAbsent(element, newCounter) == null)
                 || countMap.replace(element, existingCounter, newCounter)) {
               return 0;
@@ -380,6 +464,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
               // Just CASed to 0; remove the entry to clean up the map. If the removal fails,
               // another thread has already replaced it with a new counter, which is fine.
               countMap.remove(element, existingCounter);
+              moveRemovedCells(element, existingCounter);
             }
             return oldValue;
           }
@@ -413,9 +498,10 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
         return true;
       } else {
         // if our write lost the race, it must have lost to a nonzero value, so we can stop
-        return countMap.putIfAbsent(element, new AtomicInteger(newCount)) == null;
+        return countMap.putIfAbsent(element, newCounter(newCount)) == null;
       }
     }
+    foldCells(element, existingCounter);
     int oldValue = existingCounter.get();
     if (oldValue == expectedOldCount) {
       if (oldValue == 0) {
@@ -424,7 +510,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
           countMap.remove(element, existingCounter);
           return true;
         } else {
-          AtomicInteger newCounter = new AtomicInteger(newCount);
+          AtomicInteger newCounter = newCounter(newCount);
           return (countMap.putIfAbsent(element, newCounter) == null)
               || countMap.replace(element, existingCounter, newCounter);
         }
@@ -434,6 +520,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
             // Just CASed to 0; remove the entry to clean up the map. If the removal fails,
             // another thread has already replaced it with a new counter, which is fine.
             countMap.remove(element, existingCounter);
+            moveRemovedCells(element, existingCounter);
           }
           return true;
         }
@@ -442,6 +529,49 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     return false;
   }
 
+  /**
+   * Moves the occurrences held in the cells of a striped counter into its value, so that they are
+   * seen by an operation that updates the value with a compare-and-set.
+   */
+  private void foldCells(Object element, AtomicInteger counter) {
+    if (!(counter instanceof StripedCount)) {
+      return;
+    }
+    long occurrences = ((StripedCount) counter).drainCells();
+    while (occurrences != 0) {
+      int oldValue = counter.get();
+      if (oldValue == 0) {
+        // the counter has been removed, so the occurrences belong to the element's next counter
+        addRemovedOccurrences(element, occurrences);
+        return;
+      }
+      int newValue = Ints.saturatedCast(oldValue + occurrences);
+      if (counter.compareAndSet(oldValue, newValue)) {
+        // occurrences beyond Integer.MAX_VALUE stay in a cell, where count() still sees them
+        ((StripedCount) counter).addToCell(oldValue + occurrences - newValue);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Called after adding occurrences to the cells of a striped counter, or after removing a striped
+   * counter whose value was zero, to move any occurrences that were added to the cells of the
+   * removed counter, after its removal had folded them, to the element's next counter.
+   */
+  private void moveRemovedCells(Object element, AtomicInteger counter) {
+    if (counter instanceof StripedCount && counter.get() == 0) {
+      addRemovedOccurrences(element, ((StripedCount) counter).drainCells());
+    }
+  }
+
+  @SuppressWarnings("unchecked") // the element has a counter, so it was added as an E
+  private void addRemovedOccurrences(Object element, long occurrences) {
+    if (occurrences != 0) {
+      add((E) element, Ints.saturatedCast(occurrences));
+    }
+  }
+
   // Views
 
   @Override
@@ -513,7 +643,7 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
                 return endOfData();
               }
               Map.Entry<E, AtomicInteger> mapEntry = mapEntries.next();
-              int count = mapEntry.getValue().get();
+              int count = currentCount(mapEntry.getValue());
               if (count != 0) {
                 return Multisets.immutableEntry(mapEntry.getKey(), count);
               }
@@ -584,6 +714,100 @@ public final class ConcurrentHashMultiset<E> extends AbstractMultiset<E> impleme
     }
   }
 
+  /**
+   * A counter of a {@linkplain #createStriped striped} multiset, whose value is the count of its
+   * element, not counting the occurrences that contending threads have added to its cells.
+   */
+  private static final class StripedCount extends AtomicInteger {
+    /** The number of cells, enough for each processor to update its own. */
+    private static final int CELLS =
+        Math.min(IntMath.ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()), 64);
+
+    /** The spacing of the cells in {@link #cells}, so that each of them has its own cache line. */
+    private static final int PADDING = 8;
+
+    /** The cells, created the first time that threads contend to update the value. */
+    private volatile @Nullable AtomicLongArray cells;
+
+    StripedCount(int count) {
+      super(count);
+    }
+
+    /**
+     * Adds occurrences to a counter whose value is nonzero, updating the value if no other thread
+     * does and a cell otherwise. Returns false if the value is zero, or if adding them to a counter
+     * without cells would overflow it.
+     *
+     * <p>The caller must then call {@code moveRemovedCells}, since the counter may have been
+     * removed without seeing the occurrences added to its cell.
+     */
+    boolean tryAdd(int occurrences) {
+      if (cells == null) {
+        int oldValue = get();
+        if (oldValue == 0 || oldValue > Integer.MAX_VALUE - occurrences) {
+          return false;
+        }
+        if (compareAndSet(oldValue, oldValue + occurrences)) {
+          return true;
+        }
+      } else if (get() == 0) {
+        return false;
+      }
+      addToCell(occurrences);
+      return true;
+    }
+
+    /** Adds occurrences to the cell of the current thread. */
+    void addToCell(long occurrences) {
+      if (occurrences != 0) {
+        AtomicLongArray cells = this.cells;
+        if (cells == null) {
+          cells = createCells();
+        }
+        int cell = Hashing.smear((int) Thread.currentThread().getId()) & (CELLS - 1);
+        cells.getAndAdd(cell * PADDING, occurrences);
+      }
+    }
+
+    private synchronized AtomicLongArray createCells() {
+      AtomicLongArray cells = this.cells;
+      if (cells == null) {
+        this.cells = cells = new AtomicLongArray(CELLS * PADDING);
+      }
+      return cells;
+    }
+
+    /** Returns the value plus the occurrences in the cells, or zero if the value is zero. */
+    int count() {
+      int value = get();
+      AtomicLongArray cells = this.cells;
+      if (value == 0 || cells == null) {
+        return value;
+      }
+      long sum = value;
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.get(i);
+      }
+      return Ints.saturatedCast(sum);
+    }
+
+    /** Empties the cells, returning the occurrences that they held. */
+    long drainCells() {
+      AtomicLongArray cells = this.cells;
+      long sum = 0;
+      if (cells != null) {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+          if (cells.get(i) != 0) {
+            sum += cells.getAndSet(i, 0);
+          }
+        }
+      }
+      return sum;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
   /** @serialData the ConcurrentMap of elements and their counts. */
   private void writeObject(ObjectOutputStream stream) throws IOException {
     stream.defaultWriteObject();
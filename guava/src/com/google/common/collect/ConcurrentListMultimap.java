@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.j2objc.annotations.WeakOuter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link ListMultimap} that supports concurrent modifications, without the single lock of a
+ * {@linkplain Multimaps#synchronizedListMultimap synchronized multimap}. Null keys and values are
+ * not supported.
+ *
+ * <p>The values of each key are held in a {@link CopyOnWriteArrayList}, which suits multimaps that
+ * are read much more often than they are modified. The operations that modify the values of a
+ * single key, including {@link #putAll(Object, Iterable) putAll}, {@link #removeAll(Object)
+ * removeAll} and {@link #replaceValues replaceValues}, are atomic, and only contend with concurrent
+ * modifications of keys in the same bin of a {@link ConcurrentHashMap}. Lookups take no lock.
+ *
+ * <p>Like those of {@code ConcurrentHashMap}, the views of a {@code ConcurrentListMultimap} are
+ * weakly consistent: their iterators never throw {@link
+ * java.util.ConcurrentModificationException}, and reflect the pairs present when they were created,
+ * and may reflect later modifications. Operations that span several keys, such as {@link #size},
+ * {@link #clear} and {@link #equals}, are not atomic. The iterators of the list returned by {@link
+ * #get} iterate over a snapshot of the values of the key, and apply their modifications at the same
+ * positions of the current values. The lists returned by {@link #removeAll} and {@link
+ * #replaceValues} are unmodifiable copies.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class ConcurrentListMultimap<K, V> extends AbstractConcurrentMultimap<K, V>
+    implements ListMultimap<K, V>, Serializable {
+  /** Creates a new, empty {@code ConcurrentListMultimap}. */
+  public static <K, V> ConcurrentListMultimap<K, V> create() {
+    return new ConcurrentListMultimap<>();
+  }
+
+  /**
+   * Constructs a {@code ConcurrentListMultimap} with the same mappings as the specified multimap.
+   *
+   * @throws NullPointerException if {@code multimap} has a null key or value
+   */
+  public static <K, V> ConcurrentListMultimap<K, V> create(
+      Multimap<? extends K, ? extends V> multimap) {
+    ConcurrentListMultimap<K, V> result = new ConcurrentListMultimap<>();
+    result.putAll(multimap);
+    return result;
+  }
+
+  private ConcurrentListMultimap() {}
+
+  @Override
+  List<V> createCollection() {
+    return new CopyOnWriteArrayList<V>();
+  }
+
+  @Override
+  List<V> unmodifiableCollection(@Nullable Collection<V> values) {
+    return (values == null)
+        ? ImmutableList.<V>of()
+        : Collections.unmodifiableList((List<V>) values);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned list is a view of the values of {@code key}, which reads their current state.
+   * Its positional modifications are atomic, and throw {@link IndexOutOfBoundsException} if the
+   * index is out of range at that time.
+   */
+  @Override
+  public List<V> get(@Nullable K key) {
+    return new WrappedList(key);
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public List<V> removeAll(@Nullable Object key) {
+    return (List<V>) super.removeAll(key);
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public List<V> replaceValues(K key, Iterable<? extends V> values) {
+    return (List<V>) super.replaceValues(key, values);
+  }
+
+  @WeakOuter
+  private final class WrappedList extends AbstractList<V> {
+    final @Nullable K key;
+
+    WrappedList(@Nullable K key) {
+      this.key = key;
+    }
+
+    List<V> delegate() {
+      List<V> values = (key == null) ? null : (List<V>) map.get(key);
+      return (values == null) ? ImmutableList.<V>of() : values;
+    }
+
+    @Override
+    public V get(int index) {
+      return delegate().get(index);
+    }
+
+    @Override
+    public int size() {
+      return delegate().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return !containsKey(key);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+      return containsEntry(key, o);
+    }
+
+    @Override
+    public int indexOf(@Nullable Object o) {
+      return delegate().indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(@Nullable Object o) {
+      return delegate().lastIndexOf(o);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<V> listIterator(int index) {
+      return new WrappedListIterator(index);
+    }
+
+    @Override
+    public boolean add(V value) {
+      return put(key, value);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends V> values) {
+      return putAll(key, values);
+    }
+
+    @Override
+    public void add(int index, V value) {
+      checkNotNull(value);
+      map.compute(
+          key,
+          (k, values) -> {
+            List<V> list = (values == null) ? createCollection() : (List<V>) values;
+            checkPositionIndex(index, list.size());
+            list.add(index, value);
+            totalSize.increment();
+            return list;
+          });
+    }
+
+    @Override
+    public V set(int index, V value) {
+      checkNotNull(value);
+      Object[] previous = new Object[1];
+      map.compute(
+          key,
+          (k, values) -> {
+            List<V> list = (values == null) ? ImmutableList.<V>of() : (List<V>) values;
+            checkElementIndex(index, list.size());
+            previous[0] = list.set(index, value);
+            return values;
+          });
+      @SuppressWarnings("unchecked") // only values are stored
+      V result = (V) previous[0];
+      return result;
+    }
+
+    @Override
+    public V remove(int index) {
+      Object[] previous = new Object[1];
+      map.compute(
+          key,
+          (k, values) -> {
+            List<V> list = (values == null) ? ImmutableList.<V>of() : (List<V>) values;
+            checkElementIndex(index, list.size());
+            previous[0] = list.remove(index);
+            totalSize.decrement();
+            return list.isEmpty() ? null : list;
+          });
+      @SuppressWarnings("unchecked") // only values are stored
+      V result = (V) previous[0];
+      return result;
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+      return ConcurrentListMultimap.this.remove(key, o);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<V> operator) {
+      checkNotNull(operator);
+      map.computeIfPresent(
+          key,
+          (k, values) -> {
+            List<V> list = (List<V>) values;
+            List<V> replaced = new ArrayList<>(list.size());
+            for (V value : list) {
+              replaced.add(checkNotNull(operator.apply(value)));
+            }
+            return new CopyOnWriteArrayList<>(replaced);
+          });
+    }
+
+    @Override
+    public void sort(@Nullable Comparator<? super V> comparator) {
+      map.computeIfPresent(
+          key,
+          (k, values) -> {
+            ((List<V>) values).sort(comparator);
+            return values;
+          });
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+      checkNotNull(c);
+      return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+      checkNotNull(c);
+      return removeIf(value -> !c.contains(value));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super V> filter) {
+      checkNotNull(filter);
+      int[] removed = new int[1];
+      map.computeIfPresent(
+          key,
+          (k, values) -> {
+            int oldSize = values.size();
+            values.removeIf(filter);
+            removed[0] = oldSize - values.size();
+            totalSize.add(-removed[0]);
+            return values.isEmpty() ? null : values;
+          });
+      return removed[0] != 0;
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentListMultimap.this.removeAll(key);
+    }
+
+    /**
+     * A list iterator over a snapshot of the values of the key, whose modifications are applied at
+     * the same positions of both the snapshot and the current values.
+     */
+    private final class WrappedListIterator implements ListIterator<V> {
+      final List<V> snapshot = new ArrayList<>(delegate());
+      int cursor;
+      int lastReturned = -1;
+
+      WrappedListIterator(int index) {
+        checkPositionIndex(index, snapshot.size());
+        cursor = index;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return cursor < snapshot.size();
+      }
+
+      @Override
+      public V next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        lastReturned = cursor++;
+        return snapshot.get(lastReturned);
+      }
+
+      @Override
+      public boolean hasPrevious() {
+        return cursor > 0;
+      }
+
+      @Override
+      public V previous() {
+        if (!hasPrevious()) {
+          throw new NoSuchElementException();
+        }
+        lastReturned = --cursor;
+        return snapshot.get(lastReturned);
+      }
+
+      @Override
+      public int nextIndex() {
+        return cursor;
+      }
+
+      @Override
+      public int previousIndex() {
+        return cursor - 1;
+      }
+
+      @Override
+      public void remove() {
+        checkRemove(lastReturned >= 0);
+        WrappedList.this.remove(lastReturned);
+        snapshot.remove(lastReturned);
+        cursor = lastReturned;
+        lastReturned = -1;
+      }
+
+      @Override
+      public void set(V value) {
+        checkState(lastReturned >= 0);
+        WrappedList.this.set(lastReturned, value);
+        snapshot.set(lastReturned, value);
+      }
+
+      @Override
+      public void add(V value) {
+        WrappedList.this.add(cursor, value);
+        snapshot.add(cursor++, value);
+        lastReturned = -1;
+      }
+    }
+  }
+
+  /**
+   * @serialData number of distinct keys, and then for each distinct key: the key, number of values
+   *     for that key, and the key's values
+   */
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    // a copy, so that the counts written match the values written despite concurrent changes
+    Serialization.writeMultimap(ImmutableListMultimap.copyOf(this), stream);
+  }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    Serialization.populateMultimap(this, stream);
+  }
+
+  private static final long serialVersionUID = 0;
+}
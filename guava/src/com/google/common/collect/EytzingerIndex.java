@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A copy of a sorted list in Eytzinger order, the breadth-first order of a balanced binary search
+ * tree, which {@link RegularImmutableSortedSet} searches instead of the list when it is built
+ * {@linkplain ImmutableSortedSet.Builder#optimizeForLookup optimized for lookup}.
+ *
+ * <p>The root of the tree is at index 1, and the children of the node at index {@code k} are at
+ * indices {@code 2 * k} and {@code 2 * k + 1}. The first levels of the tree, which every search
+ * visits, are thus packed together at the start of the array, where they stay in the cache, and
+ * the nodes a search may visit next are adjacent, unlike those of a binary search of the sorted
+ * list, which are spread over all of it.
+ */
+@GwtIncompatible
+final class EytzingerIndex {
+  /** The elements in Eytzinger order, from index 1. */
+  private final Object[] tree;
+
+  /** The index in the sorted list of each element of {@link #tree}. */
+  private final int[] ranks;
+
+  EytzingerIndex(List<?> sorted) {
+    int size = sorted.size();
+    tree = new Object[size + 1];
+    ranks = new int[size + 1];
+    fill(sorted, 1, 0);
+  }
+
+  /**
+   * Fills the subtree rooted at index {@code k} with the sorted elements from {@code rank} on, in
+   * order, and returns the rank of the first element not in the subtree.
+   */
+  private int fill(List<?> sorted, int k, int rank) {
+    if (k < tree.length) {
+      rank = fill(sorted, 2 * k, rank);
+      tree[k] = sorted.get(rank);
+      ranks[k] = rank++;
+      rank = fill(sorted, 2 * k + 1, rank);
+    }
+    return rank;
+  }
+
+  /**
+   * Searches for {@code key} with the same result as {@link java.util.Collections#binarySearch(
+   * List, Object, Comparator)} on the sorted list: the index of {@code key} if it is present, and
+   * otherwise {@code (-(insertion point) - 1)}.
+   */
+  int search(Object key, Comparator<Object> comparator) {
+    int k = 1;
+    while (k < tree.length) {
+      int cmp = comparator.compare(tree[k], key);
+      if (cmp == 0) {
+        return ranks[k];
+      }
+      k = 2 * k + (cmp < 0 ? 1 : 0);
+    }
+    /*
+     * The search went left at the node of the smallest greater element, and right at each node
+     * after it, so dropping those trailing right turns and the last left turn finds that node.
+     */
+    k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+    return ~(k == 0 ? ranks.length - 1 : ranks[k]);
+  }
+}
@@ -30,6 +30,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.Spliterator;
 import java.util.stream.Stream;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -143,6 +144,11 @@ public abstract class FluentIterable<E> implements Iterable<E> {
           public Iterator<E> iterator() {
             return iterable.iterator();
           }
+
+          @Override
+          public Spliterator<E> spliterator() {
+            return iterable.spliterator();
+          }
         };
   }
 
@@ -276,6 +282,16 @@ public abstract class FluentIterable<E> implements Iterable<E> {
       public Iterator<T> iterator() {
         return Iterators.concat(Iterators.transform(inputs.iterator(), Iterables.<T>toIterator()));
       }
+
+      @SuppressWarnings("unchecked") // safe upcast, as a Spliterator only produces elements
+      @Override
+      public Spliterator<T> spliterator() {
+        return CollectSpliterators.flatMap(
+            inputs.spliterator(),
+            input -> (Spliterator<T>) input.spliterator(),
+            0,
+            Long.MAX_VALUE);
+      }
     };
   }
 
@@ -297,6 +313,16 @@ public abstract class FluentIterable<E> implements Iterable<E> {
               }
             });
       }
+
+      @SuppressWarnings("unchecked") // safe upcast, as a Spliterator only produces elements
+      @Override
+      public Spliterator<T> spliterator() {
+        return CollectSpliterators.flatMap(
+            Arrays.spliterator(inputs),
+            input -> (Spliterator<T>) input.spliterator(),
+            0,
+            Long.MAX_VALUE);
+      }
     };
   }
 
@@ -21,6 +21,7 @@ import static com.google.common.collect.CollectPreconditions.checkNonnegative;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.Arrays;
@@ -248,6 +249,21 @@ public abstract class ImmutableBiMap<K, V> extends ImmutableBiMapFauxverideShim<
       return this;
     }
 
+    /**
+     * Throws an {@code UnsupportedOperationException}.
+     *
+     * @since 28.2
+     * @deprecated Unsupported by ImmutableBiMap.Builder.
+     */
+    @CanIgnoreReturnValue
+    @Beta
+    @GwtIncompatible // PerfectHashImmutableMap
+    @Override
+    @Deprecated
+    public Builder<K, V> optimizeForLookup() {
+      throw new UnsupportedOperationException("Not available on ImmutableBiMap.Builder");
+    }
+
     @Override
     @CanIgnoreReturnValue
     Builder<K, V> combine(ImmutableMap.Builder<K, V> builder) {
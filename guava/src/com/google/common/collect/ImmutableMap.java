@@ -23,6 +23,7 @@ import static com.google.common.collect.CollectPreconditions.checkNonnegative;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.annotations.concurrent.LazyInit;
@@ -246,6 +247,7 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
    */
   public static class Builder<K, V> {
     @MonotonicNonNull Comparator<? super V> valueComparator;
+    boolean optimizeForLookup;
     Entry<K, V>[] entries;
     int size;
     boolean entriesUsed;
@@ -346,6 +348,26 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
       return this;
     }
 
+    /**
+     * Configures this {@code Builder} to build maps that use less memory and look up keys faster,
+     * at the cost of building more slowly. This suits large maps that are built once, such as
+     * lookup tables of reference data.
+     *
+     * <p>Such a map stores its keys and values in flat arrays, with no object for each entry, and
+     * finds the slot of a key with a minimal perfect hash function, computed for its keys when it
+     * is built, so that looking up a key reads a single slot. Its entries are created when they
+     * are iterated over.
+     *
+     * @since 28.2
+     */
+    @CanIgnoreReturnValue
+    @Beta
+    @GwtIncompatible // PerfectHashImmutableMap
+    public Builder<K, V> optimizeForLookup() {
+      this.optimizeForLookup = true;
+      return this;
+    }
+
     @CanIgnoreReturnValue
     Builder<K, V> combine(Builder<K, V> other) {
       checkNotNull(other);
@@ -389,7 +411,9 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
           return of(entries[0].getKey(), entries[0].getValue());
         default:
           entriesUsed = true;
-          return RegularImmutableMap.fromEntryArray(size, entries);
+          return optimizeForLookup
+              ? PerfectHashImmutableMap.fromEntryArray(size, entries)
+              : RegularImmutableMap.fromEntryArray(size, entries);
       }
     }
 
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ObjectArrays.checkElementsNotNull;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
@@ -428,6 +429,7 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
     private final Comparator<? super E> comparator;
     private E[] elements;
     private int n;
+    private boolean optimizeForLookup;
 
     /**
      * Creates a new builder. The returned builder is equivalent to the builder generated by {@link
@@ -542,6 +544,26 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
       return this;
     }
 
+    /**
+     * Configures this {@code Builder} to build sets that look up elements faster, at the cost of
+     * building more slowly and using more memory. This suits large sets that are built once and
+     * searched often, with {@code contains}, {@code floor}, {@code ceiling} and the like.
+     *
+     * <p>Such a set keeps a second copy of its elements, in the breadth-first order of a balanced
+     * binary search tree, which a search reads with fewer cache misses than a binary search of the
+     * sorted elements. Its iteration order and other behavior are unchanged. The sets derived from
+     * it, such as its subsets, its descending set and deserialized copies, don't have the copy.
+     *
+     * @since 28.2
+     */
+    @CanIgnoreReturnValue
+    @Beta
+    @GwtIncompatible // EytzingerIndex
+    public Builder<E> optimizeForLookup() {
+      this.optimizeForLookup = true;
+      return this;
+    }
+
     @CanIgnoreReturnValue
     @Override
     Builder<E> combine(ImmutableSet.Builder<E> builder) {
@@ -564,8 +586,10 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
         return emptySet(comparator);
       } else {
         forceCopy = true;
-        return new RegularImmutableSortedSet<E>(
-            ImmutableList.asImmutableList(elements, n), comparator);
+        RegularImmutableSortedSet<E> set =
+            new RegularImmutableSortedSet<E>(
+                ImmutableList.<E>asImmutableList(elements, n), comparator);
+        return optimizeForLookup ? set.withLookupIndex() : set;
       }
     }
   }
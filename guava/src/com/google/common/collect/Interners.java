@@ -43,6 +43,7 @@ public final class Interners {
   public static class InternerBuilder {
     private final MapMaker mapMaker = new MapMaker();
     private boolean strong = true;
+    private boolean lockFree;
 
     private InternerBuilder() {}
 
@@ -77,7 +78,27 @@ public final class Interners {
       return this;
     }
 
+    /**
+     * Instructs the {@link InternerBuilder} to build an interner whose lookups and inserts take no
+     * locks. Its instances are divided by hash among independent hash tables, as many as the
+     * {@linkplain #concurrencyLevel concurrency level} rounded up to a power of two, each of which
+     * is resized as needed.
+     *
+     * <p>A weak interner built this way keeps only a weak reference and a hash for each instance,
+     * and uses no reference queue: the references to collected instances are discarded when their
+     * table is next resized, as instances are added.
+     *
+     * @since 28.2
+     */
+    public InternerBuilder lockFree() {
+      this.lockFree = true;
+      return this;
+    }
+
     public <E> Interner<E> build() {
+      if (lockFree) {
+        return new LockFreeInterner<E>(!strong, mapMaker.getConcurrencyLevel());
+      }
       if (!strong) {
         mapMaker.weakKeys();
       }
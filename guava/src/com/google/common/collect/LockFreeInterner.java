@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.math.IntMath;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An {@link Interner} whose lookups and inserts take no locks, built by {@link
+ * Interners.InternerBuilder#lockFree}.
+ *
+ * <p>The instances are divided by hash among a power-of-two number of stripes, each an open
+ * addressing hash table with linear probing. A slot of a table is either empty, or holds an
+ * instance, or a {@link WeakEntry} of one, or the {@link #MOVED} marker of a slot whose content was
+ * copied to the next table of the stripe. Slots only ever go from empty to full, and from either to
+ * {@code MOVED}, so that two threads interning equal instances compete for the same first empty
+ * slot of their probe sequence, and only one of them can fill it.
+ *
+ * <p>A weak entry is only a {@link WeakReference} with a hash, and is not enqueued when its
+ * instance is collected: it stays in its slot until the table is next rebuilt. A table is rebuilt,
+ * into a new table sized for the live instances only, when three quarters of its slots are full.
+ * The thread that installs the new table copies the live entries into it, marking each slot of the
+ * old table {@code MOVED} as it goes. Meanwhile, a thread that meets a {@code MOVED} slot while
+ * probing finishes checking the old table, then marks the empty slot that ended its probe {@code
+ * MOVED} too, so that no equal instance can later be added to the old table, and continues in the
+ * new one.
+ */
+@GwtIncompatible // java.lang.ref.WeakReference
+final class LockFreeInterner<E> implements Interner<E> {
+  /** The maximum number of stripes, as for the segments of {@link MapMakerInternalMap}. */
+  static final int MAX_STRIPES = 1 << 16;
+
+  /** The minimum, and initial, number of slots of a table. */
+  static final int MIN_CAPACITY = 16;
+
+  /** The maximum number of slots of a table. */
+  static final int MAX_CAPACITY = 1 << 30;
+
+  /** Marks a slot whose content, if any, was copied to the next table. */
+  static final Object MOVED = new Object();
+
+  private final boolean weak;
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  LockFreeInterner(boolean weak, int concurrencyLevel) {
+    this.weak = weak;
+    int stripeCount = IntMath.ceilingPowerOfTwo(Math.min(concurrencyLevel, MAX_STRIPES));
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(new Table(MIN_CAPACITY));
+    }
+    this.stripeMask = stripeCount - 1;
+  }
+
+  @Override
+  public E intern(E sample) {
+    int hash = Hashing.smear(sample.hashCode());
+    Stripe stripe = stripeFor(hash);
+    Table table = stripe.table;
+    while (true) {
+      E canonical = intern(stripe, table, sample, hash);
+      if (canonical != null) {
+        return canonical;
+      }
+      table = table.awaitNext(this, stripe);
+    }
+  }
+
+  /**
+   * Returns the canonical instance equal to {@code sample} in {@code table}, adding {@code sample}
+   * if there is none, or returns null if the instance must be looked for in the next table.
+   */
+  private @Nullable E intern(Stripe stripe, Table table, E sample, int hash) {
+    AtomicReferenceArray<Object> slots = table.slots;
+    int mask = slots.length() - 1;
+    boolean moved = false;
+    int index = hash & mask;
+    for (int probes = 0; probes <= mask; ) {
+      Object current = slots.get(index);
+      if (current == null) {
+        if (moved) {
+          // seal the end of the probe sequence, then continue in the next table
+          if (slots.compareAndSet(index, null, MOVED)) {
+            return null;
+          }
+        } else {
+          boolean early = stripe.table != table;
+          if (early && !table.reserveEarlySlot()) {
+            // the table is still being filled by a rebuild, which needs the remaining slots
+            Thread.yield();
+            continue;
+          }
+          Object entry = weak ? new WeakEntry<>(sample, hash) : sample;
+          if (slots.compareAndSet(index, null, entry)) {
+            if (table.count.incrementAndGet() > table.threshold()) {
+              rebuild(stripe, table);
+            }
+            return sample;
+          }
+          if (early) {
+            table.earlyCount.decrementAndGet();
+          }
+        }
+        // the slot was filled or moved in the meantime: look at it again
+        continue;
+      }
+      if (current == MOVED) {
+        moved = true;
+      } else {
+        E element = elementOf(current, hash);
+        if (element != null && element.equals(sample)) {
+          return element;
+        }
+      }
+      index = (index + 1) & mask;
+      probes++;
+    }
+    // every slot is full or moved, so the table must be rebuilt
+    rebuild(stripe, table);
+    return null;
+  }
+
+  /** Returns the live instance in {@code slot}, if its hash is {@code hash}. */
+  @SuppressWarnings("unchecked") // only instances and entries of instances are stored
+  private @Nullable E elementOf(Object slot, int hash) {
+    if (weak) {
+      WeakEntry<E> entry = (WeakEntry<E>) slot;
+      return (entry.hash == hash) ? entry.get() : null;
+    }
+    return (E) slot;
+  }
+
+  /** Returns the live instance in {@code slot}, and its hash in {@code hash[0]}. */
+  @SuppressWarnings("unchecked") // only instances and entries of instances are stored
+  private @Nullable E elementOf(Object slot, int[] hash) {
+    if (weak) {
+      WeakEntry<E> entry = (WeakEntry<E>) slot;
+      hash[0] = entry.hash;
+      return entry.get();
+    }
+    E element = (E) slot;
+    hash[0] = Hashing.smear(element.hashCode());
+    return element;
+  }
+
+  Stripe stripeFor(int hash) {
+    return stripes[((hash * 0x9E3779B9) >>> 16) & stripeMask];
+  }
+
+  /**
+   * Rebuilds {@code table} into a new table sized for its live instances, unless another thread
+   * already started to. This thread then copies the live instances, and installs the new table as
+   * the current table of the stripe.
+   */
+  void rebuild(Stripe stripe, Table table) {
+    if (table.next.get() != null || stripe.table != table) {
+      // a rebuild is in progress, or the table is not the current one yet
+      return;
+    }
+    AtomicReferenceArray<Object> slots = table.slots;
+    int live = 0;
+    int empty = 0;
+    int[] hash = new int[1];
+    for (int i = 0; i < slots.length(); i++) {
+      Object current = slots.get(i);
+      if (current == null) {
+        empty++;
+      } else if (current != MOVED && elementOf(current, hash) != null) {
+        live++;
+      }
+    }
+    // Up to live + empty instances are copied, since the empty slots may be filled until they are
+    // moved, and other threads may fill up to a quarter of the new table before it is installed.
+    int maximumCopies = live + empty;
+    int capacity = MIN_CAPACITY;
+    while (capacity < MAX_CAPACITY
+        && (capacity - (capacity >>> 2) <= maximumCopies || capacity < 2 * live)) {
+      capacity <<= 1;
+    }
+    Table next = new Table(capacity);
+    if (!table.next.compareAndSet(null, next)) {
+      return;
+    }
+    for (int i = 0; i < slots.length(); i++) {
+      Object current = slots.get(i);
+      while (current == null && !slots.compareAndSet(i, null, MOVED)) {
+        current = slots.get(i);
+      }
+      if (current != null && current != MOVED) {
+        // only this thread moves a full slot, and only once its instance is in the next table
+        if (elementOf(current, hash) != null) {
+          next.copy(current, hash[0]);
+        }
+        slots.set(i, MOVED);
+      }
+    }
+    stripe.table = next;
+    if (next.count.get() > next.threshold()) {
+      rebuild(stripe, next);
+    }
+  }
+
+  /** An open addressing table of a stripe. */
+  static final class Table {
+    final AtomicReferenceArray<Object> slots;
+
+    /** The number of slots that were filled, including those whose instance was collected. */
+    final AtomicInteger count = new AtomicInteger();
+
+    /** The number of slots that other threads reserved while this table was being filled. */
+    final AtomicInteger earlyCount = new AtomicInteger();
+
+    /** The table into which this one is being, or was, rebuilt. */
+    final AtomicReference<Table> next = new AtomicReference<>();
+
+    Table(int capacity) {
+      slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    int threshold() {
+      int capacity = slots.length();
+      return capacity - (capacity >>> 2);
+    }
+
+    /**
+     * Reserves a slot for an instance added while this table is still being filled by a rebuild,
+     * unless a quarter of its slots are already reserved, so that the copied instances always fit.
+     */
+    boolean reserveEarlySlot() {
+      if (earlyCount.incrementAndGet() <= (slots.length() >>> 2)) {
+        return true;
+      }
+      earlyCount.decrementAndGet();
+      return false;
+    }
+
+    /**
+     * Adds an instance of the previous table to this one, in which it is known to be absent. Other
+     * threads only add instances that they found neither in the previous table nor in this one.
+     */
+    void copy(Object slot, int hash) {
+      int mask = slots.length() - 1;
+      for (int index = hash & mask; ; index = (index + 1) & mask) {
+        if (slots.get(index) == null && slots.compareAndSet(index, null, slot)) {
+          count.incrementAndGet();
+          return;
+        }
+      }
+    }
+
+    /**
+     * Returns the next table, waiting for it to be created if it is not yet. A thread only waits
+     * when this table is full, until the thread rebuilding it creates the next one.
+     */
+    Table awaitNext(LockFreeInterner<?> interner, Stripe stripe) {
+      Table result;
+      while ((result = next.get()) == null) {
+        interner.rebuild(stripe, this);
+        Thread.yield();
+      }
+      return result;
+    }
+  }
+
+  /** The tables of the instances with the same hash bits. */
+  static final class Stripe {
+    volatile Table table;
+
+    Stripe(Table table) {
+      this.table = table;
+    }
+  }
+
+  /**
+   * An entry of a weak interner: a weak reference to an instance, with its hash, so that most
+   * unequal instances are skipped without being compared.
+   */
+  @VisibleForTesting
+  static final class WeakEntry<E> extends WeakReference<E> {
+    final int hash;
+
+    WeakEntry(E referent, int hash) {
+      super(checkNotNull(referent));
+      this.hash = hash;
+    }
+  }
+
+  /** Returns the number of slots of the current tables that hold a live instance. */
+  @VisibleForTesting
+  int liveCount() {
+    int live = 0;
+    int[] hash = new int[1];
+    for (Stripe stripe : stripes) {
+      AtomicReferenceArray<Object> slots = stripe.table.slots;
+      for (int i = 0; i < slots.length(); i++) {
+        Object current = slots.get(i);
+        if (current != null && current != MOVED && elementOf(current, hash) != null) {
+          live++;
+        }
+      }
+    }
+    return live;
+  }
+
+  /** Returns the number of filled slots of the current tables, including collected instances. */
+  @VisibleForTesting
+  int filledCount() {
+    int filled = 0;
+    for (Stripe stripe : stripes) {
+      filled += stripe.table.count.get();
+    }
+    return filled;
+  }
+
+  /** Returns the total number of slots of the current tables. */
+  @VisibleForTesting
+  int capacity() {
+    int capacity = 0;
+    for (Stripe stripe : stripes) {
+      capacity += stripe.table.slots.length();
+    }
+    return capacity;
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Implementation of {@link ImmutableMap} built by {@link ImmutableMap.Builder#optimizeForLookup},
+ * which finds each key with a minimal perfect hash function.
+ *
+ * <p>The keys and values are stored in two arrays with one slot for each entry. The perfect hash
+ * function maps the hash code of each key to its own slot, so that a lookup reads a single slot of
+ * each array. It is computed by hash-and-displace: the hash codes are split into buckets of about
+ * {@link #BUCKET_SIZE} by a first hash, and each bucket, from the largest to the smallest, is
+ * assigned the first seed for which a second, seeded hash sends its hash codes to distinct free
+ * slots. The seeds are all that the function needs to store, in an {@code int} for each bucket.
+ *
+ * <p>Keys whose hash code is also that of an earlier key cannot have slots of their own. They are
+ * stored after the slots, sorted by hash code, where a lookup that misses its slot searches for
+ * them.
+ */
+@GwtIncompatible
+final class PerfectHashImmutableMap<K, V> extends ImmutableMap<K, V> {
+  /** The average number of hash codes in a bucket, which share a seed. */
+  @VisibleForTesting static final int BUCKET_SIZE = 4;
+
+  /**
+   * The number of seeds tried for a bucket, for each hash code with a slot, before giving up.
+   * Placing the last bucket is expected to take about as many tries as there are slots.
+   */
+  private static final int MAX_TRIES_PER_SLOT = 16;
+
+  /**
+   * Creates an ImmutableMap from the first n entries in entryArray, or returns a {@link
+   * RegularImmutableMap} if too many keys have the same hash code, as in a hash flooding attack.
+   * This implementation does not modify entryArray.
+   */
+  static <K, V> ImmutableMap<K, V> fromEntryArray(int n, Entry<K, V>[] entryArray) {
+    checkPositionIndex(n, entryArray.length);
+    // each hash code in the high bits, and the index of its entry in the low bits
+    long[] hashesAndIndices = new long[n];
+    for (int i = 0; i < n; i++) {
+      Entry<K, V> entry = entryArray[i];
+      checkEntryNotNull(entry.getKey(), entry.getValue());
+      hashesAndIndices[i] = ((long) entry.getKey().hashCode() << 32) | i;
+    }
+    Arrays.sort(hashesAndIndices);
+
+    // The first key with each hash code gets a slot; the others go to the overflow.
+    int[] slotHashes = new int[n];
+    int slotCount = 0;
+    for (int start = 0, end; start < n; start = end) {
+      int hash = hashOf(hashesAndIndices[start]);
+      for (end = start + 1; end < n && hashOf(hashesAndIndices[end]) == hash; end++) {
+        if (end - start >= RegularImmutableMap.MAX_HASH_BUCKET_LENGTH) {
+          // probable hash flooding attack, which RegularImmutableMap knows how to handle
+          return RegularImmutableMap.fromEntryArray(n, entryArray);
+        }
+        Entry<K, V> entry = entryArray[indexOf(hashesAndIndices[end])];
+        for (int i = start; i < end; i++) {
+          Entry<K, V> earlier = entryArray[indexOf(hashesAndIndices[i])];
+          checkNoConflict(!entry.getKey().equals(earlier.getKey()), "key", entry, earlier);
+        }
+      }
+      slotHashes[slotCount++] = hash;
+    }
+
+    int[] seeds = findSeeds(slotHashes, slotCount);
+    if (seeds == null) {
+      return RegularImmutableMap.fromEntryArray(n, entryArray);
+    }
+    Object[] keys = new Object[n];
+    Object[] values = new Object[n];
+    int[] slots = new int[n];
+    int[] overflowHashes = new int[n - slotCount];
+    int overflow = slotCount;
+    for (int i = 0; i < n; i++) {
+      int hash = hashOf(hashesAndIndices[i]);
+      int entryIndex = indexOf(hashesAndIndices[i]);
+      int slot;
+      if (i == 0 || hash != hashOf(hashesAndIndices[i - 1])) {
+        slot = slot(hash, seeds, slotCount);
+      } else {
+        overflowHashes[overflow - slotCount] = hash;
+        slot = overflow++;
+      }
+      keys[slot] = entryArray[entryIndex].getKey();
+      values[slot] = entryArray[entryIndex].getValue();
+      slots[entryIndex] = slot;
+    }
+    return new PerfectHashImmutableMap<>(keys, values, slots, seeds, slotCount, overflowHashes);
+  }
+
+  private static int hashOf(long hashAndIndex) {
+    return (int) (hashAndIndex >> 32);
+  }
+
+  private static int indexOf(long hashAndIndex) {
+    return (int) hashAndIndex;
+  }
+
+  /**
+   * Returns the seed of each bucket of the perfect hash function of the first {@code n} of {@code
+   * hashes}, which are distinct, or null if one of the buckets could not be placed.
+   */
+  private static int @Nullable [] findSeeds(int[] hashes, int n) {
+    int bucketCount = (n + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    // the hashes of each bucket, grouped by a counting sort
+    int[] bucketStarts = new int[bucketCount + 1];
+    for (int i = 0; i < n; i++) {
+      bucketStarts[bucket(hashes[i], bucketCount) + 1]++;
+    }
+    int maxBucketSize = 0;
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      maxBucketSize = Math.max(maxBucketSize, bucketStarts[bucket + 1]);
+      bucketStarts[bucket + 1] += bucketStarts[bucket];
+    }
+    int[] bucketHashes = new int[n];
+    int[] next = Arrays.copyOf(bucketStarts, bucketCount);
+    for (int i = 0; i < n; i++) {
+      bucketHashes[next[bucket(hashes[i], bucketCount)]++] = hashes[i];
+    }
+    // the buckets from the largest to the smallest, grouped by another counting sort
+    int[] sizeStarts = new int[maxBucketSize + 2];
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      sizeStarts[maxBucketSize - bucketSize(bucketStarts, bucket) + 1]++;
+    }
+    for (int i = 1; i < sizeStarts.length; i++) {
+      sizeStarts[i] += sizeStarts[i - 1];
+    }
+    int[] bucketsBySize = new int[bucketCount];
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      bucketsBySize[sizeStarts[maxBucketSize - bucketSize(bucketStarts, bucket)]++] = bucket;
+    }
+
+    int[] seeds = new int[bucketCount];
+    long[] taken = new long[(n + 63) >>> 6];
+    int[] bucketSlots = new int[maxBucketSize];
+    long maxTries = Math.min(Integer.MAX_VALUE, Math.max(1 << 16, (long) MAX_TRIES_PER_SLOT * n));
+    for (int bucket : bucketsBySize) {
+      int start = bucketStarts[bucket];
+      int size = bucketStarts[bucket + 1] - start;
+      if (size == 0) {
+        break;
+      }
+      int seed = 0;
+      while (!tryPlace(bucketHashes, start, size, seed, n, taken, bucketSlots)) {
+        if (++seed >= maxTries) {
+          return null;
+        }
+      }
+      seeds[bucket] = seed;
+    }
+    return seeds;
+  }
+
+  private static int bucketSize(int[] bucketStarts, int bucket) {
+    return bucketStarts[bucket + 1] - bucketStarts[bucket];
+  }
+
+  /**
+   * Marks the slots of a bucket as taken, if with {@code seed} they are distinct and free, and
+   * returns whether they were.
+   */
+  private static boolean tryPlace(
+      int[] hashes, int start, int size, int seed, int n, long[] taken, int[] bucketSlots) {
+    for (int i = 0; i < size; i++) {
+      int slot = reduce(mix(hashes[start + i], seed), n);
+      if ((taken[slot >>> 6] & (1L << slot)) != 0) {
+        return false;
+      }
+      for (int j = 0; j < i; j++) {
+        if (bucketSlots[j] == slot) {
+          return false;
+        }
+      }
+      bucketSlots[i] = slot;
+    }
+    for (int i = 0; i < size; i++) {
+      taken[bucketSlots[i] >>> 6] |= 1L << bucketSlots[i];
+    }
+    return true;
+  }
+
+  private static int bucket(int hash, int bucketCount) {
+    return reduce(mix(hash, -1), bucketCount);
+  }
+
+  private static int slot(int hash, int[] seeds, int slotCount) {
+    return reduce(mix(hash, seeds[bucket(hash, seeds.length)]), slotCount);
+  }
+
+  /** Returns a hash of {@code hash} that is unrelated to the hash with any other seed. */
+  private static int mix(int hash, int seed) {
+    // the finalizer of MurmurHash3, applied to a distinct offset of the hash for each seed
+    int h = hash + (seed + 1) * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /** Maps {@code hash} uniformly to the range [0, n), using its high bits. */
+  private static int reduce(int hash, int n) {
+    return (int) (((hash & 0xFFFFFFFFL) * n) >>> 32);
+  }
+
+  // keys and values by slot, followed by those of the overflow
+  private final transient Object[] keys;
+  private final transient Object[] values;
+  // the slot of each entry, in insertion order
+  private final transient int[] slots;
+  // the seed of each bucket of the perfect hash function
+  private final transient int[] seeds;
+  // the number of keys with a slot of their own
+  private final transient int slotCount;
+  // the hash codes of the keys in the overflow, in order
+  private final transient int[] overflowHashes;
+
+  private PerfectHashImmutableMap(
+      Object[] keys,
+      Object[] values,
+      int[] slots,
+      int[] seeds,
+      int slotCount,
+      int[] overflowHashes) {
+    this.keys = keys;
+    this.values = values;
+    this.slots = slots;
+    this.seeds = seeds;
+    this.slotCount = slotCount;
+    this.overflowHashes = overflowHashes;
+  }
+
+  @Override
+  public V get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = key.hashCode();
+    int slot = slot(hash, seeds, slotCount);
+    if (key.equals(keys[slot])) {
+      return valueAt(slot);
+    }
+    return (overflowHashes.length == 0) ? null : getFromOverflow(key, hash);
+  }
+
+  private @Nullable V getFromOverflow(Object key, int hash) {
+    int i = Arrays.binarySearch(overflowHashes, hash);
+    if (i < 0) {
+      return null;
+    }
+    while (i > 0 && overflowHashes[i - 1] == hash) {
+      i--;
+    }
+    for (; i < overflowHashes.length && overflowHashes[i] == hash; i++) {
+      if (key.equals(keys[slotCount + i])) {
+        return valueAt(slotCount + i);
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked") // only keys are stored in keys
+  K keyAt(int slot) {
+    return (K) keys[slot];
+  }
+
+  @SuppressWarnings("unchecked") // only values are stored in values
+  V valueAt(int slot) {
+    return (V) values[slot];
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    checkNotNull(action);
+    for (int slot : slots) {
+      action.accept(keyAt(slot), valueAt(slot));
+    }
+  }
+
+  @Override
+  public int size() {
+    return slots.length;
+  }
+
+  @Override
+  boolean isPartialView() {
+    return false;
+  }
+
+  @Override
+  ImmutableSet<Entry<K, V>> createEntrySet() {
+    return new ImmutableMapEntrySet.RegularEntrySet<>(this, new EntryList<>(this));
+  }
+
+  private static final class EntryList<K, V> extends ImmutableList<Entry<K, V>> {
+    private final PerfectHashImmutableMap<K, V> map;
+
+    EntryList(PerfectHashImmutableMap<K, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Entry<K, V> get(int index) {
+      int slot = map.slots[index];
+      return Maps.immutableEntry(map.keyAt(slot), map.valueAt(slot));
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+  }
+
+  @Override
+  ImmutableSet<K> createKeySet() {
+    return new KeySet<>(this);
+  }
+
+  private static final class KeySet<K, V> extends IndexedImmutableSet<K> {
+    private final PerfectHashImmutableMap<K, V> map;
+
+    KeySet(PerfectHashImmutableMap<K, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    K get(int index) {
+      return map.keyAt(map.slots[index]);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+      return map.containsKey(object);
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    Object writeReplace() {
+      return new SerializedForm<K>(map);
+    }
+
+    private static class SerializedForm<K> implements Serializable {
+      final ImmutableMap<K, ?> map;
+
+      SerializedForm(ImmutableMap<K, ?> map) {
+        this.map = map;
+      }
+
+      Object readResolve() {
+        return map.keySet();
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+  }
+
+  @Override
+  ImmutableCollection<V> createValues() {
+    return new Values<>(this);
+  }
+
+  private static final class Values<K, V> extends ImmutableList<V> {
+    final PerfectHashImmutableMap<K, V> map;
+
+    Values(PerfectHashImmutableMap<K, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    public V get(int index) {
+      return map.valueAt(map.slots[index]);
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+
+    @Override
+    Object writeReplace() {
+      return new SerializedForm<V>(map);
+    }
+
+    private static class SerializedForm<V> implements Serializable {
+      final ImmutableMap<?, V> map;
+
+      SerializedForm(ImmutableMap<?, V> map) {
+        this.map = map;
+      }
+
+      Object readResolve() {
+        return map.values();
+      }
+
+      private static final long serialVersionUID = 0;
+    }
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.collect.ObjectArrays.checkElementsNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable {@link List} with methods that return modified copies of it, such as {@link #with},
+ * {@link #withAdded} and {@link #without}, in time logarithmic in its size. The copies share all
+ * but a logarithmic number of their internal nodes with the original list, which remains
+ * unchanged, so that keeping many versions of a list takes little more memory than keeping the
+ * latest one. By contrast, each modified copy of an {@link ImmutableList} is a copy of all of it.
+ *
+ * <p>A {@code PersistentList} is a balanced binary tree of its elements, in order, in which each
+ * node records the size of its subtree. {@link #get} thus also takes logarithmic time, rather than
+ * the constant time it takes for an {@code ImmutableList}.
+ *
+ * <p>Like {@code ImmutableList}, {@code PersistentList} does not permit null elements, and the
+ * methods inherited from {@code List} that would modify it throw {@link
+ * UnsupportedOperationException}. {@link #copyOf} and {@link #toImmutableList} convert from and to
+ * other collections in linear time.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class PersistentList<E> extends AbstractList<E> {
+  private static final PersistentList<Object> EMPTY = new PersistentList<>(null);
+
+  /** Returns the empty persistent list. */
+  @SuppressWarnings("unchecked") // the empty list has no elements of the wrong type
+  public static <E> PersistentList<E> of() {
+    return (PersistentList<E>) EMPTY;
+  }
+
+  /**
+   * Returns a persistent list containing the elements of {@code elements}, in order. This returns
+   * {@code elements} itself if it is a {@code PersistentList}.
+   *
+   * @throws NullPointerException if any of {@code elements} is null
+   */
+  @SuppressWarnings("unchecked") // PersistentList is immutable, so the cast is safe
+  public static <E> PersistentList<E> copyOf(Iterable<? extends E> elements) {
+    if (elements instanceof PersistentList) {
+      return (PersistentList<E>) elements;
+    }
+    Object[] array = checkElementsNotNull(Iterables.toArray(elements));
+    return (array.length == 0) ? of() : new PersistentList<>(build(array, 0, array.length));
+  }
+
+  private final @Nullable Node root;
+
+  private PersistentList(@Nullable Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns a list with the elements of this list, except that the one at {@code index} is {@code
+   * element}. This returns this list itself if that element is already {@code element}.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or not less than the size
+   * @throws NullPointerException if {@code element} is null
+   */
+  public PersistentList<E> with(int index, E element) {
+    checkElementIndex(index, size());
+    checkNotNull(element);
+    Node newRoot = set(root, index, element);
+    return (newRoot == root) ? this : new PersistentList<>(newRoot);
+  }
+
+  /**
+   * Returns a list with the elements of this list followed by {@code element}.
+   *
+   * @throws NullPointerException if {@code element} is null
+   */
+  public PersistentList<E> withAdded(E element) {
+    return withAdded(size(), element);
+  }
+
+  /**
+   * Returns a list with the elements of this list, and {@code element} inserted at {@code index}.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or greater than the size
+   * @throws NullPointerException if {@code element} is null
+   */
+  public PersistentList<E> withAdded(int index, E element) {
+    checkPositionIndex(index, size());
+    checkNotNull(element);
+    return new PersistentList<>(insert(root, index, element));
+  }
+
+  /**
+   * Returns a list with the elements of this list except the one at {@code index}.
+   *
+   * @throws IndexOutOfBoundsException if {@code index} is negative or not less than the size
+   */
+  public PersistentList<E> without(int index) {
+    checkElementIndex(index, size());
+    Node newRoot = remove(root, index);
+    return (newRoot == null) ? of() : new PersistentList<>(newRoot);
+  }
+
+  /** Returns an {@link ImmutableList} with the elements of this list, in order. */
+  public ImmutableList<E> toImmutableList() {
+    return ImmutableList.copyOf(this);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only elements of type E are stored
+  public E get(int index) {
+    checkElementIndex(index, size());
+    Node node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return (E) node.element;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+  @Override
+  public UnmodifiableIterator<E> iterator() {
+    return new UnmodifiableIterator<E>() {
+      /*
+       * The nodes whose elements and right subtrees are yet to be returned, the next one on top.
+       * The tree is balanced, so there are fewer than 1.45 * log2(size + 2) of them.
+       */
+      private final Node[] stack = new Node[64];
+      private int depth = -1;
+
+      {
+        pushLeftmost(root);
+      }
+
+      private void pushLeftmost(@Nullable Node node) {
+        for (; node != null; node = node.left) {
+          stack[++depth] = node;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return depth >= 0;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked") // only elements of type E are stored
+      public E next() {
+        if (depth < 0) {
+          throw new NoSuchElementException();
+        }
+        Node node = stack[depth--];
+        pushLeftmost(node.right);
+        return (E) node.element;
+      }
+    };
+  }
+
+  @Override
+  public Object[] toArray() {
+    Object[] array = new Object[size()];
+    fill(root, array, 0);
+    return array;
+  }
+
+  /** An AVL tree node, whose children's heights differ by at most one. */
+  private static final class Node {
+    final Object element;
+    final @Nullable Node left;
+    final @Nullable Node right;
+    final int size;
+    final int height;
+
+    Node(Object element, @Nullable Node left, @Nullable Node right) {
+      this.element = element;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + size(right) + 1;
+      this.height = Math.max(height(left), height(right)) + 1;
+    }
+  }
+
+  private static int size(@Nullable Node node) {
+    return (node == null) ? 0 : node.size;
+  }
+
+  private static int height(@Nullable Node node) {
+    return (node == null) ? 0 : node.height;
+  }
+
+  /** Returns a balanced tree of the elements of {@code array} from {@code from} to {@code to}. */
+  private static @Nullable Node build(Object[] array, int from, int to) {
+    if (from == to) {
+      return null;
+    }
+    int mid = (from + to) >>> 1;
+    return new Node(array[mid], build(array, from, mid), build(array, mid + 1, to));
+  }
+
+  private static int fill(@Nullable Node node, Object[] array, int index) {
+    if (node == null) {
+      return index;
+    }
+    index = fill(node.left, array, index);
+    array[index++] = node.element;
+    return fill(node.right, array, index);
+  }
+
+  private static Node set(Node node, int index, Object element) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      Node newLeft = set(node.left, index, element);
+      return (newLeft == node.left) ? node : new Node(node.element, newLeft, node.right);
+    } else if (index == leftSize) {
+      return (element == node.element) ? node : new Node(element, node.left, node.right);
+    } else {
+      Node newRight = set(node.right, index - leftSize - 1, element);
+      return (newRight == node.right) ? node : new Node(node.element, node.left, newRight);
+    }
+  }
+
+  private static Node insert(@Nullable Node node, int index, Object element) {
+    if (node == null) {
+      return new Node(element, null, null);
+    }
+    int leftSize = size(node.left);
+    if (index <= leftSize) {
+      return balance(node.element, insert(node.left, index, element), node.right);
+    } else {
+      return balance(node.element, node.left, insert(node.right, index - leftSize - 1, element));
+    }
+  }
+
+  private static @Nullable Node remove(Node node, int index) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return balance(node.element, remove(node.left, index), node.right);
+    } else if (index > leftSize) {
+      return balance(node.element, node.left, remove(node.right, index - leftSize - 1));
+    } else if (node.left == null) {
+      return node.right;
+    } else if (node.right == null) {
+      return node.left;
+    } else {
+      Node successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      return balance(successor.element, node.left, remove(node.right, 0));
+    }
+  }
+
+  /**
+   * Returns a node for {@code element} with subtrees {@code left} and {@code right}, whose heights
+   * differ by at most two, rotated if need be so that those of its children differ by at most one.
+   */
+  private static Node balance(Object element, @Nullable Node left, @Nullable Node right) {
+    int difference = height(left) - height(right);
+    if (difference > 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node(left.element, left.left, new Node(element, left.right, right));
+      }
+      Node pivot = left.right;
+      return new Node(
+          pivot.element,
+          new Node(left.element, left.left, pivot.left),
+          new Node(element, pivot.right, right));
+    } else if (difference < -1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node(right.element, new Node(element, left, right.left), right.right);
+      }
+      Node pivot = right.left;
+      return new Node(
+          pivot.element,
+          new Node(element, left, pivot.left),
+          new Node(right.element, pivot.right, right.right));
+    }
+    return new Node(element, left, right);
+  }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable {@link Map} with methods that return modified copies of it, such as {@link #with}
+ * and {@link #without}, in time logarithmic in its size. The copies share all but a logarithmic
+ * number of their internal nodes with the original map, which remains unchanged, so that keeping
+ * many versions of a map takes little more memory than keeping the latest one. By contrast, each
+ * modified copy of an {@link ImmutableMap} is a copy of all of it.
+ *
+ * <p>A {@code PersistentMap} is a hash array mapped trie: a tree of nodes with up to 32 children,
+ * selected by successive groups of five bits of the hash codes of the keys. Its iteration order is
+ * thus determined by the hash codes of its keys, unlike that of an {@code ImmutableMap}.
+ *
+ * <p>Like {@code ImmutableMap}, {@code PersistentMap} does not permit null keys or values, and the
+ * methods inherited from {@code Map} that would modify it throw {@link
+ * UnsupportedOperationException}. {@link #copyOf} and {@link #toImmutableMap} convert from and to
+ * other maps in linear time.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+  private static final PersistentMap<Object, Object> EMPTY =
+      new PersistentMap<>(new BitmapNode(0, new Object[0], 0));
+
+  /** Returns the empty persistent map. */
+  @SuppressWarnings("unchecked") // the empty map has no keys or values of the wrong type
+  public static <K, V> PersistentMap<K, V> of() {
+    return (PersistentMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns a persistent map containing the same entries as {@code map}. This returns {@code map}
+   * itself if it is a {@code PersistentMap}.
+   *
+   * @throws NullPointerException if any key or value in {@code map} is null
+   */
+  @SuppressWarnings("unchecked") // PersistentMap is immutable, so the cast is safe
+  public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    if (map instanceof PersistentMap) {
+      return (PersistentMap<K, V>) map;
+    }
+    PersistentMap<K, V> result = of();
+    for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      result = result.with(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /** The root of the trie, which, unlike the other nodes, is a {@link BitmapNode} of any size. */
+  private final BitmapNode root;
+
+  private transient @MonotonicNonNull Set<Entry<K, V>> entrySet;
+
+  private PersistentMap(BitmapNode root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns a map with the entries of this map, except that {@code key} is mapped to {@code value}.
+   * This returns this map itself if {@code key} is already mapped to {@code value}.
+   *
+   * @throws NullPointerException if {@code key} or {@code value} is null
+   */
+  public PersistentMap<K, V> with(K key, V value) {
+    checkEntryNotNull(key, value);
+    BitmapNode newRoot = (BitmapNode) root.with(key, value, Hashing.smearedHash(key), 0);
+    return (newRoot == root) ? this : new PersistentMap<>(newRoot);
+  }
+
+  /**
+   * Returns a map with the entries of this map except for the one for {@code key}, if any. This
+   * returns this map itself if it contains no entry for {@code key}.
+   */
+  public PersistentMap<K, V> without(@Nullable Object key) {
+    if (key == null) {
+      return this;
+    }
+    Node newRoot = root.without(key, Hashing.smearedHash(key), 0);
+    if (newRoot == root) {
+      return this;
+    }
+    return (newRoot == null) ? of() : new PersistentMap<>((BitmapNode) newRoot);
+  }
+
+  /** Returns an {@link ImmutableMap} with the entries of this map, in the same order. */
+  public ImmutableMap<K, V> toImmutableMap() {
+    return ImmutableMap.copyOf(entrySet());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only values of type V are stored
+  public @Nullable V get(@Nullable Object key) {
+    return (key == null) ? null : (V) root.get(key, Hashing.smearedHash(key), 0);
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return root.size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return root.size == 0;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    Set<Entry<K, V>> result = entrySet;
+    return (result == null) ? entrySet = new EntrySet() : result;
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<K, V>> {
+    @Override
+    public UnmodifiableIterator<Entry<K, V>> iterator() {
+      return new EntryIterator<>(root);
+    }
+
+    @Override
+    public int size() {
+      return root.size;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object object) {
+      if (object instanceof Entry) {
+        Entry<?, ?> entry = (Entry<?, ?>) object;
+        V value = get(entry.getKey());
+        return value != null && value.equals(entry.getValue());
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A node of the trie. Its {@link #array} holds a pair of slots for each of its entries and
+   * children: the key and the value of an entry, or null and a child node.
+   */
+  private abstract static class Node {
+    final Object[] array;
+
+    /** The number of entries in the subtree rooted at this node. */
+    final int size;
+
+    Node(Object[] array, int size) {
+      this.array = array;
+      this.size = size;
+    }
+
+    /** Returns the value for {@code key}, whose smeared hash code is {@code hash}, or null. */
+    abstract @Nullable Object get(Object key, int hash, int shift);
+
+    /**
+     * Returns a node with the entries of this one, and {@code key} mapped to {@code value}, or this
+     * node itself if it already maps them.
+     */
+    abstract Node with(Object key, Object value, int hash, int shift);
+
+    /**
+     * Returns a node with the entries of this one except for that of {@code key}, this node itself
+     * if it has no entry for {@code key}, or null if it would have no entries.
+     */
+    abstract @Nullable Node without(Object key, int hash, int shift);
+
+    /**
+     * Returns whether this node holds a single entry, in its first two slots, so that its parent
+     * can hold that entry in place of it.
+     */
+    boolean isSingleEntry() {
+      return size == 1 && array[0] != null;
+    }
+  }
+
+  /**
+   * A node whose entries and children are selected by five bits of the hash codes of their keys,
+   * at {@code shift}, and stored in the order of those bits. The bit of {@link #bitmap} for each of
+   * the 32 possible values of the five bits tells whether any of them is present.
+   */
+  private static final class BitmapNode extends Node {
+    final int bitmap;
+
+    BitmapNode(int bitmap, Object[] array, int size) {
+      super(array, size);
+      this.bitmap = bitmap;
+    }
+
+    /** Returns the index in {@link #array} of the pair of slots for {@code bit}. */
+    int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    @Nullable
+    Object get(Object key, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = index(bit);
+      Object storedKey = array[index];
+      if (storedKey == null) {
+        return ((Node) array[index + 1]).get(key, hash, shift + 5);
+      }
+      return key.equals(storedKey) ? array[index + 1] : null;
+    }
+
+    @Override
+    Node with(Object key, Object value, int hash, int shift) {
+      int bit = bit(hash, shift);
+      int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newArray = new Object[array.length + 2];
+        System.arraycopy(array, 0, newArray, 0, index);
+        newArray[index] = key;
+        newArray[index + 1] = value;
+        System.arraycopy(array, index, newArray, index + 2, array.length - index);
+        return new BitmapNode(bitmap | bit, newArray, size + 1);
+      }
+      Object storedKey = array[index];
+      Object storedValue = array[index + 1];
+      if (storedKey == null) {
+        Node child = (Node) storedValue;
+        Node newChild = child.with(key, value, hash, shift + 5);
+        return (newChild == child)
+            ? this
+            : replace(index, null, newChild, size + newChild.size - child.size);
+      } else if (key.equals(storedKey)) {
+        return (value == storedValue) ? this : replace(index, key, value, size);
+      } else {
+        Node newChild =
+            newNode(
+                storedKey,
+                storedValue,
+                Hashing.smearedHash(storedKey),
+                key,
+                value,
+                hash,
+                shift + 5);
+        return replace(index, null, newChild, size + 1);
+      }
+    }
+
+    @Override
+    @Nullable
+    Node without(Object key, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = index(bit);
+      Object storedKey = array[index];
+      if (storedKey == null) {
+        Node child = (Node) array[index + 1];
+        Node newChild = child.without(key, hash, shift + 5);
+        if (newChild == child) {
+          return this;
+        } else if (newChild == null) {
+          return remove(bit, index);
+        } else if (newChild.isSingleEntry()) {
+          // Keep the trie as shallow as possible by moving a lone entry up to this node.
+          return replace(index, newChild.array[0], newChild.array[1], size - 1);
+        } else {
+          return replace(index, null, newChild, size - 1);
+        }
+      }
+      return key.equals(storedKey) ? remove(bit, index) : this;
+    }
+
+    private BitmapNode replace(int index, @Nullable Object key, Object value, int newSize) {
+      Object[] newArray = array.clone();
+      newArray[index] = key;
+      newArray[index + 1] = value;
+      return new BitmapNode(bitmap, newArray, newSize);
+    }
+
+    private @Nullable BitmapNode remove(int bit, int index) {
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+      return new BitmapNode(bitmap & ~bit, newArray, size - 1);
+    }
+  }
+
+  /** A node for the entries of keys whose smeared hash codes are all {@link #hash}. */
+  private static final class CollisionNode extends Node {
+    final int hash;
+
+    CollisionNode(int hash, Object[] array) {
+      super(array, array.length / 2);
+      this.hash = hash;
+    }
+
+    @Override
+    @Nullable
+    Object get(Object key, int hash, int shift) {
+      if (hash == this.hash) {
+        for (int i = 0; i < array.length; i += 2) {
+          if (key.equals(array[i])) {
+            return array[i + 1];
+          }
+        }
+      }
+      return null;
+    }
+
+    @Override
+    Node with(Object key, Object value, int hash, int shift) {
+      if (hash != this.hash) {
+        // Put this node below a new node that can tell the hash codes apart.
+        return new BitmapNode(bit(this.hash, shift), new Object[] {null, this}, size)
+            .with(key, value, hash, shift);
+      }
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          if (value == array[i + 1]) {
+            return this;
+          }
+          Object[] newArray = array.clone();
+          newArray[i + 1] = value;
+          return new CollisionNode(hash, newArray);
+        }
+      }
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = value;
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    @Nullable
+    Node without(Object key, int hash, int shift) {
+      if (hash != this.hash) {
+        return this;
+      }
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          if (array.length == 2) {
+            return null;
+          }
+          Object[] newArray = new Object[array.length - 2];
+          System.arraycopy(array, 0, newArray, 0, i);
+          System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+          return new CollisionNode(hash, newArray);
+        }
+      }
+      return this;
+    }
+  }
+
+  /** Returns the bit of a {@link BitmapNode} at {@code shift} for {@code hash}. */
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & 31);
+  }
+
+  /** Returns a node, at {@code shift}, for two entries whose keys are different. */
+  private static Node newNode(
+      Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift) {
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+    }
+    // Some five bits of the hash codes differ, so this recursion ends by shift 30.
+    int bit1 = bit(hash1, shift);
+    int bit2 = bit(hash2, shift);
+    if (bit1 == bit2) {
+      Node child = newNode(key1, value1, hash1, key2, value2, hash2, shift + 5);
+      return new BitmapNode(bit1, new Object[] {null, child}, 2);
+    }
+    Object[] array =
+        (Integer.compareUnsigned(bit1, bit2) < 0)
+            ? new Object[] {key1, value1, key2, value2}
+            : new Object[] {key2, value2, key1, value1};
+    return new BitmapNode(bit1 | bit2, array, 2);
+  }
+
+  /** An iterator over the entries of a trie, in the order of their slots. */
+  private static final class EntryIterator<K, V> extends UnmodifiableIterator<Entry<K, V>> {
+    /*
+     * The arrays of the nodes from the root to the current one, and the index of the next slot of
+     * each. There are at most 7 levels of BitmapNodes, for shifts 0 to 30, and a CollisionNode.
+     */
+    private final Object[][] arrays = new Object[8][];
+    private final int[] indices = new int[8];
+    private int depth = 0;
+    private @Nullable Entry<K, V> next;
+
+    EntryIterator(Node root) {
+      arrays[0] = root.array;
+      next = computeNext();
+    }
+
+    @SuppressWarnings("unchecked") // only keys of type K and values of type V are stored
+    private @Nullable Entry<K, V> computeNext() {
+      while (depth >= 0) {
+        Object[] array = arrays[depth];
+        int index = indices[depth];
+        if (index == array.length) {
+          depth--;
+          continue;
+        }
+        indices[depth] = index + 2;
+        Object key = array[index];
+        if (key != null) {
+          return Maps.immutableEntry((K) key, (V) array[index + 1]);
+        }
+        depth++;
+        arrays[depth] = ((Node) array[index + 1]).array;
+        indices[depth] = 0;
+      }
+      return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      Entry<K, V> result = next;
+      if (result == null) {
+        throw new NoSuchElementException();
+      }
+      next = computeNext();
+      return result;
+    }
+  }
+}
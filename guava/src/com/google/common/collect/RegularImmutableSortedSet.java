@@ -45,9 +45,26 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
 
   private final transient ImmutableList<E> elements;
 
+  /** An index that searches the elements faster, if this set was built to have one. */
+  private final transient @Nullable EytzingerIndex lookupIndex;
+
   RegularImmutableSortedSet(ImmutableList<E> elements, Comparator<? super E> comparator) {
+    this(elements, comparator, null);
+  }
+
+  private RegularImmutableSortedSet(
+      ImmutableList<E> elements,
+      Comparator<? super E> comparator,
+      @Nullable EytzingerIndex lookupIndex) {
     super(comparator);
     this.elements = elements;
+    this.lookupIndex = lookupIndex;
+  }
+
+  /** Returns a copy of this set that searches its elements with an {@link EytzingerIndex}. */
+  @GwtIncompatible // EytzingerIndex
+  RegularImmutableSortedSet<E> withLookupIndex() {
+    return new RegularImmutableSortedSet<E>(elements, comparator, new EytzingerIndex(elements));
   }
 
   @Override
@@ -153,7 +170,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   private int unsafeBinarySearch(Object key) throws ClassCastException {
-    return Collections.binarySearch(elements, key, unsafeComparator());
+    return (lookupIndex == null)
+        ? Collections.binarySearch(elements, key, unsafeComparator())
+        : lookupIndex.search(key, unsafeComparator());
   }
 
   @Override
@@ -249,7 +268,7 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   int headIndex(E toElement, boolean inclusive) {
-    int index = Collections.binarySearch(elements, checkNotNull(toElement), comparator());
+    int index = unsafeBinarySearch(checkNotNull(toElement));
     if (index >= 0) {
       return inclusive ? index + 1 : index;
     } else {
@@ -269,7 +288,7 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   }
 
   int tailIndex(E fromElement, boolean inclusive) {
-    int index = Collections.binarySearch(elements, checkNotNull(fromElement), comparator());
+    int index = unsafeBinarySearch(checkNotNull(fromElement));
     if (index >= 0) {
       return inclusive ? index : index + 1;
     } else {
@@ -303,7 +322,7 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
     }
     int position;
     try {
-      position = Collections.binarySearch(elements, target, unsafeComparator());
+      position = unsafeBinarySearch(target);
     } catch (ClassCastException e) {
       return -1;
     }
@@ -45,6 +45,7 @@ import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.Spliterator;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -725,10 +726,14 @@ public final class Sets {
   public static <E> SetView<E> union(final Set<? extends E> set1, final Set<? extends E> set2) {
     checkNotNull(set1, "set1");
     checkNotNull(set2, "set2");
+    final boolean merge = sortedAlike(set1, set2);
 
     return new SetView<E>() {
       @Override
       public int size() {
+        if (merge) {
+          return set1.size() + Iterators.size(sortedDifferenceIterator(set2, set1));
+        }
         int size = set1.size();
         for (E e : set2) {
           if (!set1.contains(e)) {
@@ -745,6 +750,10 @@ public final class Sets {
 
       @Override
       public UnmodifiableIterator<E> iterator() {
+        if (merge) {
+          return Iterators.unmodifiableIterator(
+              Iterators.<E>concat(set1.iterator(), sortedDifferenceIterator(set2, set1)));
+        }
         return new AbstractIterator<E>() {
           final Iterator<? extends E> itr1 = set1.iterator();
           final Iterator<? extends E> itr2 = set2.iterator();
@@ -765,6 +774,14 @@ public final class Sets {
         };
       }
 
+      @Override
+      public Spliterator<E> spliterator() {
+        return CollectSpliterators.concat(
+            set1.spliterator(),
+            CollectSpliterators.filter(set2.spliterator(), e -> !set1.contains(e)),
+            Spliterator.DISTINCT);
+      }
+
       @Override
       public Stream<E> stream() {
         return Stream.concat(set1.stream(), set2.stream().filter(e -> !set1.contains(e)));
@@ -824,10 +841,14 @@ public final class Sets {
   public static <E> SetView<E> intersection(final Set<E> set1, final Set<?> set2) {
     checkNotNull(set1, "set1");
     checkNotNull(set2, "set2");
+    final boolean merge = sortedAlike(set1, set2);
 
     return new SetView<E>() {
       @Override
       public UnmodifiableIterator<E> iterator() {
+        if (merge) {
+          return sortedIntersectionIterator(set1, set2);
+        }
         return new AbstractIterator<E>() {
           final Iterator<E> itr = set1.iterator();
 
@@ -844,6 +865,11 @@ public final class Sets {
         };
       }
 
+      @Override
+      public Spliterator<E> spliterator() {
+        return CollectSpliterators.filter(set1.spliterator(), set2::contains);
+      }
+
       @Override
       public Stream<E> stream() {
         return set1.stream().filter(set2::contains);
@@ -856,6 +882,9 @@ public final class Sets {
 
       @Override
       public int size() {
+        if (merge) {
+          return Iterators.size(iterator());
+        }
         int size = 0;
         for (E e : set1) {
           if (set2.contains(e)) {
@@ -867,7 +896,12 @@ public final class Sets {
 
       @Override
       public boolean isEmpty() {
-        return Collections.disjoint(set2, set1);
+        return merge ? !iterator().hasNext() : Collections.disjoint(set2, set1);
+      }
+
+      @Override
+      public ImmutableSet<E> immutableCopy() {
+        return merge ? sortedCopy(set1, iterator()) : super.immutableCopy();
       }
 
       @Override
@@ -895,10 +929,14 @@ public final class Sets {
   public static <E> SetView<E> difference(final Set<E> set1, final Set<?> set2) {
     checkNotNull(set1, "set1");
     checkNotNull(set2, "set2");
+    final boolean merge = sortedAlike(set1, set2);
 
     return new SetView<E>() {
       @Override
       public UnmodifiableIterator<E> iterator() {
+        if (merge) {
+          return sortedDifferenceIterator(set1, set2);
+        }
         return new AbstractIterator<E>() {
           final Iterator<E> itr = set1.iterator();
 
@@ -915,6 +953,11 @@ public final class Sets {
         };
       }
 
+      @Override
+      public Spliterator<E> spliterator() {
+        return CollectSpliterators.filter(set1.spliterator(), e -> !set2.contains(e));
+      }
+
       @Override
       public Stream<E> stream() {
         return set1.stream().filter(e -> !set2.contains(e));
@@ -927,6 +970,9 @@ public final class Sets {
 
       @Override
       public int size() {
+        if (merge) {
+          return Iterators.size(iterator());
+        }
         int size = 0;
         for (E e : set1) {
           if (!set2.contains(e)) {
@@ -938,7 +984,12 @@ public final class Sets {
 
       @Override
       public boolean isEmpty() {
-        return set2.containsAll(set1);
+        return merge ? !iterator().hasNext() : set2.containsAll(set1);
+      }
+
+      @Override
+      public ImmutableSet<E> immutableCopy() {
+        return merge ? sortedCopy(set1, iterator()) : super.immutableCopy();
       }
 
       @Override
@@ -948,6 +999,280 @@ public final class Sets {
     };
   }
 
+  /**
+   * Returns the intersection of all of {@code sets}, which must be sorted by the same comparator,
+   * as an {@link ImmutableSortedSet} with that comparator.
+   *
+   * <p>Rather than look up each element of one set in all the others, this starts from the smallest
+   * set and leapfrogs through the sorted sets, skipping ahead in each one to the next element that
+   * is at least as large as the largest seen so far, as is commonly done to intersect the posting
+   * lists of a search index. The elements of an {@link ImmutableSortedSet} are skipped by galloping
+   * (exponential) search, and those of any other {@link NavigableSet} by {@link
+   * NavigableSet#ceiling}, so when the sets are large but their intersection is small, this is much
+   * faster than repeated calls to {@link #intersection}. The elements of any other {@code
+   * SortedSet} are copied first, in time linear in its size.
+   *
+   * <p>If the comparator is inconsistent with equals, each element of the returned set is the one
+   * of the first of {@code sets}, among the equivalent elements of all the sets.
+   *
+   * @throws IllegalArgumentException if {@code sets} is empty, or if its sets do not all have the
+   *     same comparator
+   * @since 28.2
+   */
+  @Beta
+  public static <E> ImmutableSortedSet<E> intersectAll(Iterable<? extends SortedSet<E>> sets) {
+    List<SortedSet<E>> sortedSets = Lists.newArrayList(sets);
+    checkArgument(!sortedSets.isEmpty(), "no sets to intersect");
+    Comparator<? super E> comparator = SortedIterables.comparator(sortedSets.get(0));
+    for (SortedSet<E> set : sortedSets) {
+      checkArgument(
+          SortedIterables.hasSameComparator(comparator, set),
+          "sets have different comparators: %s",
+          sortedSets);
+    }
+    SortedSet<E> first = sortedSets.get(0);
+    Collections.sort(sortedSets, (a, b) -> Integer.compare(a.size(), b.size()));
+
+    int k = sortedSets.size();
+    @SuppressWarnings("unchecked") // only ever contains cursors over the elements of sortedSets
+    SortedCursor<E>[] cursors = new SortedCursor[k];
+    int firstIndex = -1;
+    for (int i = 0; i < k; i++) {
+      SortedSet<E> set = sortedSets.get(i);
+      if (set.isEmpty()) {
+        return ImmutableSortedSet.emptySet(comparator);
+      }
+      cursors[i] = SortedCursor.of(set, comparator);
+      if (set == first && firstIndex < 0) {
+        firstIndex = i;
+      }
+    }
+
+    ImmutableSortedSet.Builder<E> builder = new ImmutableSortedSet.Builder<E>(comparator);
+    // candidate is the current element of the last matched cursors before cursors[i], cyclically.
+    E candidate = cursors[0].current();
+    int matched = 1;
+    int i = 1 % k;
+    while (true) {
+      if (matched == k) {
+        // every cursor is at an element equivalent to candidate
+        builder.add(cursors[firstIndex].current());
+        if (!cursors[i].next()) {
+          break;
+        }
+      } else if (!cursors[i].seek(candidate)) {
+        break;
+      }
+      E element = cursors[i].current();
+      if (matched < k && comparator.compare(element, candidate) == 0) {
+        matched++;
+      } else {
+        candidate = element;
+        matched = 1;
+      }
+      i = (i + 1) % k;
+    }
+    return builder.build();
+  }
+
+  /**
+   * A position in the elements of a nonempty sorted set, which {@link #intersectAll} moves forward
+   * through the set.
+   */
+  private abstract static class SortedCursor<E> {
+    /** Returns a cursor at the first element of {@code set}, which must not be empty. */
+    static <E> SortedCursor<E> of(SortedSet<E> set, Comparator<? super E> comparator) {
+      if (set instanceof ImmutableSortedSet) {
+        return new ListCursor<E>(((ImmutableSortedSet<E>) set).asList(), comparator);
+      } else if (set instanceof NavigableSet) {
+        return new NavigableCursor<E>((NavigableSet<E>) set);
+      }
+      @SuppressWarnings("unchecked") // toArray returns the elements of set
+      List<E> list = (List<E>) Arrays.asList(set.toArray());
+      return new ListCursor<E>(list, comparator);
+    }
+
+    /** Returns the element at this cursor. */
+    abstract E current();
+
+    /** Moves to the next element, returning {@code false} if there is none. */
+    abstract boolean next();
+
+    /**
+     * Moves to the first element, from this one on, that is not less than {@code target}, returning
+     * {@code false} if there is none.
+     */
+    abstract boolean seek(E target);
+  }
+
+  /** A cursor over a sorted list, which seeks by galloping search. */
+  private static final class ListCursor<E> extends SortedCursor<E> {
+    final List<E> list;
+    final Comparator<? super E> comparator;
+    int position;
+
+    ListCursor(List<E> list, Comparator<? super E> comparator) {
+      this.list = list;
+      this.comparator = comparator;
+    }
+
+    @Override
+    E current() {
+      return list.get(position);
+    }
+
+    @Override
+    boolean next() {
+      return ++position < list.size();
+    }
+
+    @Override
+    boolean seek(E target) {
+      position = gallop(list, position, target, comparator);
+      return position < list.size();
+    }
+  }
+
+  /**
+   * A cursor over a navigable set, which seeks by {@link NavigableSet#ceiling}, as its elements
+   * cannot be indexed.
+   */
+  private static final class NavigableCursor<E> extends SortedCursor<E> {
+    final NavigableSet<E> set;
+    @Nullable E current;
+
+    NavigableCursor(NavigableSet<E> set) {
+      this.set = set;
+      this.current = set.first();
+    }
+
+    @Override
+    E current() {
+      return current;
+    }
+
+    @Override
+    boolean next() {
+      current = set.higher(current);
+      return current != null;
+    }
+
+    @Override
+    boolean seek(E target) {
+      current = set.ceiling(target);
+      return current != null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code set1} and {@code set2} are both {@link ImmutableSortedSet}s with
+   * the same comparator, so that the views of their union, intersection and difference can merge
+   * their element lists rather than look up each element of one set in the other.
+   */
+  private static boolean sortedAlike(Set<?> set1, Set<?> set2) {
+    return set1 instanceof ImmutableSortedSet
+        && set2 instanceof ImmutableSortedSet
+        && ((ImmutableSortedSet<?>) set1)
+            .comparator()
+            .equals(((ImmutableSortedSet<?>) set2).comparator());
+  }
+
+  /** Returns the comparator of a set for which {@link #sortedAlike} returned {@code true}. */
+  @SuppressWarnings("unchecked") // both sets contain elements that this comparator accepts
+  private static Comparator<Object> sortedComparator(Set<?> set) {
+    return (Comparator<Object>) ((ImmutableSortedSet<?>) set).comparator();
+  }
+
+  /**
+   * Returns the index of the first element of {@code list}, from index {@code from} on, that is not
+   * less than {@code key}, or the size of the list if there is none. This looks at the elements at
+   * exponentially growing distances from {@code from} before a binary search between the last two,
+   * so it takes time logarithmic in the distance skipped rather than in the size of the list.
+   */
+  private static <E> int gallop(
+      List<? extends E> list, int from, E key, Comparator<? super E> comparator) {
+    int size = list.size();
+    int low = from;
+    int high = from;
+    int step = 1;
+    // All the elements before low, from index from on, are less than key.
+    while (high < size && comparator.compare(list.get(high), key) < 0) {
+      low = high + 1;
+      high = (step >= size - low) ? size : low + step;
+      step <<= 1;
+    }
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(list.get(mid), key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Iterates over the intersection of two sets for which {@link #sortedAlike} is true. */
+  private static <E> UnmodifiableIterator<E> sortedIntersectionIterator(Set<E> set1, Set<?> set2) {
+    final List<E> list1 = ((ImmutableSortedSet<E>) set1).asList();
+    final List<?> list2 = ((ImmutableSortedSet<?>) set2).asList();
+    final Comparator<Object> comparator = sortedComparator(set1);
+    return new AbstractIterator<E>() {
+      int index1 = 0;
+      int index2 = 0;
+
+      @Override
+      protected E computeNext() {
+        while (index1 < list1.size() && index2 < list2.size()) {
+          E e = list1.get(index1);
+          int cmp = comparator.compare(e, list2.get(index2));
+          if (cmp == 0) {
+            index1++;
+            index2++;
+            return e;
+          } else if (cmp < 0) {
+            index1 = gallop(list1, index1 + 1, list2.get(index2), comparator);
+          } else {
+            index2 = gallop(list2, index2 + 1, e, comparator);
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  /** Iterates over the difference of two sets for which {@link #sortedAlike} is true. */
+  private static <E> UnmodifiableIterator<E> sortedDifferenceIterator(
+      Set<? extends E> set1, Set<?> set2) {
+    final List<? extends E> list1 = ((ImmutableSortedSet<? extends E>) set1).asList();
+    final List<?> list2 = ((ImmutableSortedSet<?>) set2).asList();
+    final Comparator<Object> comparator = sortedComparator(set1);
+    return new AbstractIterator<E>() {
+      int index1 = 0;
+      int index2 = 0;
+
+      @Override
+      protected E computeNext() {
+        while (index1 < list1.size()) {
+          E e = list1.get(index1++);
+          index2 = gallop(list2, index2, e, comparator);
+          if (index2 == list2.size() || comparator.compare(list2.get(index2), e) != 0) {
+            return e;
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  /** Copies the sorted elements of a view of sets for which {@link #sortedAlike} is true. */
+  private static <E> ImmutableSet<E> sortedCopy(Set<E> set1, Iterator<E> elements) {
+    // The elements are already sorted, which the builder's sort takes linear time to find out.
+    return new ImmutableSortedSet.Builder<E>(((ImmutableSortedSet<E>) set1).comparator())
+        .addAll(elements)
+        .build();
+  }
+
   /**
    * Returns an unmodifiable <b>view</b> of the symmetric difference of two sets. The returned set
    * contains all elements that are contained in either {@code set1} or {@code set2} but not in
@@ -989,6 +1314,14 @@ public final class Sets {
         };
       }
 
+      @Override
+      public Spliterator<E> spliterator() {
+        return CollectSpliterators.concat(
+            CollectSpliterators.filter(set1.spliterator(), e -> !set2.contains(e)),
+            CollectSpliterators.filter(set2.spliterator(), e -> !set1.contains(e)),
+            Spliterator.DISTINCT);
+      }
+
       @Override
       public int size() {
         int size = 0;
@@ -0,0 +1,494 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash map from {@code long} keys to non-null values, which stores the keys in an array of {@code
+ * long} rather than as boxed entries, so that its operations allocate nothing once the map has
+ * grown to its size.
+ *
+ * <p>The entries are stored in an open addressing table with linear probing, which is resized to
+ * stay at most 70% full. As in {@link com.google.common.collect.ImmutableSet ImmutableSet}, an
+ * insertion that probes unusually many slots is taken as a sign of hash flooding; the table is then
+ * rehashed with a randomly chosen hash function.
+ *
+ * <p>The entries are iterated over, in no particular order, with a {@link Cursor}:
+ *
+ * <pre>{@code
+ * for (LongObjectMap<V>.Cursor cursor = map.cursor(); cursor.advance(); ) {
+ *   use(cursor.key(), cursor.value());
+ * }
+ * }</pre>
+ *
+ * <p>A map is not thread-safe. An {@linkplain #immutableCopy immutable copy} can be shared safely
+ * if its values can, and throws {@link UnsupportedOperationException} when it would be modified.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class LongObjectMap<V> {
+  /** Returns a new, empty map. */
+  public static <V> LongObjectMap<V> create() {
+    return create(0);
+  }
+
+  /**
+   * Returns a new, empty map that can hold {@code expectedSize} entries without being resized.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static <V> LongObjectMap<V> create(int expectedSize) {
+    return new LongObjectMap<V>(PrimitiveHashing.tableSize(expectedSize), true);
+  }
+
+  /** Returns a new map with the single entry of {@code key} and {@code value}. */
+  public static <V> LongObjectMap<V> of(long key, V value) {
+    LongObjectMap<V> map = create(1);
+    map.put(key, value);
+    return map;
+  }
+
+  /** Returns a new map with the same entries as {@code map}. */
+  public static <V> LongObjectMap<V> copyOf(LongObjectMap<? extends V> map) {
+    LongObjectMap<V> copy = create(map.size);
+    copy.putAll(map);
+    return copy;
+  }
+
+  /** The keys of the table, 0 marking an empty slot. The entry of key 0 is stored separately. */
+  private long[] keys;
+
+  private @Nullable Object[] values;
+  private @Nullable V zeroValue;
+  private int size;
+  @VisibleForTesting long multiplier = PrimitiveHashing.LONG_MULTIPLIER;
+  private int shift;
+  private int maxSize;
+  private int maxRun;
+  private final boolean mutable;
+
+  /** The number of insertions and removals, which invalidate the cursors. */
+  private int modCount;
+
+  private LongObjectMap(int tableSize, boolean mutable) {
+    allocate(tableSize);
+    this.mutable = mutable;
+  }
+
+  private void allocate(int tableSize) {
+    keys = new long[tableSize];
+    values = new Object[tableSize];
+    shift = PrimitiveHashing.longShift(tableSize);
+    maxSize = PrimitiveHashing.maxSize(tableSize);
+    maxRun = PrimitiveHashing.maxRun(tableSize);
+  }
+
+  /** Returns the number of entries in this map. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns {@code true} if this map has no entries. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns {@code true} if this map has an entry for {@code key}. */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /** Returns the value of {@code key}, or {@code null} if this map has no entry for it. */
+  public @Nullable V get(long key) {
+    if (key == 0) {
+      return zeroValue;
+    }
+    return valueAt(indexOf(key));
+  }
+
+  /**
+   * Associates {@code value} with {@code key}, replacing any previous value.
+   *
+   * @return the previous value of {@code key}, or {@code null} if this map had no entry for it
+   */
+  @CanIgnoreReturnValue
+  public @Nullable V put(long key, V value) {
+    checkNotNull(value);
+    checkMutable();
+    if (key == 0) {
+      V previous = zeroValue;
+      if (previous == null) {
+        addZeroKey();
+      }
+      zeroValue = value;
+      return previous;
+    }
+    int index = indexOf(key);
+    if (keys[index] == 0) {
+      insert(index, key, value);
+      return null;
+    }
+    V previous = valueAt(index);
+    values[index] = value;
+    return previous;
+  }
+
+  /**
+   * Associates {@code value} with {@code key} if this map has no entry for it.
+   *
+   * @return the existing value of {@code key}, or {@code null} if the entry was added
+   */
+  @CanIgnoreReturnValue
+  public @Nullable V putIfAbsent(long key, V value) {
+    checkNotNull(value);
+    checkMutable();
+    if (key == 0) {
+      V existing = zeroValue;
+      if (existing == null) {
+        addZeroKey();
+        zeroValue = value;
+      }
+      return existing;
+    }
+    int index = indexOf(key);
+    if (keys[index] != 0) {
+      return valueAt(index);
+    }
+    insert(index, key, value);
+    return null;
+  }
+
+  /** Copies all the entries of {@code map} into this map, replacing the values of equal keys. */
+  public void putAll(LongObjectMap<? extends V> map) {
+    checkMutable();
+    if (map.zeroValue != null) {
+      put(0, map.zeroValue);
+    }
+    long[] otherKeys = map.keys;
+    for (int i = 0; i < otherKeys.length; i++) {
+      if (otherKeys[i] != 0) {
+        put(otherKeys[i], map.valueAt(i));
+      }
+    }
+  }
+
+  /**
+   * Removes the entry of {@code key}, if this map has one.
+   *
+   * @return the removed value, or {@code null} if this map had no entry for {@code key}
+   */
+  @CanIgnoreReturnValue
+  public @Nullable V remove(long key) {
+    checkMutable();
+    if (key == 0) {
+      V previous = zeroValue;
+      if (previous != null) {
+        zeroValue = null;
+        size--;
+        modCount++;
+      }
+      return previous;
+    }
+    int index = indexOf(key);
+    if (keys[index] == 0) {
+      return null;
+    }
+    V previous = valueAt(index);
+    removeAt(index);
+    return previous;
+  }
+
+  /** Removes all the entries of this map, keeping its capacity. */
+  public void clear() {
+    checkMutable();
+    Arrays.fill(keys, 0);
+    Arrays.fill(values, null);
+    zeroValue = null;
+    size = 0;
+    modCount++;
+  }
+
+  /** Returns the keys of this map, in the order of its {@linkplain #cursor cursors}. */
+  public ImmutableLongArray keys() {
+    ImmutableLongArray.Builder builder = ImmutableLongArray.builder(size);
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      builder.add(cursor.key());
+    }
+    return builder.build();
+  }
+
+  /** Returns the values of this map, in the order of its {@linkplain #cursor cursors}. */
+  public ImmutableList<V> values() {
+    ImmutableList.Builder<V> builder = ImmutableList.builderWithExpectedSize(size);
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      builder.add(cursor.value());
+    }
+    return builder.build();
+  }
+
+  /** Returns a new cursor, positioned before the first entry of this map. */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Returns an immutable map with the same entries as this one, whose table is no larger than
+   * needed. Returns this map if it is already immutable.
+   */
+  public LongObjectMap<V> immutableCopy() {
+    if (!mutable) {
+      return this;
+    }
+    LongObjectMap<V> copy = copyOf(this);
+    return new LongObjectMap<V>(copy, false);
+  }
+
+  private LongObjectMap(LongObjectMap<V> map, boolean mutable) {
+    this.keys = map.keys;
+    this.values = map.values;
+    this.zeroValue = map.zeroValue;
+    this.size = map.size;
+    this.multiplier = map.multiplier;
+    this.shift = map.shift;
+    this.maxSize = map.maxSize;
+    this.maxRun = map.maxRun;
+    this.mutable = mutable;
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is a {@code LongObjectMap} with the same entries as this
+   * one, whether each is mutable or not.
+   */
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (!(object instanceof LongObjectMap)) {
+      return false;
+    }
+    LongObjectMap<?> that = (LongObjectMap<?>) object;
+    if (size != that.size) {
+      return false;
+    }
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (!cursor.value().equals(that.get(cursor.key()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the same hash code as a {@code Map<Long, V>} with the same entries. */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      hash += Longs.hashCode(cursor.key()) ^ cursor.value().hashCode();
+    }
+    return hash;
+  }
+
+  /** Returns a string representation of this map, such as {@code {1=a, 2=b}}. */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size * 8).append('{');
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (builder.length() > 1) {
+        builder.append(", ");
+      }
+      builder.append(cursor.key()).append('=').append(cursor.value());
+    }
+    return builder.append('}').toString();
+  }
+
+  /**
+   * A position in the iteration over the entries of a map. The entries are visited in no
+   * particular order, and a cursor throws {@link ConcurrentModificationException} if the map has
+   * entries added or removed while it is in use.
+   */
+  public final class Cursor {
+    /** The index of the current entry in the table, or -1 for the entry of key 0. */
+    private int index = -2;
+
+    private int expectedModCount = modCount;
+
+    private Cursor() {}
+
+    /** Moves to the next entry, and returns {@code true}, or returns {@code false} if none. */
+    public boolean advance() {
+      checkForComodification();
+      if (index == -2) {
+        index = -1;
+        if (zeroValue != null) {
+          return true;
+        }
+      }
+      long[] keys = LongObjectMap.this.keys;
+      while (++index < keys.length) {
+        if (keys[index] != 0) {
+          return true;
+        }
+      }
+      index = keys.length;
+      return false;
+    }
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @throws NoSuchElementException if the cursor is not at an entry
+     */
+    public long key() {
+      checkEntry();
+      return (index == -1) ? 0 : keys[index];
+    }
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @throws NoSuchElementException if the cursor is not at an entry
+     */
+    public V value() {
+      checkEntry();
+      return (index == -1) ? zeroValue : valueAt(index);
+    }
+
+    /**
+     * Replaces the value of the current entry.
+     *
+     * @throws NoSuchElementException if the cursor is not at an entry
+     * @throws UnsupportedOperationException if the map is immutable
+     */
+    public void setValue(V value) {
+      checkNotNull(value);
+      checkMutable();
+      checkEntry();
+      if (index == -1) {
+        zeroValue = value;
+      } else {
+        values[index] = value;
+      }
+    }
+
+    private void checkEntry() {
+      checkForComodification();
+      if (index < -1 || index >= keys.length) {
+        throw new NoSuchElementException();
+      }
+    }
+
+    private void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  // the table
+
+  private void checkMutable() {
+    if (!mutable) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @SuppressWarnings("unchecked") // only values are stored
+  private V valueAt(int index) {
+    return (V) values[index];
+  }
+
+  private int home(long key) {
+    return (int) ((key * multiplier) >>> shift);
+  }
+
+  /** Returns the index of {@code key}, which is not 0, or of the empty slot that ends its probe. */
+  private int indexOf(long key) {
+    long[] keys = this.keys;
+    int mask = keys.length - 1;
+    int index = home(key);
+    while (keys[index] != key && keys[index] != 0) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private void addZeroKey() {
+    size++;
+    modCount++;
+  }
+
+  private void insert(int index, long key, V value) {
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    modCount++;
+    int tableSize = keys.length;
+    if (size - (zeroValue != null ? 1 : 0) > maxSize) {
+      checkState(tableSize < PrimitiveHashing.MAX_TABLE_SIZE, "map too large");
+      rehash(tableSize << 1);
+    } else if (((index - home(key)) & (tableSize - 1)) > maxRun) {
+      // probable hash flooding
+      multiplier = PrimitiveHashing.randomLongMultiplier();
+      rehash(tableSize);
+    }
+  }
+
+  private void rehash(int tableSize) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(tableSize);
+    for (int i = 0; i < oldKeys.length; i++) {
+      long key = oldKeys[i];
+      if (key != 0) {
+        int index = indexOf(key);
+        keys[index] = key;
+        values[index] = oldValues[i];
+      }
+    }
+  }
+
+  /** Removes the entry at {@code index}, shifting back the entries that probed past it. */
+  private void removeAt(int index) {
+    long[] keys = this.keys;
+    int mask = keys.length - 1;
+    int gap = index;
+    for (int i = (index + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+      if (((i - home(keys[i])) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        values[gap] = values[i];
+        gap = i;
+      }
+    }
+    keys[gap] = 0;
+    values[gap] = null;
+    size--;
+    modCount++;
+  }
+}
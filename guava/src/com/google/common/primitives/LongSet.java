@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash set of {@code long} values, which stores them in an array of {@code long} rather than as
+ * boxed elements, so that its operations allocate nothing once the set has grown to its size.
+ *
+ * <p>The elements are stored in an open addressing table with linear probing, which is resized to
+ * stay at most 70% full. As in {@link com.google.common.collect.ImmutableSet ImmutableSet}, an
+ * insertion that probes unusually many slots is taken as a sign of hash flooding; the table is then
+ * rehashed with a randomly chosen hash function.
+ *
+ * <p>The elements are iterated over, in no particular order, with a {@link Cursor}:
+ *
+ * <pre>{@code
+ * for (LongSet.Cursor cursor = set.cursor(); cursor.advance(); ) {
+ *   use(cursor.element());
+ * }
+ * }</pre>
+ *
+ * <p>A set is not thread-safe. An {@linkplain #immutableCopy immutable copy} can be shared safely,
+ * and throws {@link UnsupportedOperationException} when it would be modified.
+ *
+ * @since 28.2
+ */
+@Beta
+@GwtIncompatible
+public final class LongSet {
+  /** Returns a new, empty set. */
+  public static LongSet create() {
+    return create(0);
+  }
+
+  /**
+   * Returns a new, empty set that can hold {@code expectedSize} elements without being resized.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static LongSet create(int expectedSize) {
+    return new LongSet(PrimitiveHashing.tableSize(expectedSize), true);
+  }
+
+  /** Returns a new set of the distinct values of {@code elements}. */
+  public static LongSet of(long... elements) {
+    LongSet set = create(elements.length);
+    set.addAll(elements);
+    return set;
+  }
+
+  /** Returns a new set with the same elements as {@code set}. */
+  public static LongSet copyOf(LongSet set) {
+    LongSet copy = create(set.size);
+    copy.addAll(set);
+    return copy;
+  }
+
+  /** The elements of the table, 0 marking an empty slot. Element 0 is recorded separately. */
+  private long[] elements;
+
+  private boolean hasZero;
+  private int size;
+  @VisibleForTesting long multiplier = PrimitiveHashing.LONG_MULTIPLIER;
+  private int shift;
+  private int maxSize;
+  private int maxRun;
+  private final boolean mutable;
+
+  /** The number of insertions and removals, which invalidate the cursors. */
+  private int modCount;
+
+  private LongSet(int tableSize, boolean mutable) {
+    allocate(tableSize);
+    this.mutable = mutable;
+  }
+
+  private void allocate(int tableSize) {
+    elements = new long[tableSize];
+    shift = PrimitiveHashing.longShift(tableSize);
+    maxSize = PrimitiveHashing.maxSize(tableSize);
+    maxRun = PrimitiveHashing.maxRun(tableSize);
+  }
+
+  /** Returns the number of elements in this set. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns {@code true} if this set has no elements. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns {@code true} if this set contains {@code element}. */
+  public boolean contains(long element) {
+    return (element == 0) ? hasZero : elements[indexOf(element)] != 0;
+  }
+
+  /**
+   * Adds {@code element} to this set, if it is not already present.
+   *
+   * @return {@code true} if the element was added
+   */
+  @CanIgnoreReturnValue
+  public boolean add(long element) {
+    checkMutable();
+    if (element == 0) {
+      if (hasZero) {
+        return false;
+      }
+      hasZero = true;
+      size++;
+      modCount++;
+      return true;
+    }
+    int index = indexOf(element);
+    if (elements[index] != 0) {
+      return false;
+    }
+    insert(index, element);
+    return true;
+  }
+
+  /**
+   * Adds all the values of {@code elements} to this set.
+   *
+   * @return {@code true} if this set changed
+   */
+  @CanIgnoreReturnValue
+  public boolean addAll(long... elements) {
+    checkMutable();
+    boolean changed = false;
+    for (long element : elements) {
+      changed |= add(element);
+    }
+    return changed;
+  }
+
+  /**
+   * Adds all the elements of {@code set} to this set.
+   *
+   * @return {@code true} if this set changed
+   */
+  @CanIgnoreReturnValue
+  public boolean addAll(LongSet set) {
+    checkMutable();
+    boolean changed = set.hasZero && add(0);
+    long[] otherElements = set.elements;
+    for (int i = 0; i < otherElements.length; i++) {
+      if (otherElements[i] != 0) {
+        changed |= add(otherElements[i]);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Removes {@code element} from this set, if it is present.
+   *
+   * @return {@code true} if the element was removed
+   */
+  @CanIgnoreReturnValue
+  public boolean remove(long element) {
+    checkMutable();
+    if (element == 0) {
+      if (!hasZero) {
+        return false;
+      }
+      hasZero = false;
+      size--;
+      modCount++;
+      return true;
+    }
+    int index = indexOf(element);
+    if (elements[index] == 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  /**
+   * Removes from this set all the elements of {@code set}.
+   *
+   * @return {@code true} if this set changed
+   */
+  @CanIgnoreReturnValue
+  public boolean removeAll(LongSet set) {
+    return removeIf(set, true);
+  }
+
+  /**
+   * Removes from this set all the elements that are not in {@code set}.
+   *
+   * @return {@code true} if this set changed
+   */
+  @CanIgnoreReturnValue
+  public boolean retainAll(LongSet set) {
+    return removeIf(set, false);
+  }
+
+  private boolean removeIf(LongSet set, boolean contained) {
+    checkNotNull(set);
+    checkMutable();
+    int oldSize = size;
+    if (hasZero && set.hasZero == contained) {
+      remove(0);
+    }
+    long[] elements = this.elements;
+    for (int i = 0; i < elements.length; ) {
+      // removing an element shifts an unvisited one into its slot, or a visited one after wrapping
+      if (elements[i] != 0 && set.contains(elements[i]) == contained) {
+        removeAt(i);
+      } else {
+        i++;
+      }
+    }
+    return size != oldSize;
+  }
+
+  /** Removes all the elements of this set, keeping its capacity. */
+  public void clear() {
+    checkMutable();
+    Arrays.fill(elements, 0);
+    hasZero = false;
+    size = 0;
+    modCount++;
+  }
+
+  /** Returns the elements of this set, in the order of its {@linkplain #cursor cursors}. */
+  public ImmutableLongArray elements() {
+    ImmutableLongArray.Builder builder = ImmutableLongArray.builder(size);
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      builder.add(cursor.element());
+    }
+    return builder.build();
+  }
+
+  /** Returns a new cursor, positioned before the first element of this set. */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Returns an immutable set with the same elements as this one, whose table is no larger than
+   * needed. Returns this set if it is already immutable.
+   */
+  public LongSet immutableCopy() {
+    if (!mutable) {
+      return this;
+    }
+    LongSet copy = copyOf(this);
+    return new LongSet(copy, false);
+  }
+
+  private LongSet(LongSet set, boolean mutable) {
+    this.elements = set.elements;
+    this.hasZero = set.hasZero;
+    this.size = set.size;
+    this.multiplier = set.multiplier;
+    this.shift = set.shift;
+    this.maxSize = set.maxSize;
+    this.maxRun = set.maxRun;
+    this.mutable = mutable;
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is a {@code LongSet} with the same elements as this one,
+   * whether each is mutable or not.
+   */
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (!(object instanceof LongSet)) {
+      return false;
+    }
+    LongSet that = (LongSet) object;
+    if (size != that.size) {
+      return false;
+    }
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (!that.contains(cursor.element())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the same hash code as a {@code Set<Long>} with the same elements. */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      hash += Longs.hashCode(cursor.element());
+    }
+    return hash;
+  }
+
+  /** Returns a string representation of this set, such as {@code [1, 2, 3]}. */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size * 5).append('[');
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (builder.length() > 1) {
+        builder.append(", ");
+      }
+      builder.append(cursor.element());
+    }
+    return builder.append(']').toString();
+  }
+
+  /**
+   * A position in the iteration over the elements of a set. The elements are visited in no
+   * particular order, and a cursor throws {@link ConcurrentModificationException} if the set has
+   * elements added or removed while it is in use.
+   */
+  public final class Cursor {
+    /** The index of the current element in the table, or -1 for element 0. */
+    private int index = -2;
+
+    private int expectedModCount = modCount;
+
+    private Cursor() {}
+
+    /** Moves to the next element, and returns {@code true}, or returns {@code false} if none. */
+    public boolean advance() {
+      checkForComodification();
+      if (index == -2) {
+        index = -1;
+        if (hasZero) {
+          return true;
+        }
+      }
+      long[] elements = LongSet.this.elements;
+      while (++index < elements.length) {
+        if (elements[index] != 0) {
+          return true;
+        }
+      }
+      index = elements.length;
+      return false;
+    }
+
+    /**
+     * Returns the current element.
+     *
+     * @throws NoSuchElementException if the cursor is not at an element
+     */
+    public long element() {
+      checkForComodification();
+      if (index < -1 || index >= elements.length) {
+        throw new NoSuchElementException();
+      }
+      return (index == -1) ? 0 : elements[index];
+    }
+
+    private void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  // the table
+
+  private void checkMutable() {
+    if (!mutable) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private int home(long element) {
+    return (int) ((element * multiplier) >>> shift);
+  }
+
+  /** Returns the index of a nonzero {@code element}, or of the empty slot that ends its probe. */
+  private int indexOf(long element) {
+    long[] elements = this.elements;
+    int mask = elements.length - 1;
+    int index = home(element);
+    while (elements[index] != element && elements[index] != 0) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private void insert(int index, long element) {
+    elements[index] = element;
+    size++;
+    modCount++;
+    int tableSize = elements.length;
+    if (size - (hasZero ? 1 : 0) > maxSize) {
+      checkState(tableSize < PrimitiveHashing.MAX_TABLE_SIZE, "set too large");
+      rehash(tableSize << 1);
+    } else if (((index - home(element)) & (tableSize - 1)) > maxRun) {
+      // probable hash flooding
+      multiplier = PrimitiveHashing.randomLongMultiplier();
+      rehash(tableSize);
+    }
+  }
+
+  private void rehash(int tableSize) {
+    long[] oldElements = elements;
+    allocate(tableSize);
+    for (long element : oldElements) {
+      if (element != 0) {
+        elements[indexOf(element)] = element;
+      }
+    }
+  }
+
+  /** Removes the element at {@code index}, shifting back the elements that probed past it. */
+  private void removeAt(int index) {
+    long[] elements = this.elements;
+    int mask = elements.length - 1;
+    int gap = index;
+    for (int i = (index + 1) & mask; elements[i] != 0; i = (i + 1) & mask) {
+      if (((i - home(elements[i])) & mask) >= ((i - gap) & mask)) {
+        elements[gap] = elements[i];
+        gap = i;
+      }
+    }
+    elements[gap] = 0;
+    size--;
+    modCount++;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sizing and hashing of the open addressing tables of {@link IntIntMap}, {@link LongLongMap},
+ * {@link LongObjectMap}, {@link IntSet} and {@link LongSet}.
+ *
+ * <p>A key's home slot is given by the high bits of its product with an odd multiplier, which is
+ * fixed until the first insertion whose probe sequence is longer than {@link #maxRun}, as can only
+ * happen by chance with the probability that {@code ImmutableSet} accepts, and is chosen at random
+ * from then on, so that keys chosen to collide cannot make the operations take linear time.
+ */
+@GwtIncompatible
+final class PrimitiveHashing {
+  private PrimitiveHashing() {}
+
+  /** The multiplier of the {@code int} keys until hash flooding is detected: 2^32 / phi. */
+  static final int INT_MULTIPLIER = 0x9E3779B9;
+
+  /** The multiplier of the {@code long} keys until hash flooding is detected: 2^64 / phi. */
+  static final long LONG_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /** The largest number of slots of a table. */
+  static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
+
+  /** The smallest number of slots of a table. */
+  static final int MIN_TABLE_SIZE = 4;
+
+  /** The maximum ratio of the number of keys in the slots of a table to its size. */
+  static final double LOAD_FACTOR = 0.7;
+
+  /** The same multiplier of the logarithm of the table size as {@code ImmutableSet} uses. */
+  static final int MAX_RUN_MULTIPLIER = 13;
+
+  /** Returns the size of a table that can hold {@code expectedSize} keys without being resized. */
+  static int tableSize(int expectedSize) {
+    checkArgument(expectedSize >= 0, "expectedSize (%s) must be >= 0", expectedSize);
+    int tableSize = MIN_TABLE_SIZE;
+    while (tableSize < MAX_TABLE_SIZE && maxSize(tableSize) < expectedSize) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  /** Returns the number of keys that a table of the given size holds before it is resized. */
+  static int maxSize(int tableSize) {
+    return (tableSize == MAX_TABLE_SIZE) ? tableSize - 1 : (int) (tableSize * LOAD_FACTOR);
+  }
+
+  /**
+   * Returns the longest probe sequence that an insertion into a table of the given size may have
+   * before hash flooding is assumed.
+   */
+  static int maxRun(int tableSize) {
+    return MAX_RUN_MULTIPLIER * Integer.numberOfTrailingZeros(tableSize);
+  }
+
+  /** Returns the number of bits by which a product is shifted to give a slot of the table. */
+  static int intShift(int tableSize) {
+    return Integer.SIZE - Integer.numberOfTrailingZeros(tableSize);
+  }
+
+  /** Returns the number of bits by which a product is shifted to give a slot of the table. */
+  static int longShift(int tableSize) {
+    return Long.SIZE - Integer.numberOfTrailingZeros(tableSize);
+  }
+
+  static int randomIntMultiplier() {
+    return ThreadLocalRandom.current().nextInt() | 1;
+  }
+
+  static long randomLongMultiplier() {
+    return ThreadLocalRandom.current().nextLong() | 1;
+  }
+}